@@ -5,6 +5,16 @@ public class Constants {
 
     public static final int DEFAULT_LEADERBOARD_SIZE = 5;
 
+    public static final String DEFAULT_LEADERBOARD_NAME = "default";
+
+    public static final int MAX_RANGE_LIMIT = 1000;
+
+    // Largest page a coordinator asks one shard for: a narrowed range window plus the range itself
+    public static final int MAX_SHARD_FETCH_LIMIT = 4 * MAX_RANGE_LIMIT;
+
+    // Kept below the server's idle timeout so that a held long-poll is not cut off
+    public static final int MAX_POLL_WAIT_SECONDS = 60;
+
     public static final String EXCHANGE_NAME = "your-exchange-name";
 
     public static final String ROUTING_KEY = "your-routing-key";
@@ -1,15 +1,26 @@
 package bindings;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
 import com.rabbitmq.client.ConnectionFactory;
+import com.typesafe.config.Config;
+import play.libs.ws.WSClient;
+import rabbitMq.BoardReplicator;
 import services.Cache.CacheServices;
 import services.Cache.PlayerScoreCache;
 import services.Leaderboards.LeaderBoard;
-import services.Leaderboards.LeaderBoardServiceImp;
+import services.Leaderboards.LeaderBoardRegistry;
 import services.Scores.ScoreIngestionService;
 import services.Scores.ScoreIngestionServiceImpl;
 import services.Scores.ScoreIngestionToLeaderBoards;
 import services.Scores.ScoreIngestionToStorage;
+import services.Sharding.HttpShardTransport;
+import services.Sharding.InProcessShardTransport;
+import services.Sharding.LocalShard;
+import services.Sharding.ShardTransport;
+
+import javax.inject.Provider;
 
 //Dependecy Injection
 public class Module extends AbstractModule {
@@ -19,7 +30,27 @@ public class Module extends AbstractModule {
         bind(ScoreIngestionToLeaderBoards.class).to(ScoreIngestionServiceImpl.class);
         bind(ScoreIngestionToStorage.class).to(ScoreIngestionServiceImpl.class);
         bind(ScoreIngestionService.class).to(ScoreIngestionServiceImpl.class);
-        bind(LeaderBoard.class).to(LeaderBoardServiceImp.class);
+        // A shard node loads its shard at startup rather than on the first coordinator request
+        bind(LocalShard.class).asEagerSingleton();
+        // Replication joins the other nodes at startup so that no accepted score goes unpublished
+        bind(BoardReplicator.class).asEagerSingleton();
+    }
+
+    // Shards live in this JVM unless the http transport is configured
+    @Provides
+    @Singleton
+    ShardTransport provideShardTransport(Config config, Provider<WSClient> wsClient) {
+        if ("http".equals(config.getString("leaderboard.sharding.transport"))) {
+            return new HttpShardTransport(wsClient.get(), config.getStringList("leaderboard.sharding.nodes"),
+                    config.getDuration("leaderboard.sharding.timeout"));
+        }
+        return new InProcessShardTransport(config.getInt("leaderboard.sharding.shards"));
+    }
+
+    // Code that asks for a single LeaderBoard gets the registry's default board
+    @Provides
+    LeaderBoard provideDefaultLeaderBoard(LeaderBoardRegistry registry) {
+        return registry.getDefault();
     }
 }
 
@@ -0,0 +1,111 @@
+package controllers;
+
+import akka.actor.ActorSystem;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.JsonFraming;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.util.ByteString;
+import com.google.inject.Inject;
+import com.typesafe.config.Config;
+import models.BulkIngestionSummary;
+import models.PlayerScore;
+import play.Logger;
+import play.libs.F;
+import play.libs.streams.Accumulator;
+import play.mvc.BodyParser;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+import rabbitMq.PlayerScoreCodec;
+import services.Metrics.IngestionMetrics;
+import services.Metrics.IngestionStage;
+import services.Scores.ScoreIngestionService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Streaming body parser for bulk score uploads.
+ *
+ * Accepts NDJSON or a JSON array of scores. The body is framed into score objects as it arrives,
+ * grouped into batches and each batch is ingested before the next one is read, so the whole
+ * body is never buffered. Parsing yields the per-batch accepted/rejected summary.
+ */
+public class BulkScoreBodyParser implements BodyParser<BulkIngestionSummary> {
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final ScoreIngestionService scoreIngestor;
+    private final IngestionMetrics metrics;
+    private final Executor ingestionExecutor;
+    private final int batchSize;
+    private final int maxObjectBytes;
+
+    @Inject
+    public BulkScoreBodyParser(ScoreIngestionService scoreIngestor, ActorSystem actorSystem, Config config, IngestionMetrics metrics) {
+        this.scoreIngestor = scoreIngestor;
+        this.metrics = metrics;
+        this.ingestionExecutor = actorSystem.dispatchers().lookup("ingestion-dispatcher");
+        this.batchSize = config.getInt("leaderboard.bulk.batchSize");
+        this.maxObjectBytes = config.getInt("leaderboard.bulk.maxObjectBytes");
+    }
+
+    @Override
+    public Accumulator<ByteString, F.Either<Result, BulkIngestionSummary>> apply(Http.RequestHeader request) {
+        Sink<ByteString, CompletionStage<BulkIngestionSummary>> sink = Flow.of(ByteString.class)
+                // Splits both NDJSON and JSON arrays into one ByteString per object
+                .via(JsonFraming.objectScanner(maxObjectBytes))
+                .grouped(batchSize)
+                // Ingestion blocks on storage, so it runs off the stream's dispatcher, one batch at a time
+                .mapAsync(1, batch -> CompletableFuture.supplyAsync(() -> ingest(batch), ingestionExecutor))
+                .toMat(Sink.fold(new BulkIngestionSummary(),
+                        (summary, result) -> summary.addBatch(result.accepted, result.rejected, result.error)), Keep.right());
+        return Accumulator.fromSink(sink.mapMaterializedValue(summary -> summary.handle((result, error) -> {
+            if (error != null) {
+                logger.warn("Bulk score upload aborted - " + error.getMessage());
+                return F.Either.<Result, BulkIngestionSummary>Left(Results.badRequest("Malformed bulk score body: " + error.getMessage()));
+            }
+            return F.Either.<Result, BulkIngestionSummary>Right(result);
+        })));
+    }
+
+    private BatchResult ingest(List<ByteString> batch) {
+        List<PlayerScore> scores = new ArrayList<>(batch.size());
+        long start = System.nanoTime();
+        for (ByteString json : batch) {
+            try {
+                scores.add(PlayerScoreCodec.decodeScore(json.toArray()));
+            } catch (Exception e) {
+                // Undecodable objects are counted as rejected, the rest of the batch still goes through
+            }
+        }
+        metrics.record(IngestionStage.DECODE, start);
+        int undecodable = batch.size() - scores.size();
+        if (scores.isEmpty()) {
+            return new BatchResult(0, undecodable, null);
+        }
+        try {
+            scoreIngestor.publishAll(scores);
+            return new BatchResult(scores.size(), undecodable, null);
+        } catch (Exception e) {
+            logger.error("Bulk batch of " + scores.size() + " scores failed - " + e.getMessage());
+            return new BatchResult(0, batch.size(), e.getMessage());
+        }
+    }
+
+    private static final class BatchResult {
+        private final int accepted;
+        private final int rejected;
+        private final String error;
+
+        private BatchResult(int accepted, int rejected, String error) {
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.error = error;
+        }
+    }
+}
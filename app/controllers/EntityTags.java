@@ -0,0 +1,50 @@
+package controllers;
+
+import java.util.Optional;
+
+/**
+ * Entity tags for board versions, and If-None-Match matching against them.
+ */
+public final class EntityTags {
+
+    // Board versions restart with the process, so tags from an earlier run never match
+    private static final String PROCESS_TAG = Long.toString(System.currentTimeMillis(), 36);
+
+    private EntityTags() {
+    }
+
+    /**
+     * Tags a version of one board instance, so that a board replaced under the same name, or the same
+     * board after a restart, never matches an older tag.
+     *
+     * @param board   Board the version belongs to.
+     * @param version Board version.
+     * @return the quoted strong tag.
+     */
+    public static String of(Object board, long version) {
+        return "\"" + PROCESS_TAG + "-" + Integer.toHexString(System.identityHashCode(board)) + "-" + version + "\"";
+    }
+
+    /**
+     * Compares tags weakly, as If-None-Match requires: a W/ prefix is ignored and * matches any tag.
+     *
+     * @param ifNoneMatch The request's If-None-Match header, if any.
+     * @param tag         Current tag of the resource.
+     * @return true if the client already holds the tagged version.
+     */
+    public static boolean matches(Optional<String> ifNoneMatch, String tag) {
+        if (!ifNoneMatch.isPresent()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.get().split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || trimmed.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -2,34 +2,107 @@ package controllers;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import models.BulkIngestionSummary;
 import models.PlayerScore;
-import models.Response;
+import play.libs.Json;
+import play.mvc.BodyParser;
 import play.mvc.Controller;
 import play.mvc.Http;
 import play.mvc.Result;
+import rabbitMq.PlayerScoreCodec;
+import services.Metrics.IngestionMetrics;
+import services.Metrics.IngestionStage;
 import services.Scores.ScoreIngestionService;
 
 import com.google.inject.Inject;
 
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
 public class GameController extends Controller {
 
     private ObjectMapper objectMapper = new ObjectMapper();
 
     @Inject
     ScoreIngestionService scoreIngestor;
-    public Result postScore(Http.Request request) {
+
+    @Inject
+    IngestionMetrics metrics;
+
+    /**
+     * Ingests a single score. Decoding happens on the request thread; queueing for storage and
+     * updating the leaderboards happen on the database executor, so the server thread is released.
+     */
+    public CompletionStage<Result> postScore(Http.Request request) {
+        PlayerScore newScore;
         try {
-            JsonNode requestNode = request.body().asJson();
-            PlayerScore newScore = objectMapper.readValue(requestNode.toString(),PlayerScore.class);
-            Response response= scoreIngestor.publish(newScore);
-            return ok(response.getMessage());
+            long start = System.nanoTime();
+            newScore = readScore(request);
+            metrics.record(IngestionStage.DECODE, start);
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(status(BAD_REQUEST, e.getMessage()));
         } catch (Exception e) {
             System.out.println("Leaderboard Update failed - " + e.getMessage());
-            return status(INTERNAL_SERVER_ERROR,e.getMessage());
+            return CompletableFuture.completedFuture(status(INTERNAL_SERVER_ERROR,e.getMessage()));
         }
+        return scoreIngestor.publishAsync(newScore)
+                .thenApply(response -> ok(response.getMessage()))
+                .exceptionally(failure -> {
+                    Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                    System.out.println("Leaderboard Update failed - " + cause.getMessage());
+                    return status(INTERNAL_SERVER_ERROR, cause.getMessage());
+                });
     }
-}
-
 
+    /**
+     * Decodes a JSON score body, rejecting bodies that are not JSON or lack a player id or score.
+     */
+    private PlayerScore readScore(Http.Request request) throws IOException {
+        JsonNode requestNode = request.body().asJson();
+        if (requestNode == null) {
+            throw new IOException("Expected a JSON score body");
+        }
+        return PlayerScoreCodec.requireComplete(objectMapper.treeToValue(requestNode, PlayerScore.class));
+    }
 
+    /**
+     * Adds points to a player's total on an additive board. The body is a score whose value is the
+     * number of points to add; it is decoded and checked on the request thread, and the points are
+     * added on the database executor like {@link #postScore}.
+     */
+    public CompletionStage<Result> postPoints(String name, Http.Request request) {
+        PlayerScore points;
+        try {
+            long start = System.nanoTime();
+            points = readScore(request);
+            metrics.record(IngestionStage.DECODE, start);
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(status(BAD_REQUEST, e.getMessage()));
+        } catch (Exception e) {
+            System.out.println("Leaderboard Update failed - " + e.getMessage());
+            return CompletableFuture.completedFuture(status(INTERNAL_SERVER_ERROR, e.getMessage()));
+        }
+        return scoreIngestor.addPointsAsync(name, points)
+                .thenApply(response -> ok(response.getMessage()))
+                .exceptionally(failure -> {
+                    Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                    if (cause instanceof IllegalArgumentException) {
+                        return status(BAD_REQUEST, cause.getMessage());
+                    }
+                    System.out.println("Leaderboard Update failed - " + cause.getMessage());
+                    return status(INTERNAL_SERVER_ERROR, cause.getMessage());
+                });
+    }
 
+    /**
+     * Ingests a streamed NDJSON or JSON-array body of scores in batches.
+     * The body parser ingests each batch as it arrives; this action only reports the outcome.
+     */
+    @BodyParser.Of(BulkScoreBodyParser.class)
+    public Result postScoresBulk(Http.Request request) {
+        BulkIngestionSummary summary = request.body().as(BulkIngestionSummary.class);
+        return ok(Json.toJson(summary));
+    }
+}
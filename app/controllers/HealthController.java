@@ -1,8 +1,10 @@
 package controllers;
 
 import com.google.inject.Inject;
+import play.libs.Json;
 import play.mvc.Controller;
 import play.mvc.Result;
+import rabbitMq.BoardReplicator;
 import rabbitMq.PlayerScoreConsumer;
 import rabbitMq.RabbitMqClient;
 
@@ -10,8 +12,20 @@ public class HealthController extends Controller {
 
     @Inject
     PlayerScoreConsumer playerScoreConsumer;
+
+    @Inject
+    BoardReplicator boardReplicator;
+
     public Result getHealthCheckup() {
         playerScoreConsumer.startConsumer();
         return ok("Healthy");
     }
+
+    public Result getConsumerStats() {
+        return ok(Json.toJson(playerScoreConsumer.getStats()));
+    }
+
+    public Result getReplicationStats() {
+        return ok(Json.toJson(boardReplicator.getStats()));
+    }
 }
@@ -1,66 +1,352 @@
 package controllers;
 
+import Constants.Constants;
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
 import com.google.inject.Inject;
 import exceptions.CacheInitializationException;
 import exceptions.LeaderboardNotInitializedException;
 import exceptions.LeaderboardUpdateFailureException;
-import models.PlayerScore;
+import exceptions.ShardUnavailableException;
+import models.ScorePercentile;
 import play.libs.Json;
 import play.mvc.Controller;
+import play.mvc.Http;
 import play.mvc.Result;
-import services.Leaderboards.LeaderBoardServiceImp;
+import services.Cache.ScoreDistribution;
+import services.Cache.BoardSnapshot;
+import services.Leaderboards.ActivityLeaderBoard;
+import services.Leaderboards.BoardDefinition;
+import services.Leaderboards.LeaderBoard;
+import services.Leaderboards.LeaderBoardRegistry;
+import services.Leaderboards.TimeWindow;
+import services.Metrics.IngestionMetrics;
+import services.Metrics.IngestionStage;
+import services.Streaming.BoardStreamHub;
+import views.DatabaseExecutionContext;
 
-import java.util.List;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 
 /**
  * Handles leaderboard-related HTTP requests.
+ *
+ * Actions return without holding a server thread: board creation loads from the database on the
+ * database executor, and reads complete from memory or once the shards have answered.
+ *
+ * Top N responses carry the board version as an ETag. A request whose If-None-Match holds the current
+ * version gets 304 without the board being read, and the poll actions hold such a request until the
+ * version changes.
  */
 public class LeaderBoardController extends Controller {
 
-    private final LeaderBoardServiceImp leaderBoardService;
+    private final LeaderBoardRegistry boardRegistry;
+    private final LeaderBoard leaderBoardService;
+    private final IngestionMetrics metrics;
+    private final BoardStreamHub streamHub;
+    private final DatabaseExecutionContext databaseExecutor;
 
     @Inject
-    public LeaderBoardController(LeaderBoardServiceImp leaderBoardService) {
-        this.leaderBoardService = leaderBoardService;
+    public LeaderBoardController(LeaderBoardRegistry boardRegistry, IngestionMetrics metrics, BoardStreamHub streamHub, DatabaseExecutionContext databaseExecutor) {
+        this.boardRegistry = boardRegistry;
+        this.metrics = metrics;
+        this.streamHub = streamHub;
+        this.databaseExecutor = databaseExecutor;
+        this.leaderBoardService = boardRegistry.getDefault();
     }
 
-
-
-
     /**
      * Creates a leaderboard of the specified size.
      * @param boardSize the size of the leaderboard.
      * @return status message indicating success or failure.
      */
-    public Result createLeaderBoard(int boardSize) {
-        try {
-            if (boardSize <= 0) {
-                throw new IllegalArgumentException("Leaderboard size must be greater than zero");
+    public CompletionStage<Result> createLeaderBoard(int boardSize) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                if (boardSize <= 0) {
+                    throw new IllegalArgumentException("Leaderboard size must be greater than zero");
+                }
+                boardRegistry.define(new BoardDefinition(BoardDefinition.Kind.ALL_TIME, Constants.DEFAULT_LEADERBOARD_NAME, null, boardSize));
+                return ok("Leaderboard created successfully");
+            } catch (CacheInitializationException | LeaderboardNotInitializedException e) {
+                return status(INTERNAL_SERVER_ERROR, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                return status(BAD_REQUEST, e.getMessage());
             }
-            leaderBoardService.createBoard(boardSize);
-            return ok("Leaderboard created successfully");
-        } catch (CacheInitializationException | LeaderboardNotInitializedException e) {
-            return status(INTERNAL_SERVER_ERROR, e.getMessage());
-        } catch (IllegalArgumentException e) {
-            return status(BAD_REQUEST, e.getMessage());
-        }
+        }, databaseExecutor);
+    }
+
+    /**
+     * Creates a named leaderboard, or resizes it if it already exists.
+     * @param name the name of the leaderboard.
+     * @param size the size of the leaderboard.
+     * @param window the time window (hourly, daily or weekly), or empty for an all-time board.
+     * @param additive true for a board of running totals fed through the points route.
+     * @param activity true for an approximate board of the players submitting the most scores.
+     * @return status message indicating success or failure.
+     */
+    public CompletionStage<Result> createNamedLeaderBoard(String name, int size, String window, boolean additive, boolean activity) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                if (size <= 0) {
+                    throw new IllegalArgumentException("Leaderboard size must be greater than zero");
+                }
+                if (additive && activity) {
+                    throw new IllegalArgumentException("A leaderboard cannot be both additive and an activity board");
+                }
+                TimeWindow timeWindow = window.isEmpty() ? null : TimeWindow.valueOf(window.toUpperCase());
+                BoardDefinition.Kind kind;
+                if (activity) {
+                    kind = BoardDefinition.Kind.ACTIVITY;
+                } else if (additive) {
+                    if (timeWindow != null) {
+                        throw new IllegalArgumentException("Additive leaderboards cannot be windowed");
+                    }
+                    kind = BoardDefinition.Kind.ADDITIVE;
+                } else {
+                    kind = timeWindow == null ? BoardDefinition.Kind.ALL_TIME : BoardDefinition.Kind.WINDOWED;
+                }
+                // Defined rather than created directly, so the other nodes register the board too
+                boardRegistry.define(new BoardDefinition(kind, name, timeWindow, size));
+                return ok("Leaderboard " + name + " created successfully");
+            } catch (CacheInitializationException | LeaderboardNotInitializedException e) {
+                return status(INTERNAL_SERVER_ERROR, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                return status(BAD_REQUEST, e.getMessage());
+            }
+        }, databaseExecutor);
     }
 
     /**
      * Gets the top N players from the leaderboard.
-     * @return JSON response with the top players or error status.
+     * @param request the request, whose If-None-Match is compared with the board version.
+     * @return JSON response with the top players, 304 if the client's version is current, or error status.
+     */
+    public CompletionStage<Result> getTopNPlayers(Http.Request request) {
+        return topPlayers(leaderBoardService, request);
+    }
+
+    /**
+     * Gets the top N players from a named leaderboard.
+     * @param name the name of the leaderboard.
+     * @param request the request, whose If-None-Match is compared with the board version.
+     * @return JSON response with the top players, 304 if the client's version is current, or error status.
+     */
+    public CompletionStage<Result> getNamedTopNPlayers(String name, Http.Request request) {
+        Optional<LeaderBoard> board = boardRegistry.get(name);
+        if (!board.isPresent()) {
+            return CompletableFuture.completedFuture(status(NOT_FOUND, "No leaderboard named " + name));
+        }
+        return topPlayers(board.get(), request);
+    }
+
+    /**
+     * Long-polls the top N players of the leaderboard.
+     * @param wait the longest time to hold the request, in seconds.
+     * @param request the request, whose If-None-Match holds the version the client has.
+     * @return JSON response with the top players once they differ from the client's version, or 304
+     * if they did not change within the wait.
+     */
+    public CompletionStage<Result> pollTopNPlayers(int wait, Http.Request request) {
+        return pollTopPlayers(Constants.DEFAULT_LEADERBOARD_NAME, wait, request);
+    }
+
+    /**
+     * Long-polls the top N players of a named leaderboard.
+     * @param name the name of the leaderboard.
+     * @param wait the longest time to hold the request, in seconds.
+     * @param request the request, whose If-None-Match holds the version the client has.
+     * @return JSON response with the top players once they differ from the client's version, or 304
+     * if they did not change within the wait.
+     */
+    public CompletionStage<Result> pollNamedTopNPlayers(String name, int wait, Http.Request request) {
+        return pollTopPlayers(name, wait, request);
+    }
+
+    /**
+     * Gets the mergeable counter summary of an activity leaderboard, so that summaries from every node
+     * can be combined into a cluster-wide board.
+     * @param name the name of the activity leaderboard.
+     * @return JSON summary or error status.
+     */
+    public Result getActivitySummary(String name) {
+        Optional<LeaderBoard> board = boardRegistry.get(name);
+        if (!board.isPresent()) {
+            return status(NOT_FOUND, "No leaderboard named " + name);
+        }
+        if (!(board.get() instanceof ActivityLeaderBoard)) {
+            return status(BAD_REQUEST, "Leaderboard " + name + " is not an activity board");
+        }
+        return ok(Json.toJson(((ActivityLeaderBoard) board.get()).getSummary()));
+    }
+
+    /**
+     * Estimates how a score compares with every player on a named leaderboard, from the board's score
+     * histogram rather than a scan of the players.
+     * @param name the name of the leaderboard.
+     * @param score the score to place.
+     * @return JSON response with the number of players ahead and the top percentage or error status.
+     */
+    public CompletionStage<Result> getPercentile(String name, long score) {
+        return distribution(name, distribution -> ok(Json.toJson(
+                new ScorePercentile(score, distribution.getCount(), distribution.countAbove(score)))));
+    }
+
+    /**
+     * Gets the distribution of the scores on a named leaderboard as equal-width bins.
+     * @param name the name of the leaderboard.
+     * @param bins the number of bins.
+     * @return JSON response with the bins in score order or error status.
+     */
+    public CompletionStage<Result> getHistogram(String name, int bins) {
+        if (bins <= 0 || bins > Constants.MAX_RANGE_LIMIT) {
+            return CompletableFuture.completedFuture(status(BAD_REQUEST, "Bins must be between 1 and " + Constants.MAX_RANGE_LIMIT));
+        }
+        return distribution(name, distribution -> ok(Json.toJson(distribution.histogram(bins))));
+    }
+
+    private CompletionStage<Result> distribution(String name, Function<ScoreDistribution, Result> answer) {
+        Optional<LeaderBoard> board = boardRegistry.get(name);
+        if (!board.isPresent()) {
+            return CompletableFuture.completedFuture(status(NOT_FOUND, "No leaderboard named " + name));
+        }
+        return board.get().getDistributionAsync().thenApply(distribution -> {
+            if (!distribution.isPresent()) {
+                return status(BAD_REQUEST, "Leaderboard " + name + " does not keep a score distribution");
+            }
+            return answer.apply(distribution.get());
+        }).exceptionally(failure -> readFailed(failure, "Couldn't get score distribution"));
+    }
+
+    /**
+     * Streams a named leaderboard's top players as server-sent events: the current top N, then a diff
+     * of the changed ranks whenever it changes.
+     * @param name the name of the leaderboard.
+     * @return chunked event stream or error status.
+     */
+    public CompletionStage<Result> streamTopPlayers(String name) {
+        Optional<CompletionStage<Source<ByteString, NotUsed>>> events = streamHub.subscribe(name);
+        if (!events.isPresent()) {
+            return CompletableFuture.completedFuture(status(NOT_FOUND, "No leaderboard named " + name));
+        }
+        return events.get()
+                .thenApply(source -> ok().chunked(source).as(Http.MimeTypes.EVENT_STREAM))
+                .exceptionally(failure -> readFailed(failure, "Couldn't stream top scores"));
+    }
+
+    private CompletionStage<Result> topPlayers(LeaderBoard board, Http.Request request) {
+        if (!request.header(IF_NONE_MATCH).isPresent()) {
+            return snapshot(board);
+        }
+        // The version is a counter on in-memory boards and one small call per shard on sharded ones
+        return board.getVersionAsync().thenCompose(version -> {
+            String tag = EntityTags.of(board, version);
+            if (EntityTags.matches(request.header(IF_NONE_MATCH), tag)) {
+                return CompletableFuture.completedFuture(status(NOT_MODIFIED).withHeader(ETAG, tag));
+            }
+            return snapshot(board);
+        }).exceptionally(failure -> readFailed(failure, "Couldn't get top scores"));
+    }
+
+    private CompletionStage<Result> snapshot(LeaderBoard board) {
+        // The snapshot body is encoded once per board change and shared by every reader
+        long start = System.nanoTime();
+        return board.getSnapshotAsync().thenApply(snapshot -> {
+            metrics.record(IngestionStage.READ_SERIALIZATION, start);
+            return snapshotResult(board, snapshot);
+        }).exceptionally(failure -> readFailed(failure, "Couldn't get top scores"));
+    }
+
+    private CompletionStage<Result> pollTopPlayers(String name, int wait, Http.Request request) {
+        if (wait <= 0 || wait > Constants.MAX_POLL_WAIT_SECONDS) {
+            return CompletableFuture.completedFuture(status(BAD_REQUEST, "Wait must be between 1 and " + Constants.MAX_POLL_WAIT_SECONDS + " seconds"));
+        }
+        Optional<LeaderBoard> board = boardRegistry.get(name);
+        if (!board.isPresent()) {
+            return CompletableFuture.completedFuture(status(NOT_FOUND, "No leaderboard named " + name));
+        }
+        return board.get().getVersionAsync().thenCompose(version -> {
+            if (!EntityTags.matches(request.header(IF_NONE_MATCH), EntityTags.of(board.get(), version))) {
+                return snapshot(board.get()); // The client is behind, so there is nothing to wait for
+            }
+            Optional<CompletionStage<BoardSnapshot>> change = streamHub.awaitChange(name, version, Duration.ofSeconds(wait));
+            if (!change.isPresent()) {
+                return CompletableFuture.completedFuture(status(NOT_FOUND, "No leaderboard named " + name));
+            }
+            return change.get().thenApply(snapshot -> snapshot.getVersion() == version
+                    ? status(NOT_MODIFIED).withHeader(ETAG, EntityTags.of(board.get(), version))
+                    : snapshotResult(board.get(), snapshot));
+        }).exceptionally(failure -> readFailed(failure, "Couldn't poll top scores"));
+    }
+
+    private Result snapshotResult(LeaderBoard board, BoardSnapshot snapshot) {
+        return ok(snapshot.getJson()).as(Http.MimeTypes.JSON).withHeader(ETAG, EntityTags.of(board, snapshot.getVersion()));
+    }
+
+    /**
+     * Gets a player's rank among all players.
+     * @param playerId the player to look up.
+     * @return JSON response with the player's rank and score or error status.
+     */
+    public CompletionStage<Result> getPlayerRank(String playerId) {
+        return leaderBoardService.getRankAsync(playerId).thenApply(rank -> {
+            if (!rank.isPresent()) {
+                return status(NOT_FOUND, "No score recorded for player " + playerId);
+            }
+            return ok(Json.toJson(rank.get()));
+        }).exceptionally(failure -> readFailed(failure, "Couldn't get player rank"));
+    }
+
+    /**
+     * Gets a page of the leaderboard in rank order.
+     * @param offset number of players to skip from the top.
+     * @param limit maximum number of players to return.
+     * @return JSON response with the ranked players or error status.
      */
-    public Result getTopNPlayers() {
-        try {
-            List<PlayerScore> topPlayers = leaderBoardService.getTopNPlayers();
-            return ok(Json.toJson(topPlayers));
-        } catch (LeaderboardNotInitializedException e) {
-            System.err.println("Leaderboard not initialized - " + e.getMessage());
-            return status(BAD_REQUEST, e.getMessage());
-        } catch (Exception e) {
-            System.err.println("Couldn't get top scores - " + e.getMessage());
-            return status(INTERNAL_SERVER_ERROR, e.getMessage());
+    public CompletionStage<Result> getRange(long offset, int limit) {
+        if (offset < 0 || limit <= 0 || limit > Constants.MAX_RANGE_LIMIT) {
+            return CompletableFuture.completedFuture(status(BAD_REQUEST, "Offset must be non-negative and limit between 1 and " + Constants.MAX_RANGE_LIMIT));
+        }
+        return leaderBoardService.getRangeAsync(offset, limit)
+                .thenApply(range -> ok(Json.toJson(range)))
+                .exceptionally(failure -> readFailed(failure, "Couldn't get leaderboard range"));
+    }
+
+    /**
+     * Gets the players ranked around a player.
+     * @param playerId the player at the centre.
+     * @param radius number of players to include above and below.
+     * @return JSON response with the ranked players or error status.
+     */
+    public CompletionStage<Result> getNeighbourhood(String playerId, int radius) {
+        if (radius < 0 || radius > Constants.MAX_RANGE_LIMIT) {
+            return CompletableFuture.completedFuture(status(BAD_REQUEST, "Radius must be between 0 and " + Constants.MAX_RANGE_LIMIT));
+        }
+        return leaderBoardService.getNeighbourhoodAsync(playerId, radius).thenApply(neighbours -> {
+            if (neighbours.isEmpty()) {
+                return status(NOT_FOUND, "No score recorded for player " + playerId);
+            }
+            return ok(Json.toJson(neighbours));
+        }).exceptionally(failure -> readFailed(failure, "Couldn't get player neighbourhood"));
+    }
+
+    private Result readFailed(Throwable failure, String description) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof ShardUnavailableException) {
+            System.err.println("Leaderboard shard unavailable - " + cause.getMessage());
+            return status(SERVICE_UNAVAILABLE, cause.getMessage());
+        }
+        if (cause instanceof LeaderboardNotInitializedException) {
+            System.err.println("Leaderboard not initialized - " + cause.getMessage());
+            return status(BAD_REQUEST, cause.getMessage());
         }
+        System.err.println(description + " - " + cause.getMessage());
+        return status(INTERNAL_SERVER_ERROR, cause.getMessage());
     }
 
 }
@@ -0,0 +1,25 @@
+package controllers;
+
+import com.google.inject.Inject;
+import play.mvc.Controller;
+import play.mvc.Result;
+import services.Metrics.MetricsReporter;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Exposes metrics for Prometheus to scrape.
+ */
+public class MetricsController extends Controller {
+
+    private final MetricsReporter reporter;
+
+    @Inject
+    public MetricsController(MetricsReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    public CompletionStage<Result> getMetrics() {
+        return reporter.render().thenApply(page -> ok(page).as(MetricsReporter.CONTENT_TYPE));
+    }
+}
@@ -0,0 +1,104 @@
+package controllers;
+
+import Constants.Constants;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.inject.Inject;
+import models.PlayerRank;
+import models.PlayerScore;
+import play.libs.Json;
+import play.mvc.Controller;
+import play.mvc.Http;
+import play.mvc.Result;
+import services.Cache.PlayerRankIndex;
+import services.Cache.ScoreDistribution;
+import services.Cache.ScoreKey;
+import services.Sharding.LocalShard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Serves this node's shard to a coordinator using the HTTP shard transport.
+ */
+public class ShardController extends Controller {
+
+    private final LocalShard localShard;
+
+    @Inject
+    public ShardController(LocalShard localShard) {
+        this.localShard = localShard;
+    }
+
+    public Result publish(Http.Request request) {
+        Optional<PlayerRankIndex> index = localShard.getIndex();
+        if (!index.isPresent()) {
+            return notAShard();
+        }
+        JsonNode body = request.body().asJson();
+        if (body == null) {
+            return status(BAD_REQUEST, "Expected a JSON score");
+        }
+        index.get().update(Json.fromJson(body, PlayerScore.class));
+        return ok();
+    }
+
+    public Result getTop(int limit) {
+        return getRange(0, limit);
+    }
+
+    public Result getRange(long offset, int limit) {
+        Optional<PlayerRankIndex> index = localShard.getIndex();
+        if (!index.isPresent()) {
+            return notAShard();
+        }
+        if (offset < 0 || limit <= 0 || limit > Constants.MAX_SHARD_FETCH_LIMIT) {
+            return status(BAD_REQUEST, "Offset must be non-negative and limit between 1 and " + Constants.MAX_SHARD_FETCH_LIMIT);
+        }
+        List<PlayerScore> scores = new ArrayList<>();
+        for (PlayerRank rank : index.get().getRange(offset, limit)) {
+            scores.add(new PlayerScore(rank.getPlayerId(), rank.getScore(), rank.getPlayerName()));
+        }
+        return ok(Json.toJson(scores));
+    }
+
+    public Result getPlayer(String id) {
+        Optional<PlayerRankIndex> index = localShard.getIndex();
+        if (!index.isPresent()) {
+            return notAShard();
+        }
+        Optional<PlayerRank> rank = index.get().getRank(id);
+        if (!rank.isPresent()) {
+            return status(NOT_FOUND, "No score recorded for player " + id);
+        }
+        return ok(Json.toJson(new PlayerScore(id, rank.get().getScore(), rank.get().getPlayerName())));
+    }
+
+    public Result countAhead(long score, String playerId) {
+        Optional<PlayerRankIndex> index = localShard.getIndex();
+        if (!index.isPresent()) {
+            return notAShard();
+        }
+        return ok(String.valueOf(index.get().countAhead(new ScoreKey(score, playerId))));
+    }
+
+    public Result getDistribution() {
+        Optional<PlayerRankIndex> index = localShard.getIndex();
+        if (!index.isPresent()) {
+            return notAShard();
+        }
+        return ok(Json.toJson(index.get().getDistribution()));
+    }
+
+    public Result getVersion() {
+        Optional<PlayerRankIndex> index = localShard.getIndex();
+        if (!index.isPresent()) {
+            return notAShard();
+        }
+        return ok(String.valueOf(index.get().getVersion()));
+    }
+
+    private Result notAShard() {
+        return status(NOT_FOUND, "This node does not serve a shard");
+    }
+}
@@ -0,0 +1,10 @@
+package exceptions;
+
+/**
+ * A sharded board could not reach one of its shards in time.
+ */
+public class ShardUnavailableException extends LeaderboardNotInitializedException {
+    public ShardUnavailableException(String message){
+        super(message);
+    }
+}
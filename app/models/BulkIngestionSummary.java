@@ -0,0 +1,72 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk score upload, with one entry per ingested batch.
+ */
+public class BulkIngestionSummary {
+
+    private long accepted;
+    private long rejected;
+    private final List<BatchSummary> batches = new ArrayList<>();
+
+    /**
+     * Records the outcome of the next batch.
+     *
+     * @param accepted Scores ingested from the batch.
+     * @param rejected Scores that could not be decoded or ingested.
+     * @param error    Reason the batch failed, or null.
+     * @return this summary.
+     */
+    public BulkIngestionSummary addBatch(int accepted, int rejected, String error) {
+        this.accepted += accepted;
+        this.rejected += rejected;
+        batches.add(new BatchSummary(batches.size() + 1, accepted, rejected, error));
+        return this;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public List<BatchSummary> getBatches() {
+        return batches;
+    }
+
+    public static class BatchSummary {
+
+        private final int batch;
+        private final int accepted;
+        private final int rejected;
+        private final String error;
+
+        public BatchSummary(int batch, int accepted, int rejected, String error) {
+            this.batch = batch;
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.error = error;
+        }
+
+        public int getBatch() {
+            return batch;
+        }
+
+        public int getAccepted() {
+            return accepted;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
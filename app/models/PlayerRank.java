@@ -0,0 +1,35 @@
+package models;
+
+/**
+ * A player's position among all players with a recorded score.
+ */
+public class PlayerRank {
+
+    private final String playerId;
+    private final String playerName;
+    private final long score;
+    private final long rank;
+
+    public PlayerRank(PlayerScore playerScore, long rank) {
+        this.playerId = playerScore.getPlayerId();
+        this.playerName = playerScore.getPlayerName();
+        this.score = playerScore.getScore();
+        this.rank = rank;
+    }
+
+    public String getPlayerId() {
+        return playerId;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public long getScore() {
+        return score;
+    }
+
+    public long getRank() {
+        return rank;
+    }
+}
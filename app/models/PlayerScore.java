@@ -5,6 +5,7 @@ import io.ebean.Model;
 import io.ebean.annotation.UpdateMode;
 
 import javax.persistence.*;
+import java.util.Objects;
 
 @Entity
 @Table(name = "player_scores")
@@ -37,6 +38,11 @@ public class PlayerScore extends Model implements Comparable<PlayerScore> {
         this.score = score;
     }
 
+    // Decoded bodies may leave the score out, and getScore() cannot return a missing one
+    public boolean hasScore() {
+        return this.score != null;
+    }
+
     public String getPlayerId() {
         return playerId;
     }
@@ -69,7 +75,19 @@ public class PlayerScore extends Model implements Comparable<PlayerScore> {
 
     @Override
     public boolean equals(Object o) {
-        return this.playerId.equals(((PlayerScore) o).getPlayerId())
-                && this.score == ((PlayerScore) o).getScore() && this.playerName.equals(((PlayerScore) o).getPlayerName());
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PlayerScore)) {
+            return false;
+        }
+        PlayerScore other = (PlayerScore) o;
+        return Objects.equals(this.playerId, other.getPlayerId())
+                && Objects.equals(this.score, other.score) && Objects.equals(this.playerName, other.getPlayerName());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(playerId, score, playerName);
     }
 }
@@ -0,0 +1,37 @@
+package models;
+
+/**
+ * Where a score stands among every player on a board, estimated from the board's score distribution.
+ */
+public class ScorePercentile {
+
+    private final long score;
+    private final long players;
+    private final long playersAhead;
+
+    public ScorePercentile(long score, long players, long playersAhead) {
+        this.score = score;
+        this.players = players;
+        this.playersAhead = Math.min(playersAhead, players);
+    }
+
+    public long getScore() {
+        return score;
+    }
+
+    public long getPlayers() {
+        return players;
+    }
+
+    public long getPlayersAhead() {
+        return playersAhead;
+    }
+
+    /**
+     * @return the share of players the score is level with or behind, as a percentage; a score in the
+     * top 3% of the board gives 3.
+     */
+    public double getTopPercent() {
+        return players == 0 ? 100 : Math.min(100, 100.0 * (playersAhead + 1) / players);
+    }
+}
@@ -0,0 +1,562 @@
+package rabbitMq;
+
+import Constants.Constants;
+import com.google.inject.Inject;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.Delivery;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.typesafe.config.Config;
+import exceptions.CacheInitializationException;
+import exceptions.LeaderboardNotInitializedException;
+import exceptions.LeaderboardUpdateFailureException;
+import models.PlayerScore;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
+import services.Leaderboards.BoardDefinition;
+import services.Leaderboards.LeaderBoardRegistry;
+import services.Scores.ScoreIngestionToLeaderBoards;
+
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the boards of every app node in step through a RabbitMQ fanout exchange.
+ *
+ * Each batch of scores this node applies to its boards, and the points it adds to additive boards,
+ * are queued here, and a single publisher thread sends them as micro-batches: one event per batch of
+ * best scores and one per additive board, each a binary score envelope (see {@link PlayerScoreCodec})
+ * with this node's id, a per-node sequence number, the event type and, for points, the board in its
+ * headers. Boards defined through this node are sent ahead of them as JSON {@link BoardDefinition}s.
+ * Every node consumes the exchange through its own exclusive queue and applies other nodes' events to
+ * its boards without storing or sending them again, since their origin already has. Best scores only
+ * ever go up, so a scores event applied twice or out of turn does no harm. Points add up, so a points
+ * event is applied only if its sequence number is past the last one heard from its origin.
+ *
+ * A sequence number that skips ahead means events were lost: dropped from a full queue, failed to
+ * publish, or sent while a node was disconnected. Hearing from a node part-way through its stream
+ * means the same, since its earlier scores may have landed after this node loaded its boards. Either
+ * schedules a {@link LeaderBoardRegistry#resynchronize(long) resynchronization} from the scores stored
+ * since this node last heard from that node, or since it loaded its boards, delayed until the missing
+ * scores have been written behind by their origin. Gaps found while a repair is pending join it, and
+ * repairs start at most once per repair interval.
+ */
+@Singleton
+public class BoardReplicator {
+
+    private static final String NODE_HEADER = "node";
+    private static final String SEQUENCE_HEADER = "sequence";
+    private static final String TYPE_HEADER = "type"; // Absent on events from nodes sending only scores
+    private static final String BOARD_HEADER = "board";
+    private static final String SCORES_TYPE = "scores";
+    private static final String POINTS_TYPE = "points";
+    private static final String BOARD_TYPE = "board";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final ScoreIngestionToLeaderBoards ingestion;
+    private final LeaderBoardRegistry boardRegistry;
+    private final String exchange;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final int prefetch;
+    private final long repairDelayMillis;
+    private final long repairIntervalMillis;
+    private final long catchUpMarginMillis;
+    private final long startedMillis = System.currentTimeMillis(); // The registry has loaded its boards by now
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final BlockingQueue<Update> queue;
+    private final Queue<BoardDefinition> definitions = new ConcurrentLinkedQueue<>(); // Rare, so never dropped
+    private final AtomicBoolean lost = new AtomicBoolean(); // Updates were dropped since the last event
+    private final ConcurrentMap<String, Long> lastSequences = new ConcurrentHashMap<>(); // Per origin node
+    private final ConcurrentMap<String, Long> lastHeard = new ConcurrentHashMap<>(); // Per origin node
+    private final AtomicBoolean repairScheduled = new AtomicBoolean();
+    private final AtomicLong repairSince = new AtomicLong(Long.MAX_VALUE); // Earliest time the pending repair covers
+    private volatile long lastRepairMillis;
+    private final ScheduledExecutorService repairs;
+    private final Thread publisher;
+    private volatile boolean running;
+    private long sequence; // Only touched by the publisher thread
+    private Connection connection;
+    private Channel publishChannel;
+
+    private final LongAdder publishedEvents = new LongAdder();
+    private final LongAdder failedEvents = new LongAdder();
+    private final LongAdder droppedScores = new LongAdder();
+    private final LongAdder appliedEvents = new LongAdder();
+    private final LongAdder appliedScores = new LongAdder();
+    private final LongAdder appliedPoints = new LongAdder();
+    private final LongAdder appliedBoards = new LongAdder();
+    private final LongAdder gaps = new LongAdder();
+    private final LongAdder duplicatePoints = new LongAdder();
+    private final LongAdder resynchronizations = new LongAdder();
+
+    @Inject
+    public BoardReplicator(ScoreIngestionToLeaderBoards ingestion, LeaderBoardRegistry boardRegistry, Config config, ApplicationLifecycle lifecycle) {
+        this(ingestion, boardRegistry,
+                config.getString("leaderboard.replication.exchange"),
+                config.getInt("leaderboard.replication.batchSize"),
+                config.getDuration("leaderboard.replication.maxDelay", TimeUnit.MILLISECONDS),
+                config.getInt("leaderboard.replication.capacity"),
+                config.getInt("leaderboard.replication.prefetch"),
+                config.getDuration("leaderboard.replication.repairDelay", TimeUnit.MILLISECONDS),
+                config.getDuration("leaderboard.replication.repairInterval", TimeUnit.MILLISECONDS),
+                config.getDuration("leaderboard.replication.catchUpMargin", TimeUnit.MILLISECONDS));
+        if (config.getBoolean("leaderboard.replication.enabled")) {
+            start();
+            lifecycle.addStopHook(() -> CompletableFuture.runAsync(this::stop));
+        }
+    }
+
+    /**
+     * Creates a replicator without connecting to the broker.
+     *
+     * @param ingestion            Ingestion service whose accepted scores and points are replicated and which applies other nodes'.
+     * @param boardRegistry        Registry whose board definitions are replicated, resynchronized when events were lost.
+     * @param exchange             Fanout exchange shared by every node.
+     * @param batchSize            Maximum number of scores per event.
+     * @param maxDelayMillis       Maximum time a score waits before its event is published.
+     * @param capacity             Maximum number of queued scores and points; more are dropped and repaired by the other nodes.
+     * @param prefetch             Maximum number of unacknowledged events delivered to this node.
+     * @param repairDelayMillis    How long after a gap the boards are resynchronized with the database.
+     * @param repairIntervalMillis Minimum time between the starts of two resynchronizations.
+     * @param catchUpMarginMillis  How much earlier than last heard from a node its missed scores may have been stored.
+     */
+    public BoardReplicator(ScoreIngestionToLeaderBoards ingestion, LeaderBoardRegistry boardRegistry, String exchange, int batchSize, long maxDelayMillis, int capacity, int prefetch, long repairDelayMillis, long repairIntervalMillis, long catchUpMarginMillis) {
+        this.ingestion = ingestion;
+        this.boardRegistry = boardRegistry;
+        this.exchange = exchange;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.prefetch = prefetch;
+        this.repairDelayMillis = repairDelayMillis;
+        this.repairIntervalMillis = repairIntervalMillis;
+        this.catchUpMarginMillis = catchUpMarginMillis;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.repairs = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "leaderboard-resync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.publisher = new Thread(this::runPublisher, "leaderboard-replication");
+        this.publisher.setDaemon(true);
+    }
+
+    /**
+     * Connects to the broker, starts consuming other nodes' events and starts publishing this node's.
+     * If the broker cannot be reached, the node runs unreplicated.
+     */
+    public void start() {
+        try {
+            ConnectionFactory factory = new ConnectionFactory();
+            factory.setHost(Constants.RABBIT_MQ_HOST);
+            factory.setPassword(Constants.RABBIT_MQ_PASSWORD);
+            factory.setVirtualHost(Constants.RABBIT_MQ_VIRTUALHOST);
+            factory.setUsername(Constants.RABBIT_MQ_USERNAME);
+            // Recovery re-declares the exclusive queue; events sent while disconnected show up as a gap
+            factory.setAutomaticRecoveryEnabled(true);
+            connection = factory.newConnection();
+
+            Channel consumeChannel = connection.createChannel();
+            consumeChannel.exchangeDeclare(exchange, BuiltinExchangeType.FANOUT, true);
+            String queueName = consumeChannel.queueDeclare().getQueue();
+            consumeChannel.queueBind(queueName, exchange, "");
+            consumeChannel.basicQos(prefetch);
+            consumeChannel.basicConsume(queueName, false, (consumerTag, delivery) -> {
+                onDelivery(delivery);
+                consumeChannel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
+            }, consumerTag -> { });
+
+            publishChannel = connection.createChannel();
+            running = true;
+            publisher.start();
+            ingestion.setReplicationListener(this::replicate);
+            ingestion.setPointsReplicationListener(this::replicatePoints);
+            boardRegistry.setDefinitionListener(this::replicateDefinition);
+            logger.info("Replicating leaderboards as node " + nodeId + " through exchange " + exchange);
+        } catch (Exception e) {
+            logger.error("Failed to start leaderboard replication, running unreplicated - " + e.getMessage());
+            closeConnection();
+        }
+    }
+
+    /**
+     * Stops replicating, publishing whatever is still queued first.
+     */
+    public void stop() {
+        ingestion.setReplicationListener(scores -> { });
+        ingestion.setPointsReplicationListener((boardName, points) -> { });
+        boardRegistry.setDefinitionListener(definition -> { });
+        running = false;
+        try {
+            publisher.join(TimeUnit.NANOSECONDS.toMillis(maxDelayNanos) + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        repairs.shutdownNow();
+        closeConnection();
+    }
+
+    private void closeConnection() {
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (Exception e) {
+            logger.error("Failed to close replication connection - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Queues scores accepted on this node for the other nodes. Never blocks: scores that do not fit are
+     * dropped and the next event's sequence number skips one, so the other nodes resynchronize.
+     *
+     * @param scores Scores applied to this node's boards.
+     */
+    public void replicate(List<PlayerScore> scores) {
+        for (PlayerScore score : scores) {
+            offer(new Update(null, score));
+        }
+    }
+
+    /**
+     * Queues points added on this node for the other nodes, dropping them like scores if they do not fit.
+     *
+     * @param boardName Additive board the points were added to.
+     * @param points    Player and the points added.
+     */
+    public void replicatePoints(String boardName, PlayerScore points) {
+        offer(new Update(boardName, points));
+    }
+
+    /**
+     * Queues a board definition for the other nodes. It is sent ahead of any queued scores or points.
+     *
+     * @param definition Board created or resized on this node.
+     */
+    public void replicateDefinition(BoardDefinition definition) {
+        definitions.add(definition);
+    }
+
+    private void offer(Update update) {
+        if (!queue.offer(update)) {
+            droppedScores.increment();
+            lost.set(true);
+        }
+    }
+
+    private void runPublisher() {
+        List<Update> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty() || !definitions.isEmpty()) {
+            try {
+                Update first = queue.poll(maxDelayNanos, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    // Fill the batch until it is full or the first update has waited maxDelay
+                    long deadline = System.nanoTime() + maxDelayNanos;
+                    while (batch.size() < batchSize) {
+                        queue.drainTo(batch, batchSize - batch.size());
+                        long remaining = deadline - System.nanoTime();
+                        if (batch.size() >= batchSize || remaining <= 0) {
+                            break;
+                        }
+                        Update next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                // Definitions go first, so the other nodes have a board before its points
+                publishDefinitions();
+                publish(batch);
+            } catch (InterruptedException e) {
+                publishDefinitions();
+                publish(batch);
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void publishDefinitions() {
+        for (BoardDefinition definition = definitions.poll(); definition != null; definition = definitions.poll()) {
+            try {
+                send(BOARD_TYPE, null, PlayerScoreCodec.CONTENT_TYPE_JSON, MAPPER.writeValueAsBytes(definition), 1);
+            } catch (JsonProcessingException e) {
+                logger.error("Failed to encode " + definition + " for replication - " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Publishes a batch as one event of best scores and one event of points per additive board.
+     */
+    private void publish(List<Update> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<PlayerScore> scores = new ArrayList<>(batch.size());
+        Map<String, List<PlayerScore>> points = new LinkedHashMap<>();
+        for (Update update : batch) {
+            if (update.boardName == null) {
+                scores.add(update.score);
+            } else {
+                points.computeIfAbsent(update.boardName, boardName -> new ArrayList<>()).add(update.score);
+            }
+        }
+        if (!scores.isEmpty()) {
+            send(SCORES_TYPE, null, PlayerScoreCodec.CONTENT_TYPE_BINARY, PlayerScoreCodec.encodeBinary(scores), scores.size());
+        }
+        for (Map.Entry<String, List<PlayerScore>> boardPoints : points.entrySet()) {
+            send(POINTS_TYPE, boardPoints.getKey(), PlayerScoreCodec.CONTENT_TYPE_BINARY, PlayerScoreCodec.encodeBinary(boardPoints.getValue()), boardPoints.getValue().size());
+        }
+    }
+
+    private void send(String type, String boardName, String contentType, byte[] body, int count) {
+        long eventSequence = nextSequence();
+        try {
+            Map<String, Object> headers = new HashMap<>();
+            headers.put(NODE_HEADER, nodeId);
+            headers.put(SEQUENCE_HEADER, eventSequence);
+            headers.put(TYPE_HEADER, type);
+            if (boardName != null) {
+                headers.put(BOARD_HEADER, boardName);
+            }
+            AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                    .contentType(contentType)
+                    .headers(headers)
+                    .build();
+            publishChannel.basicPublish(exchange, "", properties, body);
+            publishedEvents.increment();
+        } catch (IOException | RuntimeException e) {
+            // The sequence number is used up, so the other nodes see the gap
+            failedEvents.increment();
+            logger.warn("Failed to publish " + type + " replication event " + eventSequence + " of " + count + " updates - " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the next event's sequence number, skipping one if scores were dropped since the last event.
+     */
+    long nextSequence() {
+        if (lost.getAndSet(false)) {
+            sequence++;
+        }
+        return ++sequence;
+    }
+
+    private void onDelivery(Delivery delivery) {
+        Map<String, Object> headers = delivery.getProperties() == null ? null : delivery.getProperties().getHeaders();
+        if (headers == null || headers.get(NODE_HEADER) == null || !(headers.get(SEQUENCE_HEADER) instanceof Number)) {
+            logger.warn("Dropping replication event without node and sequence headers");
+            return;
+        }
+        String origin = headers.get(NODE_HEADER).toString();
+        long eventSequence = ((Number) headers.get(SEQUENCE_HEADER)).longValue();
+        String type = headers.get(TYPE_HEADER) == null ? SCORES_TYPE : headers.get(TYPE_HEADER).toString();
+        List<PlayerScore> scores = null;
+        BoardDefinition definition = null;
+        try {
+            if (BOARD_TYPE.equals(type)) {
+                definition = MAPPER.readValue(delivery.getBody(), BoardDefinition.class);
+            } else {
+                scores = PlayerScoreCodec.decode(delivery.getProperties().getContentType(), delivery.getBody());
+            }
+        } catch (IOException e) {
+            logger.warn("Dropping undecodable replication event " + eventSequence + " from node " + origin + " - " + e.getMessage());
+        }
+        if (BOARD_TYPE.equals(type)) {
+            onDefinition(origin, eventSequence, definition);
+        } else if (POINTS_TYPE.equals(type)) {
+            onPoints(origin, eventSequence, headers.get(BOARD_HEADER) == null ? null : headers.get(BOARD_HEADER).toString(), scores);
+        } else {
+            onEvent(origin, eventSequence, scores);
+        }
+    }
+
+    /**
+     * Applies another node's scores, scheduling a resynchronization if events from that node were missed.
+     *
+     * @param origin        Node the event came from.
+     * @param eventSequence The event's sequence number on that node.
+     * @param scores        The event's scores, or null if they could not be decoded.
+     */
+    void onEvent(String origin, long eventSequence, List<PlayerScore> scores) {
+        if (!track(origin, eventSequence, scores != null) || scores.isEmpty()) {
+            return;
+        }
+        try {
+            ingestion.applyReplicatedToLeaderBoards(scores);
+            appliedEvents.increment();
+            appliedScores.add(scores.size());
+        } catch (LeaderboardUpdateFailureException e) {
+            logger.error("Failed to apply replication event " + eventSequence + " from node " + origin + " - " + e.getMessage());
+            scheduleResynchronization(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Applies points another node added to one of its additive boards, scheduling a resynchronization
+     * if events from that node were missed. Events at or before the last sequence number heard from
+     * that node are dropped, since applying points twice would count them twice.
+     *
+     * @param origin        Node the event came from.
+     * @param eventSequence The event's sequence number on that node.
+     * @param boardName     Additive board the points were added to, or null if the event did not say.
+     * @param points        The event's points, or null if they could not be decoded.
+     */
+    void onPoints(String origin, long eventSequence, String boardName, List<PlayerScore> points) {
+        Long previous = lastSequences.get(origin);
+        if (!track(origin, eventSequence, boardName != null && points != null) || points.isEmpty()) {
+            return;
+        }
+        if (previous != null && eventSequence <= previous) {
+            // Redelivered or late; a late event was already counted as a gap when the events after it arrived
+            duplicatePoints.increment();
+            return;
+        }
+        try {
+            ingestion.applyReplicatedPoints(boardName, points);
+            appliedEvents.increment();
+            appliedPoints.add(points.size());
+        } catch (IllegalArgumentException e) {
+            // Resynchronizing only reloads the boards this node has, so it cannot help here
+            logger.warn("Dropping replication event " + eventSequence + " from node " + origin + " - " + e.getMessage());
+        } catch (LeaderboardUpdateFailureException e) {
+            logger.error("Failed to apply replication event " + eventSequence + " from node " + origin + " - " + e.getMessage());
+            scheduleResynchronization(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Registers a board another node defined, scheduling a resynchronization if events from that node
+     * were missed.
+     *
+     * @param origin        Node the event came from.
+     * @param eventSequence The event's sequence number on that node.
+     * @param definition    The board's definition, or null if it could not be decoded.
+     */
+    void onDefinition(String origin, long eventSequence, BoardDefinition definition) {
+        if (!track(origin, eventSequence, definition != null)) {
+            return;
+        }
+        try {
+            boardRegistry.applyReplicated(definition);
+            appliedEvents.increment();
+            appliedBoards.increment();
+        } catch (IllegalArgumentException | CacheInitializationException | LeaderboardNotInitializedException e) {
+            logger.error("Failed to register " + definition + " from node " + origin + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records an event's sequence number, scheduling a resynchronization if events from its origin
+     * were missed or the event could not be decoded.
+     *
+     * @return true if the event is another node's and decoded, so it should be applied.
+     */
+    private boolean track(String origin, long eventSequence, boolean decoded) {
+        if (nodeId.equals(origin)) {
+            return false; // The fanout also delivers this node's own events
+        }
+        // Events arrive one at a time from a single consumer, so the checks and updates do not race
+        Long previous = lastSequences.get(origin);
+        if (previous == null || eventSequence > previous) {
+            lastSequences.put(origin, eventSequence);
+        }
+        Long heard = lastHeard.put(origin, System.currentTimeMillis());
+        if (!decoded || (previous == null ? eventSequence > 1 : eventSequence > previous + 1)) {
+            gaps.increment();
+            // Missed scores were stored after this node last heard from their origin, or after it loaded its boards
+            scheduleResynchronization(heard == null ? startedMillis : heard);
+        }
+        return decoded;
+    }
+
+    private void scheduleResynchronization(long sinceMillis) {
+        // Allow for scores stored shortly before they were sent, and for clocks differing between nodes
+        repairSince.accumulateAndGet(sinceMillis - catchUpMarginMillis, Math::min);
+        scheduleRepair();
+    }
+
+    private void scheduleRepair() {
+        if (repairScheduled.compareAndSet(false, true)) {
+            // Gaps found until the repair starts join it, and repairs start at most once per interval
+            long delay = Math.max(repairDelayMillis, lastRepairMillis + repairIntervalMillis - System.currentTimeMillis());
+            repairs.schedule(this::resynchronize, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void resynchronize() {
+        // Cleared first, so a gap found while this one is repaired schedules another pass
+        repairScheduled.set(false);
+        long since = repairSince.getAndSet(Long.MAX_VALUE);
+        if (since == Long.MAX_VALUE) {
+            return; // Taken by the previous pass
+        }
+        lastRepairMillis = System.currentTimeMillis();
+        try {
+            boardRegistry.resynchronize(since);
+            resynchronizations.increment();
+        } catch (Exception e) {
+            logger.error("Failed to resynchronize leaderboards after missed replication events, retrying - " + e.getMessage());
+            repairSince.accumulateAndGet(since, Math::min);
+            scheduleRepair();
+        }
+    }
+
+    /**
+     * @return this node's id in the events it publishes.
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return point-in-time replication statistics.
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("queued", (long) queue.size());
+        stats.put("published", publishedEvents.sum());
+        stats.put("failed", failedEvents.sum());
+        stats.put("dropped", droppedScores.sum());
+        stats.put("nodes", (long) lastSequences.size());
+        stats.put("appliedEvents", appliedEvents.sum());
+        stats.put("appliedScores", appliedScores.sum());
+        stats.put("appliedPoints", appliedPoints.sum());
+        stats.put("appliedBoards", appliedBoards.sum());
+        stats.put("gaps", gaps.sum());
+        stats.put("duplicatePoints", duplicatePoints.sum());
+        stats.put("resynchronizations", resynchronizations.sum());
+        return stats;
+    }
+
+    /**
+     * A queued best score, or points for the named additive board.
+     */
+    private static final class Update {
+        private final String boardName; // Null for a best score
+        private final PlayerScore score;
+
+        private Update(String boardName, PlayerScore score) {
+            this.boardName = boardName;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package rabbitMq;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import models.PlayerScore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Encodes and decodes score envelopes, each carrying one or more scores.
+ *
+ * Two formats are accepted, selected by the message content type:
+ * <ul>
+ *     <li>{@value #CONTENT_TYPE_JSON} (the default): a single score object or an array of them.</li>
+ *     <li>{@value #CONTENT_TYPE_BINARY}: an int record count followed by records of
+ *     (short id length, UTF-8 id, long score, short name length or 0xFFFF for null, UTF-8 name),
+ *     big-endian, and nothing after them.</li>
+ * </ul>
+ * JSON is parsed as a stream through one shared, pre-built reader, so no per-message mapper or tree is built.
+ * A score without a player id or score, in either format, makes the whole envelope undecodable.
+ */
+public final class PlayerScoreCodec {
+
+    public static final String CONTENT_TYPE_JSON = "application/json";
+    public static final String CONTENT_TYPE_BINARY = "application/x-player-scores";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader SCORE_READER = MAPPER.readerFor(PlayerScore.class);
+    private static final JsonFactory JSON_FACTORY = MAPPER.getFactory();
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    private PlayerScoreCodec() {
+    }
+
+    /**
+     * Decodes an envelope.
+     *
+     * @param contentType Message content type; null or unknown types are treated as JSON.
+     * @param body        Message body.
+     * @return Decoded scores in envelope order.
+     * @throws IOException If the body is not a valid envelope of that type.
+     */
+    public static List<PlayerScore> decode(String contentType, byte[] body) throws IOException {
+        if (contentType != null && contentType.startsWith(CONTENT_TYPE_BINARY)) {
+            return decodeBinary(body);
+        }
+        return decodeJson(body);
+    }
+
+    /**
+     * Decodes a single JSON score object.
+     *
+     * @param json UTF-8 JSON object.
+     * @return The decoded score.
+     * @throws IOException If the body is not a score object.
+     */
+    public static PlayerScore decodeScore(byte[] json) throws IOException {
+        return requireComplete(SCORE_READER.readValue(json));
+    }
+
+    /**
+     * Checks that a decoded score names its player and has a score, since storage and the boards need both.
+     *
+     * @param score Decoded score.
+     * @return the same score.
+     * @throws IOException If the player id or score is missing.
+     */
+    public static PlayerScore requireComplete(PlayerScore score) throws IOException {
+        if (score.getPlayerId() == null || !score.hasScore()) {
+            throw new IOException("Expected a score object with a playerId and a score");
+        }
+        return score;
+    }
+
+    private static List<PlayerScore> decodeJson(byte[] body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            JsonToken first = parser.nextToken();
+            if (first == JsonToken.START_OBJECT) {
+                return Collections.singletonList(requireComplete(SCORE_READER.readValue(parser)));
+            }
+            if (first != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a score object or array of scores");
+            }
+            List<PlayerScore> scores = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                scores.add(requireComplete(SCORE_READER.readValue(parser)));
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new IOException("Expected only score objects in the array");
+            }
+            return scores;
+        }
+    }
+
+    private static List<PlayerScore> decodeBinary(byte[] body) throws IOException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            int count = buffer.getInt();
+            if (count < 0) {
+                throw new IOException("Negative record count " + count);
+            }
+            List<PlayerScore> scores = new ArrayList<>(Math.min(count, body.length / 12));
+            for (int i = 0; i < count; i++) {
+                String playerId = readString(buffer);
+                if (playerId == null || playerId.isEmpty()) {
+                    throw new IOException("Expected a player id in record " + i);
+                }
+                long score = buffer.getLong();
+                String playerName = readString(buffer);
+                scores.add(new PlayerScore(playerId, score, playerName));
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException(buffer.remaining() + " bytes after the last of " + count + " records");
+            }
+            return scores;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated binary score envelope");
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Encodes scores in the binary envelope format.
+     *
+     * @param scores Scores to encode.
+     * @return The envelope bytes.
+     */
+    public static byte[] encodeBinary(List<PlayerScore> scores) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + scores.size() * 32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(scores.size());
+            for (PlayerScore score : scores) {
+                writeString(out, score.getPlayerId());
+                out.writeLong(score.getScore());
+                writeString(out, score.getPlayerName());
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory encoding failed", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(NULL_LENGTH);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length >= NULL_LENGTH) {
+            throw new IllegalArgumentException("String too long for binary envelope");
+        }
+        out.writeShort(utf8.length);
+        out.write(utf8);
+    }
+}
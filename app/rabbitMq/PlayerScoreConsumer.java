@@ -1,26 +1,61 @@
 package rabbitMq;
 
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
+import com.rabbitmq.client.Delivery;
+import com.typesafe.config.Config;
 import models.PlayerScore;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
+import services.Metrics.IngestionMetrics;
+import services.Metrics.IngestionStage;
 import services.Scores.ScoreIngestionService;
 
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Singleton
 public class PlayerScoreConsumer  extends RabbitMqClient{
 
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final ScoreIngestionService scoreIngestor;
+    private final IngestionMetrics metrics;
+
     @Inject
-    ScoreIngestionService scoreIngestor;
-    @Override
-    public void processMessage(String message) {
+    public PlayerScoreConsumer(ScoreIngestionService scoreIngestor, Config config, ApplicationLifecycle lifecycle, IngestionMetrics metrics) {
+        super(config);
+        this.scoreIngestor = scoreIngestor;
+        this.metrics = metrics;
+        lifecycle.addStopHook(() -> {
+            stop();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
 
-        ObjectMapper objectMapper = new ObjectMapper();
-        try {
-            PlayerScore playerScore = objectMapper.readValue(message, PlayerScore.class);
-            scoreIngestor.publish(playerScore);
+    /**
+     * Decodes a batch of deliveries and ingests all of their scores as one unit. Each delivery is an
+     * envelope of one or more scores whose format is chosen by its content type (see {@link PlayerScoreCodec}).
+     * Messages that cannot be decoded are dropped, since redelivering them would never succeed.
+     */
+    @Override
+    protected void processMessages(List<Delivery> deliveries) throws Exception {
+        List<PlayerScore> scores = new ArrayList<>(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            String contentType = delivery.getProperties() == null ? null : delivery.getProperties().getContentType();
+            long start = System.nanoTime();
+            try {
+                scores.addAll(PlayerScoreCodec.decode(contentType, delivery.getBody()));
+                metrics.record(IngestionStage.DECODE, start);
+            } catch (IOException e) {
+                logger.warn("Dropping undecodable score envelope - " + e.getMessage());
+            }
         }
-        catch (Exception e){
-            e.printStackTrace();
-
+        if (!scores.isEmpty()) {
+            scoreIngestor.publishAll(scores);
         }
     }
 
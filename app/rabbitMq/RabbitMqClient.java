@@ -5,11 +5,85 @@ import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.DeliverCallback;
+import com.rabbitmq.client.Delivery;
+import com.typesafe.config.Config;
+import play.Logger;
 
-public  abstract class RabbitMqClient {
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Consumer subsystem for a RabbitMQ queue.
+ *
+ * Opens several channels, each with its own consumer and QoS prefetch. Deliveries are grouped into
+ * per-channel batches and handed to a bounded worker pool, so the AMQP threads and the timer that
+ * flushes partial batches only enqueue; while the pool's queue is full they wait for room.
+ * A batch is acknowledged with a single basicAck(multiple=true) once it and every earlier batch on
+ * the same channel have been processed; failed batches are nacked and requeued. Consumer lag is read
+ * on a channel of its own, so the stats timer never shares a consuming channel with the AMQP threads.
+ */
+public abstract class RabbitMqClient {
 
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final int consumerCount;
+    private final int prefetch;
+    private final int workerCount;
+    private final int workerQueueCapacity;
+    private final int batchSize;
+    private final long batchTimeoutMillis;
+    private final long statsIntervalMillis;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final List<ChannelConsumer> consumers = new CopyOnWriteArrayList<>();
+    private Connection connection;
+    private ThreadPoolExecutor workers;
+    private ScheduledExecutorService scheduler;
+    private Channel statsChannel; // Only used by the scheduler thread
+    private String queueName;
+
+    private final LongAdder receivedMessages = new LongAdder();
+    private final LongAdder processedMessages = new LongAdder();
+    private final LongAdder ackedMessages = new LongAdder();
+    private final LongAdder nackedMessages = new LongAdder();
+    private final AtomicInteger inFlightMessages = new AtomicInteger();
+    private final AtomicLong consumerLag = new AtomicLong(-1);
+
+    protected RabbitMqClient(Config config) {
+        this(config.getInt("rabbitmq.consumer.channels"),
+                config.getInt("rabbitmq.consumer.prefetch"),
+                config.getInt("rabbitmq.consumer.workers"),
+                config.getInt("rabbitmq.consumer.workerQueueCapacity"),
+                config.getInt("rabbitmq.consumer.batchSize"),
+                config.getDuration("rabbitmq.consumer.batchTimeout", TimeUnit.MILLISECONDS),
+                config.getDuration("rabbitmq.consumer.statsInterval", TimeUnit.MILLISECONDS));
+    }
+
+    RabbitMqClient(int consumerCount, int prefetch, int workerCount, int workerQueueCapacity, int batchSize,
+                   long batchTimeoutMillis, long statsIntervalMillis) {
+        this.consumerCount = consumerCount;
+        this.prefetch = prefetch;
+        this.workerCount = workerCount;
+        this.workerQueueCapacity = workerQueueCapacity;
+        this.batchSize = batchSize;
+        this.batchTimeoutMillis = batchTimeoutMillis;
+        this.statsIntervalMillis = statsIntervalMillis;
+    }
+
+    /**
+     * Starts consuming from the queue. Subsequent calls are ignored while the consumers are running.
+     *
+     * @param queueName Queue to consume from.
+     */
     public void receiveMessage(String queueName) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
         try {
             ConnectionFactory factory = new ConnectionFactory();
             factory.setHost(ConnectionFactory.DEFAULT_HOST);
@@ -17,25 +91,265 @@ public  abstract class RabbitMqClient {
             factory.setVirtualHost(Constants.RABBIT_MQ_VIRTUALHOST);
             factory.setUsername(Constants.RABBIT_MQ_USERNAME);
 
-            Connection connection = factory.newConnection();
-            Channel channel = connection.createChannel();
+            this.queueName = queueName;
+            connection = factory.newConnection();
+            startWorkers();
+            scheduler = Executors.newSingleThreadScheduledExecutor(namedThreads("rabbitmq-consumer-timer"));
+
+            for (int i = 0; i < consumerCount; i++) {
+                Channel channel = connection.createChannel();
+                channel.queueDeclare(queueName, true, false, false, null);
+                channel.basicQos(prefetch);
+                ChannelConsumer consumer = addConsumer(channel);
+                DeliverCallback deliverCallback = (consumerTag, delivery) -> consumer.onDelivery(delivery);
+                consumer.consumerTag = channel.basicConsume(queueName, false, deliverCallback, consumerTag -> {});
+            }
+            scheduler.scheduleWithFixedDelay(this::flushPartialBatches, batchTimeoutMillis, batchTimeoutMillis, TimeUnit.MILLISECONDS);
+            scheduler.scheduleWithFixedDelay(this::reportStats, statsIntervalMillis, statsIntervalMillis, TimeUnit.MILLISECONDS);
+            logger.info("Consuming " + queueName + " with " + consumerCount + " channels, prefetch " + prefetch + " and " + workerCount + " workers");
+        } catch (Exception e) {
+            logger.error("Failed to start consumers for " + queueName + " - " + e.getMessage());
+            stop();
+        }
+    }
+
+    /**
+     * Stops consuming, waits for in-flight batches to be processed and acknowledged, then closes the connection.
+     */
+    public void stop() {
+        if (!started.compareAndSet(true, false)) {
+            return;
+        }
+        for (ChannelConsumer consumer : consumers) {
+            consumer.cancel();
+        }
+        flushPartialBatches();
+        try {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+            }
+            if (workers != null) {
+                workers.shutdown();
+                workers.awaitTermination(30, TimeUnit.SECONDS);
+            }
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Failed to close RabbitMQ connection - " + e.getMessage());
+        }
+        consumers.clear();
+    }
+
+    /**
+     * Processes one batch of deliveries from a single channel. Throwing causes every delivery in
+     * the batch to be requeued, so implementations should drop messages that can never succeed.
+     *
+     * @param deliveries Deliveries in the order they were received.
+     * @throws Exception If the batch should be redelivered.
+     */
+    protected abstract void processMessages(List<Delivery> deliveries) throws Exception;
 
-            channel.queueDeclare(queueName, true, false, false, null);
-            System.out.println(" [*] Waiting for scores of players.");
+    /**
+     * @return point-in-time consumer statistics.
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("channels", (long) consumers.size());
+        stats.put("received", receivedMessages.sum());
+        stats.put("processed", processedMessages.sum());
+        stats.put("acked", ackedMessages.sum());
+        stats.put("nacked", nackedMessages.sum());
+        stats.put("inFlight", (long) inFlightMessages.get());
+        stats.put("queuedBatches", workers == null ? 0L : (long) workers.getQueue().size());
+        stats.put("lag", consumerLag.get());
+        return stats;
+    }
 
-            DeliverCallback deliverCallback = (consumerTag, delivery) -> {
-                String message = new String(delivery.getBody(), "UTF-8");
-                System.out.println(" [x] Received '" + message + "'");
-                processMessage(message);
-            };
+    void startWorkers() {
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workerQueueCapacity), namedThreads("rabbitmq-worker"),
+                RabbitMqClient::awaitRoom);
+    }
+
+    ChannelConsumer addConsumer(Channel channel) {
+        ChannelConsumer consumer = new ChannelConsumer(channel);
+        consumers.add(consumer);
+        return consumer;
+    }
+
+    // A full pool blocks the thread handing over the batch, which pushes back on the broker, rather than
+    // running the batch there: the timer thread must stay free to flush every channel's partial batch
+    private static void awaitRoom(Runnable task, ThreadPoolExecutor pool) {
+        if (pool.isShutdown()) {
+            throw new RejectedExecutionException("Worker pool is shut down");
+        }
+        try {
+            pool.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a worker", e);
+        }
+    }
 
-            channel.basicConsume(queueName, true, deliverCallback, consumerTag -> {});
+    void flushPartialBatches() {
+        for (ChannelConsumer consumer : consumers) {
+            consumer.flushPending();
+        }
+    }
+
+    private void reportStats() {
+        if (consumers.isEmpty()) {
+            return;
+        }
+        try {
+            // A failed passive declare closes its channel, so a closed one is replaced on the next report
+            if (statsChannel == null || !statsChannel.isOpen()) {
+                statsChannel = connection.createChannel();
+            }
+            consumerLag.set(statsChannel.messageCount(queueName));
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.warn("Could not read consumer lag for " + queueName + " - " + e.getMessage());
         }
+        logger.info("Consumer stats for " + queueName + " - " + getStats());
     }
 
-    public abstract  void processMessage(String message);
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 
-}
+    /**
+     * A contiguous run of deliveries from one channel.
+     */
+    private static final class Batch {
+        private final List<Delivery> deliveries;
+        private final long lastDeliveryTag;
+        private boolean done;
+        private boolean succeeded;
 
+        private Batch(List<Delivery> deliveries) {
+            this.deliveries = deliveries;
+            this.lastDeliveryTag = deliveries.get(deliveries.size() - 1).getEnvelope().getDeliveryTag();
+        }
+    }
+
+    /**
+     * One channel's consumer: batches its deliveries and acknowledges them strictly in order.
+     * All channel operations happen while holding this consumer's monitor.
+     */
+    final class ChannelConsumer {
+
+        private final Channel channel;
+        private final Deque<Batch> outstanding = new ArrayDeque<>();
+        private List<Delivery> pending = new ArrayList<>();
+        private String consumerTag;
+
+        private ChannelConsumer(Channel channel) {
+            this.channel = channel;
+        }
+
+        void onDelivery(Delivery delivery) {
+            receivedMessages.increment();
+            inFlightMessages.incrementAndGet();
+            Batch full = null;
+            synchronized (this) {
+                pending.add(delivery);
+                if (pending.size() >= batchSize) {
+                    full = takePending();
+                }
+            }
+            if (full != null) {
+                submit(full);
+            }
+        }
+
+        private void flushPending() {
+            Batch partial = null;
+            synchronized (this) {
+                if (!pending.isEmpty()) {
+                    partial = takePending();
+                }
+            }
+            if (partial != null) {
+                submit(partial);
+            }
+        }
+
+        private Batch takePending() {
+            Batch batch = new Batch(pending);
+            pending = new ArrayList<>(batchSize);
+            outstanding.addLast(batch);
+            return batch;
+        }
+
+        private void submit(Batch batch) {
+            try {
+                workers.execute(() -> process(batch));
+            } catch (RejectedExecutionException e) {
+                // Left outstanding, so neither it nor later batches are acknowledged and the broker redelivers them
+                logger.warn("Leaving batch of " + batch.deliveries.size() + " messages unacknowledged - " + e.getMessage());
+            }
+        }
+
+        private void process(Batch batch) {
+            boolean succeeded;
+            try {
+                processMessages(batch.deliveries);
+                processedMessages.add(batch.deliveries.size());
+                succeeded = true;
+            } catch (Exception e) {
+                logger.error("Failed to process batch of " + batch.deliveries.size() + " messages, requeueing - " + e.getMessage());
+                succeeded = false;
+            }
+            complete(batch, succeeded);
+        }
+
+        private synchronized void complete(Batch batch, boolean succeeded) {
+            batch.done = true;
+            batch.succeeded = succeeded;
+            try {
+                if (!succeeded) {
+                    for (Delivery delivery : batch.deliveries) {
+                        channel.basicNack(delivery.getEnvelope().getDeliveryTag(), false, true);
+                    }
+                    nackedMessages.add(batch.deliveries.size());
+                }
+                // Acknowledge the longest prefix of finished batches with one multiple-ack
+                long ackUpTo = -1;
+                int ackCount = 0;
+                while (!outstanding.isEmpty() && outstanding.peekFirst().done) {
+                    Batch head = outstanding.pollFirst();
+                    if (head.succeeded) {
+                        ackUpTo = head.lastDeliveryTag;
+                        ackCount += head.deliveries.size();
+                    }
+                }
+                if (ackUpTo >= 0) {
+                    channel.basicAck(ackUpTo, true);
+                    ackedMessages.add(ackCount);
+                }
+            } catch (IOException e) {
+                logger.error("Failed to acknowledge deliveries - " + e.getMessage());
+            } finally {
+                inFlightMessages.addAndGet(-batch.deliveries.size());
+            }
+        }
+
+        private synchronized void cancel() {
+            try {
+                if (consumerTag != null && channel.isOpen()) {
+                    channel.basicCancel(consumerTag);
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to cancel consumer " + consumerTag + " - " + e.getMessage());
+            }
+        }
+    }
+}
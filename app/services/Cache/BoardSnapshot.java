@@ -0,0 +1,47 @@
+package services.Cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import models.PlayerScore;
+import play.libs.Json;
+
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, versioned view of a board's top-N, with the JSON response body encoded once up front.
+ * A snapshot is shared by every reader until the board changes, so it must never be mutated.
+ */
+public final class BoardSnapshot {
+
+    public static final BoardSnapshot EMPTY = new BoardSnapshot(0, Collections.emptyList());
+
+    private final long version;
+    private final List<PlayerScore> players;
+    private final byte[] json;
+
+    public BoardSnapshot(long version, List<PlayerScore> players) {
+        this.version = version;
+        this.players = Collections.unmodifiableList(players);
+        try {
+            this.json = Json.mapper().writeValueAsBytes(this.players);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Failed to encode board snapshot", e);
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<PlayerScore> getPlayers() {
+        return players;
+    }
+
+    /**
+     * @return the UTF-8 JSON encoding of the players; shared, callers must not modify it.
+     */
+    public byte[] getJson() {
+        return json;
+    }
+}
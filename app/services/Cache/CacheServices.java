@@ -12,5 +12,9 @@ public interface CacheServices {
     void initialize(int topN, List<PlayerScore> dataSet) throws CacheInitializationException;
     void addToCache(PlayerScore score) throws CacheUpdateFailureException;
     List<PlayerScore> getTopNPlayers();
+    BoardSnapshot getSnapshot();
+    long getVersion();
+    boolean canAccept(PlayerScore score);
+    void setChangeListener(Runnable listener);
 
 }
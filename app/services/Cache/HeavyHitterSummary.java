@@ -0,0 +1,144 @@
+package services.Cache;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import models.PlayerScore;
+
+import java.util.*;
+
+/**
+ * Immutable Space-Saving summary of per-player counts, as kept by {@link SpaceSavingCache}.
+ *
+ * Each counter's count is an upper bound on the player's true count and exceeds it by at most the
+ * counter's error, and a player without a counter has a true count of at most {@link #getMaxError()}.
+ * Summaries from different buckets or nodes merge into a summary with the same guarantees, whose
+ * error bound is the sum of theirs, so a cluster-wide board is the merge of every node's summary.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true) // maxError is derived, so it is written but not read back
+public final class HeavyHitterSummary {
+
+    public static final HeavyHitterSummary EMPTY = new HeavyHitterSummary(0, 0, Collections.emptyList());
+
+    private final int capacity;
+    private final long total;
+    private final List<Counter> counters;
+
+    /**
+     * @param capacity Maximum number of counters.
+     * @param total    Sum of every count added, whether or not its player still has a counter.
+     * @param counters Counters in rank order, at most capacity of them.
+     */
+    @JsonCreator
+    public HeavyHitterSummary(@JsonProperty("capacity") int capacity, @JsonProperty("total") long total, @JsonProperty("counters") List<Counter> counters) {
+        this.capacity = capacity;
+        this.total = total;
+        this.counters = Collections.unmodifiableList(counters);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public List<Counter> getCounters() {
+        return counters;
+    }
+
+    /**
+     * @return the largest count a player without a counter can have; 0 while the summary is not full.
+     */
+    public long getMaxError() {
+        return counters.size() < capacity || counters.isEmpty() ? 0 : counters.get(counters.size() - 1).getCount();
+    }
+
+    /**
+     * @param limit Maximum number of players to return.
+     * @return the players with the highest counts, each count as the score.
+     */
+    public List<PlayerScore> top(int limit) {
+        List<PlayerScore> top = new ArrayList<>(Math.min(limit, counters.size()));
+        for (Counter counter : counters) {
+            if (top.size() == limit) {
+                break;
+            }
+            top.add(new PlayerScore(counter.getPlayerId(), counter.getCount(), counter.getPlayerName()));
+        }
+        return top;
+    }
+
+    /**
+     * Merges summaries of disjoint streams. A player missing from a full summary may still have been
+     * counted there up to that summary's {@link #getMaxError()}, so that much is added to both the
+     * player's count and error; the highest counters are then kept up to the capacity.
+     *
+     * @param summaries Summaries to merge.
+     * @param capacity  Maximum number of counters in the result.
+     * @return the merged summary.
+     */
+    public static HeavyHitterSummary merge(Collection<HeavyHitterSummary> summaries, int capacity) {
+        long total = 0;
+        long missingFloor = 0;
+        Map<String, long[]> merged = new HashMap<>(); // count and error per player, less missingFloor
+        Map<String, String> names = new HashMap<>();
+        for (HeavyHitterSummary summary : summaries) {
+            total += summary.total;
+            long floor = summary.getMaxError();
+            missingFloor += floor;
+            for (Counter counter : summary.counters) {
+                long[] sums = merged.computeIfAbsent(counter.getPlayerId(), playerId -> new long[2]);
+                sums[0] += counter.getCount() - floor;
+                sums[1] += counter.getError() - floor;
+                names.put(counter.getPlayerId(), counter.getPlayerName());
+            }
+        }
+        List<Counter> counters = new ArrayList<>(merged.size());
+        for (Map.Entry<String, long[]> entry : merged.entrySet()) {
+            long[] sums = entry.getValue();
+            counters.add(new Counter(entry.getKey(), names.get(entry.getKey()), sums[0] + missingFloor, sums[1] + missingFloor));
+        }
+        counters.sort(Comparator.comparing(counter -> new ScoreKey(counter.getCount(), counter.getPlayerId())));
+        return new HeavyHitterSummary(capacity, total, counters.size() > capacity ? new ArrayList<>(counters.subList(0, capacity)) : counters);
+    }
+
+    /**
+     * One monitored player.
+     */
+    public static final class Counter {
+
+        private final String playerId;
+        private final String playerName;
+        private final long count;
+        private final long error;
+
+        @JsonCreator
+        public Counter(@JsonProperty("playerId") String playerId, @JsonProperty("playerName") String playerName, @JsonProperty("count") long count, @JsonProperty("error") long error) {
+            this.playerId = playerId;
+            this.playerName = playerName;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getPlayerId() {
+            return playerId;
+        }
+
+        public String getPlayerName() {
+            return playerName;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return how much of the count may have been inherited from evicted players.
+         */
+        public long getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,677 @@
+package services.Cache;
+
+import models.PlayerRank;
+import models.PlayerScore;
+
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Order-statistic index over every known player's best score.
+ *
+ * Backed by an indexed skip list: each forward link records how many level-0 nodes it jumps over,
+ * so the rank of a player and the player at a given rank are both found in O(log n).
+ * Lookups share a read lock; updates take the write lock for the O(log n) relink only.
+ *
+ * Players are interned to int handles and the list is stored as parallel primitive arrays indexed by
+ * handle, with ids and names in an off-heap {@link PlayerRecordSlab}. A player costs about 36 bytes
+ * of heap plus its UTF-8 id and name off-heap, and the index is a fixed handful of objects however
+ * large it grows, so GC pauses stay flat. {@link PlayerScore} and {@link PlayerRank} objects are only
+ * created for the players a query returns.
+ *
+ * The list also keeps a {@link ScoreDistribution} of the indexed scores, updated on every link and
+ * unlink, so it is rebuilt by whatever loads the index and never needs a scan of its own.
+ */
+@Singleton
+public class PlayerRankIndex {
+
+    private static final int MAX_LEVEL = 32;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private SkipList skipList = new SkipList();
+    // Moves on with every change under the write lock; starts from the clock so a restarted index never repeats a version
+    private volatile long version = System.currentTimeMillis() * 1000;
+
+    /**
+     * Replaces the index contents with the given scores, keeping the best score per player.
+     *
+     * @param dataSet Player scores to index.
+     */
+    public void rebuild(Iterable<PlayerScore> dataSet) {
+        rebuildFrom(dataSet::forEach);
+    }
+
+    /**
+     * Replaces the index contents with the scores fed by a streaming source, keeping the best score
+     * per player. The source is consumed once, so it can be a server-side cursor over the whole table.
+     *
+     * @param source Feeds every score to the consumer it is given.
+     */
+    public void rebuildFrom(Consumer<Consumer<PlayerScore>> source) {
+        SkipList newSkipList = new SkipList();
+        source.accept(score -> newSkipList.upsert(PlayerRecordSlab.encode(score.getPlayerId()), score.getScore(),
+                PlayerRecordSlab.encode(score.getPlayerName())));
+        lock.writeLock().lock();
+        try {
+            skipList = newSkipList;
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the index contents with scores fed in rank order, such as a checkpoint. In-order scores
+     * are appended at the tail in O(1) each; any score out of order or for a player already seen falls
+     * back to a regular insert, so an unordered source is still indexed correctly.
+     *
+     * @param source Feeds every score, best first, to the consumer it is given.
+     */
+    public void rebuildFromRanked(Consumer<Consumer<PlayerScore>> source) {
+        SkipList newSkipList = new SkipList();
+        Appender appender = newSkipList.appender();
+        source.accept(score -> {
+            byte[] id = PlayerRecordSlab.encode(score.getPlayerId());
+            byte[] name = PlayerRecordSlab.encode(score.getPlayerName());
+            if (appender.canAppend(score.getScore(), id) && newSkipList.find(id) == SkipList.NIL) {
+                appender.append(newSkipList.newNode(id, name, score.getScore()));
+            } else {
+                appender.invalidate();
+                newSkipList.upsert(id, score.getScore(), name);
+            }
+        });
+        lock.writeLock().lock();
+        try {
+            skipList = newSkipList;
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies every indexed score in rank order. Only the copy holds the read lock, and it copies
+     * primitives only; the returned list creates each {@link PlayerScore} when it is read, so writers
+     * are not blocked and the caller decides how many objects are live at once.
+     *
+     * @return all indexed scores, best first.
+     */
+    public List<PlayerScore> getAllInRankOrder() {
+        long[] scores;
+        long[] refs;
+        PlayerRecordSlab slab;
+        lock.readLock().lock();
+        try {
+            int length = (int) skipList.length;
+            scores = new long[length];
+            refs = new long[length];
+            int i = 0;
+            for (int x = skipList.next0[SkipList.HEAD]; x != SkipList.NIL; x = skipList.next0[x]) {
+                scores[i] = skipList.scores[x];
+                refs[i++] = skipList.refs[x];
+            }
+            slab = skipList.slab;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new AbstractList<PlayerScore>() {
+            @Override
+            public PlayerScore get(int index) {
+                return new PlayerScore(slab.readId(refs[index]), scores[index], slab.readName(refs[index]));
+            }
+
+            @Override
+            public int size() {
+                return scores.length;
+            }
+        };
+    }
+
+    /**
+     * Records a score, keeping only the best score per player.
+     *
+     * @param score Player score to record.
+     * @return true if the player's indexed score changed.
+     */
+    public boolean update(PlayerScore score) {
+        // Encode outside the lock so the critical section is only the lookup and relink
+        byte[] id = PlayerRecordSlab.encode(score.getPlayerId());
+        byte[] name = PlayerRecordSlab.encode(score.getPlayerName());
+        lock.writeLock().lock();
+        try {
+            boolean changed = skipList.upsert(id, score.getScore(), name);
+            if (changed) {
+                version++;
+            }
+            return changed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets a player's score, moving the player down as well as up. For indexes over running totals
+     * rather than best scores.
+     *
+     * @param score Player's new score.
+     */
+    public void set(PlayerScore score) {
+        setAll(Collections.singletonList(score));
+    }
+
+    /**
+     * Sets each player's score like {@link #set}, relinking the whole batch under one lock.
+     *
+     * @param scores New scores, at most one per player.
+     */
+    public void setAll(Collection<PlayerScore> scores) {
+        byte[][] ids = new byte[scores.size()][];
+        byte[][] names = new byte[scores.size()][];
+        long[] values = new long[scores.size()];
+        int i = 0;
+        for (PlayerScore score : scores) {
+            ids[i] = PlayerRecordSlab.encode(score.getPlayerId());
+            names[i] = PlayerRecordSlab.encode(score.getPlayerName());
+            values[i++] = score.getScore();
+        }
+        lock.writeLock().lock();
+        try {
+            for (i = 0; i < ids.length; i++) {
+                skipList.put(ids[i], values[i], names[i], false);
+            }
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves a player's 1-based rank among all indexed players.
+     *
+     * @param playerId Player to look up.
+     * @return the player's rank and score, or empty if the player has no score.
+     */
+    public Optional<PlayerRank> getRank(String playerId) {
+        byte[] id = PlayerRecordSlab.encode(playerId);
+        lock.readLock().lock();
+        try {
+            int handle = skipList.find(id);
+            if (handle == SkipList.NIL) {
+                return Optional.empty();
+            }
+            return Optional.of(new PlayerRank(skipList.materialize(handle), skipList.rankOf(handle, id)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves a page of players in rank order.
+     *
+     * @param offset Number of players to skip from the top.
+     * @param limit  Maximum number of players to return.
+     * @return up to limit players starting at rank offset + 1.
+     */
+    public List<PlayerRank> getRange(long offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return skipList.range(offset + 1, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the players ranked around the given player.
+     *
+     * @param playerId Player at the centre of the neighbourhood.
+     * @param radius   Number of players to include above and below.
+     * @return up to 2 * radius + 1 players in rank order, or empty if the player has no score.
+     */
+    public List<PlayerRank> getNeighbourhood(String playerId, int radius) {
+        byte[] id = PlayerRecordSlab.encode(playerId);
+        lock.readLock().lock();
+        try {
+            int handle = skipList.find(id);
+            if (handle == SkipList.NIL) {
+                return Collections.emptyList();
+            }
+            long rank = skipList.rankOf(handle, id);
+            long first = Math.max(1, rank - radius);
+            return skipList.range(first, (int) (rank - first) + radius + 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the players ranked strictly ahead of a position, whether or not any player holds it.
+     * Summing this over disjoint indexes gives a position's rank across all of them.
+     *
+     * @param key Position to count up to.
+     * @return number of indexed players ranked ahead of the key.
+     */
+    public long countAhead(ScoreKey key) {
+        byte[] id = PlayerRecordSlab.encode(key.getPlayerId());
+        lock.readLock().lock();
+        try {
+            return skipList.countBefore(key.getScore(), id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a copy of the histogram of every indexed score.
+     */
+    public ScoreDistribution getDistribution() {
+        lock.readLock().lock();
+        try {
+            return skipList.distribution.copy();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a version that moves on whenever the indexed scores change, read without locking.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return number of indexed players.
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return skipList.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return approximate bytes held by the index, on and off heap, including unused capacity.
+     */
+    public long footprintBytes() {
+        lock.readLock().lock();
+        try {
+            return skipList.footprintBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indexed skip list in rank order over interned players. Not thread-safe; guarded by the enclosing
+     * index's lock.
+     *
+     * Every player, and the head, is an int handle into the parallel arrays. Level 0 links live in
+     * next0 and always span one node, so only the upper levels of each node's tower keep links and
+     * spans, packed into the upperNext and upperSpan pools. With p = 1/4 a node has 1/3 of an upper
+     * level on average. A node keeps its level when its score changes, so a relink allocates nothing.
+     */
+    private static final class SkipList {
+
+        private static final int NIL = -1;
+        private static final int HEAD = 0;
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final PlayerRecordSlab slab = new PlayerRecordSlab();
+        private final ScoreDistribution distribution = new ScoreDistribution();
+
+        // Per handle
+        private long[] scores = new long[INITIAL_CAPACITY];
+        private long[] refs = new long[INITIAL_CAPACITY]; // Id and name record in the slab
+        private int[] next0 = new int[INITIAL_CAPACITY];
+        private byte[] levels = new byte[INITIAL_CAPACITY];
+        private int[] towers = new int[INITIAL_CAPACITY]; // First upper level's slot in the pools
+        private int handles;
+
+        // Upper levels of every tower
+        private int[] upperNext = new int[INITIAL_CAPACITY * 4];
+        private int[] upperSpan = new int[INITIAL_CAPACITY * 4];
+        private int upperUsed;
+
+        // Open-addressing id -> handle table; slots hold handle + 1 so that 0 is empty
+        private int[] table = new int[INITIAL_CAPACITY];
+
+        private int level = 1;
+        private long length;
+
+        // Scratch for insert and delete, which only run under the write lock
+        private final int[] update = new int[MAX_LEVEL];
+        private final long[] rank = new long[MAX_LEVEL];
+
+        private SkipList() {
+            handles = 1;
+            next0[HEAD] = NIL;
+            levels[HEAD] = MAX_LEVEL;
+            towers[HEAD] = allocateTower(MAX_LEVEL - 1);
+        }
+
+        private static int randomLevel() {
+            int level = 1;
+            // p = 1/4 keeps the expected pointer overhead at 1.33 links per node
+            while (level < MAX_LEVEL && (ThreadLocalRandom.current().nextInt() & 3) == 0) {
+                level++;
+            }
+            return level;
+        }
+
+        private boolean upsert(byte[] id, long score, byte[] name) {
+            return put(id, score, name, true);
+        }
+
+        private boolean put(byte[] id, long score, byte[] name, boolean keepBest) {
+            int handle = find(id);
+            if (handle == NIL) {
+                insert(newNode(id, name, score), id);
+                return true;
+            }
+            if (keepBest ? scores[handle] >= score : scores[handle] == score) {
+                return false;
+            }
+            delete(handle, id);
+            scores[handle] = score;
+            if (!slab.nameEquals(refs[handle], name)) {
+                refs[handle] = slab.append(id, name);
+            }
+            insert(handle, id);
+            return true;
+        }
+
+        /**
+         * Interns a new player without linking it into the list.
+         */
+        private int newNode(byte[] id, byte[] name, long score) {
+            if (handles == scores.length) {
+                int capacity = handles + (handles >> 1);
+                scores = Arrays.copyOf(scores, capacity);
+                refs = Arrays.copyOf(refs, capacity);
+                next0 = Arrays.copyOf(next0, capacity);
+                levels = Arrays.copyOf(levels, capacity);
+                towers = Arrays.copyOf(towers, capacity);
+            }
+            int handle = handles++;
+            int nodeLevel = randomLevel();
+            scores[handle] = score;
+            refs[handle] = slab.append(id, name);
+            next0[handle] = NIL;
+            levels[handle] = (byte) nodeLevel;
+            towers[handle] = allocateTower(nodeLevel - 1);
+            if ((long) handles * 4 > (long) table.length * 3) {
+                resizeTable();
+            }
+            table[slot(Arrays.hashCode(id), id)] = handle + 1;
+            return handle;
+        }
+
+        private int allocateTower(int upperLevels) {
+            if (upperUsed + upperLevels > upperNext.length) {
+                int capacity = Math.max(upperUsed + upperLevels, upperNext.length + (upperNext.length >> 1));
+                upperNext = Arrays.copyOf(upperNext, capacity);
+                upperSpan = Arrays.copyOf(upperSpan, capacity);
+            }
+            int start = upperUsed;
+            Arrays.fill(upperNext, start, start + upperLevels, NIL);
+            upperUsed += upperLevels;
+            return start;
+        }
+
+        /**
+         * @return the player's handle, or NIL if the player is not indexed.
+         */
+        private int find(byte[] id) {
+            int entry = table[slot(Arrays.hashCode(id), id)];
+            return entry == 0 ? NIL : entry - 1;
+        }
+
+        /**
+         * @return the slot holding the id, or the empty slot where it belongs.
+         */
+        private int slot(int hash, byte[] id) {
+            int mask = table.length - 1;
+            for (int i = mix(hash) & mask; ; i = (i + 1) & mask) {
+                int entry = table[i];
+                if (entry == 0 || slab.idEquals(refs[entry - 1], id)) {
+                    return i;
+                }
+            }
+        }
+
+        private void resizeTable() {
+            int[] resized = new int[table.length * 2];
+            int mask = resized.length - 1;
+            for (int handle = 1; handle < handles; handle++) {
+                int i = mix(slab.idHash(refs[handle])) & mask;
+                while (resized[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                resized[i] = handle + 1;
+            }
+            table = resized;
+        }
+
+        private static int mix(int hash) {
+            int mixed = hash * 0x9E3779B9;
+            return mixed ^ (mixed >>> 16);
+        }
+
+        private int next(int node, int i) {
+            return i == 0 ? next0[node] : upperNext[towers[node] + i - 1];
+        }
+
+        private void setNext(int node, int i, int target) {
+            if (i == 0) {
+                next0[node] = target;
+            } else {
+                upperNext[towers[node] + i - 1] = target;
+            }
+        }
+
+        private long span(int node, int i) {
+            return i == 0 ? 1 : upperSpan[towers[node] + i - 1];
+        }
+
+        /**
+         * Level 0 spans are implicit, so they are never written.
+         */
+        private void setSpan(int node, int i, long span) {
+            upperSpan[towers[node] + i - 1] = (int) span;
+        }
+
+        /**
+         * @return true if the node ranks strictly ahead of the (score, id) position.
+         */
+        private boolean ranksAhead(int node, long score, byte[] id) {
+            long nodeScore = scores[node];
+            return nodeScore > score || (nodeScore == score && slab.compareId(refs[node], id) < 0);
+        }
+
+        private void insert(int node, byte[] id) {
+            long score = scores[node];
+            int x = HEAD;
+            for (int i = level - 1; i >= 0; i--) {
+                rank[i] = i == level - 1 ? 0 : rank[i + 1];
+                for (int next = next(x, i); next != NIL && ranksAhead(next, score, id); next = next(x, i)) {
+                    rank[i] += span(x, i);
+                    x = next;
+                }
+                update[i] = x;
+            }
+            int newLevel = levels[node];
+            if (newLevel > level) {
+                for (int i = level; i < newLevel; i++) {
+                    rank[i] = 0;
+                    update[i] = HEAD;
+                    setSpan(HEAD, i, length);
+                }
+                level = newLevel;
+            }
+            for (int i = 0; i < newLevel; i++) {
+                setNext(node, i, next(update[i], i));
+                setNext(update[i], i, node);
+                if (i > 0) {
+                    setSpan(node, i, span(update[i], i) - (rank[0] - rank[i]));
+                    setSpan(update[i], i, (rank[0] - rank[i]) + 1);
+                }
+            }
+            for (int i = newLevel; i < level; i++) {
+                setSpan(update[i], i, span(update[i], i) + 1);
+            }
+            length++;
+            distribution.record(score);
+        }
+
+        private Appender appender() {
+            return new Appender(this);
+        }
+
+        private void delete(int node, byte[] id) {
+            long score = scores[node];
+            int x = HEAD;
+            for (int i = level - 1; i >= 0; i--) {
+                for (int next = next(x, i); next != NIL && ranksAhead(next, score, id); next = next(x, i)) {
+                    x = next;
+                }
+                update[i] = x;
+            }
+            if (next(update[0], 0) != node) {
+                return;
+            }
+            for (int i = 0; i < level; i++) {
+                if (next(update[i], i) == node) {
+                    if (i > 0) {
+                        setSpan(update[i], i, span(update[i], i) + span(node, i) - 1);
+                    }
+                    setNext(update[i], i, next(node, i));
+                } else {
+                    setSpan(update[i], i, span(update[i], i) - 1);
+                }
+            }
+            while (level > 1 && next(HEAD, level - 1) == NIL) {
+                level--;
+            }
+            length--;
+            distribution.remove(score);
+        }
+
+        private long rankOf(int node, byte[] id) {
+            return countBefore(scores[node], id) + 1;
+        }
+
+        private long countBefore(long score, byte[] id) {
+            long count = 0;
+            int x = HEAD;
+            for (int i = level - 1; i >= 0; i--) {
+                for (int next = next(x, i); next != NIL && ranksAhead(next, score, id); next = next(x, i)) {
+                    count += span(x, i);
+                    x = next;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * @param rank 1-based rank.
+         * @return the node at that rank, or NIL if out of range.
+         */
+        private int nodeAt(long rank) {
+            if (rank < 1 || rank > length) {
+                return NIL;
+            }
+            long traversed = 0;
+            int x = HEAD;
+            for (int i = level - 1; i >= 0; i--) {
+                while (next(x, i) != NIL && traversed + span(x, i) <= rank) {
+                    traversed += span(x, i);
+                    x = next(x, i);
+                }
+                if (traversed == rank) {
+                    return x;
+                }
+            }
+            return NIL;
+        }
+
+        /**
+         * Walks level 0 from the given rank, so a page costs O(log n + limit).
+         */
+        private List<PlayerRank> range(long firstRank, int limit) {
+            List<PlayerRank> result = new ArrayList<>(Math.max(0, (int) Math.min(limit, length)));
+            int x = nodeAt(firstRank);
+            long rank = firstRank;
+            while (x != NIL && result.size() < limit) {
+                result.add(new PlayerRank(materialize(x), rank++));
+                x = next0[x];
+            }
+            return result;
+        }
+
+        private PlayerScore materialize(int node) {
+            long ref = refs[node];
+            return new PlayerScore(slab.readId(ref), scores[node], slab.readName(ref));
+        }
+
+        private long footprintBytes() {
+            return scores.length * (8L + 8 + 4 + 1 + 4) + upperNext.length * 8L + table.length * 4L + slab.capacity();
+        }
+    }
+
+    /**
+     * Bulk loader appending strictly increasing keys at the tail of an empty skip list. It tracks the
+     * last node and its rank on every level, so each append relinks only the new node's levels.
+     * Once anything else modifies the list the appender must be invalidated.
+     */
+    private static final class Appender {
+        private final SkipList list;
+        private final int[] tail = new int[MAX_LEVEL];
+        private final long[] tailRank = new long[MAX_LEVEL];
+        private boolean valid = true;
+
+        private Appender(SkipList list) {
+            this.list = list;
+            Arrays.fill(tail, SkipList.HEAD);
+        }
+
+        private boolean canAppend(long score, byte[] id) {
+            int last = tail[0];
+            return valid && (last == SkipList.HEAD || list.ranksAhead(last, score, id));
+        }
+
+        private void invalidate() {
+            valid = false;
+        }
+
+        private void append(int node) {
+            int newLevel = list.levels[node];
+            if (newLevel > list.level) {
+                for (int i = list.level; i < newLevel; i++) {
+                    list.setSpan(SkipList.HEAD, i, list.length);
+                }
+                list.level = newLevel;
+            }
+            long rank = list.length + 1;
+            for (int i = 0; i < newLevel; i++) {
+                list.setNext(tail[i], i, node);
+                if (i > 0) {
+                    list.setSpan(tail[i], i, rank - tailRank[i]);
+                }
+                tail[i] = node;
+                tailRank[i] = rank;
+            }
+            for (int i = newLevel; i < list.level; i++) {
+                list.setSpan(tail[i], i, list.span(tail[i], i) + 1);
+            }
+            list.length = rank;
+            list.distribution.record(list.scores[node]);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package services.Cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only, off-heap store of player id and name bytes, so millions of players cost a few direct
+ * buffers instead of two String objects each.
+ *
+ * Each record is (short id length, UTF-8 id, short name length or 0xFFFF for null, UTF-8 name) and is
+ * addressed by a long reference of (chunk index, offset). Chunks start small and double up to
+ * {@link #MAX_CHUNK_BYTES}, so small indexes stay small. Records are never freed; a renamed player
+ * gets a new record and the old bytes are reclaimed when the whole slab is dropped on rebuild.
+ *
+ * Appends must be serialized by the caller. Reads use absolute gets only, so they are safe from any
+ * thread that has seen the append happen, for example through the enclosing index's lock.
+ */
+final class PlayerRecordSlab {
+
+    private static final int MIN_CHUNK_BYTES = 64 * 1024;
+    private static final int MAX_CHUNK_BYTES = 64 * 1024 * 1024;
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private int tailPosition;
+
+    static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length >= NULL_LENGTH) {
+            throw new IllegalArgumentException("Player id or name longer than " + (NULL_LENGTH - 1) + " bytes");
+        }
+        return utf8;
+    }
+
+    /**
+     * @param id   UTF-8 player id.
+     * @param name UTF-8 player name, or null.
+     * @return reference to the new record.
+     */
+    long append(byte[] id, byte[] name) {
+        int length = 2 + id.length + 2 + (name == null ? 0 : name.length);
+        ByteBuffer[] current = chunks;
+        if (current.length == 0 || current[current.length - 1].capacity() - tailPosition < length) {
+            int size = current.length == 0 ? MIN_CHUNK_BYTES : Math.min(MAX_CHUNK_BYTES, current[current.length - 1].capacity() * 2);
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = ByteBuffer.allocateDirect(Math.max(size, length));
+            chunks = current;
+            tailPosition = 0;
+        }
+        ByteBuffer chunk = current[current.length - 1];
+        int position = tailPosition;
+        chunk.putShort(position, (short) id.length);
+        put(chunk, position + 2, id);
+        int namePosition = position + 2 + id.length;
+        if (name == null) {
+            chunk.putShort(namePosition, (short) NULL_LENGTH);
+        } else {
+            chunk.putShort(namePosition, (short) name.length);
+            put(chunk, namePosition + 2, name);
+        }
+        tailPosition = position + length;
+        return ((long) (current.length - 1) << 32) | position;
+    }
+
+    boolean idEquals(long ref, byte[] id) {
+        ByteBuffer chunk = chunk(ref);
+        int position = offset(ref);
+        return idLength(chunk, position) == id.length && regionEquals(chunk, position + 2, id);
+    }
+
+    boolean nameEquals(long ref, byte[] name) {
+        ByteBuffer chunk = chunk(ref);
+        int namePosition = offset(ref) + 2 + idLength(chunk, offset(ref));
+        int length = chunk.getShort(namePosition) & 0xFFFF;
+        if (name == null || length == NULL_LENGTH) {
+            return name == null && length == NULL_LENGTH;
+        }
+        return length == name.length && regionEquals(chunk, namePosition + 2, name);
+    }
+
+    /**
+     * Compares a stored id with another id in {@link String#compareTo} order, so ties between equal
+     * scores break exactly as they do in {@link ScoreKey}.
+     *
+     * UTF-8 bytes sort by code point while Strings sort by UTF-16 unit. The two only disagree when
+     * U+E000..U+FFFF (lead byte 0xEE or 0xEF) meets a supplementary character (lead byte 0xF0..0xF4,
+     * a surrogate pair in UTF-16), so those two lead bytes are moved above the others.
+     *
+     * @return negative, zero or positive as the stored id sorts before, equal to or after the other.
+     */
+    int compareId(long ref, byte[] other) {
+        ByteBuffer chunk = chunk(ref);
+        int position = offset(ref);
+        int length = idLength(chunk, position);
+        int common = Math.min(length, other.length);
+        for (int i = 0; i < common; i++) {
+            int a = chunk.get(position + 2 + i) & 0xFF;
+            int b = other[i] & 0xFF;
+            if (a != b) {
+                return utf16Order(a) - utf16Order(b);
+            }
+        }
+        return length - other.length;
+    }
+
+    /**
+     * @return the stored id's hash, equal to {@link Arrays#hashCode(byte[])} of its bytes.
+     */
+    int idHash(long ref) {
+        ByteBuffer chunk = chunk(ref);
+        int position = offset(ref);
+        int length = idLength(chunk, position);
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chunk.get(position + 2 + i);
+        }
+        return hash;
+    }
+
+    String readId(long ref) {
+        ByteBuffer chunk = chunk(ref);
+        int position = offset(ref);
+        return read(chunk, position + 2, idLength(chunk, position));
+    }
+
+    String readName(long ref) {
+        ByteBuffer chunk = chunk(ref);
+        int namePosition = offset(ref) + 2 + idLength(chunk, offset(ref));
+        int length = chunk.getShort(namePosition) & 0xFFFF;
+        return length == NULL_LENGTH ? null : read(chunk, namePosition + 2, length);
+    }
+
+    /**
+     * @return direct memory held by the slab, in bytes.
+     */
+    long capacity() {
+        long capacity = 0;
+        for (ByteBuffer chunk : chunks) {
+            capacity += chunk.capacity();
+        }
+        return capacity;
+    }
+
+    private ByteBuffer chunk(long ref) {
+        return chunks[(int) (ref >>> 32)];
+    }
+
+    private static int offset(long ref) {
+        return (int) ref;
+    }
+
+    private static int idLength(ByteBuffer chunk, int position) {
+        return chunk.getShort(position) & 0xFFFF;
+    }
+
+    private static int utf16Order(int b) {
+        return b == 0xEE || b == 0xEF ? b + 0x10 : b;
+    }
+
+    private static boolean regionEquals(ByteBuffer chunk, int position, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (chunk.get(position + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void put(ByteBuffer chunk, int position, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            chunk.put(position + i, bytes[i]);
+        }
+    }
+
+    private static String read(ByteBuffer chunk, int position, int length) {
+        byte[] utf8 = new byte[length];
+        for (int i = 0; i < length; i++) {
+            utf8[i] = chunk.get(position + i);
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
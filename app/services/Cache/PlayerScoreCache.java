@@ -7,15 +7,37 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Implementation of CacheServices for leaderboard caching.
+ *
+ * Scores are kept in a concurrent skip list ordered by {@link ScoreKey}, with a per-player index
+ * to find a player's current entry. All changes to one player's entry happen inside that player's
+ * {@link ConcurrentHashMap#compute} call, so writers for different players never share a lock and
+ * readers never block.
+ *
+ * Readers are served from an immutable {@link BoardSnapshot}. Every effective change bumps the board
+ * version, and the first read after a change builds the next snapshot and swaps it in atomically,
+ * so unchanged boards are read without copying, sorting or serializing.
+ *
+ * Re-initializing swaps in a new generation of the board. Each generation numbers its versions in a
+ * range of its own above the previous one, so a writer still finishing on the old generation can never
+ * give two different boards the same version. Scores only ever rise, so the old generation's entries are
+ * carried over, and a writer that finds the board swapped under it applies its score again, so no
+ * update is lost to the swap.
  */
 public class PlayerScoreCache implements CacheServices {
 
-    private int topN; // Number of top players to cache
-    private PriorityQueue<PlayerScore> minHeap; // Min-heap to store top N scores
-    private Map<String, PlayerScore> playerToScore; // Map to quickly access player scores by ID
+    // Versions a generation can use before running into the next one's
+    private static final int GENERATION_SHIFT = 40;
+
+    private volatile Board board = new Board(0, 0); // Current board, swapped wholesale on initialize
+    private volatile Runnable changeListener = () -> { };
 
     private static final Logger logger = LoggerFactory.getLogger(PlayerScoreCache.class);
 
@@ -27,26 +49,20 @@ public class PlayerScoreCache implements CacheServices {
      * @throws CacheInitializationException If cache initialization fails.
      */
     @Override
-    public  void initialize(int topN, List<PlayerScore> dataSet) throws CacheInitializationException {
-        this.topN = topN;
+    public void initialize(int topN, List<PlayerScore> dataSet) throws CacheInitializationException {
         try {
-            minHeap = new PriorityQueue<>();
-            playerToScore = new HashMap<>();
-            // Populate min-heap and player map with initial data
+            Board previous = board;
+            Board newBoard = new Board(topN, previous.generation + 1);
+            // Populate the new board before publishing it to readers and writers
             for (PlayerScore score : dataSet) {
-                if (minHeap.size() < topN) {
-                    minHeap.add(score);
-                    playerToScore.put(score.getPlayerId(), score);
-                } else {
-                    // Replace lowest score in heap if current score is higher
-                    if (score.getScore() > minHeap.peek().getScore()) {
-                        PlayerScore removedScore = minHeap.poll();
-                        minHeap.add(score);
-                        playerToScore.remove(removedScore.getPlayerId());
-                        playerToScore.put(score.getPlayerId(), score);
-                    }
-                }
+                newBoard.upsert(score);
+            }
+            board = newBoard;
+            // Writers that saw the previous board either landed before this copy or apply again to the new one
+            for (PlayerScore score : previous.ranking.values()) {
+                newBoard.upsert(score);
             }
+            changeListener.run();
         } catch (Exception e) {
             logger.error("Failed to initialize cache - {}", e.getMessage());
             throw new CacheInitializationException("Failed to initialize cache");
@@ -62,28 +78,19 @@ public class PlayerScoreCache implements CacheServices {
     @Override
     public void addToCache(PlayerScore score) throws CacheUpdateFailureException {
         try {
-            if (playerToScore.containsKey(score.getPlayerId())) {
-                // Update existing score if new score is higher
-                PlayerScore existingScore = playerToScore.get(score.getPlayerId());
-                if (existingScore.getScore() < score.getScore()) {
-                    logger.info(String.format("Updating {}'s score to {}", existingScore.getPlayerId(), score.getScore()));
-                    minHeap.remove(existingScore);
-                    minHeap.add(score);
-                    playerToScore.put(score.getPlayerId(), score);
-                }
-                return;
+            Board current = board;
+            long before = current.version.get();
+            current.upsert(score);
+            boolean changed = current.version.get() != before;
+            while (board != current) {
+                // Initialized concurrently: the copy of the previous board may have missed this score
+                current = board;
+                before = current.version.get();
+                current.upsert(score);
+                changed |= current.version.get() != before;
             }
-            // Add new score to cache if there's space or if it's higher than the lowest score in heap
-            if (minHeap.size() < topN) {
-                minHeap.add(score);
-                playerToScore.put(score.getPlayerId(), score);
-            } else {
-                if (score.getScore() > minHeap.peek().getScore()) {
-                    PlayerScore removedScore = minHeap.poll();
-                    minHeap.add(score);
-                    playerToScore.remove(removedScore.getPlayerId());
-                    playerToScore.put(score.getPlayerId(), score);
-                }
+            if (changed) {
+                changeListener.run();
             }
         } catch (Exception e) {
             logger.error("Failed to update cache - {}", e.getMessage());
@@ -94,12 +101,155 @@ public class PlayerScoreCache implements CacheServices {
     /**
      * Retrieves the top N players from the cache.
      *
-     * @return List of top N player scores.
+     * @return Immutable list of top N player scores in descending order.
+     */
+    @Override
+    public List<PlayerScore> getTopNPlayers() {
+        return getSnapshot().getPlayers();
+    }
+
+    /**
+     * Retrieves the current snapshot of the board, rebuilding it only if the board changed since
+     * the last snapshot was taken.
+     *
+     * @return Snapshot of the top N players.
+     */
+    @Override
+    public BoardSnapshot getSnapshot() {
+        return board.snapshot();
+    }
+
+    /**
+     * @return the board version, bumped on every effective change and never repeated across initializations.
+     */
+    @Override
+    public long getVersion() {
+        return board.version.get();
+    }
+
+    /**
+     * Checks whether a score could enter or move up the board. A cheap, lock-free pre-check that
+     * lets callers skip boards a score cannot change; {@link #addToCache} still makes the real decision.
+     *
+     * @param score Candidate score.
+     * @return false if the board is full and the score does not beat its lowest entry.
+     */
+    @Override
+    public boolean canAccept(PlayerScore score) {
+        Board current = board;
+        return current.topN > 0 && (current.size.get() < current.topN || current.beatsCutoff(score));
+    }
+
+    /**
+     * Sets the callback run after every call that changed the board. It runs on the writing thread,
+     * so it must be cheap; concurrent writers may run it more than once for overlapping changes.
+     *
+     * @param listener Callback to run, replacing any previous one.
      */
     @Override
-    public  List<PlayerScore> getTopNPlayers() {
-        List<PlayerScore> result = new ArrayList<>(minHeap); // Convert min-heap to list
-        Collections.sort(result, Collections.reverseOrder()); // Sort scores in descending order
-        return result;
+    public void setChangeListener(Runnable listener) {
+        this.changeListener = listener;
+    }
+
+    /**
+     * One generation of the cache: the ordered entries, the per-player index and the live entry count.
+     */
+    private static final class Board {
+
+        private final int topN; // Number of top players to cache
+        private final ConcurrentSkipListMap<ScoreKey, PlayerScore> ranking = new ConcurrentSkipListMap<>();
+        private final ConcurrentHashMap<String, PlayerScore> playerToScore = new ConcurrentHashMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final long generation;
+        private final AtomicLong version; // Bumped on every effective change
+        private final AtomicReference<BoardSnapshot> snapshot = new AtomicReference<>(BoardSnapshot.EMPTY);
+
+        private Board(int topN, long generation) {
+            this.topN = topN;
+            this.generation = generation;
+            this.version = new AtomicLong(generation << GENERATION_SHIFT);
+        }
+
+        /**
+         * Inserts a new player or raises an existing player's score, then evicts from the bottom
+         * until the board is back to topN entries.
+         */
+        private void upsert(PlayerScore score) {
+            if (topN <= 0) {
+                return;
+            }
+            playerToScore.compute(score.getPlayerId(), (playerId, existing) -> {
+                if (existing != null) {
+                    // Update existing score only if new score is higher
+                    if (existing.getScore() >= score.getScore()) {
+                        return existing;
+                    }
+                    logger.debug("Updating {}'s score to {}", playerId, score.getScore());
+                    ranking.remove(ScoreKey.of(existing));
+                    ranking.put(ScoreKey.of(score), score);
+                    version.incrementAndGet();
+                    return score;
+                }
+                // Add new score if there's space or if it beats the current cut-off
+                if (size.get() >= topN && !beatsCutoff(score)) {
+                    return null;
+                }
+                ranking.put(ScoreKey.of(score), score);
+                size.incrementAndGet();
+                version.incrementAndGet();
+                return score;
+            });
+            trim();
+        }
+
+        private boolean beatsCutoff(PlayerScore score) {
+            Map.Entry<ScoreKey, PlayerScore> lowest = ranking.lastEntry();
+            return lowest == null || ScoreKey.of(score).compareTo(lowest.getKey()) < 0;
+        }
+
+        /**
+         * Evicts the lowest entries while the board holds more than topN players. The eviction runs
+         * inside the victim's compute so it cannot interleave with a concurrent update of that player.
+         */
+        private void trim() {
+            while (size.get() > topN) {
+                Map.Entry<ScoreKey, PlayerScore> lowest = ranking.lastEntry();
+                if (lowest == null) {
+                    return;
+                }
+                PlayerScore victim = lowest.getValue();
+                playerToScore.computeIfPresent(victim.getPlayerId(), (playerId, current) -> {
+                    if (current != victim || size.get() <= topN) {
+                        return current; // Changed concurrently, re-read the bottom of the board
+                    }
+                    ranking.remove(lowest.getKey());
+                    size.decrementAndGet();
+                    version.incrementAndGet();
+                    return null;
+                });
+            }
+        }
+
+        private BoardSnapshot snapshot() {
+            BoardSnapshot current = snapshot.get();
+            long currentVersion = version.get();
+            if (current.getVersion() == currentVersion) {
+                return current;
+            }
+            BoardSnapshot fresh = new BoardSnapshot(currentVersion, topPlayers());
+            // Never replace a newer snapshot published by a concurrent reader
+            return snapshot.accumulateAndGet(fresh, (a, b) -> a.getVersion() >= b.getVersion() ? a : b);
+        }
+
+        private List<PlayerScore> topPlayers() {
+            List<PlayerScore> result = new ArrayList<>(Math.min(topN, size.get()));
+            for (PlayerScore score : ranking.values()) {
+                if (result.size() == topN) {
+                    break;
+                }
+                result.add(score);
+            }
+            return result;
+        }
     }
 }
@@ -0,0 +1,301 @@
+package services.Cache;
+
+import com.typesafe.config.Config;
+import models.PlayerScore;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Local persistence of the rank index for fast restarts.
+ *
+ * The index is checkpointed periodically to a binary snapshot in rank order, and every accepted update
+ * is appended to a write-ahead log that is fsynced in batches. On boot the snapshot is memory-mapped and
+ * bulk-appended into the index, then the log tail is replayed. The log only holds updates after a
+ * checkpoint, so the database is read whenever the snapshot is missing or corrupt. Updates in the last
+ * sync interval before a crash may be lost from the log; the database still has them, and the index
+ * picks them up again on those players' next updates.
+ *
+ * Snapshot layout: int magic, int format version, long covered WAL sequence, long record count,
+ * the score records in rank order, then an int CRC32 of everything before it.
+ */
+@Singleton
+public class RankIndexStore {
+
+    private static final int SNAPSHOT_MAGIC = 0x4C42534E; // "LBSN"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SNAPSHOT_FILE = "rank-index.snapshot";
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final Path directory;
+    private final ScoreWriteAheadLog wal;
+    private final Object checkpointLock = new Object();
+    private volatile long lastCovered = -1;
+    private ScheduledExecutorService scheduler;
+    private volatile PlayerRankIndex checkpointTarget;
+    private volatile boolean open;
+
+    private final AtomicLong checkpoints = new AtomicLong();
+    private final AtomicLong lastCheckpointMillis = new AtomicLong();
+    private final AtomicLong walSyncFailures = new AtomicLong();
+
+    @Inject
+    public RankIndexStore(Config config, ApplicationLifecycle lifecycle) {
+        this(config.getBoolean("leaderboard.persistence.enabled") ? Paths.get(config.getString("leaderboard.persistence.directory")) : null);
+        if (directory == null) {
+            return;
+        }
+        long syncMillis = config.getDuration("leaderboard.persistence.walSyncInterval", TimeUnit.MILLISECONDS);
+        long checkpointMillis = config.getDuration("leaderboard.persistence.checkpointInterval", TimeUnit.MILLISECONDS);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rank-index-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::syncQuietly, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::checkpointQuietly, checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+        lifecycle.addStopHook(() -> {
+            scheduler.shutdownNow();
+            return CompletableFuture.runAsync(this::close);
+        });
+    }
+
+    /**
+     * Creates a store without background sync or checkpoints; callers drive them explicitly.
+     *
+     * @param directory Directory for the snapshot and log, or null to disable persistence.
+     */
+    public RankIndexStore(Path directory) {
+        this.directory = directory;
+        this.wal = directory == null ? null : new ScoreWriteAheadLog(directory);
+    }
+
+    /**
+     * @return a store that persists nothing and never restores.
+     */
+    public static RankIndexStore disabled() {
+        return new RankIndexStore((Path) null);
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Loads the index from the snapshot and log, then opens the log for appends.
+     *
+     * @param index Index to load into.
+     * @return false if persistence is disabled or the files cannot rebuild the full index, in which
+     * case the caller loads it from the database and should then {@link #checkpoint} it.
+     */
+    public boolean restore(PlayerRankIndex index) {
+        if (!isEnabled()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        long covered = -1;
+        try {
+            covered = readSnapshot(index);
+        } catch (IOException e) {
+            logger.warn("Rank index snapshot unusable - " + e.getMessage());
+        }
+        try {
+            if (covered < 0) {
+                // The log is only the tail after a checkpoint; start over from the database
+                wal.truncate(Long.MAX_VALUE);
+                wal.open(0);
+                open = true;
+                return false;
+            }
+            long highest = wal.replay(covered, index::update);
+            wal.open(highest);
+            logger.info("Restored " + index.size() + " players from checkpoint at sequence " + covered + " and log up to " + highest
+                    + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+            open = true;
+            return true;
+        } catch (IOException e) {
+            logger.error("Rank index log unusable - " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Appends an accepted update to the log. A failure is logged and counted; the update is still in
+     * the database, so only the next warm start is affected.
+     *
+     * @param score Update the index accepted.
+     */
+    public void record(PlayerScore score) {
+        if (!open) {
+            return;
+        }
+        try {
+            wal.append(score);
+        } catch (IOException e) {
+            walSyncFailures.incrementAndGet();
+            logger.error("Failed to log rank index update - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a new snapshot of the index and drops the log segments it covers.
+     *
+     * @param index Index to checkpoint.
+     * @throws IOException If the snapshot could not be written.
+     */
+    public void checkpoint(PlayerRankIndex index) throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (checkpointLock) {
+            if (!open) {
+                wal.open(0);
+                open = true;
+            }
+            long start = System.nanoTime();
+            // Every update logged up to this sequence was applied to the index before it was logged
+            long covered = wal.roll();
+            lastCovered = covered;
+            List<PlayerScore> players = index.getAllInRankOrder();
+            Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                CRC32 crc = new CRC32();
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 20), crc));
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(covered);
+                out.writeLong(players.size());
+                for (PlayerScore player : players) {
+                    ScoreRecordFiles.writeRecord(out, player);
+                }
+                out.writeInt((int) crc.getValue());
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            wal.truncate(covered);
+            checkpoints.incrementAndGet();
+            lastCheckpointMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            logger.info("Checkpointed " + players.size() + " players at sequence " + covered + " in " + lastCheckpointMillis.get() + "ms");
+        }
+    }
+
+    /**
+     * Flushes and fsyncs the log.
+     *
+     * @throws IOException If the log could not be synced.
+     */
+    public void sync() throws IOException {
+        if (open) {
+            wal.sync();
+        }
+    }
+
+    private long readSnapshot(PlayerRankIndex index) throws IOException {
+        Path path = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(path)) {
+            return -1;
+        }
+        try (ScoreRecordFiles.MappedReader reader = new ScoreRecordFiles.MappedReader(path)) {
+            CRC32 crc = new CRC32();
+            reader.checksum(crc, 24);
+            if (reader.readInt() != SNAPSHOT_MAGIC || reader.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a version " + SNAPSHOT_VERSION + " rank index snapshot");
+            }
+            long covered = reader.readLong();
+            long count = reader.readLong();
+            IOException[] failure = new IOException[1];
+            index.rebuildFromRanked(consumer -> {
+                try {
+                    for (long i = 0; i < count; i++) {
+                        consumer.accept(reader.readRecord(crc));
+                    }
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            if (reader.remaining() != 4 || reader.readInt() != (int) crc.getValue()) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+            return covered;
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            walSyncFailures.incrementAndGet();
+            logger.error("Rank index log sync failed - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sets the index the background checkpoints write.
+     *
+     * @param index Index to checkpoint periodically.
+     */
+    public void checkpointPeriodically(PlayerRankIndex index) {
+        this.checkpointTarget = index;
+    }
+
+    private void checkpointQuietly() {
+        PlayerRankIndex index = checkpointTarget;
+        if (index == null || (open && wal.lastSequence() == lastCovered)) {
+            return; // Nothing was logged since the last checkpoint
+        }
+        try {
+            checkpoint(index);
+        } catch (Exception e) {
+            logger.error("Rank index checkpoint failed - " + e.getMessage());
+        }
+    }
+
+    private void close() {
+        checkpointQuietly();
+        try {
+            if (open) {
+                wal.close();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to close rank index log - " + e.getMessage());
+        }
+    }
+
+    public long getCheckpoints() {
+        return checkpoints.get();
+    }
+
+    public long getLastCheckpointMillis() {
+        return lastCheckpointMillis.get();
+    }
+
+    public long getWalFailures() {
+        return walSyncFailures.get();
+    }
+}
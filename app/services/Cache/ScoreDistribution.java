@@ -0,0 +1,223 @@
+package services.Cache;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import services.Metrics.LogLinearBuckets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Histogram of the current score of every player on a board, with log-linear buckets in the style of
+ * HdrHistogram.
+ *
+ * Scores between -32 and 32 get a bucket each; beyond that every power of two is split into 32 equal
+ * sub-buckets, so a score is placed within 1/32 (about 3%) of its value. The bucket array covers every
+ * long and never grows, so percentile and histogram queries cost the same whatever the number of
+ * players. Unlike a t-digest or KLL sketch a bucket count can be decremented, so the histogram follows
+ * each player's score as it moves rather than every score ever submitted. Histograms of disjoint sets
+ * of players, such as the shards of a board, merge by adding their counts.
+ *
+ * Not thread-safe: {@link PlayerRankIndex} updates it under its write lock and hands out copies.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true) // count is derived, so it is written but not read back
+public final class ScoreDistribution {
+
+    private static final LogLinearBuckets MAGNITUDES = new LogLinearBuckets(5);
+    private static final int BUCKETS_PER_SIGN = MAGNITUDES.getBucketCount();
+
+    // Negative scores fill the lower half in descending bucket order, so indexes follow score order
+    private final long[] counts = new long[2 * BUCKETS_PER_SIGN];
+    private long count;
+
+    public ScoreDistribution() {
+    }
+
+    /**
+     * Restores a histogram from its sparse form.
+     *
+     * @param buckets Indexes of the non-empty buckets.
+     * @param counts  Count of each listed bucket.
+     */
+    @JsonCreator
+    public ScoreDistribution(@JsonProperty("buckets") int[] buckets, @JsonProperty("counts") long[] counts) {
+        if (buckets.length != counts.length) {
+            throw new IllegalArgumentException("Expected a count for each of " + buckets.length + " buckets, got " + counts.length);
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            this.counts[buckets[i]] += counts[i];
+            this.count += counts[i];
+        }
+    }
+
+    void record(long score) {
+        counts[bucketOf(score)]++;
+        count++;
+    }
+
+    void remove(long score) {
+        counts[bucketOf(score)]--;
+        count--;
+    }
+
+    /**
+     * @return a copy that later changes to this histogram do not affect.
+     */
+    public ScoreDistribution copy() {
+        ScoreDistribution copy = new ScoreDistribution();
+        copy.add(this);
+        return copy;
+    }
+
+    /**
+     * Adds another histogram's counts to this one.
+     *
+     * @param other Histogram of a disjoint set of players.
+     */
+    public void add(ScoreDistribution other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+    }
+
+    /**
+     * @return number of players counted.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return indexes of the non-empty buckets, in score order.
+     */
+    public int[] getBuckets() {
+        int[] buckets = new int[nonEmpty()];
+        for (int i = 0, j = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                buckets[j++] = i;
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * @return count of each bucket listed by {@link #getBuckets()}.
+     */
+    public long[] getCounts() {
+        long[] sparse = new long[nonEmpty()];
+        for (int i = 0, j = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                sparse[j++] = counts[i];
+            }
+        }
+        return sparse;
+    }
+
+    private int nonEmpty() {
+        int nonEmpty = 0;
+        for (long bucketCount : counts) {
+            if (bucketCount != 0) {
+                nonEmpty++;
+            }
+        }
+        return nonEmpty;
+    }
+
+    /**
+     * Estimates how many players have a score strictly above the given score. Buckets above the
+     * score's bucket count in full; the score's own bucket is assumed evenly spread over its range.
+     *
+     * @param score Score to compare against.
+     * @return estimated number of players ahead of the score.
+     */
+    public long countAbove(long score) {
+        int bucket = bucketOf(score);
+        long above = 0;
+        for (int i = bucket + 1; i < counts.length; i++) {
+            above += counts[i];
+        }
+        double width = (double) upperBound(bucket) - lowerBound(bucket) + 1;
+        double share = ((double) upperBound(bucket) - score) / width;
+        return above + Math.round(counts[bucket] * share);
+    }
+
+    /**
+     * Splits the range of scores held into equal-width bins. Each bucket is counted in the bin
+     * holding its midpoint, so bin counts are as accurate as the buckets they are built from.
+     *
+     * @param bins Number of bins.
+     * @return bins in score order, empty if no player is counted.
+     */
+    public List<Bin> histogram(int bins) {
+        int first = 0;
+        while (first < counts.length && counts[first] == 0) {
+            first++;
+        }
+        if (first == counts.length) {
+            return new ArrayList<>();
+        }
+        int last = counts.length - 1;
+        while (counts[last] == 0) {
+            last--;
+        }
+        long from = lowerBound(first);
+        long to = upperBound(last);
+        double width = ((double) to - from + 1) / bins;
+        long[] binCounts = new long[bins];
+        for (int i = first; i <= last; i++) {
+            if (counts[i] != 0) {
+                double midpoint = ((double) lowerBound(i) + upperBound(i)) / 2;
+                binCounts[(int) Math.min(bins - 1, Math.max(0, (midpoint - from) / width))] += counts[i];
+            }
+        }
+        List<Bin> histogram = new ArrayList<>(bins);
+        for (int i = 0; i < bins; i++) {
+            long binFrom = i == 0 ? from : (long) Math.floor(from + i * width);
+            long binTo = i == bins - 1 ? to : (long) Math.floor(from + (i + 1) * width) - 1;
+            histogram.add(new Bin(binFrom, Math.max(binFrom, binTo), binCounts[i]));
+        }
+        return histogram;
+    }
+
+    static int bucketOf(long score) {
+        return score >= 0 ? BUCKETS_PER_SIGN + MAGNITUDES.bucketOf(score) : BUCKETS_PER_SIGN - 1 - MAGNITUDES.bucketOf(~score);
+    }
+
+    static long lowerBound(int bucket) {
+        return bucket >= BUCKETS_PER_SIGN ? MAGNITUDES.lowerBound(bucket - BUCKETS_PER_SIGN) : ~MAGNITUDES.upperBound(BUCKETS_PER_SIGN - 1 - bucket);
+    }
+
+    static long upperBound(int bucket) {
+        return bucket >= BUCKETS_PER_SIGN ? MAGNITUDES.upperBound(bucket - BUCKETS_PER_SIGN) : ~MAGNITUDES.lowerBound(BUCKETS_PER_SIGN - 1 - bucket);
+    }
+
+    /**
+     * Number of players with a score from {@code from} to {@code to}, both inclusive.
+     */
+    public static final class Bin {
+
+        private final long from;
+        private final long to;
+        private final long count;
+
+        public Bin(long from, long to, long count) {
+            this.from = from;
+            this.to = to;
+            this.count = count;
+        }
+
+        public long getFrom() {
+            return from;
+        }
+
+        public long getTo() {
+            return to;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package services.Cache;
+
+import models.PlayerScore;
+
+/**
+ * Immutable ordering key for a player's position on a board.
+ * Keys sort in rank order: higher scores first, ties broken by player id so that
+ * every player maps to exactly one position.
+ */
+public final class ScoreKey implements Comparable<ScoreKey> {
+
+    private final long score;
+    private final String playerId;
+
+    public ScoreKey(long score, String playerId) {
+        this.score = score;
+        this.playerId = playerId;
+    }
+
+    public static ScoreKey of(PlayerScore playerScore) {
+        return new ScoreKey(playerScore.getScore(), playerScore.getPlayerId());
+    }
+
+    public long getScore() {
+        return score;
+    }
+
+    public String getPlayerId() {
+        return playerId;
+    }
+
+    @Override
+    public int compareTo(ScoreKey other) {
+        int byScore = Long.compare(other.score, this.score);
+        if (byScore != 0) {
+            return byScore;
+        }
+        return this.playerId.compareTo(other.playerId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ScoreKey)) {
+            return false;
+        }
+        ScoreKey other = (ScoreKey) o;
+        return score == other.score && playerId.equals(other.playerId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(score) + playerId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "{" + playerId + " " + score + "}";
+    }
+}
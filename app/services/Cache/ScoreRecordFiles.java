@@ -0,0 +1,144 @@
+package services.Cache;
+
+import models.PlayerScore;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Record format shared by the rank index checkpoint and write-ahead log:
+ * (short id length, UTF-8 id, long score, short name length, UTF-8 name), big-endian.
+ */
+final class ScoreRecordFiles {
+
+    private ScoreRecordFiles() {
+    }
+
+    static void writeRecord(DataOutput out, PlayerScore score) throws IOException {
+        writeString(out, score.getPlayerId());
+        out.writeLong(score.getScore());
+        writeString(out, score.getPlayerName());
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] utf8 = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length > 0xFFFF) {
+            throw new IOException("String too long for a score record");
+        }
+        out.writeShort(utf8.length);
+        out.write(utf8);
+    }
+
+    /**
+     * Sequential reader over a memory-mapped file. The file is mapped in regions so files over 2GB
+     * work; a region is remapped from the current position whenever a read would cross its end.
+     */
+    static final class MappedReader implements Closeable {
+
+        private static final long REGION_BYTES = 256L * 1024 * 1024;
+
+        private final FileChannel channel;
+        private final long size;
+        private long regionStart;
+        private MappedByteBuffer region;
+
+        MappedReader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.size = channel.size();
+            map(0);
+        }
+
+        long position() {
+            return regionStart + region.position();
+        }
+
+        long remaining() {
+            return size - position();
+        }
+
+        /**
+         * Makes the next n bytes readable from the current region.
+         *
+         * @throws IOException If the file ends first.
+         */
+        void ensure(int n) throws IOException {
+            if (region.remaining() >= n) {
+                return;
+            }
+            if (remaining() < n) {
+                throw new IOException("Unexpected end of " + size + " byte file at " + position());
+            }
+            map(position());
+        }
+
+        int readInt() throws IOException {
+            ensure(4);
+            return region.getInt();
+        }
+
+        long readLong() throws IOException {
+            ensure(8);
+            return region.getLong();
+        }
+
+        /**
+         * Reads one score record, adding its bytes to the checksum.
+         */
+        PlayerScore readRecord(CRC32 crc) throws IOException {
+            ensure(2);
+            int start = region.position();
+            int idLength = region.getShort(start) & 0xFFFF;
+            ensure(2 + idLength + 8 + 2);
+            start = region.position();
+            int nameLength = region.getShort(start + 2 + idLength + 8) & 0xFFFF;
+            int length = 2 + idLength + 8 + 2 + nameLength;
+            ensure(length);
+            start = region.position();
+            String playerId = readString();
+            long score = region.getLong();
+            String playerName = readString();
+            crc.update(slice(start, length));
+            return new PlayerScore(playerId, score, playerName);
+        }
+
+        /**
+         * Adds the next n bytes to the checksum without consuming them.
+         */
+        void checksum(CRC32 crc, int n) throws IOException {
+            ensure(n);
+            crc.update(slice(region.position(), n));
+        }
+
+        private ByteBuffer slice(int start, int length) {
+            ByteBuffer view = region.duplicate();
+            view.position(start);
+            view.limit(start + length);
+            return view;
+        }
+
+        private String readString() {
+            int length = region.getShort() & 0xFFFF;
+            byte[] utf8 = new byte[length];
+            region.get(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        private void map(long start) throws IOException {
+            regionStart = start;
+            region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_BYTES, size - start));
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
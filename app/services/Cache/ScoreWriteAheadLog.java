@@ -0,0 +1,222 @@
+package services.Cache;
+
+import models.PlayerScore;
+import play.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Segmented write-ahead log of accepted rank index updates.
+ *
+ * Appends go to an in-memory buffer; {@link #sync()} writes the buffer and fsyncs once for every
+ * update appended since the previous sync, so the fsync cost is shared by the whole batch.
+ * Each record is (int length, long sequence, score record, int CRC32 of sequence and record).
+ * Segments are named by their first sequence, so a checkpoint can drop whole segments it covers.
+ */
+final class ScoreWriteAheadLog {
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final Path directory;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(64 * 1024);
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private FileChannel segment;
+    private Path segmentPath;
+    private long lastSequence;
+
+    ScoreWriteAheadLog(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Replays every intact record after the given sequence, oldest segment first. A torn or corrupt
+     * record ends its segment, since nothing after it in that segment can be trusted.
+     *
+     * @param afterSequence Records up to and including this sequence are skipped.
+     * @param consumer      Receives each replayed score.
+     * @return the highest sequence found, or afterSequence if there was nothing newer.
+     * @throws IOException If the directory could not be listed.
+     */
+    long replay(long afterSequence, Consumer<PlayerScore> consumer) throws IOException {
+        long highest = afterSequence;
+        for (Path path : segments()) {
+            try (ScoreRecordFiles.MappedReader reader = new ScoreRecordFiles.MappedReader(path)) {
+                while (reader.remaining() > 0) {
+                    long start = reader.position();
+                    try {
+                        int length = reader.readInt();
+                        if (length <= 8 || length > reader.remaining() - 4) {
+                            throw new IOException("Bad record length " + length);
+                        }
+                        CRC32 crc = new CRC32();
+                        reader.checksum(crc, 8);
+                        long sequence = reader.readLong();
+                        PlayerScore score = reader.readRecord(crc);
+                        if ((int) crc.getValue() != reader.readInt() || reader.position() - start != 4 + length + 4) {
+                            throw new IOException("Checksum mismatch");
+                        }
+                        if (sequence > afterSequence) {
+                            consumer.accept(score);
+                        }
+                        highest = Math.max(highest, sequence);
+                    } catch (IOException e) {
+                        logger.warn("Ignoring WAL tail of " + path.getFileName() + " from byte " + start + " - " + e.getMessage());
+                        break;
+                    }
+                }
+            }
+        }
+        return highest;
+    }
+
+    /**
+     * Opens a new segment for appends. Sequences continue after the given one. A leftover segment
+     * with the same name can only hold a torn first record, so it is overwritten.
+     *
+     * @param lastSequence Highest sequence already used.
+     * @throws IOException If the segment could not be created.
+     */
+    synchronized void open(long lastSequence) throws IOException {
+        this.lastSequence = lastSequence;
+        Files.createDirectories(directory);
+        segmentPath = directory.resolve(SEGMENT_PREFIX + String.format("%019d", lastSequence + 1) + SEGMENT_SUFFIX);
+        segment = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Buffers an update; it is durable after the next {@link #sync()}.
+     *
+     * @param score Accepted update.
+     * @throws IOException If the record could not be encoded.
+     */
+    synchronized void append(PlayerScore score) throws IOException {
+        long sequence = ++lastSequence;
+        record.reset();
+        recordOut.writeLong(sequence);
+        ScoreRecordFiles.writeRecord(recordOut, score);
+        CRC32 crc = new CRC32();
+        crc.update(record.toByteArray());
+        pendingOut.writeInt(record.size());
+        record.writeTo(pendingOut);
+        pendingOut.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Writes buffered updates and fsyncs the segment. Appends only wait for the write, not the fsync.
+     *
+     * @throws IOException If the write or fsync failed.
+     */
+    void sync() throws IOException {
+        FileChannel target;
+        synchronized (this) {
+            if (segment == null) {
+                return;
+            }
+            drain();
+            target = segment;
+        }
+        try {
+            target.force(false);
+        } catch (ClosedChannelException e) {
+            // Rolled over meanwhile; roll() forced the segment before closing it
+        }
+    }
+
+    /**
+     * Starts a new segment and returns the last sequence written to the old ones, so a checkpoint
+     * taken after this call covers every record in the old segments.
+     *
+     * @return the last sequence in the closed segments.
+     * @throws IOException If the old segment could not be flushed or the new one created.
+     */
+    synchronized long roll() throws IOException {
+        if (segment != null) {
+            drain();
+            segment.force(false);
+            segment.close();
+        }
+        long covered = lastSequence;
+        open(covered);
+        return covered;
+    }
+
+    /**
+     * Deletes every segment whose records are all at or below the sequence.
+     *
+     * @param sequence Sequence covered by a durable checkpoint.
+     * @throws IOException If the directory could not be listed.
+     */
+    void truncate(long sequence) throws IOException {
+        Path current;
+        synchronized (this) {
+            current = segmentPath;
+        }
+        for (Path path : segments()) {
+            if (firstSequence(path) <= sequence && !path.equals(current)) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    synchronized void close() throws IOException {
+        if (segment != null) {
+            drain();
+            segment.force(false);
+            segment.close();
+            segment = null;
+        }
+    }
+
+    private void drain() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(pending.toByteArray());
+        while (bytes.hasRemaining()) {
+            segment.write(bytes);
+        }
+        pending.reset();
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        // Zero-padded names sort in sequence order
+        segments.sort(null);
+        return segments;
+    }
+
+    private static long firstSequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,197 @@
+package services.Cache;
+
+import exceptions.CacheInitializationException;
+import exceptions.CacheUpdateFailureException;
+import models.PlayerScore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Approximate implementation of CacheServices that ranks players by how many scores they submitted,
+ * in memory bounded by a fixed number of counters whatever the number of distinct players.
+ *
+ * Counts are kept with the Space-Saving algorithm: a score from a player without a counter takes over
+ * the counter with the lowest count, inheriting that count as its error. Counts therefore only ever
+ * overestimate, by at most N / capacity after N scores, and every player with more scores than that
+ * is guaranteed a counter. Choosing the capacity as 1 / epsilon bounds the error to epsilon * N.
+ *
+ * Updates reorder one counter under the cache's lock in O(log capacity). Readers are served from an
+ * immutable {@link BoardSnapshot} rebuilt only after a change, like {@link PlayerScoreCache}.
+ */
+public class SpaceSavingCache implements CacheServices {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpaceSavingCache.class);
+
+    private final int minCapacity;
+    private final Map<String, Counter> counters = new HashMap<>();
+    private final TreeMap<ScoreKey, Counter> ranking = new TreeMap<>();
+    private int capacity;
+    private volatile int topN;
+    private long total;
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicReference<BoardSnapshot> snapshot = new AtomicReference<>(BoardSnapshot.EMPTY);
+    private volatile Runnable changeListener = () -> { };
+
+    /**
+     * @param capacity Number of counters kept; raised to the board size if that is larger.
+     */
+    public SpaceSavingCache(int capacity) {
+        this.minCapacity = capacity;
+    }
+
+    /**
+     * Clears the counters, seeding them with the given counts.
+     *
+     * @param topN    Number of top players to report.
+     * @param dataSet Players with their counts as the score, usually empty.
+     * @throws CacheInitializationException If cache initialization fails.
+     */
+    @Override
+    public void initialize(int topN, List<PlayerScore> dataSet) throws CacheInitializationException {
+        try {
+            synchronized (this) {
+                counters.clear();
+                ranking.clear();
+                total = 0;
+                this.topN = topN;
+                this.capacity = Math.max(minCapacity, topN);
+                for (PlayerScore score : dataSet) {
+                    add(score.getPlayerId(), score.getPlayerName(), score.getScore());
+                }
+                version.incrementAndGet();
+            }
+            changeListener.run();
+        } catch (Exception e) {
+            logger.error("Failed to initialize approximate cache - {}", e.getMessage());
+            throw new CacheInitializationException("Failed to initialize cache");
+        }
+    }
+
+    /**
+     * Counts one more score for the player; the score's value is ignored.
+     *
+     * @param score Submitted score.
+     * @throws CacheUpdateFailureException If cache update fails.
+     */
+    @Override
+    public void addToCache(PlayerScore score) throws CacheUpdateFailureException {
+        try {
+            synchronized (this) {
+                if (capacity <= 0) {
+                    return;
+                }
+                add(score.getPlayerId(), score.getPlayerName(), 1);
+                version.incrementAndGet();
+            }
+            changeListener.run();
+        } catch (Exception e) {
+            logger.error("Failed to update approximate cache - {}", e.getMessage());
+            throw new CacheUpdateFailureException("Failed to update cache");
+        }
+    }
+
+    private void add(String playerId, String playerName, long count) {
+        Counter counter = counters.get(playerId);
+        if (counter != null) {
+            ranking.remove(counter.key);
+            counter.count += count;
+            if (playerName != null) {
+                counter.playerName = playerName;
+            }
+        } else if (counters.size() < capacity) {
+            counter = new Counter(playerId, playerName, count, 0);
+            counters.put(playerId, counter);
+        } else {
+            Counter lowest = ranking.pollLastEntry().getValue();
+            counters.remove(lowest.playerId);
+            counter = new Counter(playerId, playerName, lowest.count + count, lowest.count);
+            counters.put(playerId, counter);
+        }
+        counter.key = new ScoreKey(counter.count, playerId);
+        ranking.put(counter.key, counter);
+        total += count;
+    }
+
+    @Override
+    public List<PlayerScore> getTopNPlayers() {
+        return getSnapshot().getPlayers();
+    }
+
+    /**
+     * @return snapshot of the players with the highest counts, each count as the score.
+     */
+    @Override
+    public BoardSnapshot getSnapshot() {
+        BoardSnapshot current = snapshot.get();
+        if (current.getVersion() == version.get()) {
+            return current;
+        }
+        BoardSnapshot fresh;
+        synchronized (this) {
+            List<PlayerScore> players = new ArrayList<>(Math.min(topN, counters.size()));
+            for (Counter counter : ranking.values()) {
+                if (players.size() == topN) {
+                    break;
+                }
+                players.add(new PlayerScore(counter.playerId, counter.count, counter.playerName));
+            }
+            fresh = new BoardSnapshot(version.get(), players);
+        }
+        // Never replace a newer snapshot published by a concurrent reader
+        return snapshot.accumulateAndGet(fresh, (a, b) -> a.getVersion() >= b.getVersion() ? a : b);
+    }
+
+    /**
+     * @return the counters' version, bumped by every counted score and every initialization.
+     */
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Every score counts, so every score is accepted while the board has room for anyone.
+     */
+    @Override
+    public boolean canAccept(PlayerScore score) {
+        return topN > 0;
+    }
+
+    @Override
+    public void setChangeListener(Runnable listener) {
+        this.changeListener = listener;
+    }
+
+    /**
+     * @return a copy of every counter, mergeable with summaries from other caches.
+     */
+    public synchronized HeavyHitterSummary summarize() {
+        List<HeavyHitterSummary.Counter> copied = new ArrayList<>(counters.size());
+        for (Counter counter : ranking.values()) {
+            copied.add(new HeavyHitterSummary.Counter(counter.playerId, counter.playerName, counter.count, counter.error));
+        }
+        return new HeavyHitterSummary(capacity, total, copied);
+    }
+
+    /**
+     * One monitored player; only changed under the cache's lock.
+     */
+    private static final class Counter {
+        private final String playerId;
+        private String playerName;
+        private long count;
+        private final long error;
+        private ScoreKey key;
+
+        private Counter(String playerId, String playerName, long count, long error) {
+            this.playerId = playerId;
+            this.playerName = playerName;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
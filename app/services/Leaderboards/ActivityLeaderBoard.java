@@ -0,0 +1,271 @@
+package services.Leaderboards;
+
+import exceptions.CacheInitializationException;
+import exceptions.CacheUpdateFailureException;
+import exceptions.LeaderboardNotInitializedException;
+import exceptions.LeaderboardUpdateFailureException;
+import models.PlayerRank;
+import models.PlayerScore;
+import play.Logger;
+import services.Cache.BoardSnapshot;
+import services.Cache.HeavyHitterSummary;
+import services.Cache.SpaceSavingCache;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Approximate leaderboard of the players who submitted the most scores, all-time or over a sliding
+ * {@link TimeWindow}.
+ *
+ * Every score fanned out to the boards is counted in a {@link SpaceSavingCache}, so memory stays at
+ * the configured number of counters however many players come and go. A windowed board keeps one
+ * cache per time bucket in a ring, as {@link WindowedLeaderBoard} does, and the window is the merge of
+ * the live buckets' {@link HeavyHitterSummary summaries}; the same merge combines this board's
+ * {@link #getSummary()} with other nodes'. Counts are held in memory only and start from zero.
+ * With ingestion coalescing on, a player's scores within one coalescing window count once.
+ */
+public class ActivityLeaderBoard implements LeaderBoard {
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final String name;
+    private final TimeWindow window; // Null for an all-time board
+    private final int capacity;
+    private final LongSupplier clock;
+    private final long bucketMillis;
+    private final int bucketCount;
+
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong lastBucket = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicReference<BoardSnapshot> snapshot = new AtomicReference<>(BoardSnapshot.EMPTY);
+    private final AtomicReferenceArray<Bucket> ring;
+    private volatile int topN;
+    private volatile Runnable changeListener = () -> { };
+
+    /**
+     * Constructor for ActivityLeaderBoard.
+     *
+     * @param name     Name of the board.
+     * @param window   Window the board covers, or null for all-time counts.
+     * @param capacity Counters per bucket; counts overestimate by at most a bucket's scores / capacity.
+     * @param topN     Number of top players to include in the leaderboard.
+     * @param clock    Current time in epoch milliseconds.
+     */
+    public ActivityLeaderBoard(String name, TimeWindow window, int capacity, int topN, LongSupplier clock) {
+        this.name = name;
+        this.window = window;
+        this.capacity = Math.max(capacity, topN);
+        this.clock = clock;
+        this.bucketMillis = window == null ? Long.MAX_VALUE : window.getBucketMillis();
+        this.bucketCount = window == null ? 1 : window.getBucketCount();
+        this.ring = new AtomicReferenceArray<>(bucketCount);
+        this.topN = topN;
+        lastBucket.set(bucketOf(clock.getAsLong()));
+    }
+
+    /**
+     * Resizes the board, keeping the counts. A board never lists more players than the capacity it
+     * was created with.
+     *
+     * @param topN Number of top players to include in the leaderboard.
+     */
+    @Override
+    public void createBoard(int topN) {
+        this.topN = topN;
+        version.incrementAndGet();
+        changeListener.run();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getSize() {
+        return topN;
+    }
+
+    /**
+     * @return the window the board covers, or null for an all-time board.
+     */
+    public TimeWindow getWindow() {
+        return window;
+    }
+
+    /**
+     * Every score counts towards its player's activity.
+     */
+    @Override
+    public boolean canAccept(PlayerScore score) {
+        return true;
+    }
+
+    /**
+     * Counts a score for its player in the current bucket.
+     *
+     * @param newScore Submitted score; its value is ignored.
+     * @throws LeaderboardUpdateFailureException If the bucket could not be updated.
+     */
+    @Override
+    public void publish(PlayerScore newScore) throws LeaderboardUpdateFailureException {
+        try {
+            Bucket bucket = bucketFor(bucketOf(clock.getAsLong()));
+            if (bucket == null) {
+                return; // The clock moved back behind a bucket that was already replaced
+            }
+            bucket.cache.addToCache(newScore);
+            version.incrementAndGet();
+            changeListener.run();
+        } catch (CacheInitializationException | CacheUpdateFailureException e) {
+            logger.error("Activity Leader Board Update failed - " + e.getMessage());
+            throw new LeaderboardUpdateFailureException(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the bucket for the index, taking over its ring slot if the slot still holds an older bucket.
+     */
+    private Bucket bucketFor(long index) throws CacheInitializationException {
+        int slot = (int) Math.floorMod(index, (long) bucketCount);
+        while (true) {
+            Bucket existing = ring.get(slot);
+            if (existing != null && existing.index == index) {
+                return existing;
+            }
+            if (existing != null && existing.index > index) {
+                return null;
+            }
+            Bucket fresh = new Bucket(index, new SpaceSavingCache(capacity), capacity);
+            if (ring.compareAndSet(slot, existing, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    @Override
+    public void setChangeListener(Runnable listener) {
+        this.changeListener = listener;
+    }
+
+    /**
+     * Merges the counters of every live bucket. Other nodes' summaries of the same board can be merged
+     * into the result with {@link HeavyHitterSummary#merge}.
+     *
+     * @return the board's summary over its window.
+     */
+    public HeavyHitterSummary getSummary() {
+        long currentBucket = bucketOf(clock.getAsLong());
+        List<HeavyHitterSummary> live = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && bucket.index > currentBucket - bucketCount && bucket.index <= currentBucket) {
+                live.add(bucket.cache.summarize());
+            }
+        }
+        if (live.size() == 1) {
+            return live.get(0);
+        }
+        return live.isEmpty() ? HeavyHitterSummary.EMPTY : HeavyHitterSummary.merge(live, capacity);
+    }
+
+    @Override
+    public List<PlayerScore> getTopNPlayers() throws LeaderboardNotInitializedException {
+        return getSnapshot().getPlayers();
+    }
+
+    /**
+     * @return the version the next snapshot will have, moved on if buckets fell out of the window, without merging the buckets.
+     */
+    @Override
+    public long getVersion() {
+        return slide(bucketOf(clock.getAsLong()));
+    }
+
+    /**
+     * Moves the version on once the clock reaches a later bucket, since older buckets then fall out of the window.
+     *
+     * @return the current version.
+     */
+    private long slide(long currentBucket) {
+        long seen = lastBucket.get();
+        if (currentBucket > seen && lastBucket.compareAndSet(seen, currentBucket)) {
+            version.incrementAndGet();
+        }
+        return version.get();
+    }
+
+    /**
+     * Retrieves the most active players, rebuilt from the live buckets only when a score was counted
+     * or the window slid since the last snapshot.
+     *
+     * @return Versioned snapshot of the top N players, each with their count as the score.
+     */
+    @Override
+    public BoardSnapshot getSnapshot() {
+        long currentBucket = bucketOf(clock.getAsLong());
+        long expected = slide(currentBucket);
+        BoardSnapshot current = snapshot.get();
+        if (current.getVersion() == expected) {
+            return current;
+        }
+        BoardSnapshot built = new BoardSnapshot(expected, getSummary().top(topN));
+        while (current.getVersion() < expected && !snapshot.compareAndSet(current, built)) {
+            current = snapshot.get();
+        }
+        return built;
+    }
+
+    @Override
+    public Optional<PlayerRank> getRank(String playerId) throws LeaderboardNotInitializedException {
+        List<PlayerScore> players = getTopNPlayers();
+        for (int i = 0; i < players.size(); i++) {
+            if (players.get(i).getPlayerId().equals(playerId)) {
+                return Optional.of(new PlayerRank(players.get(i), i + 1));
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public List<PlayerRank> getRange(long offset, int limit) throws LeaderboardNotInitializedException {
+        List<PlayerScore> players = getTopNPlayers();
+        List<PlayerRank> range = new ArrayList<>();
+        for (long i = offset; i < players.size() && range.size() < limit; i++) {
+            range.add(new PlayerRank(players.get((int) i), i + 1));
+        }
+        return range;
+    }
+
+    @Override
+    public List<PlayerRank> getNeighbourhood(String playerId, int radius) throws LeaderboardNotInitializedException {
+        Optional<PlayerRank> rank = getRank(playerId);
+        if (!rank.isPresent()) {
+            return Collections.emptyList();
+        }
+        long from = Math.max(0, rank.get().getRank() - 1 - radius);
+        return getRange(from, (int) (rank.get().getRank() - 1 - from) + radius + 1);
+    }
+
+    private long bucketOf(long epochMillis) {
+        return Math.floorDiv(epochMillis, bucketMillis);
+    }
+
+    /**
+     * One time bucket: the counts of the scores submitted while it was current.
+     */
+    private static final class Bucket {
+        private final long index;
+        private final SpaceSavingCache cache;
+
+        private Bucket(long index, SpaceSavingCache cache, int capacity) throws CacheInitializationException {
+            this.index = index;
+            this.cache = cache;
+            cache.initialize(capacity, Collections.emptyList());
+        }
+    }
+}
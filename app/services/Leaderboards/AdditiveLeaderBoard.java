@@ -0,0 +1,461 @@
+package services.Leaderboards;
+
+import exceptions.DatabaseStorageException;
+import exceptions.LeaderboardNotInitializedException;
+import exceptions.LeaderboardUpdateFailureException;
+import models.PlayerRank;
+import models.PlayerScore;
+import play.Logger;
+import services.Cache.BoardSnapshot;
+import services.Cache.PlayerRankIndex;
+import services.Cache.ScoreDistribution;
+import views.PlayerScoreRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Leaderboard whose scores are running totals: every published score is a delta added to the
+ * player's total, which may be negative and move the player down or off the top N.
+ *
+ * Publishing only adds to the player's {@link LongAdder}, so a hot player's points are summed in
+ * striped cells without a shared lock or a read of the current total. The players with pending points
+ * are queued, and the next read applies them all to an order-statistic index over every player of
+ * the board in one batch; the top N, ranks and ranges are then read from that index. Applied points
+ * are also collected per player and written to the database every flush interval as one batch of
+ * {@code score = score + ?} upserts, so points published between flushes are lost on a crash.
+ *
+ * Points published on other nodes arrive through {@link #publishReplicated}. They move the totals like
+ * local points but are never written, since their origin writes them; after replicated points may have
+ * been missed, {@link #resynchronize} reloads the stored totals.
+ *
+ * Scores ingested for the best-score boards never reach this board; its points are published to it
+ * directly.
+ */
+public class AdditiveLeaderBoard implements LeaderBoard {
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final String name;
+    private final PlayerScoreRepository scoreRepository;
+    private final PlayerRankIndex totals = new PlayerRankIndex(); // Applied total of every player on the board
+    private final ConcurrentHashMap<String, Accumulator> accumulators = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Accumulator> pending = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock applyLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock(); // Held while a flush is written, so reloads see it whole
+    private List<Accumulator> unpersisted = new ArrayList<>(); // Guarded by applyLock
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicReference<BoardSnapshot> snapshot = new AtomicReference<>(BoardSnapshot.EMPTY);
+    private final Thread flusher;
+    private volatile long flushIntervalNanos;
+    private volatile boolean running;
+    private volatile int topN;
+    private volatile boolean leaderBoardInitialized;
+    private volatile Runnable changeListener = () -> { };
+
+    /**
+     * Constructor for AdditiveLeaderBoard. The totals are loaded from the database; the periodic
+     * flush only runs once {@link #start} is called.
+     *
+     * @param name                Name of the board.
+     * @param playScoreRepository Score repository holding the board's totals.
+     * @param topN                Number of top players to include in the leaderboard.
+     * @throws LeaderboardNotInitializedException If the totals could not be loaded.
+     */
+    public AdditiveLeaderBoard(String name, PlayerScoreRepository playScoreRepository, int topN) throws LeaderboardNotInitializedException {
+        this.name = name;
+        this.scoreRepository = playScoreRepository;
+        this.flusher = new Thread(this::runFlusher, "additive-flush-" + name);
+        this.flusher.setDaemon(true);
+        createBoard(topN);
+    }
+
+    /**
+     * Loads the stored totals the first time, and afterwards only changes how many players the top N
+     * holds, since the index already ranks every player.
+     *
+     * @param topN Number of top players to include in the leaderboard.
+     * @throws LeaderboardNotInitializedException If the totals could not be loaded.
+     */
+    @Override
+    public void createBoard(int topN) throws LeaderboardNotInitializedException {
+        if (!leaderBoardInitialized) {
+            try {
+                scoreRepository.forEachBoardScore(name, total -> {
+                    accumulators.put(total.getPlayerId(), new Accumulator(total));
+                    totals.set(total);
+                });
+            } catch (DatabaseStorageException e) {
+                logger.error("Additive Leader Board " + name + " Initialization Failed - " + e.getMessage());
+                throw new LeaderboardNotInitializedException(e.getMessage());
+            }
+        }
+        this.topN = topN;
+        version.incrementAndGet();
+        leaderBoardInitialized = true;
+        changeListener.run();
+    }
+
+    /**
+     * Starts writing the applied totals to the database in the background.
+     *
+     * @param flushIntervalMillis Time between two flushes.
+     */
+    public void start(long flushIntervalMillis) {
+        flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        running = true;
+        flusher.start();
+    }
+
+    /**
+     * Stops the background flush and writes every point published so far.
+     */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } catch (DatabaseStorageException e) {
+            logger.error("Final flush of additive board " + name + " failed - " + e.getMessage());
+        }
+    }
+
+    private void runFlusher() {
+        while (running) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            try {
+                flush();
+            } catch (DatabaseStorageException e) {
+                logger.warn("Flush of additive board " + name + " failed, retrying next interval - " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getSize() {
+        return topN;
+    }
+
+    /**
+     * A score from the best-score ingestion path is not a delta, so it never changes this board.
+     *
+     * @param score Candidate score.
+     * @return always false.
+     */
+    @Override
+    public boolean canAccept(PlayerScore score) {
+        return false;
+    }
+
+    /**
+     * Adds points to a player's total. The index sees them on the next read.
+     *
+     * @param points Player and the points to add, negative to subtract.
+     * @throws LeaderboardUpdateFailureException If the board is not initialized.
+     */
+    @Override
+    public void publish(PlayerScore points) throws LeaderboardUpdateFailureException {
+        add(points, false);
+    }
+
+    /**
+     * Adds points published on another node to a player's total, without writing them again.
+     *
+     * @param points Player and the points to add, negative to subtract.
+     * @throws LeaderboardUpdateFailureException If the board is not initialized.
+     */
+    public void publishReplicated(PlayerScore points) throws LeaderboardUpdateFailureException {
+        add(points, true);
+    }
+
+    private void add(PlayerScore points, boolean replicated) throws LeaderboardUpdateFailureException {
+        if (!leaderBoardInitialized) {
+            throw new LeaderboardUpdateFailureException("LeaderBoard not yet initialized");
+        }
+        Accumulator accumulator = accumulators.get(points.getPlayerId());
+        if (accumulator == null) {
+            accumulator = accumulators.computeIfAbsent(points.getPlayerId(), playerId -> new Accumulator(playerId, points.getPlayerName()));
+        }
+        if (points.getPlayerName() != null && !points.getPlayerName().equals(accumulator.playerName)) {
+            accumulator.playerName = points.getPlayerName();
+        }
+        (replicated ? accumulator.replicated : accumulator.added).add(points.getScore());
+        if (accumulator.queued.compareAndSet(false, true)) {
+            pending.add(accumulator);
+        }
+        changeListener.run();
+    }
+
+    /**
+     * Applies every pending player's new points to the index in one batch.
+     */
+    private void applyPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        applyLock.lock();
+        try {
+            List<PlayerScore> changed = new ArrayList<>();
+            for (Accumulator accumulator = pending.poll(); accumulator != null; accumulator = pending.poll()) {
+                // Cleared before summing, so points added from here on queue the player again
+                accumulator.queued.set(false);
+                long added = accumulator.added.sum();
+                long replicated = accumulator.replicated.sum();
+                long local = added - accumulator.applied;
+                long delta = local + replicated - accumulator.appliedReplicated;
+                accumulator.applied = added;
+                accumulator.appliedReplicated = replicated;
+                if (local != 0) {
+                    accumulator.unpersisted += local;
+                    if (!accumulator.awaitingFlush) {
+                        accumulator.awaitingFlush = true;
+                        unpersisted.add(accumulator);
+                    }
+                }
+                if (delta == 0) {
+                    continue;
+                }
+                accumulator.total += delta;
+                changed.add(new PlayerScore(accumulator.playerId, accumulator.total, accumulator.playerName));
+            }
+            if (!changed.isEmpty()) {
+                totals.setAll(changed);
+                version.incrementAndGet();
+            }
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the points applied since the last flush to the database as one batch. Points of a failed
+     * batch are kept for the next flush.
+     *
+     * @throws DatabaseStorageException If the batch could not be written.
+     */
+    public void flush() throws DatabaseStorageException {
+        flushLock.lock();
+        try {
+            flushUnpersisted();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushUnpersisted() throws DatabaseStorageException {
+        List<Accumulator> taken;
+        List<PlayerScore> deltas;
+        applyLock.lock();
+        try {
+            applyPending();
+            if (unpersisted.isEmpty()) {
+                return;
+            }
+            taken = unpersisted;
+            unpersisted = new ArrayList<>();
+            deltas = new ArrayList<>(taken.size());
+            for (Accumulator accumulator : taken) {
+                deltas.add(new PlayerScore(accumulator.playerId, accumulator.unpersisted, accumulator.playerName));
+                accumulator.unpersisted = 0;
+                accumulator.awaitingFlush = false;
+            }
+        } finally {
+            applyLock.unlock();
+        }
+        try {
+            scoreRepository.addToBoardScores(name, deltas);
+        } catch (DatabaseStorageException e) {
+            applyLock.lock();
+            try {
+                for (int i = 0; i < taken.size(); i++) {
+                    Accumulator accumulator = taken.get(i);
+                    accumulator.unpersisted += deltas.get(i).getScore();
+                    if (!accumulator.awaitingFlush) {
+                        accumulator.awaitingFlush = true;
+                        unpersisted.add(accumulator);
+                    }
+                }
+            } finally {
+                applyLock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reloads the stored totals after replicated points may have been missed. Each player's total
+     * becomes the stored one plus the points published on this node and not yet written. Points
+     * replicated from other nodes are taken from the stored totals instead, so those replicated within
+     * about a flush interval of the reload may be missed or counted twice until the next reload.
+     *
+     * @throws LeaderboardNotInitializedException If the board is not initialized or the totals could not be read.
+     */
+    public void resynchronize() throws LeaderboardNotInitializedException {
+        checkInitialized();
+        List<PlayerScore> changed = new ArrayList<>();
+        flushLock.lock();
+        try {
+            Map<String, PlayerScore> stored = new HashMap<>();
+            try {
+                scoreRepository.forEachBoardScore(name, total -> stored.put(total.getPlayerId(), total));
+            } catch (DatabaseStorageException e) {
+                logger.error("Additive Leader Board " + name + " Resynchronization Failed - " + e.getMessage());
+                throw new LeaderboardNotInitializedException(e.getMessage());
+            }
+            applyLock.lock();
+            try {
+                applyPending();
+                for (PlayerScore total : stored.values()) {
+                    accumulators.computeIfAbsent(total.getPlayerId(), playerId -> new Accumulator(playerId, total.getPlayerName()));
+                }
+                for (Accumulator accumulator : accumulators.values()) {
+                    PlayerScore total = stored.get(accumulator.playerId);
+                    long reloaded = (total == null ? 0 : total.getScore()) + accumulator.unpersisted;
+                    if (reloaded != accumulator.total) {
+                        accumulator.total = reloaded;
+                        changed.add(new PlayerScore(accumulator.playerId, reloaded, accumulator.playerName));
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    totals.setAll(changed);
+                    version.incrementAndGet();
+                }
+            } finally {
+                applyLock.unlock();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+        if (!changed.isEmpty()) {
+            changeListener.run();
+        }
+    }
+
+    @Override
+    public void setChangeListener(Runnable listener) {
+        this.changeListener = listener;
+    }
+
+    @Override
+    public List<PlayerScore> getTopNPlayers() throws LeaderboardNotInitializedException {
+        return getSnapshot().getPlayers();
+    }
+
+    /**
+     * @return the version the next snapshot will have, after applying pending points, without building it.
+     * @throws LeaderboardNotInitializedException If leaderboard is not initialized.
+     */
+    @Override
+    public long getVersion() throws LeaderboardNotInitializedException {
+        checkInitialized();
+        applyPending();
+        return version.get();
+    }
+
+    /**
+     * Retrieves the top N totals, applying pending points first and rebuilding the snapshot only if
+     * that changed the board.
+     *
+     * @return Versioned snapshot of the top N players.
+     * @throws LeaderboardNotInitializedException If leaderboard is not initialized.
+     */
+    @Override
+    public BoardSnapshot getSnapshot() throws LeaderboardNotInitializedException {
+        checkInitialized();
+        applyPending();
+        long expected = version.get();
+        BoardSnapshot current = snapshot.get();
+        if (current.getVersion() == expected) {
+            return current;
+        }
+        List<PlayerScore> players = new ArrayList<>(topN);
+        for (PlayerRank rank : totals.getRange(0, topN)) {
+            players.add(new PlayerScore(rank.getPlayerId(), rank.getScore(), rank.getPlayerName()));
+        }
+        BoardSnapshot built = new BoardSnapshot(expected, players);
+        while (current.getVersion() < expected && !snapshot.compareAndSet(current, built)) {
+            current = snapshot.get();
+        }
+        return built;
+    }
+
+    @Override
+    public Optional<PlayerRank> getRank(String playerId) throws LeaderboardNotInitializedException {
+        checkInitialized();
+        applyPending();
+        return totals.getRank(playerId);
+    }
+
+    @Override
+    public List<PlayerRank> getRange(long offset, int limit) throws LeaderboardNotInitializedException {
+        checkInitialized();
+        applyPending();
+        return totals.getRange(offset, limit);
+    }
+
+    @Override
+    public List<PlayerRank> getNeighbourhood(String playerId, int radius) throws LeaderboardNotInitializedException {
+        checkInitialized();
+        applyPending();
+        return totals.getNeighbourhood(playerId, radius);
+    }
+
+    @Override
+    public Optional<ScoreDistribution> getDistribution() throws LeaderboardNotInitializedException {
+        checkInitialized();
+        applyPending();
+        return Optional.of(totals.getDistribution());
+    }
+
+    private void checkInitialized() throws LeaderboardNotInitializedException {
+        if (!leaderBoardInitialized) {
+            logger.error("Leader Board Not Initialized - Cannot read additive board " + name);
+            throw new LeaderboardNotInitializedException("LeaderBoard not yet initialized");
+        }
+    }
+
+    /**
+     * One player's points. Publishers only touch the adders, the name and the queued flag; the rest is
+     * guarded by the apply lock.
+     */
+    private static final class Accumulator {
+        private final String playerId;
+        private volatile String playerName;
+        private final LongAdder added = new LongAdder(); // Every point published since the board was loaded
+        private final LongAdder replicated = new LongAdder(); // Every point replicated from other nodes
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private long applied;     // Part of added already in total
+        private long appliedReplicated; // Part of replicated already in total
+        private long total;       // Total in the index
+        private long unpersisted; // Part of total not yet written to the database
+        private boolean awaitingFlush;
+
+        private Accumulator(String playerId, String playerName) {
+            this.playerId = playerId;
+            this.playerName = playerName;
+        }
+
+        private Accumulator(PlayerScore stored) {
+            this(stored.getPlayerId(), stored.getPlayerName());
+            this.total = stored.getScore();
+        }
+    }
+}
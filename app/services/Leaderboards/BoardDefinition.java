@@ -0,0 +1,72 @@
+package services.Leaderboards;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * What a registered board is: its kind, name, window and size. This is all another node needs to
+ * register the same board, so it is what board registrations are replicated as.
+ */
+public final class BoardDefinition {
+
+    public enum Kind {
+        ALL_TIME, WINDOWED, ADDITIVE, ACTIVITY
+    }
+
+    private final Kind kind;
+    private final String name;
+    private final TimeWindow window;
+    private final int size;
+
+    /**
+     * @param kind   Kind of board.
+     * @param name   Board name.
+     * @param window Window a windowed board covers; for an activity board null means all-time counts.
+     * @param size   Number of top players on the board.
+     */
+    @JsonCreator
+    public BoardDefinition(@JsonProperty("kind") Kind kind, @JsonProperty("name") String name, @JsonProperty("window") TimeWindow window, @JsonProperty("size") int size) {
+        this.kind = kind;
+        this.name = name;
+        this.window = window;
+        this.size = size;
+    }
+
+    /**
+     * @param board A registered board.
+     * @return the definition that registers the board as it is now.
+     */
+    public static BoardDefinition of(LeaderBoard board) {
+        if (board instanceof WindowedLeaderBoard) {
+            return new BoardDefinition(Kind.WINDOWED, board.getName(), ((WindowedLeaderBoard) board).getWindow(), board.getSize());
+        }
+        if (board instanceof AdditiveLeaderBoard) {
+            return new BoardDefinition(Kind.ADDITIVE, board.getName(), null, board.getSize());
+        }
+        if (board instanceof ActivityLeaderBoard) {
+            return new BoardDefinition(Kind.ACTIVITY, board.getName(), ((ActivityLeaderBoard) board).getWindow(), board.getSize());
+        }
+        return new BoardDefinition(Kind.ALL_TIME, board.getName(), null, board.getSize());
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public TimeWindow getWindow() {
+        return window;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " leaderboard " + name + (window == null ? "" : " over " + window.boardName()) + " with size " + size;
+    }
+}
@@ -0,0 +1,29 @@
+package services.Leaderboards;
+
+import exceptions.LeaderboardNotInitializedException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Turns a read of an in-memory board into an already completed stage.
+ */
+final class CompletedReads {
+
+    interface Read<T> {
+        T get() throws LeaderboardNotInitializedException;
+    }
+
+    private CompletedReads() {
+    }
+
+    static <T> CompletionStage<T> of(Read<T> read) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            result.complete(read.get());
+        } catch (LeaderboardNotInitializedException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+}
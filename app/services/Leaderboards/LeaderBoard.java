@@ -3,14 +3,68 @@ package services.Leaderboards;
 import exceptions.CacheInitializationException;
 import exceptions.LeaderboardNotInitializedException;
 import exceptions.LeaderboardUpdateFailureException;
+import models.PlayerRank;
 import models.PlayerScore;
+import services.Cache.BoardSnapshot;
+import services.Cache.ScoreDistribution;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
 
 public interface LeaderBoard {
 
 
+    public String getName();
+    public int getSize();
+    public boolean canAccept(PlayerScore newScore);
     public void createBoard(int topN) throws CacheInitializationException, LeaderboardNotInitializedException;
     public List<PlayerScore> getTopNPlayers() throws LeaderboardNotInitializedException;
+    public BoardSnapshot getSnapshot() throws LeaderboardNotInitializedException;
     public void publish(PlayerScore newScore) throws LeaderboardUpdateFailureException;
+    public Optional<PlayerRank> getRank(String playerId) throws LeaderboardNotInitializedException;
+    public List<PlayerRank> getRange(long offset, int limit) throws LeaderboardNotInitializedException;
+    public List<PlayerRank> getNeighbourhood(String playerId, int radius) throws LeaderboardNotInitializedException;
+    public void setChangeListener(Runnable listener);
+
+    // The version of the snapshot a read would return now; it only advances when the top N may have
+    // changed, so a client holding it can skip the read. Boards override it with a counter they keep,
+    // since the default builds the snapshot it lets clients skip
+
+    public default long getVersion() throws LeaderboardNotInitializedException {
+        return getSnapshot().getVersion();
+    }
+
+    // Boards that index every player's score keep a histogram of them; the others have none
+
+    public default Optional<ScoreDistribution> getDistribution() throws LeaderboardNotInitializedException {
+        return Optional.empty();
+    }
+
+    // Async reads complete straight away for boards held in memory; boards that wait on other nodes
+    // override them so that no thread blocks on the network
+
+    public default CompletionStage<BoardSnapshot> getSnapshotAsync() {
+        return CompletedReads.of(this::getSnapshot);
+    }
+
+    public default CompletionStage<Long> getVersionAsync() {
+        return CompletedReads.of(this::getVersion);
+    }
+
+    public default CompletionStage<Optional<PlayerRank>> getRankAsync(String playerId) {
+        return CompletedReads.of(() -> getRank(playerId));
+    }
+
+    public default CompletionStage<List<PlayerRank>> getRangeAsync(long offset, int limit) {
+        return CompletedReads.of(() -> getRange(offset, limit));
+    }
+
+    public default CompletionStage<List<PlayerRank>> getNeighbourhoodAsync(String playerId, int radius) {
+        return CompletedReads.of(() -> getNeighbourhood(playerId, radius));
+    }
+
+    public default CompletionStage<Optional<ScoreDistribution>> getDistributionAsync() {
+        return CompletedReads.of(this::getDistribution);
+    }
 }
@@ -0,0 +1,428 @@
+package services.Leaderboards;
+
+import Constants.Constants;
+import com.typesafe.config.Config;
+import exceptions.CacheInitializationException;
+import exceptions.DatabaseStorageException;
+import exceptions.LeaderboardNotInitializedException;
+import models.PlayerScore;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
+import services.Cache.CacheServices;
+import services.Cache.PlayerRankIndex;
+import services.Cache.RankIndexStore;
+import services.Sharding.ConsistentHashRing;
+import services.Sharding.ShardTransport;
+import views.PlayerScoreRepository;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Registry of independently named leaderboards. Every board gets its own cache instance,
+ * and registering a name that already exists returns (and if needed resizes) the existing board.
+ * Besides the all-time default board, one windowed board per {@link TimeWindow} is created at startup.
+ * Score events older than the longest window are pruned at startup and then once per bucket of that window.
+ * Additive boards flush their totals in the background and are flushed one last time on shutdown.
+ * Boards {@link #define defined} through this node are handed to the definition listener, so other
+ * nodes can register them too. A node that may have missed updates can {@link #resynchronize} its
+ * boards with the database.
+ */
+@Singleton
+public class LeaderBoardRegistry {
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final ConcurrentMap<String, LeaderBoard> boards = new ConcurrentHashMap<>();
+    private final Provider<CacheServices> cacheProvider;
+    private final PlayerRankIndex rankIndex;
+    private final PlayerScoreRepository scoreRepository;
+    private final RankIndexStore indexStore;
+    private final boolean sharded;
+    private final long additiveFlushMillis; // 0 leaves flushing additive boards to the caller
+    private final int activityCapacity;
+    private final long longestWindowMillis;
+    private final Object additiveCreation = new Object(); // Held while an additive board loads its totals
+    private volatile Consumer<BoardDefinition> definitionListener = definition -> { };
+
+    @Inject
+    public LeaderBoardRegistry(Provider<CacheServices> cacheProvider, PlayerRankIndex rankIndex, PlayerScoreRepository playScoreRepository, Config config, Provider<ShardTransport> shardTransport, RankIndexStore indexStore, ApplicationLifecycle lifecycle) throws LeaderboardNotInitializedException, CacheInitializationException {
+        this(cacheProvider, rankIndex, playScoreRepository, indexStore, config.getBoolean("leaderboard.sharding.enabled")
+                ? newShardedDefault(config, shardTransport.get(), playScoreRepository)
+                : null, config.getDuration("leaderboard.additive.flushInterval", TimeUnit.MILLISECONDS),
+                (int) Math.ceil(1 / config.getDouble("leaderboard.activity.epsilon")));
+        ScheduledExecutorService pruner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "leaderboard-prune");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // A window only slides one bucket at a time, so its events cannot become prunable any sooner
+        long pruneIntervalMillis = longestWindow().getBucketMillis();
+        pruner.scheduleWithFixedDelay(this::pruneScoreEvents, pruneIntervalMillis, pruneIntervalMillis, TimeUnit.MILLISECONDS);
+        lifecycle.addStopHook(() -> CompletableFuture.runAsync(() -> {
+            pruner.shutdownNow();
+            stopAdditiveBoards();
+        }));
+    }
+
+    public LeaderBoardRegistry(Provider<CacheServices> cacheProvider, PlayerRankIndex rankIndex, PlayerScoreRepository playScoreRepository) throws LeaderboardNotInitializedException, CacheInitializationException {
+        this(cacheProvider, rankIndex, playScoreRepository, RankIndexStore.disabled(), null, 0, 1000);
+    }
+
+    private LeaderBoardRegistry(Provider<CacheServices> cacheProvider, PlayerRankIndex rankIndex, PlayerScoreRepository playScoreRepository, RankIndexStore indexStore, LeaderBoard shardedDefault, long additiveFlushMillis, int activityCapacity) throws LeaderboardNotInitializedException, CacheInitializationException {
+        this.cacheProvider = cacheProvider;
+        this.rankIndex = rankIndex;
+        this.scoreRepository = playScoreRepository;
+        this.indexStore = indexStore;
+        this.sharded = shardedDefault != null;
+        this.additiveFlushMillis = additiveFlushMillis;
+        this.activityCapacity = activityCapacity;
+        if (sharded) {
+            // The shards index every player, so the single-node rank index is not loaded
+            register(shardedDefault);
+        } else {
+            loadRankIndex(indexStore);
+            getOrCreate(Constants.DEFAULT_LEADERBOARD_NAME, Constants.DEFAULT_LEADERBOARD_SIZE);
+        }
+        for (TimeWindow window : TimeWindow.values()) {
+            getOrCreateWindowed(window.boardName(), window, Constants.DEFAULT_LEADERBOARD_SIZE);
+        }
+        this.longestWindowMillis = longestWindow().getLengthMillis();
+        pruneScoreEvents();
+    }
+
+    private static TimeWindow longestWindow() {
+        TimeWindow longest = TimeWindow.values()[0];
+        for (TimeWindow window : TimeWindow.values()) {
+            if (window.getLengthMillis() > longest.getLengthMillis()) {
+                longest = window;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Restores the rank index from its local checkpoint and log, falling back to one streaming pass
+     * over the database. The index is kept current incrementally afterwards.
+     */
+    private void loadRankIndex(RankIndexStore indexStore) {
+        if (!indexStore.restore(rankIndex)) {
+            rankIndex.rebuildFrom(scoreRepository::forEachScore);
+            try {
+                indexStore.checkpoint(rankIndex);
+            } catch (IOException e) {
+                logger.error("Initial rank index checkpoint failed - " + e.getMessage());
+            }
+        }
+        indexStore.checkpointPeriodically(rankIndex);
+    }
+
+    /**
+     * Brings the boards back in line with the database after updates may have been missed, such as
+     * replication events lost between nodes. Scores stored since the given time are read from the
+     * score events and merged into the rank index, which only ever raises a score, so updates applied
+     * meanwhile are kept; only if those events have already been pruned are all stored scores read.
+     * The stored scores are then merged into the live all-time and windowed boards rather than
+     * reloading them, so publishes racing the merge are kept and board versions keep moving forward.
+     * Additive boards reload their stored totals; activity boards count in memory only and are left
+     * as they are.
+     *
+     * @param sinceMillis Time from which scores may have been missed.
+     * @throws CacheInitializationException      If a board's cache could not take the stored scores.
+     * @throws LeaderboardNotInitializedException If the stored scores could not be read.
+     */
+    public void resynchronize(long sinceMillis) throws CacheInitializationException, LeaderboardNotInitializedException {
+        if (!sharded) {
+            Consumer<PlayerScore> merge = score -> {
+                if (rankIndex.update(score)) {
+                    indexStore.record(score);
+                }
+            };
+            if (sinceMillis > System.currentTimeMillis() - longestWindowMillis) {
+                try {
+                    scoreRepository.forEachScoreEventSince(sinceMillis, (score, scoredAt) -> merge.accept(score));
+                } catch (DatabaseStorageException e) {
+                    logger.error("Rank index resynchronization failed - " + e.getMessage());
+                    throw new LeaderboardNotInitializedException(e.getMessage());
+                }
+            } else {
+                scoreRepository.forEachScore(merge);
+            }
+        }
+        for (LeaderBoard board : boards.values()) {
+            if (board instanceof LeaderBoardServiceImp) {
+                ((LeaderBoardServiceImp) board).resynchronize();
+            } else if (board instanceof WindowedLeaderBoard) {
+                ((WindowedLeaderBoard) board).resynchronize(sinceMillis);
+            } else if (board instanceof AdditiveLeaderBoard) {
+                ((AdditiveLeaderBoard) board).resynchronize();
+            }
+        }
+        logger.info("Resynchronized " + boards.size() + " leaderboards with the scores stored since " + sinceMillis);
+    }
+
+    private static LeaderBoard newShardedDefault(Config config, ShardTransport transport, PlayerScoreRepository playScoreRepository) {
+        ConsistentHashRing ring = new ConsistentHashRing(transport.getShardCount(), config.getInt("leaderboard.sharding.virtualNodes"));
+        return new ShardedLeaderBoard(Constants.DEFAULT_LEADERBOARD_NAME, ring, transport, playScoreRepository,
+                Constants.DEFAULT_LEADERBOARD_SIZE, config.getDuration("leaderboard.sharding.timeout", TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * @return true if the default board is sharded and the single-node rank index is unused.
+     */
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    /**
+     * Sets the callback given every definition that created or resized a board through {@link #define}.
+     *
+     * @param listener Callback to run on the defining thread; it must not block.
+     */
+    public void setDefinitionListener(Consumer<BoardDefinition> listener) {
+        this.definitionListener = listener;
+    }
+
+    /**
+     * Returns the defined board, creating or resizing it like the getOrCreate method for its kind,
+     * and hands the board's definition to the definition listener if that changed anything.
+     *
+     * @param definition Kind, name, window and size of the board.
+     * @return The registered board.
+     * @throws CacheInitializationException      If cache initialization fails.
+     * @throws LeaderboardNotInitializedException If leaderboard initialization fails.
+     * @throws IllegalArgumentException          If a different board with that name exists, or the definition is invalid.
+     */
+    public LeaderBoard define(BoardDefinition definition) throws CacheInitializationException, LeaderboardNotInitializedException {
+        LeaderBoard existing = boards.get(definition.getName());
+        int existingSize = existing == null ? 0 : existing.getSize();
+        LeaderBoard board = applyDefinition(definition);
+        if (board != existing || board.getSize() != existingSize) {
+            definitionListener.accept(BoardDefinition.of(board));
+        }
+        return board;
+    }
+
+    /**
+     * Registers a board defined on another node, like {@link #define} but without handing the
+     * definition to the definition listener again.
+     *
+     * @param definition Kind, name, window and size of the board.
+     * @return The registered board.
+     * @throws CacheInitializationException      If cache initialization fails.
+     * @throws LeaderboardNotInitializedException If leaderboard initialization fails.
+     * @throws IllegalArgumentException          If a different board with that name exists, or the definition is invalid.
+     */
+    public LeaderBoard applyReplicated(BoardDefinition definition) throws CacheInitializationException, LeaderboardNotInitializedException {
+        return applyDefinition(definition);
+    }
+
+    private LeaderBoard applyDefinition(BoardDefinition definition) throws CacheInitializationException, LeaderboardNotInitializedException {
+        if (definition.getKind() == null || definition.getName() == null || definition.getSize() <= 0) {
+            throw new IllegalArgumentException("Invalid leaderboard definition: " + definition);
+        }
+        switch (definition.getKind()) {
+            case WINDOWED:
+                if (definition.getWindow() == null) {
+                    throw new IllegalArgumentException("Windowed leaderboard " + definition.getName() + " needs a window");
+                }
+                return getOrCreateWindowed(definition.getName(), definition.getWindow(), definition.getSize());
+            case ADDITIVE:
+                return getOrCreateAdditive(definition.getName(), definition.getSize());
+            case ACTIVITY:
+                return getOrCreateActivity(definition.getName(), definition.getWindow(), definition.getSize());
+            default:
+                return getOrCreate(definition.getName(), definition.getSize());
+        }
+    }
+
+    /**
+     * Returns the named board, creating it with the given size if it does not exist
+     * and resizing it if it exists with a different size.
+     *
+     * @param name Board name.
+     * @param topN Number of top players on the board.
+     * @return The registered board.
+     * @throws CacheInitializationException      If cache initialization fails.
+     * @throws LeaderboardNotInitializedException If leaderboard initialization fails.
+     * @throws IllegalArgumentException          If a windowed board with that name exists.
+     */
+    public LeaderBoard getOrCreate(String name, int topN) throws CacheInitializationException, LeaderboardNotInitializedException {
+        LeaderBoard board = boards.get(name);
+        if (board == null) {
+            LeaderBoard created = new LeaderBoardServiceImp(name, cacheProvider.get(), rankIndex, scoreRepository, topN);
+            board = boards.putIfAbsent(name, created);
+            if (board == null) {
+                logger.info("Registered leaderboard " + name + " with size " + topN + ", " + boards.size() + " boards registered");
+                return created;
+            }
+        }
+        if (board instanceof WindowedLeaderBoard) {
+            throw new IllegalArgumentException("Leaderboard " + name + " already exists as a windowed board");
+        }
+        if (board instanceof AdditiveLeaderBoard) {
+            throw new IllegalArgumentException("Leaderboard " + name + " already exists as an additive board");
+        }
+        if (board instanceof ActivityLeaderBoard) {
+            throw new IllegalArgumentException("Leaderboard " + name + " already exists as an activity board");
+        }
+        if (board.getSize() != topN) {
+            board.createBoard(topN);
+        }
+        return board;
+    }
+
+    /**
+     * Returns the named windowed board, creating it if it does not exist and resizing it if it
+     * exists with a different size.
+     *
+     * @param name   Board name.
+     * @param window Window the board covers.
+     * @param topN   Number of top players on the board.
+     * @return The registered board.
+     * @throws CacheInitializationException      If cache initialization fails.
+     * @throws LeaderboardNotInitializedException If leaderboard initialization fails.
+     * @throws IllegalArgumentException          If a board with that name exists but is not a board over that window.
+     */
+    public LeaderBoard getOrCreateWindowed(String name, TimeWindow window, int topN) throws CacheInitializationException, LeaderboardNotInitializedException {
+        LeaderBoard board = boards.get(name);
+        if (board == null) {
+            LeaderBoard created = new WindowedLeaderBoard(name, window, cacheProvider, scoreRepository, topN, System::currentTimeMillis);
+            board = boards.putIfAbsent(name, created);
+            if (board == null) {
+                logger.info("Registered " + window.boardName() + " leaderboard " + name + " with size " + topN + ", " + boards.size() + " boards registered");
+                return created;
+            }
+        }
+        if (!(board instanceof WindowedLeaderBoard) || ((WindowedLeaderBoard) board).getWindow() != window) {
+            throw new IllegalArgumentException("Leaderboard " + name + " already exists with a different window");
+        }
+        if (board.getSize() != topN) {
+            board.createBoard(topN);
+        }
+        return board;
+    }
+
+    /**
+     * Returns the named additive board, creating it from its stored totals if it does not exist and
+     * resizing it if it exists with a different size.
+     *
+     * @param name Board name.
+     * @param topN Number of top players on the board.
+     * @return The registered board.
+     * @throws LeaderboardNotInitializedException If the board's totals could not be loaded.
+     * @throws IllegalArgumentException          If a board with that name exists but is not additive.
+     */
+    public LeaderBoard getOrCreateAdditive(String name, int topN) throws LeaderboardNotInitializedException {
+        LeaderBoard board = boards.get(name);
+        if (board == null) {
+            // Loading the totals reads every stored row of the board, so concurrent creators wait for the first
+            synchronized (additiveCreation) {
+                board = boards.get(name);
+                if (board == null) {
+                    AdditiveLeaderBoard created = new AdditiveLeaderBoard(name, scoreRepository, topN);
+                    board = boards.putIfAbsent(name, created);
+                    if (board == null) {
+                        if (additiveFlushMillis > 0) {
+                            created.start(additiveFlushMillis);
+                        }
+                        logger.info("Registered additive leaderboard " + name + " with size " + topN + ", " + boards.size() + " boards registered");
+                        return created;
+                    }
+                }
+            }
+        }
+        if (!(board instanceof AdditiveLeaderBoard)) {
+            throw new IllegalArgumentException("Leaderboard " + name + " already exists and is not additive");
+        }
+        if (board.getSize() != topN) {
+            ((AdditiveLeaderBoard) board).createBoard(topN);
+        }
+        return board;
+    }
+
+    /**
+     * Returns the named activity board, creating it if it does not exist and resizing it if it exists
+     * with a different size. Its capacity follows from leaderboard.activity.epsilon.
+     *
+     * @param name   Board name.
+     * @param window Window the board covers, or null for all-time counts.
+     * @param topN   Number of top players on the board.
+     * @return The registered board.
+     * @throws IllegalArgumentException If a board with that name exists but is not an activity board over that window.
+     */
+    public LeaderBoard getOrCreateActivity(String name, TimeWindow window, int topN) {
+        LeaderBoard board = boards.get(name);
+        if (board == null) {
+            LeaderBoard created = new ActivityLeaderBoard(name, window, activityCapacity, topN, System::currentTimeMillis);
+            board = boards.putIfAbsent(name, created);
+            if (board == null) {
+                logger.info("Registered activity leaderboard " + name + " with size " + topN + " and " + activityCapacity + " counters, " + boards.size() + " boards registered");
+                return created;
+            }
+        }
+        if (!(board instanceof ActivityLeaderBoard) || ((ActivityLeaderBoard) board).getWindow() != window) {
+            throw new IllegalArgumentException("Leaderboard " + name + " already exists and is not an activity board over that window");
+        }
+        if (board.getSize() != topN) {
+            ((ActivityLeaderBoard) board).createBoard(topN);
+        }
+        return board;
+    }
+
+    private void stopAdditiveBoards() {
+        for (LeaderBoard board : boards.values()) {
+            if (board instanceof AdditiveLeaderBoard) {
+                ((AdditiveLeaderBoard) board).stop();
+            }
+        }
+    }
+
+    /**
+     * Deletes the score events that have slid out of every window; the windowed boards never read them again.
+     */
+    private void pruneScoreEvents() {
+        try {
+            int deleted = scoreRepository.deleteScoreEventsBefore(System.currentTimeMillis() - longestWindowMillis);
+            logger.info("Pruned " + deleted + " score events older than the longest window");
+        } catch (DatabaseStorageException e) {
+            logger.warn("Could not prune score events - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Registers an externally built board, replacing any board with the same name.
+     *
+     * @param board Board to register.
+     */
+    public void register(LeaderBoard board) {
+        boards.put(board.getName(), board);
+    }
+
+    public Optional<LeaderBoard> get(String name) {
+        return Optional.ofNullable(boards.get(name));
+    }
+
+    public LeaderBoard getDefault() {
+        return boards.get(Constants.DEFAULT_LEADERBOARD_NAME);
+    }
+
+    /**
+     * @return live view of all registered boards.
+     */
+    public Collection<LeaderBoard> getBoards() {
+        return Collections.unmodifiableCollection(boards.values());
+    }
+}
@@ -1,49 +1,54 @@
 package services.Leaderboards;
 
-import com.google.inject.Inject;
-
-import Constants.Constants;
-
 import exceptions.CacheInitializationException;
 import exceptions.CacheUpdateFailureException;
 import exceptions.LeaderboardNotInitializedException;
 import exceptions.LeaderboardUpdateFailureException;
+import models.PlayerRank;
 import models.PlayerScore;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import play.Logger;
+import services.Cache.BoardSnapshot;
 import services.Cache.CacheServices;
-import services.Scores.ScoreIngestionToLeaderBoards;
+import services.Cache.PlayerRankIndex;
+import services.Cache.ScoreDistribution;
 import views.PlayerScoreRepository;
 
 /**
- * Implementation of LeaderBoard interface.
+ * Implementation of LeaderBoard interface. Each instance is one named board with its own cache;
+ * instances are created and tracked by {@link LeaderBoardRegistry}.
  */
 public class LeaderBoardServiceImp implements LeaderBoard {
 
+    private final String name;
     private final CacheServices cache;
+    private final PlayerRankIndex rankIndex;
     private final PlayerScoreRepository scoreRepository;
-    private final ScoreIngestionToLeaderBoards scoreIngestor;
     private final Logger.ALogger logger = Logger.of(this.getClass());
-    private boolean leaderBoardInitialized;
+    private volatile int topN;
+    private volatile boolean leaderBoardInitialized;
 
     /**
      * Constructor for LeaderBoardServiceImp.
      *
-     * @param cache            Cache service for leaderboard.
+     * @param name             Name of the board.
+     * @param cache            Cache service for this board only.
+     * @param rankIndex        Rank index over all players.
      * @param playScoreRepository Score repository for player scores.
-     * @param scoreIngestor    Score ingestion service.
+     * @param topN             Number of top players to include in the leaderboard.
      * @throws LeaderboardNotInitializedException If leaderboard initialization fails.
      * @throws CacheInitializationException      If cache initialization fails.
      */
-    @Inject
-    public LeaderBoardServiceImp(CacheServices cache, PlayerScoreRepository playScoreRepository, ScoreIngestionToLeaderBoards scoreIngestor) throws LeaderboardNotInitializedException, CacheInitializationException {
-        this.scoreIngestor = scoreIngestor;
+    public LeaderBoardServiceImp(String name, CacheServices cache, PlayerRankIndex rankIndex, PlayerScoreRepository playScoreRepository, int topN) throws LeaderboardNotInitializedException, CacheInitializationException {
+        this.name = name;
         this.cache = cache;
+        this.rankIndex = rankIndex;
         this.scoreRepository = playScoreRepository;
-        leaderBoardInitialized = true;
-        createBoard(Constants.DEFAULT_LEADERBOARD_SIZE);
+        createBoard(topN);
     }
 
     /**
@@ -59,16 +64,17 @@ public class LeaderBoardServiceImp implements LeaderBoard {
     }
 
     /**
-     * Initializes the leaderboard with topN players from the repository.
+     * Initializes the leaderboard with the topN players, taken from the loaded rank index when there
+     * is one and selected by the repository otherwise.
      *
      * @param topN Number of top players to include in the leaderboard.
      * @throws LeaderboardNotInitializedException If leaderboard initialization fails.
      */
     private void initializeBoard(int topN) throws LeaderboardNotInitializedException {
         try {
-            List<PlayerScore> allScores = scoreRepository.findAll();
-            cache.initialize(topN, allScores);
-            scoreIngestor.registerLeaderBoard(this);
+            List<PlayerScore> topScores = rankIndex.size() > 0 ? topOfRankIndex(topN) : scoreRepository.findTopScores(topN);
+            cache.initialize(topN, topScores);
+            this.topN = topN;
             leaderBoardInitialized = true;
         } catch (CacheInitializationException e) {
             logger.error("Leader Board Initialization Failed - " + e.getMessage());
@@ -76,6 +82,55 @@ public class LeaderBoardServiceImp implements LeaderBoard {
         }
     }
 
+    /**
+     * Merges the current top N of the rank index, or of the repository if the index is empty, into
+     * the live cache instead of re-initializing it. Scores on this board only ever rise, so scores
+     * published meanwhile are kept and the version only moves forward.
+     *
+     * @throws LeaderboardNotInitializedException If the cache could not take the scores.
+     */
+    public void resynchronize() throws LeaderboardNotInitializedException {
+        int size = topN;
+        List<PlayerScore> topScores = rankIndex.size() > 0 ? topOfRankIndex(size) : scoreRepository.findTopScores(size);
+        try {
+            for (PlayerScore score : topScores) {
+                cache.addToCache(score);
+            }
+        } catch (CacheUpdateFailureException e) {
+            logger.error("Leader Board Resynchronization Failed - " + e.getMessage());
+            throw new LeaderboardNotInitializedException(e.getMessage());
+        }
+    }
+
+    private List<PlayerScore> topOfRankIndex(int topN) {
+        List<PlayerScore> topScores = new ArrayList<>(topN);
+        for (PlayerRank rank : rankIndex.getRange(0, topN)) {
+            topScores.add(new PlayerScore(rank.getPlayerId(), rank.getScore(), rank.getPlayerName()));
+        }
+        return topScores;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getSize() {
+        return topN;
+    }
+
+    /**
+     * Checks whether a score could change this board, without locking.
+     *
+     * @param score Candidate score.
+     * @return false if the board is full and the score cannot beat its cut-off.
+     */
+    @Override
+    public boolean canAccept(PlayerScore score) {
+        return cache.canAccept(score);
+    }
+
     /**
      * Retrieves the top N players from the leaderboard.
      *
@@ -91,6 +146,33 @@ public class LeaderBoardServiceImp implements LeaderBoard {
         return cache.getTopNPlayers();
     }
 
+    /**
+     * Retrieves the current immutable snapshot of the leaderboard.
+     *
+     * @return Versioned snapshot of the top N players with its pre-encoded JSON.
+     * @throws LeaderboardNotInitializedException If leaderboard is not initialized.
+     */
+    @Override
+    public BoardSnapshot getSnapshot() throws LeaderboardNotInitializedException {
+        if (!leaderBoardInitialized) {
+            logger.error("Leader Board Not Initialized - Cannot retrieve snapshot");
+            throw new LeaderboardNotInitializedException("LeaderBoard not yet initialized");
+        }
+        return cache.getSnapshot();
+    }
+
+    /**
+     * @return the cache's version, read without building a snapshot.
+     * @throws LeaderboardNotInitializedException If leaderboard is not initialized.
+     */
+    @Override
+    public long getVersion() throws LeaderboardNotInitializedException {
+        if (!leaderBoardInitialized) {
+            throw new LeaderboardNotInitializedException("LeaderBoard not yet initialized");
+        }
+        return cache.getVersion();
+    }
+
     /**
      * Publishes a new score to the leaderboard.
      *
@@ -106,4 +188,79 @@ public class LeaderBoardServiceImp implements LeaderBoard {
             throw new LeaderboardUpdateFailureException(e.getMessage());
         }
     }
+
+    /**
+     * Sets the callback run whenever the cached top N changes.
+     *
+     * @param listener Callback to run on the writing thread.
+     */
+    @Override
+    public void setChangeListener(Runnable listener) {
+        cache.setChangeListener(listener);
+    }
+
+    /**
+     * Retrieves a player's rank among all players.
+     *
+     * @param playerId Player to look up.
+     * @return the player's rank, or empty if the player has no recorded score.
+     * @throws LeaderboardNotInitializedException If leaderboard is not initialized.
+     */
+    @Override
+    public Optional<PlayerRank> getRank(String playerId) throws LeaderboardNotInitializedException {
+        if (!leaderBoardInitialized) {
+            logger.error("Leader Board Not Initialized - Cannot retrieve player rank");
+            throw new LeaderboardNotInitializedException("LeaderBoard not yet initialized");
+        }
+        return rankIndex.getRank(playerId);
+    }
+
+    /**
+     * Retrieves a page of players in rank order.
+     *
+     * @param offset Number of players to skip from the top.
+     * @param limit  Maximum number of players to return.
+     * @return List of ranked players.
+     * @throws LeaderboardNotInitializedException If leaderboard is not initialized.
+     */
+    @Override
+    public List<PlayerRank> getRange(long offset, int limit) throws LeaderboardNotInitializedException {
+        if (!leaderBoardInitialized) {
+            logger.error("Leader Board Not Initialized - Cannot retrieve range");
+            throw new LeaderboardNotInitializedException("LeaderBoard not yet initialized");
+        }
+        return rankIndex.getRange(offset, limit);
+    }
+
+    /**
+     * Retrieves the players ranked around the given player.
+     *
+     * @param playerId Player at the centre of the neighbourhood.
+     * @param radius   Number of players to include above and below.
+     * @return List of ranked players, empty if the player has no recorded score.
+     * @throws LeaderboardNotInitializedException If leaderboard is not initialized.
+     */
+    @Override
+    public List<PlayerRank> getNeighbourhood(String playerId, int radius) throws LeaderboardNotInitializedException {
+        if (!leaderBoardInitialized) {
+            logger.error("Leader Board Not Initialized - Cannot retrieve neighbourhood");
+            throw new LeaderboardNotInitializedException("LeaderBoard not yet initialized");
+        }
+        return rankIndex.getNeighbourhood(playerId, radius);
+    }
+
+    /**
+     * Retrieves the histogram of every player's best score, kept by the rank index.
+     *
+     * @return the score distribution over all players.
+     * @throws LeaderboardNotInitializedException If leaderboard is not initialized.
+     */
+    @Override
+    public Optional<ScoreDistribution> getDistribution() throws LeaderboardNotInitializedException {
+        if (!leaderBoardInitialized) {
+            logger.error("Leader Board Not Initialized - Cannot retrieve distribution");
+            throw new LeaderboardNotInitializedException("LeaderBoard not yet initialized");
+        }
+        return Optional.of(rankIndex.getDistribution());
+    }
 }
@@ -0,0 +1,403 @@
+package services.Leaderboards;
+
+import Constants.Constants;
+import exceptions.LeaderboardNotInitializedException;
+import exceptions.LeaderboardUpdateFailureException;
+import exceptions.ShardUnavailableException;
+import models.PlayerRank;
+import models.PlayerScore;
+import play.Logger;
+import services.Cache.BoardSnapshot;
+import services.Cache.ScoreDistribution;
+import services.Cache.ScoreKey;
+import services.Sharding.ConsistentHashRing;
+import services.Sharding.ShardTransport;
+import views.PlayerScoreRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Leaderboard partitioned across shards by a consistent hash of the player id.
+ *
+ * Scores are routed to the owning shard only. Top N queries scatter to every shard for its local top K
+ * and k-way merge the answers; a rank is the sum over shards of the players ahead of the player's score.
+ * A range first finds where it starts on each shard, so shards only ever send a bounded page whatever
+ * the offset. Shards hold the full population, so queries are exact at any depth.
+ */
+public class ShardedLeaderBoard implements LeaderBoard {
+
+    // Widest window of possible start positions on one shard that a range fetches instead of narrowing
+    private static final int MAX_START_WINDOW = Constants.MAX_RANGE_LIMIT;
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final String name;
+    private final ConsistentHashRing ring;
+    private final ShardTransport transport;
+    private final long timeoutMillis;
+    private final AtomicLong resizes = new AtomicLong(); // Added to the shards' versions, which only cover their scores
+    private volatile int topN;
+    private volatile Runnable changeListener = () -> { };
+
+    /**
+     * Constructor for ShardedLeaderBoard. Shards hosted in this process are loaded from the repository.
+     *
+     * @param name                Name of the board.
+     * @param ring                Ring assigning players to shards.
+     * @param transport           Transport reaching the shards.
+     * @param playScoreRepository Score repository for player scores.
+     * @param topN                Number of top players to include in the leaderboard.
+     * @param timeoutMillis       How long a scatter-gather waits for every shard.
+     */
+    public ShardedLeaderBoard(String name, ConsistentHashRing ring, ShardTransport transport, PlayerScoreRepository playScoreRepository, int topN, long timeoutMillis) {
+        if (ring.getShardCount() != transport.getShardCount()) {
+            throw new IllegalArgumentException("Ring has " + ring.getShardCount() + " shards but the transport has " + transport.getShardCount());
+        }
+        this.name = name;
+        this.ring = ring;
+        this.transport = transport;
+        this.timeoutMillis = timeoutMillis;
+        this.topN = topN;
+        transport.load(ring, playScoreRepository::forEachScore);
+    }
+
+    /**
+     * Resizes the board. Shards keep every player, so nothing is reloaded.
+     *
+     * @param topN Number of top players to include in the leaderboard.
+     * @throws IllegalArgumentException If the board would ask each shard for more than a shard serves.
+     */
+    @Override
+    public void createBoard(int topN) {
+        if (topN > Constants.MAX_SHARD_FETCH_LIMIT) {
+            throw new IllegalArgumentException("Sharded leaderboards hold at most " + Constants.MAX_SHARD_FETCH_LIMIT + " players");
+        }
+        this.topN = topN;
+        resizes.incrementAndGet();
+        changeListener.run();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getSize() {
+        return topN;
+    }
+
+    /**
+     * Sets the callback run after every published score. Shards do not report whether the merged
+     * top N changed, so listeners have to compare snapshots themselves.
+     *
+     * @param listener Callback to run on the writing thread.
+     */
+    @Override
+    public void setChangeListener(Runnable listener) {
+        this.changeListener = listener;
+    }
+
+    /**
+     * The cut-off lives on the shards, so every score is routed to its owner.
+     */
+    @Override
+    public boolean canAccept(PlayerScore score) {
+        return true;
+    }
+
+    @Override
+    public void publish(PlayerScore newScore) throws LeaderboardUpdateFailureException {
+        int shard = ring.shardFor(newScore.getPlayerId());
+        try {
+            await(transport.publish(shard, newScore).toCompletableFuture());
+            changeListener.run();
+        } catch (ShardUnavailableException e) {
+            logger.error("Sharded Leader Board Update failed on shard " + shard + " - " + e.getMessage());
+            throw new LeaderboardUpdateFailureException(e.getMessage());
+        }
+    }
+
+    @Override
+    public List<PlayerScore> getTopNPlayers() throws LeaderboardNotInitializedException {
+        return await(topAcrossShards(topN));
+    }
+
+    @Override
+    public BoardSnapshot getSnapshot() throws LeaderboardNotInitializedException {
+        return await(getSnapshotAsync().toCompletableFuture());
+    }
+
+    @Override
+    public long getVersion() throws LeaderboardNotInitializedException {
+        return await(getVersionAsync().toCompletableFuture());
+    }
+
+    @Override
+    public Optional<PlayerRank> getRank(String playerId) throws LeaderboardNotInitializedException {
+        return await(getRankAsync(playerId).toCompletableFuture());
+    }
+
+    @Override
+    public List<PlayerRank> getRange(long offset, int limit) throws LeaderboardNotInitializedException {
+        return await(getRangeAsync(offset, limit).toCompletableFuture());
+    }
+
+    @Override
+    public List<PlayerRank> getNeighbourhood(String playerId, int radius) throws LeaderboardNotInitializedException {
+        return await(getNeighbourhoodAsync(playerId, radius).toCompletableFuture());
+    }
+
+    @Override
+    public Optional<ScoreDistribution> getDistribution() throws LeaderboardNotInitializedException {
+        return await(getDistributionAsync().toCompletableFuture());
+    }
+
+    /**
+     * The async reads rely on the transport's own request timeout rather than blocking a thread to
+     * enforce one; a failed shard fails the stage with a {@link ShardUnavailableException}.
+     */
+    @Override
+    public CompletionStage<BoardSnapshot> getSnapshotAsync() {
+        // The version is read first, so a score landing during the merge can only make it older than the players
+        return getVersionAsync().thenCompose(expected -> topAcrossShards(topN).thenApply(players -> new BoardSnapshot(expected, players)));
+    }
+
+    /**
+     * Sums the shards' versions, so the board's version moves on with every score a shard takes,
+     * including those written through other nodes. It also moves for scores outside the merged top N,
+     * since the shards do not know what that is.
+     */
+    @Override
+    public CompletionStage<Long> getVersionAsync() {
+        long resized = resizes.get();
+        return gather(transport::version).thenApply(versions -> {
+            long sum = resized;
+            for (Long shardVersion : versions) {
+                sum += shardVersion;
+            }
+            return sum;
+        });
+    }
+
+    @Override
+    public CompletionStage<Optional<PlayerRank>> getRankAsync(String playerId) {
+        return locate(playerId).thenApply(found -> found.map(position -> new PlayerRank(position.score, position.rank())));
+    }
+
+    @Override
+    public CompletionStage<List<PlayerRank>> getRangeAsync(long offset, int limit) {
+        long[] from = new long[ring.getShardCount()];
+        long[] to = new long[ring.getShardCount()];
+        Arrays.fill(to, offset);
+        return narrowStarts(offset, from, to).thenCompose(done -> {
+            int[] counts = new int[from.length];
+            for (int shard = 0; shard < from.length; shard++) {
+                counts[shard] = (int) (to[shard] - from[shard]) + limit;
+            }
+            return fetchRange(from, counts, offset, limit);
+        });
+    }
+
+    /**
+     * Each shard holds at most radius of the players just ahead of the player and radius + 1 from the
+     * player on, so the neighbourhood is fetched straight from the counts that gave the player's rank.
+     */
+    @Override
+    public CompletionStage<List<PlayerRank>> getNeighbourhoodAsync(String playerId, int radius) {
+        return locate(playerId).thenCompose(found -> {
+            if (!found.isPresent()) {
+                return CompletableFuture.completedFuture(Collections.emptyList());
+            }
+            long rank = found.get().rank();
+            long first = Math.max(1, rank - radius);
+            long[] from = new long[ring.getShardCount()];
+            int[] counts = new int[from.length];
+            for (int shard = 0; shard < from.length; shard++) {
+                long ahead = found.get().ahead.get(shard);
+                from[shard] = Math.max(0, ahead - radius);
+                counts[shard] = (int) (ahead - from[shard]) + radius + 1;
+            }
+            return fetchRange(from, counts, first - 1, (int) (rank - first) + radius + 1);
+        });
+    }
+
+    /**
+     * Finds a player's score and how many players each shard ranks ahead of it.
+     */
+    private CompletableFuture<Optional<Position>> locate(String playerId) {
+        return guard(transport.find(ring.shardFor(playerId), playerId)).thenCompose(score -> {
+            if (!score.isPresent()) {
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+            ScoreKey key = ScoreKey.of(score.get());
+            return gather(shard -> transport.countAhead(shard, key)).thenApply(ahead -> Optional.of(new Position(score.get(), ahead)));
+        });
+    }
+
+    /**
+     * Narrows, for every shard, the window [from, to] holding how many of its players are among the
+     * top offset players overall, until no window is wider than {@link #MAX_START_WINDOW}. Each round
+     * takes the middle player of the widest window and counts the players ahead of it on every shard:
+     * if it is inside the top offset, so is everyone ahead of it, otherwise so is no one behind it.
+     */
+    private CompletableFuture<Void> narrowStarts(long offset, long[] from, long[] to) {
+        int widest = 0;
+        for (int shard = 1; shard < from.length; shard++) {
+            if (to[shard] - from[shard] > to[widest] - from[widest]) {
+                widest = shard;
+            }
+        }
+        if (to[widest] - from[widest] <= MAX_START_WINDOW) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int pivotShard = widest;
+        long middle = (from[widest] + to[widest]) / 2;
+        return guard(transport.range(pivotShard, middle, 1)).thenCompose(pivot -> {
+            if (pivot.isEmpty()) {
+                to[pivotShard] = middle; // The shard holds no more than middle players
+                return narrowStarts(offset, from, to);
+            }
+            ScoreKey key = ScoreKey.of(pivot.get(0));
+            return gather(shard -> transport.countAhead(shard, key)).thenCompose(ahead -> {
+                long position = 0;
+                for (Long count : ahead) {
+                    position += count;
+                }
+                boolean inside = position < offset;
+                for (int shard = 0; shard < from.length; shard++) {
+                    // The pivot's own shard always moves past the middle, so every round makes progress
+                    long count = shard == pivotShard ? (inside ? middle + 1 : middle) : ahead.get(shard);
+                    if (inside) {
+                        from[shard] = Math.max(from[shard], Math.min(count, to[shard]));
+                    } else {
+                        to[shard] = Math.min(to[shard], Math.max(count, from[shard]));
+                    }
+                }
+                return narrowStarts(offset, from, to);
+            });
+        });
+    }
+
+    /**
+     * Fetches each shard's players from its start and merges them. Every start is at or before the
+     * shard's share of the top offset players, so the merged players begin at the overall position
+     * that is the sum of the starts.
+     */
+    private CompletableFuture<List<PlayerRank>> fetchRange(long[] from, int[] counts, long offset, int limit) {
+        long first = Arrays.stream(from).sum();
+        int fetched = Arrays.stream(counts).sum();
+        return gather(shard -> transport.range(shard, from[shard], counts[shard])).thenApply(pages -> {
+            List<PlayerScore> merged = TopKMerge.merge(pages, fetched);
+            List<PlayerRank> range = new ArrayList<>(Math.min(limit, merged.size()));
+            for (long i = Math.max(0, offset - first); i < merged.size() && range.size() < limit; i++) {
+                range.add(new PlayerRank(merged.get((int) i), first + i + 1));
+            }
+            return range;
+        });
+    }
+
+    /**
+     * Shards hold disjoint players, so the board's histogram is the sum of theirs.
+     */
+    @Override
+    public CompletionStage<Optional<ScoreDistribution>> getDistributionAsync() {
+        return gather(transport::distribution).thenApply(distributions -> {
+            ScoreDistribution merged = new ScoreDistribution();
+            for (ScoreDistribution distribution : distributions) {
+                merged.add(distribution);
+            }
+            return Optional.of(merged);
+        });
+    }
+
+    /**
+     * Scatters a top K query to every shard and k-way merges the answers.
+     */
+    private CompletableFuture<List<PlayerScore>> topAcrossShards(int limit) {
+        return gather(shard -> transport.top(shard, limit)).thenApply(tops -> TopKMerge.merge(tops, limit));
+    }
+
+    private <T> CompletableFuture<List<T>> gather(Function<Integer, CompletionStage<T>> call) {
+        List<CompletableFuture<T>> pending = new ArrayList<>(ring.getShardCount());
+        for (int shard = 0; shard < ring.getShardCount(); shard++) {
+            pending.add(guard(call.apply(shard)));
+        }
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).thenApply(done -> {
+            List<T> results = new ArrayList<>(pending.size());
+            for (CompletableFuture<T> future : pending) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Replaces any failure of a shard call with a {@link ShardUnavailableException}.
+     */
+    private <T> CompletableFuture<T> guard(CompletionStage<T> call) {
+        CompletableFuture<T> guarded = new CompletableFuture<>();
+        call.whenComplete((result, failure) -> {
+            if (failure == null) {
+                guarded.complete(result);
+                return;
+            }
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            logger.error("Shard request failed - " + cause.getMessage());
+            guarded.completeExceptionally(cause instanceof ShardUnavailableException ? cause : new ShardUnavailableException("Shard unavailable - " + cause.getMessage()));
+        });
+        return guarded;
+    }
+
+    /**
+     * A player's score with the number of players ranked ahead of it on each shard.
+     */
+    private static final class Position {
+        private final PlayerScore score;
+        private final List<Long> ahead;
+
+        private Position(PlayerScore score, List<Long> ahead) {
+            this.score = score;
+            this.ahead = ahead;
+        }
+
+        private long rank() {
+            long rank = 1;
+            for (Long count : ahead) {
+                rank += count;
+            }
+            return rank;
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future) throws ShardUnavailableException {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ShardUnavailableException("Interrupted while waiting for shards");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            if (cause instanceof ShardUnavailableException) {
+                throw (ShardUnavailableException) cause;
+            }
+            logger.error("Shard request failed - " + cause.getMessage());
+            throw new ShardUnavailableException("Shard unavailable - " + cause.getMessage());
+        } catch (TimeoutException e) {
+            logger.error("Shard request timed out after " + timeoutMillis + "ms");
+            throw new ShardUnavailableException("Shard request timed out");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package services.Leaderboards;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sliding windows supported by {@link WindowedLeaderBoard}. A window is a ring of fixed-width
+ * buckets; it slides forward one bucket at a time, so a board forgets scores at bucket granularity.
+ */
+public enum TimeWindow {
+
+    HOURLY(TimeUnit.MINUTES.toMillis(1), 60),
+    DAILY(TimeUnit.HOURS.toMillis(1), 24),
+    WEEKLY(TimeUnit.HOURS.toMillis(4), 42);
+
+    private final long bucketMillis;
+    private final int bucketCount;
+
+    TimeWindow(long bucketMillis, int bucketCount) {
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    public long getLengthMillis() {
+        return bucketMillis * bucketCount;
+    }
+
+    /**
+     * @return the board name used for this window's default board, e.g. "daily".
+     */
+    public String boardName() {
+        return name().toLowerCase();
+    }
+}
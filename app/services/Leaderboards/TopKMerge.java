@@ -0,0 +1,69 @@
+package services.Leaderboards;
+
+import models.PlayerScore;
+import services.Cache.ScoreKey;
+
+import java.util.*;
+
+/**
+ * k-way merge of board lists that are each already in rank order.
+ */
+final class TopKMerge {
+
+    private TopKMerge() {
+    }
+
+    /**
+     * Merges the lists in rank order, keeping the first (best) score seen per player.
+     *
+     * @param lists Lists in rank order.
+     * @param limit Maximum number of players to return.
+     * @return up to limit distinct players in rank order.
+     */
+    static List<PlayerScore> merge(Collection<? extends List<PlayerScore>> lists, int limit) {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, lists.size()));
+        for (List<PlayerScore> list : lists) {
+            Iterator<PlayerScore> players = list.iterator();
+            if (players.hasNext()) {
+                heads.add(new Cursor(players));
+            }
+        }
+        List<PlayerScore> merged = new ArrayList<>(Math.min(limit, 1024));
+        Set<String> seen = new HashSet<>();
+        while (merged.size() < limit && !heads.isEmpty()) {
+            Cursor head = heads.poll();
+            if (seen.add(head.current.getPlayerId())) {
+                merged.add(head.current);
+            }
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private static final class Cursor implements Comparable<Cursor> {
+        private final Iterator<PlayerScore> players;
+        private PlayerScore current;
+        private ScoreKey key;
+
+        private Cursor(Iterator<PlayerScore> players) {
+            this.players = players;
+            advance();
+        }
+
+        private boolean advance() {
+            if (!players.hasNext()) {
+                return false;
+            }
+            current = players.next();
+            key = ScoreKey.of(current);
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            return key.compareTo(other.key);
+        }
+    }
+}
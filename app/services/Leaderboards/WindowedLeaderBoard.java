@@ -0,0 +1,389 @@
+package services.Leaderboards;
+
+import exceptions.CacheInitializationException;
+import exceptions.CacheUpdateFailureException;
+import exceptions.LeaderboardNotInitializedException;
+import exceptions.LeaderboardUpdateFailureException;
+import models.PlayerRank;
+import models.PlayerScore;
+import play.Logger;
+import services.Cache.BoardSnapshot;
+import services.Cache.CacheServices;
+import views.PlayerScoreRepository;
+
+import javax.inject.Provider;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Leaderboard over a sliding time window.
+ *
+ * Scores land in a ring of time buckets, each a bounded top-N cache. Rolling over to a new bucket
+ * only replaces one ring slot, so it is O(1) whatever the window holds. A player's best score in the
+ * window is attained in some bucket where the player is also in that bucket's top N, so merging the
+ * per-bucket top N lists gives the exact windowed top N. Ranks are only known within that top N.
+ */
+public class WindowedLeaderBoard implements LeaderBoard {
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final String name;
+    private final TimeWindow window;
+    private final Provider<CacheServices> cacheProvider;
+    private final PlayerScoreRepository scoreRepository;
+    private final LongSupplier clock;
+
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong lastBucket = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicReference<BoardSnapshot> snapshot = new AtomicReference<>(BoardSnapshot.EMPTY);
+    private volatile AtomicReferenceArray<Bucket> ring;
+    private volatile int topN;
+    private volatile boolean leaderBoardInitialized;
+    private volatile Runnable changeListener = () -> { };
+
+    /**
+     * Constructor for WindowedLeaderBoard. The window is rebuilt from the stored score events.
+     *
+     * @param name                Name of the board.
+     * @param window              Window the board covers.
+     * @param cacheProvider       Supplies one cache per time bucket.
+     * @param playScoreRepository Score repository holding the timestamped score events.
+     * @param topN                Number of top players to include in the leaderboard.
+     * @param clock               Current time in epoch milliseconds.
+     * @throws LeaderboardNotInitializedException If leaderboard initialization fails.
+     * @throws CacheInitializationException      If cache initialization fails.
+     */
+    public WindowedLeaderBoard(String name, TimeWindow window, Provider<CacheServices> cacheProvider, PlayerScoreRepository playScoreRepository, int topN, LongSupplier clock) throws LeaderboardNotInitializedException, CacheInitializationException {
+        this.name = name;
+        this.window = window;
+        this.cacheProvider = cacheProvider;
+        this.scoreRepository = playScoreRepository;
+        this.clock = clock;
+        createBoard(topN);
+    }
+
+    /**
+     * Creates (or resizes) the board, reloading the window from the stored score events. The old ring's
+     * buckets are carried over after the swap, and a publish that finds the ring swapped under it
+     * applies its score again, so scores published during the reload are kept.
+     *
+     * @param topN Number of top players to include in the leaderboard.
+     * @throws CacheInitializationException      If cache initialization fails.
+     * @throws LeaderboardNotInitializedException If leaderboard initialization fails.
+     */
+    @Override
+    public void createBoard(int topN) throws CacheInitializationException, LeaderboardNotInitializedException {
+        long now = clock.getAsLong();
+        long currentBucket = bucketOf(now);
+        AtomicReferenceArray<Bucket> rebuilt = new AtomicReferenceArray<>(window.getBucketCount());
+        List<String> failures = new ArrayList<>(1);
+        try {
+            long windowStart = (currentBucket - window.getBucketCount() + 1) * window.getBucketMillis();
+            scoreRepository.forEachScoreEventSince(windowStart, (score, scoredAt) -> {
+                try {
+                    apply(rebuilt, topN, currentBucket, score, scoredAt);
+                } catch (CacheInitializationException | CacheUpdateFailureException e) {
+                    failures.add(e.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Windowed Leader Board " + name + " Initialization Failed - " + e.getMessage());
+            throw new LeaderboardNotInitializedException(e.getMessage());
+        }
+        if (!failures.isEmpty()) {
+            throw new CacheInitializationException(failures.get(0));
+        }
+        AtomicReferenceArray<Bucket> previous = ring;
+        this.topN = topN;
+        this.ring = rebuilt;
+        if (previous != null) {
+            carryOver(previous, rebuilt, topN, currentBucket);
+        }
+        lastBucket.set(currentBucket);
+        version.incrementAndGet();
+        leaderBoardInitialized = true;
+        changeListener.run();
+    }
+
+    /**
+     * Merges the score events stored since the given time, as far as they are still in the window,
+     * into the live buckets instead of rebuilding them. Buckets keep each player's best score, so
+     * scores published meanwhile are kept and the version only moves forward.
+     *
+     * @param sinceMillis Time from which scores may have been missed.
+     * @throws CacheInitializationException      If a bucket could not take the stored scores.
+     * @throws LeaderboardNotInitializedException If the score events could not be read.
+     */
+    public void resynchronize(long sinceMillis) throws CacheInitializationException, LeaderboardNotInitializedException {
+        long currentBucket = bucketOf(clock.getAsLong());
+        AtomicReferenceArray<Bucket> live = ring;
+        int size = topN;
+        AtomicBoolean changed = new AtomicBoolean();
+        List<String> failures = new ArrayList<>(1);
+        try {
+            long windowStart = (currentBucket - window.getBucketCount() + 1) * window.getBucketMillis();
+            scoreRepository.forEachScoreEventSince(Math.max(windowStart, sinceMillis), (score, scoredAt) -> {
+                try {
+                    if (apply(live, size, currentBucket, score, scoredAt)) {
+                        changed.set(true);
+                    }
+                } catch (CacheInitializationException | CacheUpdateFailureException e) {
+                    failures.add(e.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Windowed Leader Board " + name + " Resynchronization Failed - " + e.getMessage());
+            throw new LeaderboardNotInitializedException(e.getMessage());
+        }
+        if (!failures.isEmpty()) {
+            throw new CacheInitializationException(failures.get(0));
+        }
+        if (changed.get()) {
+            version.incrementAndGet();
+            changeListener.run();
+        }
+    }
+
+    /**
+     * Applies the top N of every bucket of the previous ring still in the window to the new ring.
+     */
+    private void carryOver(AtomicReferenceArray<Bucket> previous, AtomicReferenceArray<Bucket> target, int size, long currentBucket) throws CacheInitializationException {
+        try {
+            for (int i = 0; i < previous.length(); i++) {
+                Bucket bucket = previous.get(i);
+                if (bucket == null) {
+                    continue;
+                }
+                long bucketStart = bucket.index * window.getBucketMillis();
+                for (PlayerScore score : bucket.cache.getTopNPlayers()) {
+                    apply(target, size, currentBucket, score, bucketStart);
+                }
+            }
+        } catch (CacheUpdateFailureException e) {
+            throw new CacheInitializationException(e.getMessage());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getSize() {
+        return topN;
+    }
+
+    public TimeWindow getWindow() {
+        return window;
+    }
+
+    /**
+     * Sets the callback run when a score changes the current bucket. Buckets sliding out of the window are only
+     * noticed by the next {@link #getSnapshot()}, so the callback does not run for them.
+     *
+     * @param listener Callback to run on the writing thread.
+     */
+    @Override
+    public void setChangeListener(Runnable listener) {
+        this.changeListener = listener;
+    }
+
+    /**
+     * Checks whether a score could change the current bucket, without locking.
+     *
+     * @param score Candidate score.
+     * @return false if the current bucket is full and the score cannot beat its cut-off.
+     */
+    @Override
+    public boolean canAccept(PlayerScore score) {
+        AtomicReferenceArray<Bucket> current = ring;
+        long index = bucketOf(clock.getAsLong());
+        Bucket bucket = current.get(slotOf(index));
+        return bucket == null || bucket.index != index || bucket.cache.canAccept(score);
+    }
+
+    @Override
+    public void publish(PlayerScore newScore) throws LeaderboardUpdateFailureException {
+        long now = clock.getAsLong();
+        try {
+            AtomicReferenceArray<Bucket> current = ring;
+            boolean changed = apply(current, topN, bucketOf(now), newScore, now);
+            while (ring != current) {
+                // Reloaded concurrently: the carried-over buckets may have missed this score
+                current = ring;
+                changed |= apply(current, topN, bucketOf(now), newScore, now);
+            }
+            if (changed) {
+                version.incrementAndGet();
+                changeListener.run();
+            }
+        } catch (CacheInitializationException | CacheUpdateFailureException e) {
+            logger.error("Windowed Leader Board Update failed - " + e.getMessage());
+            throw new LeaderboardUpdateFailureException(e.getMessage());
+        }
+    }
+
+    private boolean apply(AtomicReferenceArray<Bucket> target, int size, long currentBucket, PlayerScore score, long scoredAt) throws CacheInitializationException, CacheUpdateFailureException {
+        long index = bucketOf(scoredAt);
+        if (index <= currentBucket - window.getBucketCount() || index > currentBucket) {
+            return false; // Outside the window
+        }
+        Bucket bucket = bucketFor(target, size, index);
+        if (bucket == null || !bucket.cache.canAccept(score)) {
+            return false;
+        }
+        // The pre-check can pass for a score that changes nothing, such as a lower one from a listed player
+        long before = bucket.cache.getVersion();
+        bucket.cache.addToCache(score);
+        return bucket.cache.getVersion() != before;
+    }
+
+    /**
+     * Returns the bucket for the index, taking over its ring slot if the slot still holds an older bucket.
+     */
+    private Bucket bucketFor(AtomicReferenceArray<Bucket> target, int size, long index) throws CacheInitializationException {
+        int slot = slotOf(index);
+        while (true) {
+            Bucket existing = target.get(slot);
+            if (existing != null && existing.index == index) {
+                return existing;
+            }
+            if (existing != null && existing.index > index) {
+                return null; // The slot already moved on to a newer bucket
+            }
+            Bucket fresh = new Bucket(index, cacheProvider.get(), size);
+            if (target.compareAndSet(slot, existing, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    @Override
+    public List<PlayerScore> getTopNPlayers() throws LeaderboardNotInitializedException {
+        return getSnapshot().getPlayers();
+    }
+
+    /**
+     * @return the version the next snapshot will have, moved on if buckets fell out of the window, without merging the buckets.
+     * @throws LeaderboardNotInitializedException If leaderboard is not initialized.
+     */
+    @Override
+    public long getVersion() throws LeaderboardNotInitializedException {
+        if (!leaderBoardInitialized) {
+            throw new LeaderboardNotInitializedException("LeaderBoard not yet initialized");
+        }
+        return slide(bucketOf(clock.getAsLong()));
+    }
+
+    /**
+     * Moves the version on once the clock reaches a later bucket, since older buckets then fall out of the window.
+     *
+     * @return the current version.
+     */
+    private long slide(long currentBucket) {
+        long seen = lastBucket.get();
+        if (currentBucket > seen && lastBucket.compareAndSet(seen, currentBucket)) {
+            version.incrementAndGet();
+        }
+        return version.get();
+    }
+
+    /**
+     * Retrieves the windowed top N, rebuilt by merging the live buckets only when a score was
+     * accepted or the window slid since the last snapshot.
+     *
+     * @return Versioned snapshot of the windowed top N players.
+     * @throws LeaderboardNotInitializedException If leaderboard is not initialized.
+     */
+    @Override
+    public BoardSnapshot getSnapshot() throws LeaderboardNotInitializedException {
+        if (!leaderBoardInitialized) {
+            logger.error("Leader Board Not Initialized - Cannot retrieve snapshot");
+            throw new LeaderboardNotInitializedException("LeaderBoard not yet initialized");
+        }
+        long currentBucket = bucketOf(clock.getAsLong());
+        long expected = slide(currentBucket);
+        BoardSnapshot current = snapshot.get();
+        if (current.getVersion() == expected) {
+            return current;
+        }
+        BoardSnapshot built = new BoardSnapshot(expected, merge(currentBucket));
+        while (current.getVersion() < expected && !snapshot.compareAndSet(current, built)) {
+            current = snapshot.get();
+        }
+        return built;
+    }
+
+    /**
+     * Merges the live buckets' top N lists; the first time a player is seen is their best score.
+     */
+    private List<PlayerScore> merge(long currentBucket) {
+        AtomicReferenceArray<Bucket> current = ring;
+        List<List<PlayerScore>> live = new ArrayList<>(current.length());
+        for (int i = 0; i < current.length(); i++) {
+            Bucket bucket = current.get(i);
+            if (bucket != null && bucket.index > currentBucket - window.getBucketCount() && bucket.index <= currentBucket) {
+                live.add(bucket.cache.getTopNPlayers());
+            }
+        }
+        return TopKMerge.merge(live, topN);
+    }
+
+    @Override
+    public Optional<PlayerRank> getRank(String playerId) throws LeaderboardNotInitializedException {
+        List<PlayerScore> players = getTopNPlayers();
+        for (int i = 0; i < players.size(); i++) {
+            if (players.get(i).getPlayerId().equals(playerId)) {
+                return Optional.of(new PlayerRank(players.get(i), i + 1));
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public List<PlayerRank> getRange(long offset, int limit) throws LeaderboardNotInitializedException {
+        List<PlayerScore> players = getTopNPlayers();
+        List<PlayerRank> range = new ArrayList<>();
+        for (long i = offset; i < players.size() && range.size() < limit; i++) {
+            range.add(new PlayerRank(players.get((int) i), i + 1));
+        }
+        return range;
+    }
+
+    @Override
+    public List<PlayerRank> getNeighbourhood(String playerId, int radius) throws LeaderboardNotInitializedException {
+        Optional<PlayerRank> rank = getRank(playerId);
+        if (!rank.isPresent()) {
+            return Collections.emptyList();
+        }
+        long from = Math.max(0, rank.get().getRank() - 1 - radius);
+        return getRange(from, (int) (rank.get().getRank() - 1 - from) + radius + 1);
+    }
+
+    private long bucketOf(long epochMillis) {
+        return Math.floorDiv(epochMillis, window.getBucketMillis());
+    }
+
+    private int slotOf(long bucketIndex) {
+        return (int) Math.floorMod(bucketIndex, (long) window.getBucketCount());
+    }
+
+    /**
+     * One time bucket: the top N of the scores published while it was current.
+     */
+    private static final class Bucket {
+        private final long index;
+        private final CacheServices cache;
+
+        private Bucket(long index, CacheServices cache, int topN) throws CacheInitializationException {
+            this.index = index;
+            this.cache = cache;
+            cache.initialize(topN, Collections.emptyList());
+        }
+    }
+}
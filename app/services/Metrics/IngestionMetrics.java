@@ -0,0 +1,68 @@
+package services.Metrics;
+
+import javax.inject.Singleton;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and counters for every ingestion stage. Recording is allocation-free, so it can
+ * sit on the hot path:
+ * <pre>
+ *     long start = System.nanoTime();
+ *     ...
+ *     metrics.record(IngestionStage.DB_WRITE, start);
+ * </pre>
+ */
+@Singleton
+public class IngestionMetrics {
+
+    private final Map<IngestionStage, LatencyHistogram> histograms = new EnumMap<>(IngestionStage.class);
+    private final LongAdder ingestedScores = new LongAdder();
+    private final LongAdder failedScores = new LongAdder();
+    private final LongAdder coalescedScores = new LongAdder();
+
+    public IngestionMetrics() {
+        for (IngestionStage stage : IngestionStage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Records the time elapsed since a {@link System#nanoTime()} reading.
+     *
+     * @param stage      Stage that ran.
+     * @param startNanos System.nanoTime() taken when the stage started.
+     */
+    public void record(IngestionStage stage, long startNanos) {
+        histograms.get(stage).record(System.nanoTime() - startNanos);
+    }
+
+    public LatencyHistogram getHistogram(IngestionStage stage) {
+        return histograms.get(stage);
+    }
+
+    public void addIngested(int scores) {
+        ingestedScores.add(scores);
+    }
+
+    public void addFailed(int scores) {
+        failedScores.add(scores);
+    }
+
+    public void addCoalesced(int scores) {
+        coalescedScores.add(scores);
+    }
+
+    public long getIngestedScores() {
+        return ingestedScores.sum();
+    }
+
+    public long getFailedScores() {
+        return failedScores.sum();
+    }
+
+    public long getCoalescedScores() {
+        return coalescedScores.sum();
+    }
+}
@@ -0,0 +1,23 @@
+package services.Metrics;
+
+/**
+ * Stages of the ingestion and read paths whose latency is recorded.
+ */
+public enum IngestionStage {
+    DECODE("decode"),             // Parsing a request body or queue envelope into scores
+    DB_LOOKUP("db_lookup"),       // Reading scores from the database
+    DB_WRITE("db_write"),         // Writing one batch of scores to the database
+    FAN_OUT("fan_out"),           // Applying a batch to the rank index and every board it can change
+    CACHE_UPDATE("cache_update"), // Applying a batch to one board
+    READ_SERIALIZATION("read_serialization"); // Building or reusing a board snapshot for a top-N read
+
+    private final String label;
+
+    IngestionStage(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,77 @@
+package services.Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram.
+ *
+ * Values below 16ns get a bucket each; above that every power of two is split into 16 equal
+ * sub-buckets, so any recorded value is reported within 1/16 (about 6%) of its true value.
+ * The bucket array is allocated once and covers every positive long, so {@link #record} only does
+ * a few atomic increments and never allocates.
+ */
+public final class LatencyHistogram {
+
+    private static final LogLinearBuckets BUCKETING = new LogLinearBuckets(4);
+    private static final int BUCKETS = BUCKETING.getBucketCount();
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos Latency to record; negative values are recorded as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(BUCKETING.bucketOf(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumNanos() {
+        return sum.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Estimates a quantile from the current bucket counts. Counts recorded during the scan may or may
+     * not be included, which is fine for monitoring.
+     *
+     * @param quantile Quantile in [0, 1].
+     * @return the upper bound of the bucket holding the quantile, capped at the maximum, or 0 if empty.
+     */
+    public long getQuantileNanos(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(max.get(), BUCKETING.upperBound(i));
+            }
+        }
+        return max.get();
+    }
+}
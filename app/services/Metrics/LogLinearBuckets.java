@@ -0,0 +1,62 @@
+package services.Metrics;
+
+/**
+ * Log-linear bucketing of non-negative longs, in the style of HdrHistogram.
+ *
+ * Values below 2^subBits get a bucket each; above that every power of two is split into 2^subBits
+ * equal sub-buckets, so a value's bucket is within 1/2^subBits of it. The buckets cover every
+ * non-negative long, so a histogram can allocate its counts once.
+ */
+public final class LogLinearBuckets {
+
+    private final int subBits;
+    private final int subCount;
+    private final int bucketCount;
+
+    /**
+     * @param subBits Number of bits of precision kept below each power of two.
+     */
+    public LogLinearBuckets(int subBits) {
+        this.subBits = subBits;
+        this.subCount = 1 << subBits;
+        this.bucketCount = (64 - subBits) * subCount;
+    }
+
+    /**
+     * @return number of buckets needed to cover every non-negative long.
+     */
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    /**
+     * @param value Non-negative value.
+     * @return index of the bucket holding the value.
+     */
+    public int bucketOf(long value) {
+        if (value < subCount) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - subBits;
+        return (shift + 1) * subCount + (int) ((value >>> shift) - subCount);
+    }
+
+    /**
+     * @return smallest value in the bucket.
+     */
+    public long lowerBound(int bucket) {
+        if (bucket < subCount) {
+            return bucket;
+        }
+        int shift = bucket / subCount - 1;
+        return (long) (subCount + bucket % subCount) << shift;
+    }
+
+    /**
+     * @return largest value in the bucket.
+     */
+    public long upperBound(int bucket) {
+        return bucket + 1 == bucketCount ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+    }
+}
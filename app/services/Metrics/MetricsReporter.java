@@ -0,0 +1,161 @@
+package services.Metrics;
+
+import models.PlayerScore;
+import rabbitMq.PlayerScoreConsumer;
+import services.Cache.PlayerRankIndex;
+import services.Cache.RankIndexStore;
+import services.Leaderboards.LeaderBoard;
+import services.Leaderboards.LeaderBoardRegistry;
+import services.Scores.ScoreWriteBehindQueue;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Renders every metric in the Prometheus text exposition format (version 0.0.4).
+ * Stage latencies are summaries in seconds; everything else is a counter or gauge read at scrape time.
+ * Boards are read with their async snapshots, so a scrape never holds a thread while sharded boards
+ * wait on other nodes.
+ */
+@Singleton
+public class MetricsReporter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final IngestionMetrics metrics;
+    private final LeaderBoardRegistry boardRegistry;
+    private final ScoreWriteBehindQueue writeBehindQueue;
+    private final PlayerScoreConsumer consumer;
+    private final PlayerRankIndex rankIndex;
+    private final RankIndexStore indexStore;
+
+    @Inject
+    public MetricsReporter(IngestionMetrics metrics, LeaderBoardRegistry boardRegistry, ScoreWriteBehindQueue writeBehindQueue,
+                           PlayerScoreConsumer consumer, PlayerRankIndex rankIndex, RankIndexStore indexStore) {
+        this.metrics = metrics;
+        this.boardRegistry = boardRegistry;
+        this.writeBehindQueue = writeBehindQueue;
+        this.consumer = consumer;
+        this.rankIndex = rankIndex;
+        this.indexStore = indexStore;
+    }
+
+    /**
+     * @return the metrics page, complete once every board has been read.
+     */
+    public CompletionStage<String> render() {
+        List<LeaderBoard> boards = new ArrayList<>(boardRegistry.getBoards());
+        List<CompletableFuture<List<PlayerScore>>> reads = new ArrayList<>(boards.size());
+        for (LeaderBoard board : boards) {
+            // A board that cannot be read right now is left out of this scrape
+            reads.add(board.getSnapshotAsync().handle((snapshot, failure) -> failure == null ? snapshot.getPlayers() : null).toCompletableFuture());
+        }
+        return CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])).thenApply(done -> render(boards, reads));
+    }
+
+    private String render(List<LeaderBoard> boards, List<CompletableFuture<List<PlayerScore>>> reads) {
+        StringBuilder out = new StringBuilder(4096);
+        renderStages(out);
+
+        header(out, "leaderboard_scores_ingested_total", "counter", "Scores applied to the leaderboards.");
+        sample(out, "leaderboard_scores_ingested_total", null, metrics.getIngestedScores());
+        header(out, "leaderboard_scores_failed_total", "counter", "Scores whose leaderboard update failed.");
+        sample(out, "leaderboard_scores_failed_total", null, metrics.getFailedScores());
+        counter(out, "leaderboard_scores_coalesced_total", "Scores merged into a better score from the same player before reaching the boards.", metrics.getCoalescedScores());
+
+        renderBoards(out, boards, reads);
+
+        gauge(out, "leaderboard_rank_index_players", "Players in the full-population rank index.", rankIndex.size());
+        gauge(out, "leaderboard_rank_index_bytes", "Approximate memory held by the rank index.", rankIndex.footprintBytes());
+        counter(out, "leaderboard_checkpoints_total", "Rank index checkpoints written.", indexStore.getCheckpoints());
+        gauge(out, "leaderboard_last_checkpoint_seconds", "Duration of the last rank index checkpoint.", indexStore.getLastCheckpointMillis() / 1000.0);
+        counter(out, "leaderboard_wal_failures_total", "Failed rank index log appends and syncs.", indexStore.getWalFailures());
+
+        gauge(out, "leaderboard_write_behind_queue_depth", "Scores waiting for the write-behind flusher.", writeBehindQueue.getQueueDepth());
+        counter(out, "leaderboard_write_behind_rejected_total", "Scores rejected because the write-behind queue was full.", writeBehindQueue.getRejectedScores());
+        counter(out, "leaderboard_write_behind_flushed_scores_total", "Scores written by the write-behind stage.", writeBehindQueue.getFlushedScores());
+        counter(out, "leaderboard_write_behind_failed_batches_total", "Write-behind batches that failed after retries and were kept for the next flush.", writeBehindQueue.getFailedBatches());
+        gauge(out, "leaderboard_write_behind_unwritten_scores", "Scores of failed write-behind batches waiting for the next flush.", writeBehindQueue.getUnwrittenScores());
+
+        Map<String, Long> consumerStats = consumer.getStats();
+        gauge(out, "rabbitmq_consumer_lag_messages", "Messages ready in the score queue at the last check; -1 if unknown.", consumerStats.get("lag"));
+        gauge(out, "rabbitmq_consumer_in_flight_messages", "Delivered messages not yet acknowledged.", consumerStats.get("inFlight"));
+        counter(out, "rabbitmq_consumer_received_total", "Messages delivered to the consumers.", consumerStats.get("received"));
+        counter(out, "rabbitmq_consumer_acked_total", "Messages acknowledged.", consumerStats.get("acked"));
+        counter(out, "rabbitmq_consumer_nacked_total", "Messages requeued after a failed batch.", consumerStats.get("nacked"));
+        return out.toString();
+    }
+
+    private void renderStages(StringBuilder out) {
+        String name = "leaderboard_stage_latency_seconds";
+        header(out, name, "summary", "Latency of each ingestion and read stage.");
+        for (IngestionStage stage : IngestionStage.values()) {
+            LatencyHistogram histogram = metrics.getHistogram(stage);
+            String stageLabel = "stage=\"" + stage.getLabel() + "\"";
+            for (double quantile : QUANTILES) {
+                sample(out, name, stageLabel + ",quantile=\"" + quantile + "\"", histogram.getQuantileNanos(quantile) / NANOS_PER_SECOND);
+            }
+            sample(out, name + "_sum", stageLabel, histogram.getSumNanos() / NANOS_PER_SECOND);
+            sample(out, name + "_count", stageLabel, histogram.getCount());
+        }
+        header(out, "leaderboard_stage_max_latency_seconds", "gauge", "Slowest recorded run of each stage.");
+        for (IngestionStage stage : IngestionStage.values()) {
+            sample(out, "leaderboard_stage_max_latency_seconds", "stage=\"" + stage.getLabel() + "\"",
+                    metrics.getHistogram(stage).getMaxNanos() / NANOS_PER_SECOND);
+        }
+    }
+
+    private void renderBoards(StringBuilder out, List<LeaderBoard> boards, List<CompletableFuture<List<PlayerScore>>> reads) {
+        header(out, "leaderboard_board_players", "gauge", "Players currently on each board.");
+        StringBuilder cutoffs = new StringBuilder();
+        header(cutoffs, "leaderboard_board_cutoff_score", "gauge", "Lowest score on each full board.");
+        int read = 0;
+        for (LeaderBoard board : boards) {
+            List<PlayerScore> players = reads.get(read++).join();
+            if (players == null) {
+                continue;
+            }
+            String boardLabel = "board=\"" + escape(board.getName()) + "\"";
+            sample(out, "leaderboard_board_players", boardLabel, players.size());
+            if (!players.isEmpty() && players.size() >= board.getSize()) {
+                sample(cutoffs, "leaderboard_board_cutoff_score", boardLabel, players.get(players.size() - 1).getScore());
+            }
+        }
+        out.append(cutoffs);
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, Number value) {
+        header(out, name, "gauge", help);
+        sample(out, name, null, value);
+    }
+
+    private static void counter(StringBuilder out, String name, String help, Number value) {
+        header(out, name, "counter", help);
+        sample(out, name, null, value);
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, Number value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,170 @@
+package services.Scores;
+
+import models.PlayerScore;
+import play.Logger;
+import services.Metrics.IngestionMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reduces the scores arriving within a short window to one best score per player before they reach
+ * storage and the leaderboards.
+ *
+ * Offers are merged into a concurrent map keyed by player id, so a hot player sending hundreds of scores
+ * a second costs one map update each instead of a queue write and a board update each. A single flusher
+ * thread hands the winners to the sink every window, or sooner once the map holds the maximum batch of
+ * players. Every offer merged into a winner completes with that winner's outcome; a lower score would
+ * not have changed anything downstream, so it succeeds when the better one is applied.
+ */
+final class ScoreCoalescer {
+
+    /**
+     * Applies a batch of winners downstream.
+     */
+    interface Sink {
+        /**
+         * @param winners Best score of each player in the window.
+         * @return ids of the players whose scores could not be applied.
+         * @throws Exception If the batch as a whole failed.
+         */
+        Set<String> apply(List<PlayerScore> winners) throws Exception;
+    }
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingPlayers = new AtomicInteger();
+    private final Sink sink;
+    private final IngestionMetrics metrics;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final Thread flusher;
+    private volatile boolean running;
+
+    /**
+     * @param sink        Receives each window's winners on the flusher thread.
+     * @param windowNanos Longest time a score waits for better ones from the same player.
+     * @param maxBatch    Number of distinct players that triggers an early flush.
+     * @param metrics     Counts the scores that were merged away.
+     */
+    ScoreCoalescer(Sink sink, long windowNanos, int maxBatch, IngestionMetrics metrics) {
+        this.sink = sink;
+        this.metrics = metrics;
+        this.windowNanos = windowNanos;
+        this.maxBatch = maxBatch;
+        this.flusher = new Thread(this::runFlusher, "score-coalescer");
+        this.flusher.setDaemon(true);
+    }
+
+    void start() {
+        running = true;
+        flusher.start();
+    }
+
+    /**
+     * Stops the flusher and applies everything still pending.
+     */
+    void stop() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.NANOSECONDS.toMillis(windowNanos) + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * @param score Score to coalesce.
+     * @return completes once the player's best score of the window has been applied, or fails if it
+     * could not be.
+     */
+    CompletableFuture<Void> offer(PlayerScore score) {
+        boolean[] added = new boolean[1];
+        Pending entry = pending.compute(score.getPlayerId(), (playerId, current) -> {
+            if (current == null) {
+                added[0] = true;
+                return new Pending(score);
+            }
+            if (score.getScore() > current.best.getScore()) {
+                current.best = score;
+            }
+            return current;
+        });
+        if (!added[0]) {
+            metrics.addCoalesced(1);
+        } else if (pendingPlayers.incrementAndGet() >= maxBatch) {
+            LockSupport.unpark(flusher);
+        }
+        return entry.done;
+    }
+
+    private void runFlusher() {
+        while (running) {
+            LockSupport.parkNanos(this, windowNanos);
+            flush();
+        }
+    }
+
+    /**
+     * Takes every pending winner and applies them as one batch.
+     */
+    void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Pending> taken = new ArrayList<>(Math.min(pending.size(), maxBatch * 2));
+        for (String playerId : pending.keySet()) {
+            // Removal is atomic with offers, so a later offer starts a fresh entry for the next window
+            Pending entry = pending.remove(playerId);
+            if (entry != null) {
+                pendingPlayers.decrementAndGet();
+                taken.add(entry);
+            }
+        }
+        if (taken.isEmpty()) {
+            return;
+        }
+        List<PlayerScore> winners = new ArrayList<>(taken.size());
+        for (Pending entry : taken) {
+            winners.add(entry.best);
+        }
+        Set<String> failed;
+        try {
+            failed = sink.apply(winners);
+        } catch (Exception e) {
+            logger.error("Coalesced batch of " + winners.size() + " scores failed - " + e.getMessage());
+            for (Pending entry : taken) {
+                entry.done.completeExceptionally(e);
+            }
+            return;
+        }
+        for (Pending entry : taken) {
+            if (failed.contains(entry.best.getPlayerId())) {
+                entry.done.completeExceptionally(new IllegalStateException("Score for " + entry.best.getPlayerId() + " was not stored"));
+            } else {
+                entry.done.complete(null);
+            }
+        }
+    }
+
+    /**
+     * A player's best score so far in the window; only changed inside the map's compute.
+     */
+    private static final class Pending {
+        private PlayerScore best;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Pending(PlayerScore best) {
+            this.best = best;
+        }
+    }
+}
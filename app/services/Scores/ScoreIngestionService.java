@@ -6,6 +6,14 @@ import exceptions.LeaderboardUpdateFailureException;
 import models.PlayerScore;
 import models.Response;
 
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
 public interface ScoreIngestionService {
 	Response publish(PlayerScore newScore) throws LeaderboardUpdateFailureException, DatabaseStorageException;
+	Response publishAll(List<PlayerScore> newScores) throws LeaderboardUpdateFailureException, DatabaseStorageException;
+	CompletionStage<Response> publishAsync(PlayerScore newScore);
+	CompletionStage<Response> publishAllAsync(List<PlayerScore> newScores);
+	Response addPoints(String boardName, PlayerScore points) throws LeaderboardUpdateFailureException;
+	CompletionStage<Response> addPointsAsync(String boardName, PlayerScore points);
 }
@@ -1,73 +1,320 @@
 package services.Scores;
 
+import com.typesafe.config.Config;
 import exceptions.DatabaseStorageException;
 import exceptions.LeaderboardUpdateFailureException;
 import models.PlayerScore;
 import models.Response;
+import play.inject.ApplicationLifecycle;
+import services.Cache.PlayerRankIndex;
+import services.Cache.RankIndexStore;
+import services.Leaderboards.AdditiveLeaderBoard;
 import services.Leaderboards.LeaderBoard;
-import views.PlayerScoreRepository;
+import services.Leaderboards.LeaderBoardRegistry;
+import services.Metrics.IngestionMetrics;
+import services.Metrics.IngestionStage;
+import views.DatabaseExecutionContext;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Implementation of ScoreIngestionToLeaderBoards, ScoreIngestionToStorage, and ScoreIngestionService.
+ *
+ * Leaderboard updates fan out in parallel: each board that a score could change gets its own task on
+ * the fan-out executor, so the cost of ingestion does not grow linearly with the number of boards.
+ *
+ * The async variants run on the database executor, since queueing for storage can block on a full
+ * write-behind queue and batches are written through synchronously.
+ *
+ * With coalescing started, single scores first go through a {@link ScoreCoalescer}, so only each
+ * player's best score per window is queued for storage and applied to the boards.
+ *
+ * Every batch applied to the boards is also handed to the replication listener, which passes it on
+ * to the other app nodes; their batches come back through {@link #applyReplicatedToLeaderBoards}.
+ * Points added to additive boards go to the points replication listener the same way and come back
+ * through {@link #applyReplicatedPoints}.
  */
+@Singleton
 public class ScoreIngestionServiceImpl implements ScoreIngestionToLeaderBoards, ScoreIngestionToStorage, ScoreIngestionService {
 
-    // List to store registered leaderboards
-    public static List<LeaderBoard> leaderBoards = new ArrayList<>();
-
-    private final PlayerScoreRepository scoreRepository;
+    private final ScoreWriteBehindQueue writeBehindQueue;
+    private final PlayerRankIndex rankIndex;
+    private final RankIndexStore indexStore;
+    private final LeaderBoardRegistry boardRegistry;
+    private final Executor fanOutExecutor;
+    private final Executor databaseExecutor;
+    private final IngestionMetrics metrics;
+    private volatile ScoreCoalescer coalescer; // Null while scores are applied one by one
+    private volatile Consumer<List<PlayerScore>> replicationListener = scores -> { };
+    private volatile BiConsumer<String, PlayerScore> pointsReplicationListener = (boardName, points) -> { };
 
     @Inject
-    public ScoreIngestionServiceImpl(PlayerScoreRepository playScoreRepository) {
-        this.scoreRepository = playScoreRepository;
+    public ScoreIngestionServiceImpl(ScoreWriteBehindQueue writeBehindQueue, PlayerRankIndex rankIndex, RankIndexStore indexStore, LeaderBoardRegistry boardRegistry, Config config, ApplicationLifecycle lifecycle, IngestionMetrics metrics, DatabaseExecutionContext databaseExecutor) {
+        this(writeBehindQueue, rankIndex, indexStore, boardRegistry, newFanOutExecutor(config.getInt("leaderboard.fanout.threads"), lifecycle), databaseExecutor, metrics);
+        long windowMillis = config.getDuration("leaderboard.coalescing.window", TimeUnit.MILLISECONDS);
+        if (windowMillis > 0) {
+            startCoalescing(windowMillis, config.getInt("leaderboard.coalescing.maxBatch"));
+            lifecycle.addStopHook(() -> CompletableFuture.runAsync(this::stopCoalescing));
+        }
+    }
+
+    public ScoreIngestionServiceImpl(ScoreWriteBehindQueue writeBehindQueue, PlayerRankIndex rankIndex, LeaderBoardRegistry boardRegistry, Executor fanOutExecutor) {
+        this(writeBehindQueue, rankIndex, RankIndexStore.disabled(), boardRegistry, fanOutExecutor, Runnable::run, new IngestionMetrics());
+    }
+
+    public ScoreIngestionServiceImpl(ScoreWriteBehindQueue writeBehindQueue, PlayerRankIndex rankIndex, RankIndexStore indexStore, LeaderBoardRegistry boardRegistry, Executor fanOutExecutor, Executor databaseExecutor, IngestionMetrics metrics) {
+        this.writeBehindQueue = writeBehindQueue;
+        this.rankIndex = rankIndex;
+        this.indexStore = indexStore;
+        this.boardRegistry = boardRegistry;
+        this.fanOutExecutor = fanOutExecutor;
+        this.databaseExecutor = databaseExecutor;
+        this.metrics = metrics;
     }
 
     /**
-     * Publishes a new player score to the database storage.
+     * Starts reducing single scores to one best score per player per window before they are stored and
+     * applied to the boards.
+     *
+     * @param windowMillis Longest time a score waits for better ones from the same player.
+     * @param maxBatch     Number of distinct players that triggers an early flush.
+     */
+    public void startCoalescing(long windowMillis, int maxBatch) {
+        ScoreCoalescer started = new ScoreCoalescer(this::applyCoalesced, TimeUnit.MILLISECONDS.toNanos(windowMillis), maxBatch, metrics);
+        started.start();
+        coalescer = started;
+    }
+
+    /**
+     * Stops coalescing, applying every score still pending.
+     */
+    public void stopCoalescing() {
+        ScoreCoalescer stopped = coalescer;
+        coalescer = null;
+        if (stopped != null) {
+            stopped.stop();
+        }
+    }
+
+    /**
+     * Queues a window's winners for storage in one go and applies those that were queued to the boards.
+     */
+    private Set<String> applyCoalesced(List<PlayerScore> winners) throws LeaderboardUpdateFailureException {
+        List<PlayerScore> rejected = writeBehindQueue.enqueueAll(winners);
+        if (rejected.isEmpty()) {
+            publishBatchToLeaderBoards(winners);
+            return Collections.emptySet();
+        }
+        Set<String> rejectedIds = new HashSet<>();
+        for (PlayerScore score : rejected) {
+            rejectedIds.add(score.getPlayerId());
+        }
+        List<PlayerScore> stored = new ArrayList<>(winners.size() - rejected.size());
+        for (PlayerScore winner : winners) {
+            if (!rejectedIds.contains(winner.getPlayerId())) {
+                stored.add(winner);
+            }
+        }
+        if (!stored.isEmpty()) {
+            publishBatchToLeaderBoards(stored);
+        }
+        return rejectedIds;
+    }
+
+    private static Executor newFanOutExecutor(int threads, ApplicationLifecycle lifecycle) {
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "leaderboard-fanout-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        lifecycle.addStopHook(() -> {
+            executor.shutdown();
+            return CompletableFuture.completedFuture(null);
+        });
+        return executor;
+    }
+
+    /**
+     * Publishes a new player score to the database storage. The score is queued for the write-behind
+     * stage, which persists it in a batch that only raises the stored score if the new one is higher,
+     * and keeps it for the next flush if that batch fails.
      *
      * @param newScore The new player score to publish.
-     * @throws DatabaseStorageException If database storage operation fails.
+     * @throws DatabaseStorageException If the score could not be queued for storage.
      */
     @Override
     public void publishToDatabaseStore(PlayerScore newScore) throws DatabaseStorageException {
-        try {
-            // Check if a score for the player already exists and is higher
-            Map<String, Object> queryParamsMap = new HashMap<>();
-            queryParamsMap.put("player_id", newScore.getPlayerId());
-            Optional<PlayerScore> scoreAlreadyPresent = scoreRepository.findById(PlayerScore.class, queryParamsMap);
-            if (scoreAlreadyPresent.isPresent() && scoreAlreadyPresent.get().getScore() >= newScore.getScore()) {
-                return; // Skip saving if existing score is higher or equal
-            }
-            scoreRepository.save(newScore, scoreAlreadyPresent.isPresent()); // Save the new score if it's higher
-        } catch (Exception e) {
-            throw new DatabaseStorageException("Could not publish data to storage: " + e.getMessage());
-        }
+        writeBehindQueue.enqueue(newScore);
     }
 
     /**
-     * Registers a leaderboard to receive updates.
+     * Persists a batch of player scores synchronously as a single batch upsert.
+     *
+     * @param newScores The player scores to persist.
+     * @throws DatabaseStorageException If the batch could not be written.
+     */
+    @Override
+    public void publishBatchToDatabaseStore(List<PlayerScore> newScores) throws DatabaseStorageException {
+        writeBehindQueue.writeThrough(newScores);
+    }
+
+    /**
+     * Registers a leaderboard to receive updates. Registering the same name again replaces the board.
      *
      * @param leaderBoard The leaderboard to register.
      */
     @Override
     public void registerLeaderBoard(LeaderBoard leaderBoard) {
-        leaderBoards.add(leaderBoard); // Add the leaderboard to the list of registered leaderboards
-        System.out.println("Registered leaderboards: " + leaderBoards.size());
+        boardRegistry.register(leaderBoard);
     }
 
     /**
-     * Publishes a new player score to all registered leaderboards.
+     * Publishes a new player score to the rank index and all registered leaderboards.
      *
      * @param newScore The new player score to publish.
      * @throws LeaderboardUpdateFailureException If leaderboard update operation fails.
      */
     @Override
     public void publishToLeaderBoards(PlayerScore newScore) throws LeaderboardUpdateFailureException {
-        for (LeaderBoard leaderBoard : leaderBoards) {
-            leaderBoard.publish(newScore); // Publish the new score to each registered leaderboard
+        publishBatchToLeaderBoards(Collections.singletonList(newScore));
+    }
+
+    /**
+     * Sets the callback given every batch of scores accepted on this node, once the batch has been
+     * applied to the boards. Scores already stored may still fail on a board, so the callback runs
+     * whether or not every board took them.
+     *
+     * @param listener Callback to run on the ingesting thread; it must not block.
+     */
+    @Override
+    public void setReplicationListener(Consumer<List<PlayerScore>> listener) {
+        this.replicationListener = listener;
+    }
+
+    /**
+     * Sets the callback given the points added to an additive board on this node, once the board
+     * has taken them.
+     *
+     * @param listener Callback to run on the adding thread with the board name and the points; it must not block.
+     */
+    @Override
+    public void setPointsReplicationListener(BiConsumer<String, PlayerScore> listener) {
+        this.pointsReplicationListener = listener;
+    }
+
+    /**
+     * Publishes a batch of player scores to the rank index and all registered leaderboards.
+     * Each board only receives the scores that can beat its current cut-off, and boards that
+     * none of the scores can change are skipped entirely.
+     *
+     * @param newScores The player scores to publish.
+     * @throws LeaderboardUpdateFailureException If any leaderboard update fails.
+     */
+    @Override
+    public void publishBatchToLeaderBoards(List<PlayerScore> newScores) throws LeaderboardUpdateFailureException {
+        try {
+            applyToLeaderBoards(newScores);
+        } catch (LeaderboardUpdateFailureException e) {
+            metrics.addFailed(newScores.size());
+            throw e;
+        } finally {
+            replicationListener.accept(newScores);
+        }
+        metrics.addIngested(newScores.size());
+    }
+
+    /**
+     * Applies a batch of scores accepted and stored by another node, like
+     * {@link #publishBatchToLeaderBoards} but without passing it to the replication listener again.
+     *
+     * @param newScores The player scores to apply.
+     * @throws LeaderboardUpdateFailureException If any leaderboard update fails.
+     */
+    @Override
+    public void applyReplicatedToLeaderBoards(List<PlayerScore> newScores) throws LeaderboardUpdateFailureException {
+        applyToLeaderBoards(newScores);
+    }
+
+    private void applyToLeaderBoards(List<PlayerScore> newScores) throws LeaderboardUpdateFailureException {
+        long start = System.nanoTime();
+        if (!boardRegistry.isSharded()) {
+            for (PlayerScore newScore : newScores) {
+                // Keep the full-population rank index current, logging accepted updates for warm starts
+                if (rankIndex.update(newScore)) {
+                    indexStore.record(newScore);
+                }
+            }
+        }
+        List<LeaderBoard> targets = new ArrayList<>();
+        List<List<PlayerScore>> targetScores = new ArrayList<>();
+        for (LeaderBoard leaderBoard : boardRegistry.getBoards()) {
+            List<PlayerScore> accepted = new ArrayList<>();
+            for (PlayerScore newScore : newScores) {
+                if (leaderBoard.canAccept(newScore)) {
+                    accepted.add(newScore);
+                }
+            }
+            if (!accepted.isEmpty()) {
+                targets.add(leaderBoard);
+                targetScores.add(accepted);
+            }
+        }
+        if (targets.isEmpty()) {
+            metrics.record(IngestionStage.FAN_OUT, start);
+            return;
+        }
+        // The calling thread takes the first board itself, the rest run on the fan-out executor
+        List<CompletableFuture<Void>> pending = new ArrayList<>(targets.size() - 1);
+        for (int i = 1; i < targets.size(); i++) {
+            LeaderBoard leaderBoard = targets.get(i);
+            List<PlayerScore> scores = targetScores.get(i);
+            pending.add(CompletableFuture.runAsync(() -> publishToBoard(leaderBoard, scores), fanOutExecutor));
+        }
+        RuntimeException failure = null;
+        try {
+            publishToBoard(targets.get(0), targetScores.get(0));
+        } catch (RuntimeException e) {
+            failure = e; // Kept until the other boards finish, so none is still being written when this returns
+        }
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        if (failure instanceof CompletionException) {
+            Throwable cause = failure.getCause() == null ? failure : failure.getCause();
+            throw new LeaderboardUpdateFailureException(cause.getMessage());
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        metrics.record(IngestionStage.FAN_OUT, start);
+    }
+
+    private void publishToBoard(LeaderBoard leaderBoard, List<PlayerScore> scores) {
+        long start = System.nanoTime();
+        try {
+            for (PlayerScore score : scores) {
+                leaderBoard.publish(score);
+            }
+            metrics.record(IngestionStage.CACHE_UPDATE, start);
+        } catch (LeaderboardUpdateFailureException e) {
+            throw new CompletionException(e);
         }
     }
 
@@ -80,6 +327,16 @@ public class ScoreIngestionServiceImpl implements ScoreIngestionToLeaderBoards,
      */
     @Override
     public Response publish(PlayerScore newScore) throws LeaderboardUpdateFailureException, DatabaseStorageException {
+        ScoreCoalescer current = coalescer;
+        if (current != null) {
+            // Waits for the end of the window; callers that can should use publishAsync instead
+            try {
+                current.offer(newScore).join();
+            } catch (CompletionException e) {
+                return Response.builder().message("User score insertion failed").build();
+            }
+            return Response.builder().message("User score ingested successfully").build();
+        }
         try {
             publishToDatabaseStore(newScore); // Publish to database storage
             publishToLeaderBoards(newScore);  // Publish to registered leaderboards
@@ -88,4 +345,120 @@ public class ScoreIngestionServiceImpl implements ScoreIngestionToLeaderBoards,
         }
         return Response.builder().message("User score ingested successfully").build();
     }
+
+    /**
+     * Publishes a batch of player scores as one unit: the batch is persisted first and only then
+     * applied to the leaderboards. Unlike {@link #publish}, failures are propagated so that callers
+     * such as queue consumers can redeliver the batch.
+     *
+     * @param newScores The player scores to publish.
+     * @throws LeaderboardUpdateFailureException If leaderboard update operation fails.
+     * @throws DatabaseStorageException          If database storage operation fails.
+     */
+    @Override
+    public Response publishAll(List<PlayerScore> newScores) throws LeaderboardUpdateFailureException, DatabaseStorageException {
+        publishBatchToDatabaseStore(newScores);
+        publishBatchToLeaderBoards(newScores);
+        return Response.builder().message(newScores.size() + " user scores ingested successfully").build();
+    }
+
+    /**
+     * Publishes a new player score like {@link #publish} without blocking the caller.
+     *
+     * @param newScore The new player score to publish.
+     * @return the response once the score is queued for storage and applied to the leaderboards.
+     */
+    @Override
+    public CompletionStage<Response> publishAsync(PlayerScore newScore) {
+        ScoreCoalescer current = coalescer;
+        if (current != null) {
+            return current.offer(newScore).handle((done, failure) -> Response.builder()
+                    .message(failure == null ? "User score ingested successfully" : "User score insertion failed")
+                    .build());
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return publish(newScore);
+            } catch (LeaderboardUpdateFailureException | DatabaseStorageException e) {
+                throw new CompletionException(e);
+            }
+        }, databaseExecutor);
+    }
+
+    /**
+     * Publishes a batch of player scores like {@link #publishAll} without blocking the caller.
+     *
+     * @param newScores The player scores to publish.
+     * @return the response, or a stage failed with the storage or leaderboard failure.
+     */
+    @Override
+    public CompletionStage<Response> publishAllAsync(List<PlayerScore> newScores) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return publishAll(newScores);
+            } catch (LeaderboardUpdateFailureException | DatabaseStorageException e) {
+                throw new CompletionException(e);
+            }
+        }, databaseExecutor);
+    }
+
+    /**
+     * Adds points to a player's total on an additive board. Only the board's accumulator is touched;
+     * the board writes its totals to the database itself.
+     *
+     * @param boardName Additive board to add to.
+     * @param points    Player and the points to add, negative to subtract.
+     * @return the response once the points are accumulated.
+     * @throws LeaderboardUpdateFailureException If the board could not take the points.
+     * @throws IllegalArgumentException          If there is no additive board with that name.
+     */
+    @Override
+    public Response addPoints(String boardName, PlayerScore points) throws LeaderboardUpdateFailureException {
+        Optional<LeaderBoard> board = boardRegistry.get(boardName);
+        if (!board.isPresent() || !(board.get() instanceof AdditiveLeaderBoard)) {
+            throw new IllegalArgumentException("Leaderboard " + boardName + " is not an additive board");
+        }
+        board.get().publish(points);
+        pointsReplicationListener.accept(boardName, points);
+        metrics.addIngested(1);
+        return Response.builder().message("Points added successfully").build();
+    }
+
+    /**
+     * Adds points added on another node to an additive board, without writing them or passing them to
+     * the points replication listener again.
+     *
+     * @param boardName Additive board to add to.
+     * @param points    Players and the points to add.
+     * @throws LeaderboardUpdateFailureException If the board could not take the points.
+     * @throws IllegalArgumentException          If there is no additive board with that name.
+     */
+    @Override
+    public void applyReplicatedPoints(String boardName, List<PlayerScore> points) throws LeaderboardUpdateFailureException {
+        Optional<LeaderBoard> board = boardRegistry.get(boardName);
+        if (!board.isPresent() || !(board.get() instanceof AdditiveLeaderBoard)) {
+            throw new IllegalArgumentException("Leaderboard " + boardName + " is not an additive board");
+        }
+        for (PlayerScore point : points) {
+            ((AdditiveLeaderBoard) board.get()).publishReplicated(point);
+        }
+    }
+
+    /**
+     * Adds points like {@link #addPoints} without blocking the caller.
+     *
+     * @param boardName Additive board to add to.
+     * @param points    Player and the points to add, negative to subtract.
+     * @return the response, or a stage failed with the leaderboard failure or the missing board.
+     */
+    @Override
+    public CompletionStage<Response> addPointsAsync(String boardName, PlayerScore points) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return addPoints(boardName, points);
+            } catch (LeaderboardUpdateFailureException e) {
+                throw new CompletionException(e);
+            }
+        }, databaseExecutor);
+    }
 }
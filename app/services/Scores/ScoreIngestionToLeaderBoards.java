@@ -4,7 +4,16 @@ import exceptions.LeaderboardUpdateFailureException;
 import models.PlayerScore;
 import services.Leaderboards.LeaderBoard;
 
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
 public interface ScoreIngestionToLeaderBoards {
 	public void registerLeaderBoard(LeaderBoard leaderBoard);
 	public void publishToLeaderBoards(PlayerScore newScore) throws LeaderboardUpdateFailureException;
+	public void publishBatchToLeaderBoards(List<PlayerScore> newScores) throws LeaderboardUpdateFailureException;
+	public void applyReplicatedToLeaderBoards(List<PlayerScore> newScores) throws LeaderboardUpdateFailureException;
+	public void setReplicationListener(Consumer<List<PlayerScore>> listener);
+	public void applyReplicatedPoints(String boardName, List<PlayerScore> points) throws LeaderboardUpdateFailureException;
+	public void setPointsReplicationListener(BiConsumer<String, PlayerScore> listener);
 }
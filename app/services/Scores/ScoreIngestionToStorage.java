@@ -4,6 +4,9 @@ package services.Scores;
 import exceptions.DatabaseStorageException;
 import models.PlayerScore;
 
+import java.util.List;
+
 public interface ScoreIngestionToStorage {
 	public void publishToDatabaseStore(PlayerScore newScore) throws DatabaseStorageException;
+	public void publishBatchToDatabaseStore(List<PlayerScore> newScores) throws DatabaseStorageException;
 }
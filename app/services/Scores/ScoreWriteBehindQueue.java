@@ -0,0 +1,364 @@
+package services.Scores;
+
+import com.typesafe.config.Config;
+import exceptions.DatabaseStorageException;
+import models.PlayerScore;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
+import services.Metrics.IngestionMetrics;
+import services.Metrics.IngestionStage;
+import views.PlayerScoreRepository;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous write-behind stage for score persistence.
+ *
+ * Scores are queued in a bounded buffer and a single flusher thread writes them as micro-batches,
+ * flushing when a batch is full or the oldest queued score has waited maxDelay. Each batch keeps only
+ * the best score per player and is written with one JDBC batch upsert, its rows ordered by player id
+ * so that concurrent batches lock shared rows in the same order.
+ *
+ * Scores are acknowledged once queued, so a batch that still fails after retries is not dropped: its
+ * rows are kept, best per player, and written with the next flush. While as many scores as the queue
+ * holds are kept unwritten, new scores are rejected instead of queued.
+ */
+@Singleton
+public class ScoreWriteBehindQueue {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 100;
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final PlayerScoreRepository scoreRepository;
+    private final BlockingQueue<PlayerScore> queue;
+    private final int batchSize;
+    private final int capacity;
+    private final Map<String, PlayerScore> unwritten = new HashMap<>(); // Guarded by itself; rows of failed batches
+    private final long maxDelayNanos;
+    private final long enqueueTimeoutMillis;
+    private final Thread flusher;
+    private final IngestionMetrics metrics;
+    private volatile boolean running;
+
+    private final LongAdder enqueuedScores = new LongAdder();
+    private final LongAdder rejectedScores = new LongAdder();
+    private final LongAdder flushedBatches = new LongAdder();
+    private final LongAdder flushedScores = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+    private final AtomicLong lastFlushMicros = new AtomicLong();
+    private final AtomicLong maxFlushMicros = new AtomicLong();
+
+    @Inject
+    public ScoreWriteBehindQueue(PlayerScoreRepository playScoreRepository, Config config, ApplicationLifecycle lifecycle, IngestionMetrics metrics) {
+        this(playScoreRepository,
+                config.getInt("leaderboard.writeBehind.batchSize"),
+                config.getDuration("leaderboard.writeBehind.maxDelay", TimeUnit.MILLISECONDS),
+                config.getInt("leaderboard.writeBehind.capacity"),
+                config.getDuration("leaderboard.writeBehind.enqueueTimeout", TimeUnit.MILLISECONDS),
+                metrics);
+        start();
+        lifecycle.addStopHook(() -> {
+            stop();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Creates a queue without starting the flusher thread.
+     *
+     * @param playScoreRepository  Repository the batches are written to.
+     * @param batchSize            Maximum number of scores per batch.
+     * @param maxDelayMillis       Maximum time a score waits before its batch is flushed.
+     * @param capacity             Maximum number of queued scores.
+     * @param enqueueTimeoutMillis How long enqueue waits for space before rejecting a score.
+     */
+    public ScoreWriteBehindQueue(PlayerScoreRepository playScoreRepository, int batchSize, long maxDelayMillis, int capacity, long enqueueTimeoutMillis) {
+        this(playScoreRepository, batchSize, maxDelayMillis, capacity, enqueueTimeoutMillis, new IngestionMetrics());
+    }
+
+    private ScoreWriteBehindQueue(PlayerScoreRepository playScoreRepository, int batchSize, long maxDelayMillis, int capacity, long enqueueTimeoutMillis, IngestionMetrics metrics) {
+        this.metrics = metrics;
+        this.scoreRepository = playScoreRepository;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.flusher = new Thread(this::runFlusher, "score-write-behind");
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * Queues a score for persistence.
+     *
+     * @param score Score to persist.
+     * @throws DatabaseStorageException If the queue stays full for longer than the enqueue timeout, or
+     *                                  too many scores of failed batches are still unwritten.
+     */
+    public void enqueue(PlayerScore score) throws DatabaseStorageException {
+        if (isBackedUp()) {
+            rejectedScores.increment();
+            throw new DatabaseStorageException("Write-behind queue is backed up behind failed writes");
+        }
+        try {
+            if (!queue.offer(score, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejectedScores.increment();
+                throw new DatabaseStorageException("Write-behind queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseStorageException("Interrupted while queueing score for storage");
+        }
+        enqueuedScores.increment();
+    }
+
+    /**
+     * Queues a batch of scores for persistence, waiting at most one enqueue timeout for the whole batch
+     * rather than one per score.
+     *
+     * @param scores Scores to persist.
+     * @return the scores that did not fit in the queue before the timeout.
+     */
+    public List<PlayerScore> enqueueAll(List<PlayerScore> scores) {
+        if (isBackedUp()) {
+            rejectedScores.add(scores.size());
+            return new ArrayList<>(scores);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(enqueueTimeoutMillis);
+        List<PlayerScore> rejected = new ArrayList<>(0);
+        for (PlayerScore score : scores) {
+            boolean queued;
+            try {
+                queued = queue.offer(score, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+            if (queued) {
+                enqueuedScores.increment();
+            } else {
+                rejectedScores.increment();
+                rejected.add(score);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Starts the background flusher.
+     */
+    public void start() {
+        running = true;
+        flusher.start();
+    }
+
+    /**
+     * Stops the background flusher and writes everything still queued.
+     */
+    public void stop() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.NANOSECONDS.toMillis(maxDelayNanos) + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        int lost = getUnwrittenScores();
+        if (lost > 0) {
+            logger.error("Write-behind queue stopped with " + lost + " scores that could not be written");
+        }
+        logger.info("Write-behind queue stopped after flushing " + flushedScores.sum() + " scores in " + flushedBatches.sum() + " batches");
+    }
+
+    /**
+     * Synchronously writes everything currently queued, along with the rows of earlier failed batches.
+     */
+    public void flush() {
+        List<PlayerScore> batch = new ArrayList<>(batchSize);
+        // Each batch written takes the earlier failed rows along, so they are retried once per flush
+        boolean retry = getUnwrittenScores() > 0;
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+            retry = false;
+        }
+        if (retry) {
+            writeBatch(batch);
+        }
+    }
+
+    private void runFlusher() {
+        List<PlayerScore> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PlayerScore first = queue.poll(maxDelayNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    if (getUnwrittenScores() > 0) {
+                        writeBatch(batch); // Retry failed rows even when nothing new arrives
+                    }
+                    continue;
+                }
+                batch.add(first);
+                // Fill the batch until it is full or the first score has waited maxDelay
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PlayerScore next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                writeBatch(batch);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Write-behind flush failed - " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Synchronously writes a batch, bypassing the queue. Used by callers that must know the batch
+     * is persisted before acknowledging it upstream.
+     *
+     * @param batch Scores to persist.
+     * @throws DatabaseStorageException If the batch could not be written after retries.
+     */
+    public void writeThrough(List<PlayerScore> batch) throws DatabaseStorageException {
+        upsert(batch);
+    }
+
+    /**
+     * Writes a queued batch together with the rows of earlier failed batches, keeping them all for the
+     * next flush if the write fails.
+     */
+    private void writeBatch(List<PlayerScore> batch) {
+        List<PlayerScore> rows = new ArrayList<>(batch);
+        synchronized (unwritten) {
+            rows.addAll(unwritten.values());
+            unwritten.clear();
+        }
+        try {
+            upsert(rows);
+        } catch (DatabaseStorageException e) {
+            synchronized (unwritten) {
+                for (PlayerScore row : rows) {
+                    unwritten.merge(row.getPlayerId(), row, (a, b) -> a.getScore() >= b.getScore() ? a : b);
+                }
+            }
+            logger.error("Keeping " + rows.size() + " scores of a failed batch for the next flush - " + e.getMessage());
+        }
+    }
+
+    private boolean isBackedUp() {
+        return getUnwrittenScores() >= capacity;
+    }
+
+    private void upsert(List<PlayerScore> batch) throws DatabaseStorageException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // Only the best score per player can change the stored row
+        Map<String, PlayerScore> bestPerPlayer = new HashMap<>();
+        for (PlayerScore score : batch) {
+            bestPerPlayer.merge(score.getPlayerId(), score, (a, b) -> a.getScore() >= b.getScore() ? a : b);
+        }
+        List<PlayerScore> rows = new ArrayList<>(bestPerPlayer.values());
+        // Concurrent batches lock the rows they share in the same order, so they cannot deadlock
+        rows.sort(Comparator.comparing(PlayerScore::getPlayerId));
+        long start = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                scoreRepository.upsertBatch(rows);
+                break;
+            } catch (DatabaseStorageException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    failedBatches.increment();
+                    throw e;
+                }
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    failedBatches.increment();
+                    throw e;
+                }
+            }
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        metrics.record(IngestionStage.DB_WRITE, start);
+        flushedBatches.increment();
+        flushedScores.add(batch.size());
+        lastBatchSize.set(rows.size());
+        lastFlushMicros.set(micros);
+        maxFlushMicros.accumulateAndGet(micros, Math::max);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Flushed " + batch.size() + " scores as " + rows.size() + " rows in " + micros + "us");
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getEnqueuedScores() {
+        return enqueuedScores.sum();
+    }
+
+    public long getRejectedScores() {
+        return rejectedScores.sum();
+    }
+
+    public long getFlushedBatches() {
+        return flushedBatches.sum();
+    }
+
+    public long getFlushedScores() {
+        return flushedScores.sum();
+    }
+
+    public long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    /**
+     * @return number of players whose scores are kept from failed batches for the next flush.
+     */
+    public int getUnwrittenScores() {
+        synchronized (unwritten) {
+            return unwritten.size();
+        }
+    }
+
+    public long getLastBatchSize() {
+        return lastBatchSize.get();
+    }
+
+    public long getLastFlushMicros() {
+        return lastFlushMicros.get();
+    }
+
+    public long getMaxFlushMicros() {
+        return maxFlushMicros.get();
+    }
+}
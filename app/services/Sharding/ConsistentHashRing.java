@@ -0,0 +1,72 @@
+package services.Sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Consistent-hash ring mapping player ids to shards.
+ *
+ * Each shard owns several virtual points on a 64-bit ring and a player belongs to the first point at
+ * or after the hash of its id, so adding a shard only moves about 1/N of the players. The ring is
+ * immutable and lookups are a binary search over a sorted array.
+ */
+public final class ConsistentHashRing {
+
+    private final int shardCount;
+    private final long[] points;
+    private final int[] owners;
+
+    public ConsistentHashRing(int shardCount, int virtualNodes) {
+        if (shardCount <= 0 || virtualNodes <= 0) {
+            throw new IllegalArgumentException("Shard and virtual node counts must be greater than zero");
+        }
+        this.shardCount = shardCount;
+        int total = shardCount * virtualNodes;
+        long[][] entries = new long[total][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                entries[shard * virtualNodes + v] = new long[]{hash("shard-" + shard + "#" + v), shard};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[total];
+        this.owners = new int[total];
+        for (int i = 0; i < total; i++) {
+            points[i] = entries[i][0];
+            owners[i] = (int) entries[i][1];
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @param playerId Player to place.
+     * @return the shard owning the player.
+     */
+    public int shardFor(String playerId) {
+        int index = Arrays.binarySearch(points, hash(playerId));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes with a murmur3 finalizer, so similar ids spread evenly.
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
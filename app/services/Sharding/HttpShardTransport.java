@@ -0,0 +1,140 @@
+package services.Sharding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import models.PlayerScore;
+import play.libs.Json;
+import play.libs.ws.WSClient;
+import play.libs.ws.WSRequest;
+import play.libs.ws.WSResponse;
+import services.Cache.ScoreDistribution;
+import services.Cache.ScoreKey;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
+/**
+ * Reaches shards running as separate processes through their /shard routes, one base URL per shard
+ * in shard order. Each node loads and serves its own shard, see {@link LocalShard}.
+ */
+public class HttpShardTransport implements ShardTransport {
+
+    private final WSClient wsClient;
+    private final List<String> nodeUrls;
+    private final Duration timeout;
+
+    public HttpShardTransport(WSClient wsClient, List<String> nodeUrls, Duration timeout) {
+        if (nodeUrls.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard node URL is required");
+        }
+        this.wsClient = wsClient;
+        this.nodeUrls = new ArrayList<>(nodeUrls);
+        this.timeout = timeout;
+    }
+
+    @Override
+    public int getShardCount() {
+        return nodeUrls.size();
+    }
+
+    @Override
+    public void load(ConsistentHashRing ring, Consumer<Consumer<PlayerScore>> source) {
+        // Remote shards load themselves at startup
+    }
+
+    @Override
+    public CompletionStage<Void> publish(int shard, PlayerScore score) {
+        return request(shard, "/shard/scores").post(Json.toJson(score))
+                .thenApply(response -> {
+                    expectOk(shard, response);
+                    return null;
+                });
+    }
+
+    @Override
+    public CompletionStage<List<PlayerScore>> top(int shard, int limit) {
+        return request(shard, "/shard/top")
+                .addQueryParameter("limit", String.valueOf(limit))
+                .get()
+                .thenApply(response -> scores(shard, response));
+    }
+
+    @Override
+    public CompletionStage<List<PlayerScore>> range(int shard, long offset, int limit) {
+        return request(shard, "/shard/range")
+                .addQueryParameter("offset", String.valueOf(offset))
+                .addQueryParameter("limit", String.valueOf(limit))
+                .get()
+                .thenApply(response -> scores(shard, response));
+    }
+
+    private List<PlayerScore> scores(int shard, WSResponse response) {
+        expectOk(shard, response);
+        List<PlayerScore> scores = new ArrayList<>();
+        for (JsonNode node : response.asJson()) {
+            scores.add(Json.fromJson(node, PlayerScore.class));
+        }
+        return scores;
+    }
+
+    @Override
+    public CompletionStage<Optional<PlayerScore>> find(int shard, String playerId) {
+        return request(shard, "/shard/player")
+                .addQueryParameter("id", playerId)
+                .get()
+                .thenApply(response -> {
+                    if (response.getStatus() == 404) {
+                        return Optional.<PlayerScore>empty();
+                    }
+                    expectOk(shard, response);
+                    return Optional.of(Json.fromJson(response.asJson(), PlayerScore.class));
+                });
+    }
+
+    @Override
+    public CompletionStage<Long> countAhead(int shard, ScoreKey key) {
+        return request(shard, "/shard/countAhead")
+                .addQueryParameter("score", String.valueOf(key.getScore()))
+                .addQueryParameter("playerId", key.getPlayerId())
+                .get()
+                .thenApply(response -> {
+                    expectOk(shard, response);
+                    return Long.parseLong(response.getBody().trim());
+                });
+    }
+
+    @Override
+    public CompletionStage<ScoreDistribution> distribution(int shard) {
+        return request(shard, "/shard/distribution")
+                .get()
+                .thenApply(response -> {
+                    expectOk(shard, response);
+                    return Json.fromJson(response.asJson(), ScoreDistribution.class);
+                });
+    }
+
+    @Override
+    public CompletionStage<Long> version(int shard) {
+        return request(shard, "/shard/version")
+                .get()
+                .thenApply(response -> {
+                    expectOk(shard, response);
+                    return Long.parseLong(response.getBody().trim());
+                });
+    }
+
+    private WSRequest request(int shard, String path) {
+        return wsClient.url(nodeUrls.get(shard) + path).setRequestTimeout(timeout);
+    }
+
+    private void expectOk(int shard, WSResponse response) {
+        if (response.getStatus() != 200) {
+            throw new CompletionException(new IllegalStateException(
+                    "Shard " + shard + " at " + nodeUrls.get(shard) + " answered " + response.getStatus() + " - " + response.getBody()));
+        }
+    }
+}
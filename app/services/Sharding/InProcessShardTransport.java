@@ -0,0 +1,83 @@
+package services.Sharding;
+
+import models.PlayerRank;
+import models.PlayerScore;
+import services.Cache.PlayerRankIndex;
+import services.Cache.ScoreDistribution;
+import services.Cache.ScoreKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
+/**
+ * Runs every shard as a separate rank index inside this JVM. Shards lock independently, so writes
+ * to different shards do not contend.
+ */
+public class InProcessShardTransport implements ShardTransport {
+
+    private final List<PlayerRankIndex> shards;
+
+    public InProcessShardTransport(int shardCount) {
+        this.shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new PlayerRankIndex());
+        }
+    }
+
+    @Override
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public void load(ConsistentHashRing ring, Consumer<Consumer<PlayerScore>> source) {
+        source.accept(score -> shards.get(ring.shardFor(score.getPlayerId())).update(score));
+    }
+
+    @Override
+    public CompletionStage<Void> publish(int shard, PlayerScore score) {
+        shards.get(shard).update(score);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletionStage<List<PlayerScore>> top(int shard, int limit) {
+        return range(shard, 0, limit);
+    }
+
+    @Override
+    public CompletionStage<List<PlayerScore>> range(int shard, long offset, int limit) {
+        List<PlayerRank> ranked = shards.get(shard).getRange(offset, limit);
+        List<PlayerScore> scores = new ArrayList<>(ranked.size());
+        for (PlayerRank rank : ranked) {
+            scores.add(new PlayerScore(rank.getPlayerId(), rank.getScore(), rank.getPlayerName()));
+        }
+        return CompletableFuture.completedFuture(scores);
+    }
+
+    @Override
+    public CompletionStage<Optional<PlayerScore>> find(int shard, String playerId) {
+        Optional<PlayerScore> score = shards.get(shard).getRank(playerId)
+                .map(rank -> new PlayerScore(rank.getPlayerId(), rank.getScore(), rank.getPlayerName()));
+        return CompletableFuture.completedFuture(score);
+    }
+
+    @Override
+    public CompletionStage<Long> countAhead(int shard, ScoreKey key) {
+        return CompletableFuture.completedFuture(shards.get(shard).countAhead(key));
+    }
+
+    @Override
+    public CompletionStage<ScoreDistribution> distribution(int shard) {
+        return CompletableFuture.completedFuture(shards.get(shard).getDistribution());
+    }
+
+    @Override
+    public CompletionStage<Long> version(int shard) {
+        return CompletableFuture.completedFuture(shards.get(shard).getVersion());
+    }
+}
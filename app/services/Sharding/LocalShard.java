@@ -0,0 +1,48 @@
+package services.Sharding;
+
+import com.typesafe.config.Config;
+import play.Logger;
+import services.Cache.PlayerRankIndex;
+import views.PlayerScoreRepository;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Optional;
+
+/**
+ * The shard this process serves to remote coordinators, if any. Configured with
+ * leaderboard.sharding.localShard; -1 means this process is not a shard node.
+ */
+@Singleton
+public class LocalShard {
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final PlayerRankIndex index;
+
+    @Inject
+    public LocalShard(Config config, PlayerScoreRepository playScoreRepository) {
+        int shard = config.getInt("leaderboard.sharding.localShard");
+        if (shard < 0) {
+            this.index = null;
+            return;
+        }
+        ConsistentHashRing ring = new ConsistentHashRing(config.getInt("leaderboard.sharding.shards"),
+                config.getInt("leaderboard.sharding.virtualNodes"));
+        this.index = new PlayerRankIndex();
+        // Only this shard's players are kept, so every node holds roughly 1/N of the population
+        index.rebuildFrom(consumer -> playScoreRepository.forEachScore(score -> {
+            if (ring.shardFor(score.getPlayerId()) == shard) {
+                consumer.accept(score);
+            }
+        }));
+        logger.info("Serving shard " + shard + " of " + ring.getShardCount() + " with " + index.size() + " players");
+    }
+
+    /**
+     * @return this node's shard index, or empty if this process is not a shard node.
+     */
+    public Optional<PlayerRankIndex> getIndex() {
+        return Optional.ofNullable(index);
+    }
+}
@@ -0,0 +1,57 @@
+package services.Sharding;
+
+import models.PlayerScore;
+import services.Cache.ScoreDistribution;
+import services.Cache.ScoreKey;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
+/**
+ * How a sharded board reaches its shards. Each shard indexes every player the ring assigns to it;
+ * calls are asynchronous so a coordinator can scatter them to all shards at once.
+ */
+public interface ShardTransport {
+
+    int getShardCount();
+
+    /**
+     * Loads the shards hosted in this process from a streaming source. Transports whose shards run
+     * elsewhere do nothing, since every shard node loads its own players.
+     *
+     * @param ring   Ring assigning players to shards.
+     * @param source Feeds every stored score to the consumer it is given.
+     */
+    void load(ConsistentHashRing ring, Consumer<Consumer<PlayerScore>> source);
+
+    CompletionStage<Void> publish(int shard, PlayerScore score);
+
+    /**
+     * @return the shard's best scores in rank order.
+     */
+    CompletionStage<List<PlayerScore>> top(int shard, int limit);
+
+    /**
+     * @return up to limit of the shard's players from its local position offset on, in rank order.
+     */
+    CompletionStage<List<PlayerScore>> range(int shard, long offset, int limit);
+
+    CompletionStage<Optional<PlayerScore>> find(int shard, String playerId);
+
+    /**
+     * @return number of the shard's players ranked strictly ahead of the key.
+     */
+    CompletionStage<Long> countAhead(int shard, ScoreKey key);
+
+    /**
+     * @return histogram of the shard's scores, mergeable with the other shards'.
+     */
+    CompletionStage<ScoreDistribution> distribution(int shard);
+
+    /**
+     * @return a version that moves on whenever the shard's scores change, whichever node wrote them.
+     */
+    CompletionStage<Long> version(int shard);
+}
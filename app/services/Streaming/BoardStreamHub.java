@@ -0,0 +1,330 @@
+package services.Streaming;
+
+import akka.NotUsed;
+import akka.japi.Pair;
+import akka.stream.Materializer;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.BroadcastHub;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.stream.javadsl.SourceQueueWithComplete;
+import akka.util.ByteString;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.typesafe.config.Config;
+import models.PlayerScore;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
+import play.libs.Json;
+import services.Cache.BoardSnapshot;
+import services.Leaderboards.LeaderBoard;
+import services.Leaderboards.LeaderBoardRegistry;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes top-N changes to subscribed clients as server-sent events.
+ *
+ * A board's change listener only marks it dirty. Every coalescing interval, each dirty board's
+ * snapshot is compared with the last one sent, and the rank-level differences are encoded once into
+ * a single frame that is broadcast to every subscriber of that board. Bursts of updates therefore
+ * cost one diff per interval however many scores or subscribers there are.
+ *
+ * Each subscriber first gets a "snapshot" event with the full top N and the stream's sequence number,
+ * then "diff" events carrying the sequence they apply to ("from") and the one they produce. Changes
+ * that leave the visible top N as it was send nothing and keep the sequence. A client whose sequence
+ * does not match a diff's "from" missed a frame and should reconnect. A subscriber that falls
+ * more than the buffer size behind is disconnected rather than slowing the others down.
+ *
+ * Long-polling clients wait on the same streams: a waiter is answered by the first flush that finds
+ * the board at another version than the one it holds, or with the unchanged snapshot when its wait
+ * runs out.
+ *
+ * Boards are only ever read through their async snapshot, so a slow shard behind one board holds up
+ * neither the other boards' streams nor the request threads.
+ */
+@Singleton
+public class BoardStreamHub {
+
+    private static final ByteString KEEP_ALIVE = ByteString.fromString(":\n\n");
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final LeaderBoardRegistry boardRegistry;
+    private final Materializer materializer;
+    private final int subscriberBuffer;
+    private final Duration keepAlive;
+    private final long recheckNanos;
+    private final ConcurrentMap<String, BoardStream> streams = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private long lastRecheck = System.nanoTime();
+
+    @Inject
+    public BoardStreamHub(LeaderBoardRegistry boardRegistry, Materializer materializer, Config config, ApplicationLifecycle lifecycle) {
+        this.boardRegistry = boardRegistry;
+        this.materializer = materializer;
+        this.subscriberBuffer = config.getInt("leaderboard.stream.subscriberBuffer");
+        this.keepAlive = config.getDuration("leaderboard.stream.keepAlive");
+        // Changes the listeners do not report, such as windows sliding, are picked up at this pace
+        this.recheckNanos = keepAlive.toNanos();
+        long intervalMillis = config.getDuration("leaderboard.stream.interval", TimeUnit.MILLISECONDS);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "leaderboard-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        lifecycle.addStopHook(() -> {
+            scheduler.shutdownNow();
+            for (BoardStream stream : streams.values()) {
+                stream.queue.complete();
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Subscribes to a board's changes. The first subscriber of a board reads its snapshot without
+     * blocking, since a sharded board's snapshot comes from other nodes.
+     *
+     * @param boardName Board to follow.
+     * @return the event stream once the board has been read, or empty if there is no such board.
+     */
+    public Optional<CompletionStage<Source<ByteString, NotUsed>>> subscribe(String boardName) {
+        Optional<LeaderBoard> board = boardRegistry.get(boardName);
+        if (!board.isPresent()) {
+            return Optional.empty();
+        }
+        return Optional.of(streamFor(boardName, board.get()).thenApply(stream -> Source.single(stream.current.snapshotFrame)
+                .concat(stream.hub.buffer(subscriberBuffer, OverflowStrategy.fail()))
+                .keepAlive(keepAlive, () -> KEEP_ALIVE)));
+    }
+
+    /**
+     * Waits until a board's version moves past the one a client already has.
+     *
+     * @param boardName    Board to follow.
+     * @param knownVersion Version the client holds.
+     * @param maxWait      How long to wait before answering with the unchanged snapshot.
+     * @return the first snapshot at another version, or the current one once maxWait has passed;
+     * empty if there is no such board.
+     */
+    public Optional<CompletionStage<BoardSnapshot>> awaitChange(String boardName, long knownVersion, Duration maxWait) {
+        Optional<LeaderBoard> board = boardRegistry.get(boardName);
+        if (!board.isPresent()) {
+            return Optional.empty();
+        }
+        return Optional.of(streamFor(boardName, board.get()).thenCompose(stream -> {
+            Waiter waiter = new Waiter(knownVersion);
+            stream.waiters.add(waiter);
+            // A change flushed before the waiter was queued would otherwise go unnoticed until the recheck
+            stream.dirty.set(true);
+            ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+                if (stream.waiters.remove(waiter)) {
+                    stream.board.getSnapshotAsync().whenComplete((snapshot, failure) -> {
+                        if (failure != null) {
+                            waiter.result.completeExceptionally(failure);
+                        } else {
+                            waiter.result.complete(snapshot);
+                        }
+                    });
+                }
+            }, maxWait.toMillis(), TimeUnit.MILLISECONDS);
+            waiter.result.whenComplete((snapshot, failure) -> timeout.cancel(false));
+            return waiter.result;
+        }));
+    }
+
+    /**
+     * Returns the board's stream, reading the board first if nobody follows it yet.
+     */
+    private CompletionStage<BoardStream> streamFor(String boardName, LeaderBoard board) {
+        BoardStream existing = streams.get(boardName);
+        if (existing != null) {
+            return CompletableFuture.completedFuture(existing);
+        }
+        return board.getSnapshotAsync().thenApply(initial -> streams.computeIfAbsent(boardName, name -> new BoardStream(name, board, initial)));
+    }
+
+    private void flush() {
+        boolean recheck = System.nanoTime() - lastRecheck >= recheckNanos;
+        if (recheck) {
+            lastRecheck = System.nanoTime();
+        }
+        for (BoardStream stream : streams.values()) {
+            stream.flush(recheck);
+        }
+    }
+
+    /**
+     * One board's broadcast: a queue feeding a hub that every subscriber attaches to.
+     */
+    private final class BoardStream {
+
+        private final String name;
+        private final AtomicBoolean dirty = new AtomicBoolean(true);
+        private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+        private final SourceQueueWithComplete<ByteString> queue;
+        private final Source<ByteString, NotUsed> hub;
+        private final AtomicBoolean reading = new AtomicBoolean(); // A snapshot read is still out
+        private volatile LeaderBoard board; // Only replaced by the flush thread after construction
+        private volatile Sent current; // What the last frame left subscribers with
+
+        private BoardStream(String name, LeaderBoard board, BoardSnapshot initial) {
+            this.name = name;
+            this.current = new Sent(name, initial, 0);
+            Pair<SourceQueueWithComplete<ByteString>, Source<ByteString, NotUsed>> pair =
+                    Source.<ByteString>queue(subscriberBuffer, OverflowStrategy.dropHead())
+                            .toMat(BroadcastHub.of(ByteString.class, 256), Keep.both())
+                            .run(materializer);
+            this.queue = pair.first();
+            this.hub = pair.second();
+            // Keeps the hub draining while nobody is subscribed
+            hub.runWith(Sink.ignore(), materializer);
+            attach(board);
+        }
+
+        private void attach(LeaderBoard board) {
+            this.board = board;
+            board.setChangeListener(() -> dirty.set(true));
+        }
+
+        /**
+         * Reads the board without blocking the flush thread, which serves every board, and sends what
+         * changed once the snapshot arrives. A board whose last read is still out is skipped until then.
+         */
+        private void flush(boolean recheck) {
+            Optional<LeaderBoard> registered = boardRegistry.get(name);
+            if (registered.isPresent() && registered.get() != board) {
+                attach(registered.get()); // The board was replaced under the same name
+                dirty.set(true);
+            }
+            if (!dirty.get() && !recheck) {
+                return;
+            }
+            if (!reading.compareAndSet(false, true)) {
+                return; // Stays dirty for the flush after the read completes
+            }
+            dirty.set(false);
+            board.getSnapshotAsync().whenComplete((snapshot, failure) -> {
+                try {
+                    if (failure != null) {
+                        logger.warn("Could not stream changes of leaderboard " + name + " - " + failure.getMessage());
+                    } else {
+                        send(snapshot);
+                    }
+                } finally {
+                    reading.set(false);
+                }
+            });
+        }
+
+        private void send(BoardSnapshot snapshot) {
+            Sent sent = current;
+            wake(snapshot);
+            if (sent.snapshot.getVersion() == snapshot.getVersion()) {
+                return;
+            }
+            Optional<ByteString> diff = diffFrame(name, sent.snapshot, snapshot, sent.sequence);
+            if (diff.isPresent()) {
+                current = new Sent(name, snapshot, sent.sequence + 1);
+                queue.offer(diff.get());
+            }
+        }
+
+        private void wake(BoardSnapshot snapshot) {
+            for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+                Waiter waiter = it.next();
+                if (waiter.knownVersion != snapshot.getVersion()) {
+                    it.remove();
+                    waiter.result.complete(snapshot);
+                }
+            }
+        }
+    }
+
+    /**
+     * A long-polling client waiting for the board to leave the version it holds.
+     */
+    private static final class Waiter {
+        private final long knownVersion;
+        private final CompletableFuture<BoardSnapshot> result = new CompletableFuture<>();
+
+        private Waiter(long knownVersion) {
+            this.knownVersion = knownVersion;
+        }
+    }
+
+    /**
+     * A snapshot as of a stream sequence number, with its "snapshot" event encoded once for every
+     * subscriber that joins at that point.
+     */
+    private static final class Sent {
+        private final BoardSnapshot snapshot;
+        private final long sequence;
+        private final ByteString snapshotFrame;
+
+        private Sent(String boardName, BoardSnapshot snapshot, long sequence) {
+            this.snapshot = snapshot;
+            this.sequence = sequence;
+            String prefix = "event: snapshot\ndata: {\"board\":" + Json.stringify(Json.toJson(boardName))
+                    + ",\"version\":" + sequence + ",\"players\":";
+            this.snapshotFrame = ByteString.fromString(prefix)
+                    .concat(ByteString.fromArray(snapshot.getJson()))
+                    .concat(ByteString.fromString("}\n\n"));
+        }
+    }
+
+    /**
+     * Encodes the ranks whose player or score differ between two snapshots.
+     *
+     * @param fromSequence Stream sequence of the previous snapshot; the diff produces the next one.
+     *
+     * @return the frame, or empty if the visible top N is unchanged.
+     */
+    static Optional<ByteString> diffFrame(String boardName, BoardSnapshot previous, BoardSnapshot current, long fromSequence) {
+        List<PlayerScore> before = previous.getPlayers();
+        List<PlayerScore> after = current.getPlayers();
+        ArrayNode changes = Json.newArray();
+        for (int i = 0; i < after.size(); i++) {
+            PlayerScore now = after.get(i);
+            PlayerScore then = i < before.size() ? before.get(i) : null;
+            if (then == null || !then.getPlayerId().equals(now.getPlayerId()) || then.getScore() != now.getScore()
+                    || !Objects.equals(then.getPlayerName(), now.getPlayerName())) {
+                changes.addObject()
+                        .put("rank", i + 1)
+                        .put("playerId", now.getPlayerId())
+                        .put("playerName", now.getPlayerName())
+                        .put("score", now.getScore());
+            }
+        }
+        if (changes.size() == 0 && before.size() == after.size()) {
+            return Optional.empty();
+        }
+        ObjectNode diff = Json.newObject()
+                .put("board", boardName)
+                .put("from", fromSequence)
+                .put("version", fromSequence + 1)
+                .put("size", after.size());
+        diff.set("changes", changes);
+        return Optional.of(ByteString.fromString("event: diff\ndata: " + Json.stringify(diff) + "\n\n", StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,68 @@
+package views;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executor for blocking database calls, kept apart from Play's default dispatcher so that a slow
+ * Postgres only ties up these threads and requests that never touch the database keep being served.
+ *
+ * By default this is the "database-dispatcher" thread pool, sized to the connection pool since more
+ * threads would only queue for connections. With leaderboard.database.virtualThreads set on a runtime
+ * that has them, every task gets its own virtual thread instead, which waits for a connection without
+ * holding a platform thread.
+ */
+@Singleton
+public class DatabaseExecutionContext implements Executor {
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final Executor executor;
+
+    @Inject
+    public DatabaseExecutionContext(ActorSystem actorSystem, Config config, ApplicationLifecycle lifecycle) {
+        Optional<ExecutorService> virtualThreads = config.getBoolean("leaderboard.database.virtualThreads")
+                ? newVirtualThreadExecutor() : Optional.empty();
+        if (virtualThreads.isPresent()) {
+            lifecycle.addStopHook(() -> {
+                virtualThreads.get().shutdown();
+                return CompletableFuture.completedFuture(null);
+            });
+            this.executor = virtualThreads.get();
+        } else {
+            this.executor = actorSystem.dispatchers().lookup("database-dispatcher");
+        }
+    }
+
+    /**
+     * @param executor Executor to run database calls on.
+     */
+    public DatabaseExecutionContext(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    // Looked up reflectively since the build still targets runtimes without virtual threads
+    private Optional<ExecutorService> newVirtualThreadExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Virtual threads are not available on this runtime, using database-dispatcher");
+            return Optional.empty();
+        }
+    }
+}
@@ -4,42 +4,110 @@ import exceptions.DatabaseStorageException;
 import io.ebean.Ebean;
 import io.ebean.Finder;
 import io.ebean.Model;
+import io.ebean.Transaction;
 import models.PlayerScore;
 import play.Logger;
 import play.db.ebean.EbeanConfig;
 import play.db.ebean.EbeanDynamicEvolutions;
+import services.Metrics.IngestionMetrics;
+import services.Metrics.IngestionStage;
 
 import com.google.inject.Inject;
 import javax.inject.Singleton;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
 
 @Singleton
 public class PlayerScoreRepository extends Model {
 
+    // Keeps the higher of the stored and incoming score in a single round trip
+    private static final String UPSERT_BEST_SCORE_SQL =
+            "INSERT INTO player_scores (player_id, score, player_name) VALUES (?, ?, ?) " +
+            "ON CONFLICT (player_id) DO UPDATE SET score = EXCLUDED.score, player_name = EXCLUDED.player_name " +
+            "WHERE player_scores.score < EXCLUDED.score";
+
+    // Timestamped history backing the windowed boards
+    private static final String INSERT_SCORE_EVENT_SQL =
+            "INSERT INTO player_score_events (player_id, score, player_name, scored_at) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_SCORE_EVENTS_SINCE_SQL =
+            "SELECT player_id, score, player_name, scored_at FROM player_score_events WHERE scored_at >= ?";
+    private static final String DELETE_SCORE_EVENTS_BEFORE_SQL =
+            "DELETE FROM player_score_events WHERE scored_at < ?";
+
+    // Running totals of additive boards; the increment happens in the database, so flushes never
+    // need to read a total first and concurrent flushes cannot overwrite each other
+    private static final String ADD_BOARD_SCORE_SQL =
+            "INSERT INTO board_scores (board_name, player_id, score, player_name) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (board_name, player_id) DO UPDATE SET score = board_scores.score + EXCLUDED.score, " +
+            "player_name = EXCLUDED.player_name";
+    private static final String SELECT_BOARD_SCORES_SQL =
+            "SELECT player_id, score, player_name FROM board_scores WHERE board_name = ?";
+
     private final Logger.ALogger logger = Logger.of(this.getClass());
 
     private final Finder<Long, PlayerScore> finder = new Finder<>(PlayerScore.class);
 
     private final EbeanConfig ebeanConfig;
     private final EbeanDynamicEvolutions ebeanDynamicEvolutions;
+    private final IngestionMetrics metrics;
 
 
     @Inject
-    public PlayerScoreRepository(EbeanConfig ebeanConfig, EbeanDynamicEvolutions ebeanDynamicEvolutions) {
+    public PlayerScoreRepository(EbeanConfig ebeanConfig, EbeanDynamicEvolutions ebeanDynamicEvolutions, IngestionMetrics metrics) {
         this.ebeanConfig = ebeanConfig;
         this.ebeanDynamicEvolutions = ebeanDynamicEvolutions;
+        this.metrics = metrics;
     }
 
 
+    // Rows fetched per round trip when streaming the whole table
+    private static final int STREAM_FETCH_SIZE = 1000;
+
     public List<PlayerScore> findAll() {
         return finder.all();
     }
 
+    /**
+     * Retrieves the highest scores, letting the database do the top-K selection on the score index.
+     *
+     * @param limit Number of scores to return.
+     * @return Up to limit scores in descending order.
+     */
+    public List<PlayerScore> findTopScores(int limit) {
+        long start = System.nanoTime();
+        List<PlayerScore> topScores = finder.query()
+                .orderBy("score desc, playerId asc")
+                .setMaxRows(limit)
+                .findList();
+        metrics.record(IngestionStage.DB_LOOKUP, start);
+        return topScores;
+    }
+
+    /**
+     * Streams every stored score through a server-side cursor, so memory stays bounded
+     * regardless of table size.
+     *
+     * @param consumer Receives each score in turn.
+     */
+    public void forEachScore(Consumer<PlayerScore> consumer) {
+        finder.query()
+                .setBufferFetchSizeHint(STREAM_FETCH_SIZE)
+                .findEach(consumer);
+    }
+
     public <E extends Model> Optional<E>findById(Class<E> modelClass, Map<String, Object> params) throws DatabaseStorageException {
+        long start = System.nanoTime();
         try {
-            return Ebean.find(modelClass).where().allEq(params).findOneOrEmpty();
+            Optional<E> found = Ebean.find(modelClass).where().allEq(params).findOneOrEmpty();
+            metrics.record(IngestionStage.DB_LOOKUP, start);
+            return found;
         }
         catch (Exception e){
             throw new DatabaseStorageException("Error in finding the player Record");
@@ -57,4 +125,153 @@ public class PlayerScoreRepository extends Model {
         }
     }
 
+    /**
+     * Writes a batch of scores in one JDBC batch, keeping each player's best score, and records
+     * each score as a timestamped event in the same transaction.
+     *
+     * @param scores Scores to upsert.
+     * @throws DatabaseStorageException If the batch could not be written.
+     */
+    public void upsertBatch(List<PlayerScore> scores) throws DatabaseStorageException {
+        if (scores.isEmpty()) {
+            return;
+        }
+        try (Transaction transaction = Ebean.beginTransaction()) {
+            Connection connection = transaction.getConnection();
+            try (PreparedStatement statement = connection.prepareStatement(UPSERT_BEST_SCORE_SQL)) {
+                for (PlayerScore score : scores) {
+                    statement.setString(1, score.getPlayerId());
+                    statement.setLong(2, score.getScore());
+                    statement.setString(3, score.getPlayerName());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            Timestamp scoredAt = new Timestamp(System.currentTimeMillis());
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SCORE_EVENT_SQL)) {
+                for (PlayerScore score : scores) {
+                    statement.setString(1, score.getPlayerId());
+                    statement.setLong(2, score.getScore());
+                    statement.setString(3, score.getPlayerName());
+                    statement.setTimestamp(4, scoredAt);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            transaction.commit();
+        } catch (Exception e) {
+            logger.error("Batch upsert of " + scores.size() + " scores failed - " + e.getMessage());
+            throw new DatabaseStorageException("Error in saving player scores: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streams every score event recorded at or after the given time through a server-side cursor.
+     *
+     * @param sinceMillis Earliest event time, in epoch milliseconds.
+     * @param consumer    Receives each score with its event time in epoch milliseconds.
+     * @throws DatabaseStorageException If the events could not be read.
+     */
+    public void forEachScoreEventSince(long sinceMillis, ObjLongConsumer<PlayerScore> consumer) throws DatabaseStorageException {
+        try (Transaction transaction = Ebean.beginTransaction()) {
+            Connection connection = transaction.getConnection();
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_SCORE_EVENTS_SINCE_SQL)) {
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                statement.setTimestamp(1, new Timestamp(sinceMillis));
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        PlayerScore score = new PlayerScore(rows.getString(1), rows.getLong(2), rows.getString(3));
+                        consumer.accept(score, rows.getTimestamp(4).getTime());
+                    }
+                }
+            }
+            transaction.commit();
+        } catch (Exception e) {
+            logger.error("Reading score events failed - " + e.getMessage());
+            throw new DatabaseStorageException("Error in reading score events: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a batch of point deltas to an additive board's stored totals in one JDBC batch, creating
+     * the rows of players the board has not stored yet.
+     *
+     * @param boardName Board the totals belong to.
+     * @param deltas    Points to add, at most one entry per player.
+     * @throws DatabaseStorageException If the batch could not be written.
+     */
+    public void addToBoardScores(String boardName, List<PlayerScore> deltas) throws DatabaseStorageException {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try (Transaction transaction = Ebean.beginTransaction()) {
+            Connection connection = transaction.getConnection();
+            try (PreparedStatement statement = connection.prepareStatement(ADD_BOARD_SCORE_SQL)) {
+                for (PlayerScore delta : deltas) {
+                    statement.setString(1, boardName);
+                    statement.setString(2, delta.getPlayerId());
+                    statement.setLong(3, delta.getScore());
+                    statement.setString(4, delta.getPlayerName());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            transaction.commit();
+            metrics.record(IngestionStage.DB_WRITE, start);
+        } catch (Exception e) {
+            logger.error("Adding " + deltas.size() + " totals to board " + boardName + " failed - " + e.getMessage());
+            throw new DatabaseStorageException("Error in saving board totals: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streams an additive board's stored totals through a server-side cursor.
+     *
+     * @param boardName Board to read.
+     * @param consumer  Receives each player's total.
+     * @throws DatabaseStorageException If the totals could not be read.
+     */
+    public void forEachBoardScore(String boardName, Consumer<PlayerScore> consumer) throws DatabaseStorageException {
+        try (Transaction transaction = Ebean.beginTransaction()) {
+            Connection connection = transaction.getConnection();
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_BOARD_SCORES_SQL)) {
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                statement.setString(1, boardName);
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        consumer.accept(new PlayerScore(rows.getString(1), rows.getLong(2), rows.getString(3)));
+                    }
+                }
+            }
+            transaction.commit();
+        } catch (Exception e) {
+            logger.error("Reading totals of board " + boardName + " failed - " + e.getMessage());
+            throw new DatabaseStorageException("Error in reading board totals: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes score events older than every window that could still need them.
+     *
+     * @param beforeMillis Events before this time, in epoch milliseconds, are deleted.
+     * @return Number of deleted events.
+     * @throws DatabaseStorageException If the events could not be deleted.
+     */
+    public int deleteScoreEventsBefore(long beforeMillis) throws DatabaseStorageException {
+        try (Transaction transaction = Ebean.beginTransaction()) {
+            Connection connection = transaction.getConnection();
+            int deleted;
+            try (PreparedStatement statement = connection.prepareStatement(DELETE_SCORE_EVENTS_BEFORE_SQL)) {
+                statement.setTimestamp(1, new Timestamp(beforeMillis));
+                deleted = statement.executeUpdate();
+            }
+            transaction.commit();
+            return deleted;
+        } catch (Exception e) {
+            logger.error("Deleting score events failed - " + e.getMessage());
+            throw new DatabaseStorageException("Error in deleting score events: " + e.getMessage());
+        }
+    }
+
 }
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import models.PlayerScore;
+import org.openjdk.jmh.annotations.*;
+import play.libs.Json;
+import rabbitMq.PlayerScoreCodec;
+import services.Cache.BoardSnapshot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode cost of PlayerScoreConsumer envelopes in both formats, and the encode cost of a board
+ * snapshot's JSON body, per envelope or board.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    @Param({"100", "1000"})
+    private int boardSize;
+
+    private byte[] jsonEnvelope;
+    private byte[] binaryEnvelope;
+    private List<PlayerScore> board;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<PlayerScore> batch = Arrays.asList(Arrays.copyOf(Zipf.scores(10_000, 0, 42), batchSize));
+        jsonEnvelope = Json.mapper().writeValueAsBytes(batchSize == 1 ? batch.get(0) : batch);
+        binaryEnvelope = PlayerScoreCodec.encodeBinary(batch);
+        board = new ArrayList<>(boardSize);
+        for (int i = 0; i < boardSize; i++) {
+            board.add(new PlayerScore(Zipf.playerId(i), 1_000_000 - i, "Player " + i));
+        }
+    }
+
+    @Benchmark
+    public List<PlayerScore> decodeJson() throws IOException {
+        return PlayerScoreCodec.decode(PlayerScoreCodec.CONTENT_TYPE_JSON, jsonEnvelope);
+    }
+
+    @Benchmark
+    public List<PlayerScore> decodeBinary() throws IOException {
+        return PlayerScoreCodec.decode(PlayerScoreCodec.CONTENT_TYPE_BINARY, binaryEnvelope);
+    }
+
+    @Benchmark
+    public byte[] encodeSnapshot() {
+        return new BoardSnapshot(1, board).getJson();
+    }
+}
@@ -0,0 +1,48 @@
+package benchmarks;
+
+import models.PlayerScore;
+import services.Metrics.IngestionMetrics;
+import views.PlayerScoreRepository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Stand-in for Postgres that stores nothing, so ingestion benchmarks measure the services rather than
+ * a database. Boards start empty.
+ */
+final class DiscardingScoreRepository extends PlayerScoreRepository {
+
+    DiscardingScoreRepository() {
+        super(null, null, new IngestionMetrics());
+    }
+
+    @Override
+    public List<PlayerScore> findAll() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<PlayerScore> findTopScores(int limit) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void forEachScore(Consumer<PlayerScore> consumer) {
+    }
+
+    @Override
+    public void upsertBatch(List<PlayerScore> scores) {
+    }
+
+    @Override
+    public void forEachScoreEventSince(long sinceMillis, ObjLongConsumer<PlayerScore> consumer) {
+    }
+
+    @Override
+    public int deleteScoreEventsBefore(long beforeMillis) {
+        return 0;
+    }
+}
@@ -0,0 +1,110 @@
+package benchmarks;
+
+import exceptions.CacheInitializationException;
+import exceptions.DatabaseStorageException;
+import exceptions.LeaderboardNotInitializedException;
+import exceptions.LeaderboardUpdateFailureException;
+import models.PlayerScore;
+import models.Response;
+import org.openjdk.jmh.annotations.*;
+import services.Cache.PlayerRankIndex;
+import services.Cache.PlayerScoreCache;
+import services.Leaderboards.LeaderBoardRegistry;
+import services.Scores.ScoreIngestionServiceImpl;
+import services.Scores.ScoreWriteBehindQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingestion hot paths over a repository that stores nothing: a batch applied to the rank index and
+ * fanned out to every board, a single score published through the write-behind queue and the boards,
+ * and a single score offered to the coalescer. Scores are drawn fresh (see {@link Zipf#fresh}), so the
+ * boards keep taking some of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestionBenchmark {
+
+    private static final int POPULATION = 100_000;
+    private static final int BATCH_SIZE = 100;
+
+    // Named all-time boards registered besides the default and windowed ones
+    @Param({"0", "16"})
+    private int extraBoards;
+
+    @Param({"0", "0.99"})
+    private double skew;
+
+    private PlayerScore[] scores;
+    private ScoreWriteBehindQueue writeBehindQueue;
+    private ExecutorService fanOutExecutor;
+    private ScoreIngestionServiceImpl ingestion;
+    private ScoreIngestionServiceImpl coalescing;
+
+    @Setup(Level.Trial)
+    public void setUp() throws CacheInitializationException, LeaderboardNotInitializedException {
+        scores = Zipf.scores(POPULATION, skew, 42);
+        DiscardingScoreRepository repository = new DiscardingScoreRepository();
+        // Same sizes as the application's defaults
+        writeBehindQueue = new ScoreWriteBehindQueue(repository, 500, 50, 100_000, 100);
+        writeBehindQueue.start();
+        PlayerRankIndex rankIndex = new PlayerRankIndex();
+        LeaderBoardRegistry boardRegistry = new LeaderBoardRegistry(PlayerScoreCache::new, rankIndex, repository);
+        for (int board = 0; board < extraBoards; board++) {
+            boardRegistry.getOrCreate("board" + board, 100);
+        }
+        fanOutExecutor = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "benchmark-fanout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ingestion = new ScoreIngestionServiceImpl(writeBehindQueue, rankIndex, boardRegistry, fanOutExecutor);
+        coalescing = new ScoreIngestionServiceImpl(writeBehindQueue, rankIndex, boardRegistry, fanOutExecutor);
+        coalescing.startCoalescing(5, 1000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        coalescing.stopCoalescing();
+        writeBehindQueue.stop();
+        fanOutExecutor.shutdown();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private long draws;
+
+        PlayerScore next(PlayerScore[] samples) {
+            return Zipf.fresh(samples, draws++);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void publishBatchToLeaderBoards(Cursor cursor) throws LeaderboardUpdateFailureException {
+        List<PlayerScore> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(cursor.next(scores));
+        }
+        ingestion.publishBatchToLeaderBoards(batch);
+    }
+
+    @Benchmark
+    public Response publish(Cursor cursor) throws LeaderboardUpdateFailureException, DatabaseStorageException {
+        return ingestion.publish(cursor.next(scores));
+    }
+
+    @Benchmark
+    public CompletionStage<Response> publishCoalesced(Cursor cursor) {
+        return coalescing.publishAsync(cursor.next(scores));
+    }
+}
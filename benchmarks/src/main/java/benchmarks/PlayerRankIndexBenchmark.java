@@ -0,0 +1,73 @@
+package benchmarks;
+
+import models.PlayerRank;
+import models.PlayerScore;
+import org.openjdk.jmh.annotations.*;
+import services.Cache.PlayerRankIndex;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-population rank index updates and rank queries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlayerRankIndexBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int population;
+
+    @Param({"0", "0.99"})
+    private double skew;
+
+    private PlayerRankIndex index;
+    private PlayerScore[] scores;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scores = Zipf.scores(population, skew, 42);
+        index = new PlayerRankIndex();
+        index.rebuildFrom(consumer -> {
+            for (int player = 0; player < population; player++) {
+                consumer.accept(new PlayerScore(Zipf.playerId(player), player, "Player " + player));
+            }
+        });
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        private long draws;
+
+        int next() {
+            return next++ & Zipf.MASK;
+        }
+
+        PlayerScore fresh(PlayerScore[] samples) {
+            return Zipf.fresh(samples, draws++);
+        }
+    }
+
+    @Benchmark
+    public boolean update(Cursor cursor) {
+        // Fresh scores, so replayed samples still move players rather than only being rejected
+        return index.update(cursor.fresh(scores));
+    }
+
+    @Benchmark
+    public Optional<PlayerRank> getRank(Cursor cursor) {
+        return index.getRank(scores[cursor.next()].getPlayerId());
+    }
+
+    @Benchmark
+    public List<PlayerRank> getNeighbourhood(Cursor cursor) {
+        return index.getNeighbourhood(scores[cursor.next()].getPlayerId(), 5);
+    }
+}
@@ -0,0 +1,90 @@
+package benchmarks;
+
+import exceptions.CacheInitializationException;
+import exceptions.CacheUpdateFailureException;
+import models.PlayerScore;
+import org.openjdk.jmh.annotations.*;
+import services.Cache.BoardSnapshot;
+import services.Cache.PlayerScoreCache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-N cache writes and reads. The "mixed" group runs writers against readers on one shared board;
+ * the default is one writer to three readers, and other ratios are set with -tg, for example
+ * {@code -tg 4,4} for four of each.
+ *
+ * The board is filled from a warm-up sample of its own, and writes draw fresh scores (see
+ * {@link Zipf#fresh}), so they keep hitting both the accepted and the rejected path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlayerScoreCacheBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int boardSize;
+
+    @Param({"10000", "1000000"})
+    private int population;
+
+    @Param({"0", "0.99"})
+    private double skew;
+
+    private PlayerScoreCache cache;
+    private PlayerScore[] scores;
+
+    @Setup(Level.Trial)
+    public void setUp() throws CacheInitializationException, CacheUpdateFailureException {
+        scores = Zipf.scores(population, skew, 42);
+        cache = new PlayerScoreCache();
+        cache.initialize(boardSize, Collections.emptyList());
+        // Start from a full board so writes pay the real cut-off and eviction costs
+        for (PlayerScore score : Zipf.scores(population, skew, 7)) {
+            cache.addToCache(score);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private long draws;
+
+        PlayerScore next(PlayerScore[] samples) {
+            return Zipf.fresh(samples, draws++);
+        }
+    }
+
+    @Benchmark
+    public void addToCache(Cursor cursor) throws CacheUpdateFailureException {
+        cache.addToCache(cursor.next(scores));
+    }
+
+    @Benchmark
+    public boolean canAccept(Cursor cursor) {
+        return cache.canAccept(cursor.next(scores));
+    }
+
+    @Benchmark
+    public List<PlayerScore> getTopNPlayers() {
+        return cache.getTopNPlayers();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedWrite(Cursor cursor) throws CacheUpdateFailureException {
+        cache.addToCache(cursor.next(scores));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public BoardSnapshot mixedRead() {
+        return cache.getSnapshot();
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import models.PlayerScore;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Pre-generated player workloads. Player popularity follows a Zipfian distribution over the population,
+ * so a few players send most of the scores; a skew of 0 is uniform. Samples are drawn once in setup so
+ * the benchmarks measure the code under test, not the sampler.
+ */
+final class Zipf {
+
+    static final int SAMPLES = 1 << 20;
+    static final int MASK = SAMPLES - 1;
+    static final long SCORE_RANGE = 1_000_000_000L; // Sampled scores lie in [0, SCORE_RANGE)
+
+    private Zipf() {
+    }
+
+    /**
+     * @param population Number of distinct players.
+     * @param skew       Zipf exponent; 0 is uniform, 0.99 is typical of hot-player traffic.
+     * @param seed       Random seed, fixed so every fork sees the same workload.
+     * @return SAMPLES player indexes in [0, population).
+     */
+    static int[] players(int population, double skew, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] samples = new int[SAMPLES];
+        if (skew == 0) {
+            for (int i = 0; i < SAMPLES; i++) {
+                samples[i] = random.nextInt(population);
+            }
+            return samples;
+        }
+        double[] cumulative = new double[population];
+        double total = 0;
+        for (int i = 0; i < population; i++) {
+            total += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < SAMPLES; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            samples[i] = Math.min(population - 1, index < 0 ? -index - 1 : index);
+        }
+        return samples;
+    }
+
+    /**
+     * @return SAMPLES scores for the sampled players, with random values so some improve a player's best.
+     */
+    static PlayerScore[] scores(int population, double skew, long seed) {
+        int[] players = players(population, skew, seed);
+        SplittableRandom random = new SplittableRandom(seed + 1);
+        PlayerScore[] scores = new PlayerScore[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            scores[i] = new PlayerScore(playerId(players[i]), random.nextInt((int) SCORE_RANGE), "Player " + players[i]);
+        }
+        return scores;
+    }
+
+    /**
+     * Draws a score from the samples, raised by one score range per completed pass over them. Replayed
+     * samples then keep producing scores that can improve a player's best, instead of only measuring
+     * the rejected path once every sample has been applied.
+     *
+     * @param samples Samples from {@link #scores}.
+     * @param draw    Number of earlier draws from the same cursor.
+     * @return a new score for the sampled player.
+     */
+    static PlayerScore fresh(PlayerScore[] samples, long draw) {
+        PlayerScore sample = samples[(int) (draw & MASK)];
+        return new PlayerScore(sample.getPlayerId(), sample.getScore() + (draw / SAMPLES) * SCORE_RANGE, sample.getPlayerName());
+    }
+
+    static String playerId(int player) {
+        return "player" + player;
+    }
+}
@@ -0,0 +1,10 @@
+# --- Index backing top-K board initialization
+
+# --- !Ups
+
+create index ix_player_scores_score on player_scores (score desc, player_id);
+
+
+# --- !Downs
+
+drop index if exists ix_player_scores_score;
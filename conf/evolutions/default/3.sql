@@ -0,0 +1,19 @@
+# --- Timestamped score history for windowed leaderboards
+
+# --- !Ups
+
+create table player_score_events (
+  id                            bigserial not null,
+  player_id                     varchar(255) not null,
+  score                         bigint not null,
+  player_name                   varchar(255),
+  scored_at                     timestamptz not null,
+  constraint pk_player_score_events primary key (id)
+);
+
+create index ix_player_score_events_scored_at on player_score_events (scored_at);
+
+
+# --- !Downs
+
+drop table if exists player_score_events cascade;
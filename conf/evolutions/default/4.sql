@@ -0,0 +1,16 @@
+# --- Running totals for additive leaderboards
+
+# --- !Ups
+
+create table board_scores (
+  board_name                    varchar(255) not null,
+  player_id                     varchar(255) not null,
+  score                         bigint not null,
+  player_name                   varchar(255),
+  constraint pk_board_scores primary key (board_name, player_id)
+);
+
+
+# --- !Downs
+
+drop table if exists board_scores cascade;
@@ -0,0 +1,11 @@
+# --- Every stored score has a value; rows stored without one count as a score of 0
+
+# --- !Ups
+
+update player_scores set score = 0 where score is null;
+alter table player_scores alter column score set not null;
+
+
+# --- !Downs
+
+alter table player_scores alter column score drop not null;
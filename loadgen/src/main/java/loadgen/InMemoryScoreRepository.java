@@ -0,0 +1,65 @@
+package loadgen;
+
+import models.PlayerScore;
+import services.Metrics.IngestionMetrics;
+import views.PlayerScoreRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Stand-in for Postgres: keeps each player's best score in memory and can add a fixed delay to every
+ * batch write to model a slower database. Score events are not kept, so windowed boards start empty.
+ */
+final class InMemoryScoreRepository extends PlayerScoreRepository {
+
+    private final ConcurrentMap<String, PlayerScore> best = new ConcurrentHashMap<>();
+    private final long writeLatencyNanos;
+
+    InMemoryScoreRepository(long writeLatencyNanos) {
+        super(null, null, new IngestionMetrics());
+        this.writeLatencyNanos = writeLatencyNanos;
+    }
+
+    @Override
+    public List<PlayerScore> findAll() {
+        return new ArrayList<>(best.values());
+    }
+
+    @Override
+    public List<PlayerScore> findTopScores(int limit) {
+        List<PlayerScore> scores = new ArrayList<>(best.values());
+        scores.sort(Comparator.comparingLong(PlayerScore::getScore).reversed().thenComparing(PlayerScore::getPlayerId));
+        return scores.subList(0, Math.min(limit, scores.size()));
+    }
+
+    @Override
+    public void forEachScore(Consumer<PlayerScore> consumer) {
+        best.values().forEach(consumer);
+    }
+
+    @Override
+    public void upsertBatch(List<PlayerScore> scores) {
+        if (writeLatencyNanos > 0) {
+            LockSupport.parkNanos(writeLatencyNanos);
+        }
+        for (PlayerScore score : scores) {
+            best.merge(score.getPlayerId(), score, (stored, incoming) -> incoming.getScore() > stored.getScore() ? incoming : stored);
+        }
+    }
+
+    @Override
+    public void forEachScoreEventSince(long sinceMillis, ObjLongConsumer<PlayerScore> consumer) {
+    }
+
+    @Override
+    public int deleteScoreEventsBefore(long beforeMillis) {
+        return 0;
+    }
+}
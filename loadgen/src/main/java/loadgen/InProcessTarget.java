@@ -0,0 +1,66 @@
+package loadgen;
+
+import models.PlayerScore;
+import models.Response;
+import services.Cache.PlayerRankIndex;
+import services.Cache.PlayerScoreCache;
+import services.Leaderboards.LeaderBoardRegistry;
+import services.Scores.ScoreIngestionServiceImpl;
+import services.Scores.ScoreWriteBehindQueue;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The ingestion and leaderboard services running in this JVM over an in-memory repository, so the
+ * hot paths can be loaded without Postgres or RabbitMQ. Ingests go through {@code publish} as the
+ * HTTP action does, queue envelopes through {@code publishAll} as the queue consumer does, and reads
+ * fetch the default board's encoded snapshot.
+ */
+final class InProcessTarget implements Target {
+
+    private final ScoreWriteBehindQueue writeBehindQueue;
+    private final LeaderBoardRegistry boardRegistry;
+    private final ScoreIngestionServiceImpl ingestionService;
+    private final ExecutorService fanOutExecutor;
+
+    InProcessTarget(LoadOptions options) throws Exception {
+        InMemoryScoreRepository repository = new InMemoryScoreRepository(options.dbLatencyNanos);
+        // Same sizes as the application's defaults
+        this.writeBehindQueue = new ScoreWriteBehindQueue(repository, 500, 50, 100_000, 100);
+        writeBehindQueue.start();
+        PlayerRankIndex rankIndex = new PlayerRankIndex();
+        this.boardRegistry = new LeaderBoardRegistry(PlayerScoreCache::new, rankIndex, repository);
+        this.fanOutExecutor = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "loadgen-fanout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ingestionService = new ScoreIngestionServiceImpl(writeBehindQueue, rankIndex, boardRegistry, fanOutExecutor);
+    }
+
+    @Override
+    public void ingest(PlayerScore score) throws Exception {
+        Response response = ingestionService.publish(score);
+        if (response.getMessage().contains("failed")) {
+            throw new IllegalStateException(response.getMessage());
+        }
+    }
+
+    @Override
+    public void publish(List<PlayerScore> scores) throws Exception {
+        ingestionService.publishAll(scores);
+    }
+
+    @Override
+    public void read() throws Exception {
+        boardRegistry.getDefault().getSnapshot().getJson();
+    }
+
+    @Override
+    public void close() {
+        writeBehindQueue.stop();
+        fanOutExecutor.shutdown();
+    }
+}
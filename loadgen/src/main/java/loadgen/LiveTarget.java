@@ -0,0 +1,131 @@
+package loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import models.PlayerScore;
+import rabbitMq.PlayerScoreCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A running application: scores are posted over HTTP and published to its RabbitMQ queue, and reads go
+ * to the top scorers endpoint. The application brings its own Postgres.
+ */
+final class LiveTarget implements Target {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    private final String baseUrl;
+    private final String queue;
+    private final boolean binary;
+    private final Connection amqp; // Null when the mix publishes nothing
+    private final ThreadLocal<Channel> channels;
+    private final Queue<Channel> openChannels = new ConcurrentLinkedQueue<>();
+
+    LiveTarget(LoadOptions options) throws Exception {
+        this.baseUrl = options.url.endsWith("/") ? options.url.substring(0, options.url.length() - 1) : options.url;
+        this.queue = options.queue;
+        this.binary = options.amqpBinary;
+        if (options.mix.getOrDefault(Operation.QUEUE, 0) > 0) {
+            ConnectionFactory factory = new ConnectionFactory();
+            factory.setUri(options.amqpUri);
+            this.amqp = factory.newConnection("loadgen");
+            try (Channel channel = amqp.createChannel()) {
+                // Declared as the consumer declares it, so either side can start first
+                channel.queueDeclare(queue, true, false, false, null);
+            }
+        } else {
+            this.amqp = null;
+        }
+        // Channels must not be shared between threads, so each worker opens its own
+        this.channels = ThreadLocal.withInitial(() -> {
+            try {
+                Channel channel = amqp.createChannel();
+                openChannels.add(channel);
+                return channel;
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not open a channel - " + e.getMessage(), e);
+            }
+        });
+    }
+
+    @Override
+    public void ingest(PlayerScore score) throws IOException {
+        String response = send("POST", "/users/score", MAPPER.writeValueAsBytes(score));
+        // Rejected scores still come back as 200 with a failure message
+        if (response.contains("failed")) {
+            throw new IOException(response);
+        }
+    }
+
+    @Override
+    public void publish(List<PlayerScore> scores) throws IOException {
+        byte[] body = binary ? PlayerScoreCodec.encodeBinary(scores) : MAPPER.writeValueAsBytes(scores);
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                .contentType(binary ? PlayerScoreCodec.CONTENT_TYPE_BINARY : PlayerScoreCodec.CONTENT_TYPE_JSON)
+                .deliveryMode(2)
+                .build();
+        channels.get().basicPublish("", queue, properties, body);
+    }
+
+    @Override
+    public void read() throws IOException {
+        send("GET", "/getTopScorers", null);
+    }
+
+    private String send(String method, String path, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        // Reading the body to the end lets the connection be kept alive for the next request
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[8192];
+                for (int read = stream.read(buffer); read >= 0; read = stream.read(buffer)) {
+                    response.write(buffer, 0, read);
+                }
+            }
+        }
+        String text = new String(response.toByteArray(), StandardCharsets.UTF_8);
+        if (status >= 400) {
+            throw new IOException("HTTP " + status + " from " + path + " - " + text);
+        }
+        return text;
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Channel channel : openChannels) {
+            if (channel.isOpen()) {
+                channel.close();
+            }
+        }
+        if (amqp != null) {
+            amqp.close();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package loadgen;
+
+import models.PlayerScore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a mix of score ingests, queue publishes and top-scorer reads at a scheduled rate and reports
+ * throughput and latency percentiles.
+ *
+ * The load is open-loop: one dispatching thread sends each request when it is due, whatever the
+ * workers are doing, so a slow target sees the traffic it would in production rather than less of
+ * it. Requests beyond what the workers and their backlog can hold are dropped and counted.
+ *
+ * Examples:
+ * <pre>
+ *   sbt "loadgen/run --target=in-process --rate=20000 --duration=30s"
+ *   sbt "loadgen/run --target=live --url=http://localhost:9000 --mix=ingest:60,queue:20,read:20 --profile=tournament-end --peak=8"
+ *   sbt "loadgen/run --target=live --replay=scores.ndjson --replay-speed=2 --mix=ingest:80,read:20"
+ * </pre>
+ *
+ * Options: target (live, in-process), url, amqp-uri, queue, amqp-batch (scores per envelope),
+ * amqp-format (binary, json), mix, rate (base requests per second), duration, concurrency,
+ * profile (steady, tournament-end, spikes), peak (rate multiple at the profile's busiest point),
+ * players, skew (Zipf exponent, 0 is uniform), max-score, seed, replay (recorded score log),
+ * replay-speed (0 sends at the scheduled rate, otherwise a multiple of the recorded pacing),
+ * db-latency (added to every in-process batch write) and report-interval.
+ */
+public final class LoadGenerator {
+
+    private final LoadOptions options;
+    private final Target target;
+    private final ScoreFeed feed;
+    private final LoadReport report = new LoadReport();
+    private final SplittableRandom random;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    private LoadGenerator(LoadOptions options, Target target, ScoreFeed feed) {
+        this.options = options;
+        this.target = target;
+        this.feed = feed;
+        this.random = new SplittableRandom(options.seed);
+        List<Operation> weighted = new ArrayList<>();
+        List<Integer> cumulative = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<Operation, Integer> entry : options.mix.entrySet()) {
+            if (entry.getValue() > 0) {
+                total += entry.getValue();
+                weighted.add(entry.getKey());
+                cumulative.add(total);
+            }
+        }
+        this.operations = weighted.toArray(new Operation[0]);
+        this.cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("See the loadgen.LoadGenerator documentation for the options");
+            System.exit(2);
+            return;
+        }
+        ScoreFeed feed = options.replay == null
+                ? new ZipfScoreFeed(options.players, options.skew, options.maxScore, options.seed)
+                : new ReplayScoreFeed(options.replay);
+        try (Target target = options.target == LoadOptions.TargetKind.LIVE ? new LiveTarget(options) : new InProcessTarget(options)) {
+            new LoadGenerator(options, target, feed).run();
+        } finally {
+            if (feed instanceof AutoCloseable) {
+                ((AutoCloseable) feed).close();
+            }
+        }
+    }
+
+    private void run() throws InterruptedException {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(options.concurrency, options.concurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(options.concurrency * 64), runnable -> {
+                    Thread thread = new Thread(runnable, "loadgen-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        boolean replayPaced = options.replay != null && options.replaySpeed > 0;
+        System.out.println("Sending " + options.mix + " to " + options.target.name().toLowerCase().replace('_', '-') + " at " + options.rate
+                + " req/s (" + options.profile.name().toLowerCase().replace('_', '-') + ") for " + TimeUnit.NANOSECONDS.toSeconds(options.durationNanos) + "s");
+
+        long start = System.nanoTime();
+        long end = start + options.durationNanos;
+        long nextReport = start + options.reportIntervalNanos;
+        long intended = start;
+        while (true) {
+            double progress = Math.min(1, (intended - start) / (double) options.durationNanos);
+            Operation operation = pickOperation();
+            List<PlayerScore> scores = takeScores(operation, progress);
+            if (scores == null) {
+                break; // The replay log is exhausted
+            }
+            if (replayPaced && operation.writes() && feed.lastOffsetNanos() >= 0) {
+                intended = start + (long) (feed.lastOffsetNanos() / options.replaySpeed);
+            }
+            if (intended >= end) {
+                break;
+            }
+            long now = System.nanoTime();
+            if (now >= nextReport) {
+                report.printProgress(System.out, now - start);
+                nextReport += options.reportIntervalNanos;
+            }
+            while (now < intended) {
+                LockSupport.parkNanos(intended - now);
+                now = System.nanoTime();
+            }
+            dispatch(workers, operation, scores, intended);
+            if (!replayPaced || feed.lastOffsetNanos() < 0) {
+                double elapsedSeconds = (intended - start) / 1e9;
+                double rate = options.rate * options.profile.multiplier(progress, elapsedSeconds, options.peak);
+                intended += (long) (1e9 / rate);
+            }
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        report.printSummary(System.out, System.nanoTime() - start);
+    }
+
+    private Operation pickOperation() {
+        int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < operations.length; i++) {
+            if (draw < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    /**
+     * @return the scores the operation sends, empty for reads, or null once the feed runs out.
+     */
+    private List<PlayerScore> takeScores(Operation operation, double progress) {
+        if (!operation.writes()) {
+            return Collections.emptyList();
+        }
+        int count = operation == Operation.QUEUE ? options.amqpBatch : 1;
+        List<PlayerScore> scores = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PlayerScore score = feed.next(progress);
+            if (score == null) {
+                break;
+            }
+            scores.add(score);
+        }
+        return scores.isEmpty() ? null : scores;
+    }
+
+    private void dispatch(ThreadPoolExecutor workers, Operation operation, List<PlayerScore> scores, long intended) {
+        try {
+            workers.execute(() -> {
+                try {
+                    switch (operation) {
+                        case INGEST:
+                            target.ingest(scores.get(0));
+                            break;
+                        case QUEUE:
+                            target.publish(scores);
+                            break;
+                        default:
+                            target.read();
+                    }
+                    report.recordSuccess(operation, intended, scores.size());
+                } catch (Exception e) {
+                    report.recordFailure(operation, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            report.recordDropped();
+        }
+    }
+}
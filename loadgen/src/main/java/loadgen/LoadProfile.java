@@ -0,0 +1,45 @@
+package loadgen;
+
+/**
+ * How the request rate changes over a run, as a multiple of the base rate.
+ */
+enum LoadProfile {
+
+    /** The base rate throughout. */
+    STEADY {
+        @Override
+        double multiplier(double progress, double elapsedSeconds, double peak) {
+            return 1;
+        }
+    },
+
+    /**
+     * A tournament ending: the base rate for the first 80% of the run, then a linear ramp to the peak
+     * as every player posts a final score, holding the peak for the last 5%.
+     */
+    TOURNAMENT_END {
+        @Override
+        double multiplier(double progress, double elapsedSeconds, double peak) {
+            if (progress < 0.8) {
+                return 1;
+            }
+            return 1 + (peak - 1) * Math.min(1, (progress - 0.8) / 0.15);
+        }
+    },
+
+    /** The base rate with a one-second burst at the peak every ten seconds, like match results landing. */
+    SPIKES {
+        @Override
+        double multiplier(double progress, double elapsedSeconds, double peak) {
+            return elapsedSeconds % 10 < 1 ? peak : 1;
+        }
+    };
+
+    /**
+     * @param progress       Fraction of the run elapsed, in [0, 1].
+     * @param elapsedSeconds Seconds since the run started.
+     * @param peak           Multiplier at the profile's busiest point.
+     * @return the multiple of the base rate to send at.
+     */
+    abstract double multiplier(double progress, double elapsedSeconds, double peak);
+}
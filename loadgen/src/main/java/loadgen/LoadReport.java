@@ -0,0 +1,107 @@
+package loadgen;
+
+import services.Metrics.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput and latency per operation. Latency runs from when a request was due to be sent, not
+ * from when a worker got to it, so a target that falls behind shows its queueing delay instead of
+ * hiding it (no coordinated omission).
+ */
+final class LoadReport {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> failures = new EnumMap<>(Operation.class);
+    private final Map<Operation, String> lastFailures = new ConcurrentHashMap<>();
+    private final LongAdder scores = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private long lastCompleted;
+    private long lastReportNanos;
+
+    LoadReport() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            failures.put(operation, new LongAdder());
+        }
+    }
+
+    void recordSuccess(Operation operation, long intendedNanos, int scoreCount) {
+        latencies.get(operation).record(System.nanoTime() - intendedNanos);
+        scores.add(scoreCount);
+    }
+
+    void recordFailure(Operation operation, Exception failure) {
+        failures.get(operation).increment();
+        lastFailures.put(operation, String.valueOf(failure.getMessage()));
+    }
+
+    /**
+     * Counts a request that was never sent because every worker was busy and the backlog was full.
+     */
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    private long completed() {
+        long total = 0;
+        for (LatencyHistogram histogram : latencies.values()) {
+            total += histogram.getCount();
+        }
+        return total;
+    }
+
+    /**
+     * Prints the throughput since the last progress line and the overall p99 so far.
+     */
+    void printProgress(PrintStream out, long elapsedNanos) {
+        long completed = completed();
+        double seconds = (elapsedNanos - lastReportNanos) / 1e9;
+        StringBuilder line = new StringBuilder(String.format("%6.1fs %9.0f req/s", elapsedNanos / 1e9, (completed - lastCompleted) / seconds));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies.get(operation);
+            if (histogram.getCount() > 0) {
+                line.append(String.format("  %s p99 %s", operation.name().toLowerCase(), millis(histogram.getQuantileNanos(0.99))));
+            }
+        }
+        out.println(line);
+        lastCompleted = completed;
+        lastReportNanos = elapsedNanos;
+    }
+
+    void printSummary(PrintStream out, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        out.println();
+        out.println(String.format("%-8s %10s %10s %8s %10s %10s %10s %10s %10s", "op", "count", "req/s", "errors", "p50", "p90", "p99", "p99.9", "max"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies.get(operation);
+            long errors = failures.get(operation).sum();
+            if (histogram.getCount() == 0 && errors == 0) {
+                continue;
+            }
+            StringBuilder line = new StringBuilder(String.format("%-8s %10d %10.0f %8d", operation.name().toLowerCase(),
+                    histogram.getCount(), histogram.getCount() / seconds, errors));
+            for (double quantile : QUANTILES) {
+                line.append(String.format(" %10s", millis(histogram.getQuantileNanos(quantile))));
+            }
+            line.append(String.format(" %10s", millis(histogram.getMaxNanos())));
+            out.println(line);
+        }
+        for (Map.Entry<Operation, String> failure : lastFailures.entrySet()) {
+            out.println("Last " + failure.getKey().name().toLowerCase() + " failure: " + failure.getValue());
+        }
+        out.println(String.format("%d requests and %d scores in %.1fs (%.0f scores/s), %d dropped",
+                completed(), scores.sum(), seconds, scores.sum() / seconds, dropped.sum()));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
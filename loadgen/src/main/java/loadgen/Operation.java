@@ -0,0 +1,17 @@
+package loadgen;
+
+/**
+ * Kinds of request the generator sends.
+ */
+enum Operation {
+    /** One score posted to {@code POST /users/score}. */
+    INGEST,
+    /** One envelope of scores published to the score queue. */
+    QUEUE,
+    /** One read of {@code GET /getTopScorers}. */
+    READ;
+
+    boolean writes() {
+        return this != READ;
+    }
+}
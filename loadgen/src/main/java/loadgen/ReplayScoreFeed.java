@@ -0,0 +1,84 @@
+package loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import models.PlayerScore;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scores read back from a recorded log, one JSON object per line, streamed so logs of any size work.
+ *
+ * Both the API's field names (playerId, score, playerName) and the database's (player_id, score,
+ * player_name) are accepted, so a log can be captured from request bodies or exported from the score
+ * events table, for example with
+ * {@code COPY (SELECT row_to_json(e) FROM player_score_events e ORDER BY scored_at) TO STDOUT}.
+ * An optional scoredAt or scored_at field, in epoch milliseconds or as an ISO local date-time, lets
+ * the replay keep the recorded pacing.
+ */
+final class ReplayScoreFeed implements ScoreFeed, Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final BufferedReader reader;
+    private long firstMillis = Long.MIN_VALUE;
+    private long lastOffsetNanos = -1;
+
+    ReplayScoreFeed(String path) throws IOException {
+        this.reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public PlayerScore next(double progress) {
+        try {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.trim().isEmpty());
+            JsonNode record = MAPPER.readTree(line);
+            JsonNode scoredAt = field(record, "scoredAt", "scored_at");
+            if (scoredAt != null && !scoredAt.isNull()) {
+                long millis = scoredAt.isNumber() ? scoredAt.asLong()
+                        : LocalDateTime.parse(scoredAt.asText().replace(' ', 'T')).toInstant(ZoneOffset.UTC).toEpochMilli();
+                if (firstMillis == Long.MIN_VALUE) {
+                    firstMillis = millis;
+                }
+                lastOffsetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis - firstMillis));
+            }
+            JsonNode playerId = field(record, "playerId", "player_id");
+            JsonNode name = field(record, "playerName", "player_name");
+            if (playerId == null || !record.has("score")) {
+                throw new IOException("Replay record without a player id or score: " + line);
+            }
+            return new PlayerScore(playerId.asText(), record.get("score").asLong(), name == null || name.isNull() ? null : name.asText());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable replay record", e);
+        }
+    }
+
+    @Override
+    public long lastOffsetNanos() {
+        return lastOffsetNanos;
+    }
+
+    private static JsonNode field(JsonNode record, String apiName, String columnName) {
+        return record.has(apiName) ? record.get(apiName) : record.get(columnName);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
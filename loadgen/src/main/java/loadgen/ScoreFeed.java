@@ -0,0 +1,23 @@
+package loadgen;
+
+import models.PlayerScore;
+
+/**
+ * Source of the scores the generator sends. Feeds are only called from the dispatching thread.
+ */
+interface ScoreFeed {
+
+    /**
+     * @param progress Fraction of the run elapsed, in [0, 1].
+     * @return the next score, or null once the feed is exhausted.
+     */
+    PlayerScore next(double progress);
+
+    /**
+     * @return when the last score returned was recorded, in nanoseconds after the first one, or -1 if
+     * the feed carries no timestamps.
+     */
+    default long lastOffsetNanos() {
+        return -1;
+    }
+}
@@ -0,0 +1,18 @@
+package loadgen;
+
+import models.PlayerScore;
+
+import java.util.List;
+
+/**
+ * Where the generated requests go. Calls block until the request completes and throw if it failed;
+ * they are made concurrently from the worker threads.
+ */
+interface Target extends AutoCloseable {
+
+    void ingest(PlayerScore score) throws Exception;
+
+    void publish(List<PlayerScore> scores) throws Exception;
+
+    void read() throws Exception;
+}
@@ -0,0 +1,52 @@
+package loadgen;
+
+import models.PlayerScore;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generated scores. Player popularity follows a Zipfian distribution over the population, so a few
+ * players send most of the scores; a skew of 0 is uniform. Scores are uniform up to a ceiling that
+ * rises from half the maximum to the maximum over the run, so late scores keep displacing early ones
+ * the way they do as a tournament goes on.
+ */
+final class ZipfScoreFeed implements ScoreFeed {
+
+    private final SplittableRandom random;
+    private final double[] cumulative; // Null for a uniform population
+    private final int players;
+    private final long maxScore;
+
+    ZipfScoreFeed(int players, double skew, long maxScore, long seed) {
+        this.random = new SplittableRandom(seed);
+        this.players = players;
+        this.maxScore = maxScore;
+        if (skew == 0) {
+            this.cumulative = null;
+            return;
+        }
+        this.cumulative = new double[players];
+        double total = 0;
+        for (int i = 0; i < players; i++) {
+            total += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < players; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    @Override
+    public PlayerScore next(double progress) {
+        int player;
+        if (cumulative == null) {
+            player = random.nextInt(players);
+        } else {
+            int found = Arrays.binarySearch(cumulative, random.nextDouble());
+            player = Math.min(players - 1, found >= 0 ? found : -found - 1);
+        }
+        long ceiling = Math.max(1, (long) (maxScore * (0.5 + 0.5 * progress)));
+        return new PlayerScore("player" + player, (long) (random.nextDouble() * ceiling), "Player" + player);
+    }
+}
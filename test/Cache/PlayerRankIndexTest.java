@@ -0,0 +1,110 @@
+package Cache;
+
+import models.PlayerRank;
+import models.PlayerScore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import services.Cache.PlayerRankIndex;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class PlayerRankIndexTest {
+
+    private PlayerRankIndex rankIndex;
+
+    @BeforeEach
+    public void setUp() {
+        rankIndex = new PlayerRankIndex();
+    }
+
+    @Test
+    public void testRankAfterRebuild() {
+        rankIndex.rebuild(Arrays.asList(
+                new PlayerScore("player1", 100, "Alice"),
+                new PlayerScore("player2", 200, "Bob"),
+                new PlayerScore("player3", 150, "Charlie")
+        ));
+
+        assertEquals(1, rankIndex.getRank("player2").get().getRank());
+        assertEquals(2, rankIndex.getRank("player3").get().getRank());
+        assertEquals(3, rankIndex.getRank("player1").get().getRank());
+        assertFalse(rankIndex.getRank("player4").isPresent());
+    }
+
+    @Test
+    public void testRankKeepsBestScore() {
+        rankIndex.update(new PlayerScore("player1", 100, "Alice"));
+        rankIndex.update(new PlayerScore("player2", 200, "Bob"));
+        rankIndex.update(new PlayerScore("player1", 300, "Alice"));
+        rankIndex.update(new PlayerScore("player1", 50, "Alice"));
+
+        PlayerRank rank = rankIndex.getRank("player1").get();
+        assertEquals(1, rank.getRank());
+        assertEquals(300, rank.getScore());
+        assertEquals(2, rankIndex.getRank("player2").get().getRank());
+        assertEquals(2, rankIndex.size());
+    }
+
+    @Test
+    public void testRankMatchesSortedOrder() {
+        Random random = new Random(42);
+        Map<String, Long> best = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            String playerId = "player" + random.nextInt(2000);
+            long score = random.nextInt(5000);
+            rankIndex.update(new PlayerScore(playerId, score, playerId));
+            best.merge(playerId, score, Math::max);
+        }
+
+        List<String> expected = new ArrayList<>(best.keySet());
+        expected.sort(Comparator.comparing((String id) -> -best.get(id)).thenComparing(id -> id));
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i + 1, rankIndex.getRank(expected.get(i)).get().getRank());
+        }
+    }
+
+    @Test
+    public void testRangeAndNeighbourhood() {
+        List<PlayerScore> scores = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            scores.add(new PlayerScore("player" + i, i * 10L, "Player" + i));
+        }
+        rankIndex.rebuild(scores);
+
+        List<PlayerRank> page = rankIndex.getRange(10, 5);
+        assertEquals(5, page.size());
+        assertEquals(11, page.get(0).getRank());
+        assertEquals("player90", page.get(0).getPlayerId());
+        assertEquals("player86", page.get(4).getPlayerId());
+        assertEquals(0, rankIndex.getRange(100, 5).size());
+
+        List<PlayerRank> around = rankIndex.getNeighbourhood("player50", 2);
+        assertEquals(5, around.size());
+        assertEquals("player52", around.get(0).getPlayerId());
+        assertEquals("player50", around.get(2).getPlayerId());
+        assertEquals(51, around.get(2).getRank());
+
+        List<PlayerRank> top = rankIndex.getNeighbourhood("player100", 2);
+        assertEquals(3, top.size());
+        assertEquals(1, top.get(0).getRank());
+    }
+
+    @Test
+    public void testRankedRebuildKeepsNamesAndOrder() {
+        rankIndex.update(new PlayerScore("player1", 100, null));
+        rankIndex.update(new PlayerScore("player2", 200, "Bob"));
+        rankIndex.update(new PlayerScore("player1", 300, "Alice"));
+        List<PlayerScore> all = rankIndex.getAllInRankOrder();
+        assertEquals("player1", all.get(0).getPlayerId());
+        assertEquals("Alice", all.get(0).getPlayerName());
+
+        PlayerRankIndex restored = new PlayerRankIndex();
+        restored.rebuildFromRanked(all::forEach);
+        assertEquals(2, restored.size());
+        assertEquals(1, restored.getRank("player1").get().getRank());
+        assertEquals("Bob", restored.getRank("player2").get().getPlayerName());
+    }
+}
@@ -5,14 +5,23 @@ import exceptions.CacheUpdateFailureException;
 import models.PlayerScore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import services.Cache.BoardSnapshot;
 import services.Cache.PlayerScoreCache;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class PlayerScoreCacheTest {
 
@@ -132,4 +141,96 @@ public class PlayerScoreCacheTest {
 
         assertEquals(topPlayers,expectedOrder);
     }
+
+    @Test
+    public void testConcurrentUpdatesKeepBestScorePerPlayer() throws Exception {
+        cacheService.initialize(10, new ArrayList<>());
+
+        int threads = 8;
+        int playersPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (int round = 1; round <= 20; round++) {
+                    for (int p = 0; p < threads * playersPerThread; p++) {
+                        cacheService.addToCache(new PlayerScore("player" + p, (long) p * round, "Player" + p));
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        List<PlayerScore> topPlayers = cacheService.getTopNPlayers();
+        assertEquals(10, topPlayers.size());
+        int highest = threads * playersPerThread - 1;
+        for (int i = 0; i < topPlayers.size(); i++) {
+            assertEquals("player" + (highest - i), topPlayers.get(i).getPlayerId());
+            assertEquals((long) (highest - i) * 20, topPlayers.get(i).getScore());
+        }
+    }
+
+    @Test
+    public void testSnapshotOnlyChangesWithBoard() throws CacheInitializationException, CacheUpdateFailureException {
+        List<PlayerScore> initialData = Arrays.asList(
+                new PlayerScore("player1", 100, "Alice"),
+                new PlayerScore("player2", 200, "Bob"),
+                new PlayerScore("player3", 150, "Charlie")
+        );
+
+        cacheService.initialize(3, initialData);
+        BoardSnapshot first = cacheService.getSnapshot();
+        assertSame(first, cacheService.getSnapshot());
+
+        // Below the cut-off: the board and its snapshot stay the same
+        cacheService.addToCache(new PlayerScore("player6", 90, "Frank"));
+        assertSame(first, cacheService.getSnapshot());
+
+        cacheService.addToCache(new PlayerScore("player5", 210, "Eve"));
+        BoardSnapshot second = cacheService.getSnapshot();
+        assertTrue(second.getVersion() > first.getVersion());
+        assertEquals("player5", second.getPlayers().get(0).getPlayerId());
+        assertTrue(new String(second.getJson(), StandardCharsets.UTF_8).contains("\"playerId\":\"player5\""));
+    }
+
+    @Test
+    public void testChangeListenerOnlyRunsOnChanges() throws CacheInitializationException, CacheUpdateFailureException {
+        AtomicInteger changes = new AtomicInteger();
+        cacheService.setChangeListener(changes::incrementAndGet);
+        cacheService.initialize(2, Arrays.asList(
+                new PlayerScore("player1", 100, "Alice"),
+                new PlayerScore("player2", 200, "Bob")
+        ));
+        assertEquals(1, changes.get());
+
+        cacheService.addToCache(new PlayerScore("player6", 90, "Frank"));
+        cacheService.addToCache(new PlayerScore("player2", 150, "Bob"));
+        assertEquals(1, changes.get());
+
+        cacheService.addToCache(new PlayerScore("player5", 210, "Eve"));
+        assertEquals(2, changes.get());
+    }
+
+    @Test
+    public void testReinitializeKeepsLiveScoresAndMovesVersionForward() throws CacheInitializationException, CacheUpdateFailureException {
+        cacheService.initialize(2, Arrays.asList(new PlayerScore("player1", 100, "Alice")));
+        for (int score = 200; score < 300; score++) {
+            cacheService.addToCache(new PlayerScore("player2", score, "Bob"));
+        }
+        long before = cacheService.getSnapshot().getVersion();
+
+        // The stored data set has not caught up with player2 yet
+        cacheService.initialize(2, Arrays.asList(new PlayerScore("player1", 150, "Alice")));
+
+        BoardSnapshot after = cacheService.getSnapshot();
+        assertTrue(after.getVersion() > before);
+        assertEquals(Arrays.asList(
+                new PlayerScore("player2", 299, "Bob"),
+                new PlayerScore("player1", 150, "Alice")
+        ), after.getPlayers());
+    }
 }
@@ -0,0 +1,64 @@
+package Cache;
+
+import models.PlayerScore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import services.Cache.PlayerRankIndex;
+import services.Cache.RankIndexStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RankIndexStoreTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("rank-index-store");
+    }
+
+    @Test
+    public void testRestoreFromCheckpointAndLog() throws IOException {
+        RankIndexStore store = new RankIndexStore(directory);
+        PlayerRankIndex index = new PlayerRankIndex();
+        assertFalse(store.restore(index));
+        index.rebuild(Arrays.asList(
+                new PlayerScore("player1", 100, "Alice"),
+                new PlayerScore("player2", 200, "Bob")
+        ));
+        store.checkpoint(index);
+        PlayerScore update = new PlayerScore("player3", 300, "Charlie");
+        index.update(update);
+        store.record(update);
+        store.sync();
+
+        PlayerRankIndex restored = new PlayerRankIndex();
+        assertTrue(new RankIndexStore(directory).restore(restored));
+
+        assertEquals(3, restored.size());
+        assertEquals(1, restored.getRank("player3").get().getRank());
+        assertEquals(2, restored.getRank("player2").get().getRank());
+        assertEquals(3, restored.getRank("player1").get().getRank());
+    }
+
+    @Test
+    public void testCorruptSnapshotFallsBackToDatabase() throws IOException {
+        RankIndexStore store = new RankIndexStore(directory);
+        PlayerRankIndex index = new PlayerRankIndex();
+        store.restore(index);
+        index.update(new PlayerScore("player1", 100, "Alice"));
+        store.checkpoint(index);
+
+        Files.write(directory.resolve("rank-index.snapshot"), new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        assertFalse(new RankIndexStore(directory).restore(new PlayerRankIndex()));
+    }
+}
@@ -0,0 +1,101 @@
+package Cache;
+
+import models.PlayerScore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import play.libs.Json;
+import services.Cache.PlayerRankIndex;
+import services.Cache.ScoreDistribution;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScoreDistributionTest {
+
+    private PlayerRankIndex rankIndex;
+
+    @BeforeEach
+    public void setUp() {
+        rankIndex = new PlayerRankIndex();
+    }
+
+    @Test
+    public void testCountAboveStaysWithinBucketError() {
+        Random random = new Random(11);
+        long[] scores = new long[50_000];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextInt(1_000_000) - 100_000;
+            rankIndex.update(new PlayerScore("player" + i, scores[i], "Player " + i));
+        }
+        ScoreDistribution distribution = rankIndex.getDistribution();
+        assertEquals(scores.length, distribution.getCount());
+
+        for (long probe : new long[]{-99_000, -5, 0, 31, 1_000, 250_000, 899_999}) {
+            long exact = Arrays.stream(scores).filter(score -> score > probe).count();
+            // Uniform scores: each bucket holds about 1/32 of its magnitude, so a few percent of error
+            assertTrue(Math.abs(distribution.countAbove(probe) - exact) <= scores.length * 0.01);
+        }
+    }
+
+    @Test
+    public void testFollowsPlayersAsTheirScoresMove() {
+        rankIndex.update(new PlayerScore("player1", 10, "Alice"));
+        rankIndex.update(new PlayerScore("player2", 20, "Bob"));
+        rankIndex.update(new PlayerScore("player1", 30, "Alice"));
+        rankIndex.set(new PlayerScore("player2", 5, "Bob"));
+
+        ScoreDistribution distribution = rankIndex.getDistribution();
+        assertEquals(2, distribution.getCount());
+        assertEquals(1, distribution.countAbove(10));
+        assertEquals(0, distribution.countAbove(30));
+        assertEquals(2, distribution.countAbove(4));
+    }
+
+    @Test
+    public void testRebuiltByRankedLoad() {
+        rankIndex.rebuildFromRanked(sink -> {
+            sink.accept(new PlayerScore("player1", 300, "Alice"));
+            sink.accept(new PlayerScore("player2", 200, "Bob"));
+            sink.accept(new PlayerScore("player1", 100, "Alice"));
+        });
+
+        assertEquals(2, rankIndex.getDistribution().getCount());
+        assertEquals(1, rankIndex.getDistribution().countAbove(250));
+    }
+
+    @Test
+    public void testHistogramBinsCoverEveryPlayer() {
+        for (int i = 0; i < 1000; i++) {
+            rankIndex.update(new PlayerScore("player" + i, i, "Player " + i));
+        }
+
+        List<ScoreDistribution.Bin> bins = rankIndex.getDistribution().histogram(10);
+        assertEquals(10, bins.size());
+        assertEquals(0, bins.get(0).getFrom());
+        assertTrue(bins.get(9).getTo() >= 999);
+        assertEquals(1000, bins.stream().mapToLong(ScoreDistribution.Bin::getCount).sum());
+        for (ScoreDistribution.Bin bin : bins) {
+            assertTrue(Math.abs(bin.getCount() - 100) <= 40);
+        }
+    }
+
+    @Test
+    public void testShardHistogramsMergeThroughJson() {
+        PlayerRankIndex other = new PlayerRankIndex();
+        rankIndex.update(new PlayerScore("player1", -40, "Alice"));
+        rankIndex.update(new PlayerScore("player2", 7, "Bob"));
+        other.update(new PlayerScore("player3", 1_000_000, "Charlie"));
+
+        ScoreDistribution merged = new ScoreDistribution();
+        merged.add(Json.fromJson(Json.toJson(rankIndex.getDistribution()), ScoreDistribution.class));
+        merged.add(Json.fromJson(Json.toJson(other.getDistribution()), ScoreDistribution.class));
+
+        assertEquals(3, merged.getCount());
+        assertEquals(2, merged.countAbove(0));
+        assertEquals(1, merged.countAbove(7));
+    }
+}
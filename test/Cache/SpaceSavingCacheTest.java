@@ -0,0 +1,91 @@
+package Cache;
+
+import models.PlayerScore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import services.Cache.HeavyHitterSummary;
+import services.Cache.SpaceSavingCache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpaceSavingCacheTest {
+
+    private SpaceSavingCache cache;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        cache = new SpaceSavingCache(50);
+        cache.initialize(3, Collections.emptyList());
+    }
+
+    @Test
+    public void testCountsSubmissionsPerPlayer() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            cache.addToCache(new PlayerScore("player1", i, "Alice"));
+        }
+        cache.addToCache(new PlayerScore("player2", 1000, "Bob"));
+
+        List<PlayerScore> top = cache.getTopNPlayers();
+        assertEquals("player1", top.get(0).getPlayerId());
+        assertEquals(5, top.get(0).getScore());
+        assertEquals(1, top.get(1).getScore());
+    }
+
+    @Test
+    public void testHeavyHittersSurviveChurnWithinTheErrorBound() throws Exception {
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(7);
+        long total = 0;
+        for (int i = 0; i < 100_000; i++) {
+            // A few hot players among a long tail seen once or twice
+            String playerId = i % 4 == 0 ? "hot" + random.nextInt(3) : "tail" + random.nextInt(50_000);
+            cache.addToCache(new PlayerScore(playerId, 1, playerId));
+            exact.merge(playerId, 1L, Long::sum);
+            total++;
+        }
+
+        HeavyHitterSummary summary = cache.summarize();
+        assertEquals(50, summary.getCounters().size());
+        for (HeavyHitterSummary.Counter counter : summary.getCounters()) {
+            long truth = exact.get(counter.getPlayerId());
+            assertTrue(counter.getCount() >= truth);
+            assertTrue(counter.getCount() - counter.getError() <= truth);
+        }
+        assertTrue(summary.getMaxError() <= total / 50);
+        for (PlayerScore top : cache.getTopNPlayers()) {
+            assertTrue(top.getPlayerId().startsWith("hot"));
+        }
+    }
+
+    @Test
+    public void testMergedSummariesKeepUpperBounds() throws Exception {
+        SpaceSavingCache other = new SpaceSavingCache(2);
+        other.initialize(2, Collections.emptyList());
+        SpaceSavingCache small = new SpaceSavingCache(2);
+        small.initialize(2, Collections.emptyList());
+        for (String playerId : Arrays.asList("a", "a", "a", "b", "c")) {
+            small.addToCache(new PlayerScore(playerId, 1, playerId));
+        }
+        for (String playerId : Arrays.asList("b", "b", "d")) {
+            other.addToCache(new PlayerScore(playerId, 1, playerId));
+        }
+
+        HeavyHitterSummary merged = HeavyHitterSummary.merge(Arrays.asList(small.summarize(), other.summarize()), 2);
+
+        assertEquals(8, merged.getTotal());
+        assertEquals(2, merged.getCounters().size());
+        // True counts: a = 3, b = 3; each merged count is an upper bound with its error as the slack
+        for (HeavyHitterSummary.Counter counter : merged.getCounters()) {
+            assertTrue(counter.getCount() >= 3);
+            assertTrue(counter.getCount() - counter.getError() <= 3);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package Leaderboards;
+
+import exceptions.DatabaseStorageException;
+import models.PlayerScore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import services.Leaderboards.AdditiveLeaderBoard;
+import views.PlayerScoreRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class AdditiveLeaderBoardTest {
+
+    private PlayerScoreRepository scoreRepository;
+    private AdditiveLeaderBoard board;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        scoreRepository = Mockito.mock(PlayerScoreRepository.class);
+        board = new AdditiveLeaderBoard("points", scoreRepository, 2);
+    }
+
+    @Test
+    public void testPointsAddUpAndMovePlayersBothWays() throws Exception {
+        board.publish(new PlayerScore("player1", 100, "Alice"));
+        board.publish(new PlayerScore("player2", 80, "Bob"));
+        board.publish(new PlayerScore("player3", 50, "Charlie"));
+        board.publish(new PlayerScore("player1", 20, "Alice"));
+
+        List<PlayerScore> top = board.getTopNPlayers();
+        assertEquals(2, top.size());
+        assertEquals("player1", top.get(0).getPlayerId());
+        assertEquals(120, top.get(0).getScore());
+
+        // A penalty drops the leader off the board and lets the next player in
+        board.publish(new PlayerScore("player1", -100, "Alice"));
+        top = board.getTopNPlayers();
+        assertEquals("player2", top.get(0).getPlayerId());
+        assertEquals("player3", top.get(1).getPlayerId());
+        assertEquals(3, board.getRank("player1").get().getRank());
+        assertEquals(20, board.getRank("player1").get().getScore());
+    }
+
+    @Test
+    public void testConcurrentPointsAreNotLost() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    try {
+                        board.publish(new PlayerScore("hot", 1, "Hot"));
+                        if (j % 1000 == 0) {
+                            board.getTopNPlayers();
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(80_000, board.getTopNPlayers().get(0).getScore());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFlushWritesOneDeltaPerPlayerAndRetriesFailures() throws Exception {
+        ArgumentCaptor<List<PlayerScore>> deltas = ArgumentCaptor.forClass(List.class);
+        doThrow(new DatabaseStorageException("down")).doNothing().when(scoreRepository).addToBoardScores(eq("points"), anyList());
+        board.publish(new PlayerScore("player1", 100, "Alice"));
+        board.publish(new PlayerScore("player1", -30, "Alice"));
+
+        try {
+            board.flush();
+        } catch (DatabaseStorageException expected) {
+            // The deltas are kept for the next flush
+        }
+        board.publish(new PlayerScore("player1", 5, "Alice"));
+        board.flush();
+
+        verify(scoreRepository, times(2)).addToBoardScores(eq("points"), deltas.capture());
+        List<PlayerScore> written = new ArrayList<>(deltas.getAllValues().get(1));
+        assertEquals(1, written.size());
+        assertEquals(75, written.get(0).getScore());
+
+        // Nothing new, nothing written
+        board.flush();
+        verify(scoreRepository, times(2)).addToBoardScores(eq("points"), anyList());
+        assertFalse(board.canAccept(new PlayerScore("player1", 1000, "Alice")));
+    }
+
+    @Test
+    public void testStoredTotalsAreLoaded() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            Consumer<PlayerScore> consumer = invocation.getArgument(1);
+            consumer.accept(new PlayerScore("player1", 500, "Alice"));
+            return null;
+        }).when(scoreRepository).forEachBoardScore(eq("stored"), Mockito.any());
+        AdditiveLeaderBoard stored = new AdditiveLeaderBoard("stored", scoreRepository, 2);
+
+        stored.publish(new PlayerScore("player1", 10, "Alice"));
+        stored.flush();
+
+        // Only the new points are added to the stored total
+        assertEquals(510, stored.getTopNPlayers().get(0).getScore());
+        verify(scoreRepository).addToBoardScores("stored", Collections.singletonList(new PlayerScore("player1", 10, "Alice")));
+    }
+
+    @Test
+    public void testReplicatedPointsAreCountedButNotWritten() throws Exception {
+        board.publish(new PlayerScore("player1", 10, "Alice"));
+        board.publishReplicated(new PlayerScore("player1", 90, "Alice"));
+        board.publishReplicated(new PlayerScore("player2", 40, "Bob"));
+
+        assertEquals(100, board.getTopNPlayers().get(0).getScore());
+        board.flush();
+
+        // Their origin writes the replicated points
+        verify(scoreRepository).addToBoardScores("points", Collections.singletonList(new PlayerScore("player1", 10, "Alice")));
+    }
+
+    @Test
+    public void testResynchronizeReloadsStoredTotalsAndKeepsUnwrittenPoints() throws Exception {
+        board.publish(new PlayerScore("player1", 10, "Alice"));
+        board.publishReplicated(new PlayerScore("player2", 40, "Bob"));
+        long version = board.getVersion();
+        // The other node also stored points this node missed
+        Mockito.doAnswer(invocation -> {
+            Consumer<PlayerScore> consumer = invocation.getArgument(1);
+            consumer.accept(new PlayerScore("player2", 70, "Bob"));
+            consumer.accept(new PlayerScore("player3", 5, "Charlie"));
+            return null;
+        }).when(scoreRepository).forEachBoardScore(eq("points"), Mockito.any());
+
+        board.resynchronize();
+
+        List<PlayerScore> top = board.getTopNPlayers();
+        assertEquals(new PlayerScore("player2", 70, "Bob"), top.get(0));
+        assertEquals(new PlayerScore("player1", 10, "Alice"), top.get(1));
+        assertEquals(3, board.getRank("player3").get().getRank());
+        assertTrue(board.getVersion() > version);
+    }
+}
@@ -0,0 +1,150 @@
+package Leaderboards;
+
+import Constants.Constants;
+import exceptions.ShardUnavailableException;
+import models.PlayerRank;
+import models.PlayerScore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import services.Cache.BoardSnapshot;
+import services.Cache.PlayerRankIndex;
+import services.Leaderboards.ShardedLeaderBoard;
+import services.Sharding.ConsistentHashRing;
+import services.Sharding.InProcessShardTransport;
+import services.Sharding.ShardTransport;
+import views.PlayerScoreRepository;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardedLeaderBoardTest {
+
+    private ShardedLeaderBoard board;
+    private PlayerRankIndex reference;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        PlayerScoreRepository scoreRepository = Mockito.mock(PlayerScoreRepository.class);
+        board = new ShardedLeaderBoard("sharded", new ConsistentHashRing(4, 64), new InProcessShardTransport(4), scoreRepository, 10, 1000);
+        reference = new PlayerRankIndex();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            PlayerScore score = new PlayerScore("player" + random.nextInt(500), random.nextInt(1000), "name");
+            board.publish(score);
+            reference.update(score);
+        }
+    }
+
+    @Test
+    public void testTopPlayersMatchSingleIndex() throws Exception {
+        List<PlayerScore> top = board.getTopNPlayers();
+        List<PlayerRank> expected = reference.getRange(0, 10);
+        assertEquals(10, top.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getPlayerId(), top.get(i).getPlayerId());
+        }
+    }
+
+    @Test
+    public void testRangeAndRankMatchSingleIndex() throws Exception {
+        List<PlayerRank> range = board.getRange(100, 20);
+        List<PlayerRank> expected = reference.getRange(100, 20);
+        assertEquals(expected.size(), range.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getPlayerId(), range.get(i).getPlayerId());
+            assertEquals(expected.get(i).getRank(), range.get(i).getRank());
+            assertEquals(expected.get(i).getRank(), board.getRank(expected.get(i).getPlayerId()).get().getRank());
+        }
+    }
+
+    @Test
+    public void testAsyncReadsMatchBlockingReads() throws Exception {
+        assertSameRanks(board.getRange(40, 15), board.getRangeAsync(40, 15).toCompletableFuture().join());
+        String playerId = board.getTopNPlayers().get(3).getPlayerId();
+        assertEquals(4, board.getRankAsync(playerId).toCompletableFuture().join().get().getRank());
+        assertSameRanks(board.getNeighbourhood(playerId, 2), board.getNeighbourhoodAsync(playerId, 2).toCompletableFuture().join());
+        assertEquals(board.getSnapshot().getPlayers(), board.getSnapshotAsync().toCompletableFuture().join().getPlayers());
+    }
+
+    @Test
+    public void testDeepRangeFetchesBoundedPagesFromEachShard() throws Exception {
+        int[] largestPage = new int[1];
+        InProcessShardTransport transport = new InProcessShardTransport(4) {
+            @Override
+            public CompletionStage<List<PlayerScore>> range(int shard, long offset, int limit) {
+                largestPage[0] = Math.max(largestPage[0], limit);
+                return super.range(shard, offset, limit);
+            }
+        };
+        ShardedLeaderBoard deep = new ShardedLeaderBoard("deep", new ConsistentHashRing(4, 64), transport,
+                Mockito.mock(PlayerScoreRepository.class), 10, 1000);
+        PlayerRankIndex expected = new PlayerRankIndex();
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            // Few distinct scores, so most positions are decided by the player id tie-break
+            PlayerScore score = new PlayerScore("player" + i, random.nextInt(3000), "name");
+            deep.publish(score);
+            expected.update(score);
+        }
+
+        assertSameRanks(expected.getRange(12345, 50), deep.getRange(12345, 50));
+        assertSameRanks(expected.getRange(19990, 50), deep.getRange(19990, 50));
+        assertTrue(deep.getRange(25000, 10).isEmpty());
+        String playerId = expected.getRange(15000, 1).get(0).getPlayerId();
+        assertSameRanks(expected.getNeighbourhood(playerId, 3), deep.getNeighbourhood(playerId, 3));
+        assertTrue(largestPage[0] <= Constants.MAX_SHARD_FETCH_LIMIT);
+    }
+
+    private static void assertSameRanks(List<PlayerRank> expected, List<PlayerRank> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getPlayerId(), actual.get(i).getPlayerId());
+            assertEquals(expected.get(i).getRank(), actual.get(i).getRank());
+        }
+    }
+
+    @Test
+    public void testVersionFollowsScoresWrittenThroughOtherCoordinators() throws Exception {
+        ConsistentHashRing ring = new ConsistentHashRing(4, 64);
+        InProcessShardTransport shards = new InProcessShardTransport(4);
+        PlayerScoreRepository scoreRepository = Mockito.mock(PlayerScoreRepository.class);
+        ShardedLeaderBoard nodeA = new ShardedLeaderBoard("sharded", ring, shards, scoreRepository, 10, 1000);
+        ShardedLeaderBoard nodeB = new ShardedLeaderBoard("sharded", ring, shards, scoreRepository, 10, 1000);
+        long before = nodeA.getVersion();
+        assertEquals(before, nodeA.getSnapshot().getVersion());
+
+        nodeB.publish(new PlayerScore("player1", 5000, "Alice"));
+
+        assertNotEquals(before, nodeA.getVersion());
+        BoardSnapshot snapshot = nodeA.getSnapshotAsync().toCompletableFuture().join();
+        assertEquals(nodeA.getVersion(), snapshot.getVersion());
+        assertEquals("player1", snapshot.getPlayers().get(0).getPlayerId());
+    }
+
+    @Test
+    public void testFailedShardFailsAsyncRead() {
+        ShardTransport transport = Mockito.mock(ShardTransport.class);
+        Mockito.when(transport.getShardCount()).thenReturn(2);
+        CompletableFuture<List<PlayerScore>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("connection refused"));
+        Mockito.when(transport.top(Mockito.anyInt(), Mockito.anyInt())).thenReturn(failed);
+        Mockito.when(transport.version(Mockito.anyInt())).thenReturn(CompletableFuture.completedFuture(0L));
+        ShardedLeaderBoard unreachable = new ShardedLeaderBoard("unreachable", new ConsistentHashRing(2, 64), transport,
+                Mockito.mock(PlayerScoreRepository.class), 10, 1000);
+        try {
+            unreachable.getSnapshotAsync().toCompletableFuture().join();
+            fail("Expected the read to fail");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof ShardUnavailableException);
+        }
+    }
+}
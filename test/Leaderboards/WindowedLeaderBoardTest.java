@@ -0,0 +1,122 @@
+package Leaderboards;
+
+import models.PlayerScore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import services.Cache.PlayerScoreCache;
+import services.Leaderboards.TimeWindow;
+import services.Leaderboards.WindowedLeaderBoard;
+import views.PlayerScoreRepository;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjLongConsumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+
+public class WindowedLeaderBoardTest {
+
+    private static final long HOUR = TimeWindow.DAILY.getBucketMillis();
+
+    private final AtomicLong now = new AtomicLong(1000 * HOUR);
+    private PlayerScoreRepository scoreRepository;
+    private WindowedLeaderBoard board;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        scoreRepository = Mockito.mock(PlayerScoreRepository.class);
+        board = new WindowedLeaderBoard("daily", TimeWindow.DAILY, PlayerScoreCache::new, scoreRepository, 2, now::get);
+    }
+
+    @Test
+    public void testTopPlayersMergeBuckets() throws Exception {
+        board.publish(new PlayerScore("player1", 100, "Alice"));
+        now.addAndGet(HOUR);
+        board.publish(new PlayerScore("player2", 300, "Bob"));
+        board.publish(new PlayerScore("player1", 200, "Alice"));
+        board.publish(new PlayerScore("player3", 150, "Charlie"));
+
+        List<PlayerScore> top = board.getTopNPlayers();
+        assertEquals(2, top.size());
+        assertEquals("player2", top.get(0).getPlayerId());
+        assertEquals(200, top.get(1).getScore());
+    }
+
+    @Test
+    public void testScoresExpireWithTheirBucket() throws Exception {
+        board.publish(new PlayerScore("player1", 500, "Alice"));
+        now.addAndGet(HOUR);
+        board.publish(new PlayerScore("player2", 100, "Bob"));
+
+        now.addAndGet(23 * HOUR);
+        List<PlayerScore> top = board.getTopNPlayers();
+        assertEquals(1, top.size());
+        assertEquals("player2", top.get(0).getPlayerId());
+        assertFalse(board.getRank("player1").isPresent());
+    }
+
+    @Test
+    public void testScoreThatChangesNoBucketKeepsTheVersion() throws Exception {
+        AtomicLong changes = new AtomicLong();
+        board.setChangeListener(changes::incrementAndGet);
+        board.publish(new PlayerScore("player1", 200, "Alice"));
+        long version = board.getSnapshot().getVersion();
+
+        board.publish(new PlayerScore("player1", 100, "Alice"));
+
+        assertEquals(version, board.getSnapshot().getVersion());
+        assertEquals(1, changes.get());
+    }
+
+    @Test
+    public void testVersionMovesWithTheWindowWithoutASnapshot() throws Exception {
+        board.publish(new PlayerScore("player1", 200, "Alice"));
+        long version = board.getVersion();
+        assertEquals(version, board.getSnapshot().getVersion());
+
+        now.addAndGet(HOUR);
+
+        long slid = board.getVersion();
+        assertNotEquals(version, slid);
+        assertEquals(slid, board.getSnapshot().getVersion());
+    }
+
+    @Test
+    public void testResynchronizeMergesIntoTheLiveWindow() throws Exception {
+        board.publish(new PlayerScore("player1", 200, "Alice"));
+        long version = board.getVersion();
+        Mockito.doAnswer(invocation -> {
+            ObjLongConsumer<PlayerScore> consumer = invocation.getArgument(1);
+            consumer.accept(new PlayerScore("player2", 300, "Bob"), now.get() - HOUR);
+            return null;
+        }).when(scoreRepository).forEachScoreEventSince(anyLong(), any());
+
+        board.resynchronize(0);
+
+        List<PlayerScore> top = board.getTopNPlayers();
+        assertEquals(2, top.size());
+        assertEquals("player2", top.get(0).getPlayerId());
+        assertEquals("player1", top.get(1).getPlayerId());
+        assertTrue(board.getVersion() > version);
+    }
+
+    @Test
+    public void testResizeKeepsScoresMissingFromTheStoredEvents() throws Exception {
+        board.publish(new PlayerScore("player1", 200, "Alice"));
+        now.addAndGet(HOUR);
+        board.publish(new PlayerScore("player2", 100, "Bob"));
+
+        board.createBoard(3);
+
+        List<PlayerScore> top = board.getTopNPlayers();
+        assertEquals(2, top.size());
+        assertEquals("player1", top.get(0).getPlayerId());
+        assertEquals("player2", top.get(1).getPlayerId());
+    }
+}
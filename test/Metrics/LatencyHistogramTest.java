@@ -0,0 +1,37 @@
+package Metrics;
+
+import org.junit.jupiter.api.Test;
+import services.Metrics.LatencyHistogram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testQuantilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000L, histogram.getMaxNanos());
+        long median = histogram.getQuantileNanos(0.5);
+        assertTrue(median >= 50_000_000L && median <= 50_000_000L * 17 / 16);
+        long p99 = histogram.getQuantileNanos(0.99);
+        assertTrue(p99 >= 99_000_000L && p99 <= 99_000_000L * 17 / 16);
+        assertEquals(100_000_000L, histogram.getQuantileNanos(1.0));
+    }
+
+    @Test
+    public void testEmptyAndExtremeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getQuantileNanos(0.99));
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getQuantileNanos(0.5));
+        assertEquals(Long.MAX_VALUE, histogram.getQuantileNanos(1.0));
+    }
+}
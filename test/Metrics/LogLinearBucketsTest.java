@@ -0,0 +1,37 @@
+package Metrics;
+
+import org.junit.jupiter.api.Test;
+import services.Metrics.LogLinearBuckets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogLinearBucketsTest {
+
+    @Test
+    public void testBucketsTileEveryNonNegativeLong() {
+        for (int subBits : new int[]{4, 5}) {
+            LogLinearBuckets buckets = new LogLinearBuckets(subBits);
+            assertEquals(0, buckets.lowerBound(0));
+            assertEquals(Long.MAX_VALUE, buckets.upperBound(buckets.getBucketCount() - 1));
+            assertEquals(buckets.getBucketCount() - 1, buckets.bucketOf(Long.MAX_VALUE));
+            for (int bucket = 0; bucket < buckets.getBucketCount(); bucket++) {
+                assertEquals(bucket, buckets.bucketOf(buckets.lowerBound(bucket)));
+                assertEquals(bucket, buckets.bucketOf(buckets.upperBound(bucket)));
+                if (bucket > 0) {
+                    assertEquals(buckets.upperBound(bucket - 1) + 1, buckets.lowerBound(bucket));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBucketWidthWithinPrecision() {
+        LogLinearBuckets buckets = new LogLinearBuckets(5);
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+            int bucket = buckets.bucketOf(value);
+            long width = buckets.upperBound(bucket) - buckets.lowerBound(bucket) + 1;
+            assertTrue(width <= Math.max(1, value / 32));
+        }
+    }
+}
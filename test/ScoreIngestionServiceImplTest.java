@@ -1,6 +1,10 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
+import Constants.Constants;
+import exceptions.CacheInitializationException;
 import exceptions.DatabaseStorageException;
 import exceptions.LeaderboardNotInitializedException;
 import exceptions.LeaderboardUpdateFailureException;
@@ -10,12 +14,23 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import services.Cache.PlayerRankIndex;
+import services.Cache.PlayerScoreCache;
+import services.Leaderboards.LeaderBoard;
+import services.Leaderboards.LeaderBoardRegistry;
+import services.Leaderboards.TimeWindow;
 import services.Scores.ScoreIngestionServiceImpl;
+import services.Scores.ScoreWriteBehindQueue;
 import views.PlayerScoreRepository;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class ScoreIngestionServiceImplTest {
@@ -23,17 +38,25 @@ public class ScoreIngestionServiceImplTest {
     // Service instance to be tested
     private ScoreIngestionServiceImpl scoreIngestor;
 
+    // Write-behind stage between the service and the repository
+    private ScoreWriteBehindQueue writeBehindQueue;
+
     // Mock repository for testing without hitting the actual database
     @Mock
     private PlayerScoreRepository scoreRepository;
 
     // Setup method to initialize mocks and service before each test
     @Before
-    public void setUp() {
+    public void setUp() throws LeaderboardNotInitializedException, CacheInitializationException {
         // Mock the PlayerScoreRepository to avoid real database interactions
         scoreRepository = Mockito.mock(PlayerScoreRepository.class);
-        // Initialize the ScoreIngestionServiceImpl with the mocked repository
-        scoreIngestor = new ScoreIngestionServiceImpl(scoreRepository);
+        // Queue with room for two scores and no flusher thread, so tests flush explicitly
+        writeBehindQueue = new ScoreWriteBehindQueue(scoreRepository, 10, 50, 2, 0);
+        // Registry with only the default board, backed by the mocked repository
+        PlayerRankIndex rankIndex = new PlayerRankIndex();
+        LeaderBoardRegistry boardRegistry = new LeaderBoardRegistry(PlayerScoreCache::new, rankIndex, scoreRepository);
+        // Initialize the ScoreIngestionServiceImpl with the write-behind queue, fanning out on the calling thread
+        scoreIngestor = new ScoreIngestionServiceImpl(writeBehindQueue, rankIndex, boardRegistry, Runnable::run);
     }
 
     // Test case for a successful score publishing
@@ -41,46 +64,75 @@ public class ScoreIngestionServiceImplTest {
     public void successfulPublishTest() throws LeaderboardUpdateFailureException, DatabaseStorageException {
         // Mock player data for the test
         PlayerScore player = new PlayerScore("player10", 600, "sakshi");
-        Map<String, Object> queryParamsMap = new HashMap<>();
-        queryParamsMap.put("player_id", "player10");
-
-        // Simulate finding the player in the repository
-        when(scoreRepository.findById(PlayerScore.class, queryParamsMap)).thenReturn(Optional.of(player));
 
         // Invoke the publish method of the service
         Response response = scoreIngestor.publish(player);
+        writeBehindQueue.flush();
 
-        // Verify that the repository's findById method was called once
-        verify(scoreRepository, times(1)).findById(PlayerScore.class, queryParamsMap);
-        // Verify that the save method was not called
-        verify(scoreRepository, times(0)).save(player, true);
+        // Verify that the score was written in a single batch upsert
+        verify(scoreRepository, times(1)).upsertBatch(Collections.singletonList(player));
 
         // Assert that the response message indicates success
         assertEquals(response.getMessage(), "User score ingested successfully");
     }
 
-    // Test case for an unsuccessful score publishing due to a database storage exception
+    // Test case for an unsuccessful score publishing because the write-behind queue is full
     @Test
     public void unsuccessfulPublishTest() throws LeaderboardUpdateFailureException, DatabaseStorageException {
-        // Mock player data for the test
-        PlayerScore player = new PlayerScore("player10", 600, "sakshi");
-        Map<String, Object> queryParamsMap = new HashMap<>();
-        queryParamsMap.put("player_id", "player10");
+        scoreIngestor.publish(new PlayerScore("player10", 600, "sakshi"));
+        scoreIngestor.publish(new PlayerScore("player11", 500, "sakshi"));
 
-        // Simulate a database storage exception when finding the player in the repository
-        when(scoreRepository.findById(PlayerScore.class, queryParamsMap))
-                .thenThrow(new DatabaseStorageException("Could not publish data to storage: "));
+        // Invoke the publish method of the service with the queue at capacity
+        Response response = scoreIngestor.publish(new PlayerScore("player12", 400, "sakshi"));
 
-        // Invoke the publish method of the service
-        Response response = scoreIngestor.publish(player);
-
-        // Verify that the repository's findById method was called once
-        verify(scoreRepository, times(1)).findById(PlayerScore.class, queryParamsMap);
+        // Verify that nothing has been written yet
+        verify(scoreRepository, times(0)).upsertBatch(anyList());
 
         // Assert that the response message indicates failure
         assertEquals("User score insertion failed", response.getMessage());
     }
 
+    // Test case for a flush that keeps failing after the score was acknowledged
+    @Test
+    public void failedFlushKeepsScoresForTheNextFlushTest() throws LeaderboardUpdateFailureException, DatabaseStorageException {
+        DatabaseStorageException down = new DatabaseStorageException("database down");
+        doThrow(down).doThrow(down).doThrow(down).doNothing().when(scoreRepository).upsertBatch(anyList());
+        PlayerScore first = new PlayerScore("player10", 600, "sakshi");
+        PlayerScore second = new PlayerScore("player11", 500, "sakshi");
+        scoreIngestor.publish(first);
+        scoreIngestor.publish(second);
+
+        // Every attempt fails, so the scores are kept rather than dropped
+        writeBehindQueue.flush();
+        assertEquals(1, writeBehindQueue.getFailedBatches());
+        assertEquals(2, writeBehindQueue.getUnwrittenScores());
+
+        // As many unwritten scores as the queue holds push back on new ones
+        Response response = scoreIngestor.publish(new PlayerScore("player12", 400, "sakshi"));
+        assertEquals("User score insertion failed", response.getMessage());
+
+        writeBehindQueue.flush();
+
+        // Rows are written in player id order
+        verify(scoreRepository, times(4)).upsertBatch(Arrays.asList(first, second));
+        assertEquals(0, writeBehindQueue.getUnwrittenScores());
+    }
+
+    // Test case for a batch keeping only the best score per player
+    @Test
+    public void batchKeepsBestScorePerPlayerTest() throws LeaderboardUpdateFailureException, DatabaseStorageException {
+        PlayerScore best = new PlayerScore("player10", 600, "sakshi");
+        scoreIngestor.publish(best);
+        scoreIngestor.publish(new PlayerScore("player10", 300, "sakshi"));
+
+        writeBehindQueue.flush();
+
+        List<PlayerScore> expectedRows = Collections.singletonList(best);
+        verify(scoreRepository, times(1)).upsertBatch(expectedRows);
+        assertEquals(1, writeBehindQueue.getFlushedBatches());
+        assertEquals(2, writeBehindQueue.getFlushedScores());
+    }
+
     // Test case to publish a score and verify the response message
     @Test
     public void publishScoreAndVerify() throws DatabaseStorageException, LeaderboardUpdateFailureException, LeaderboardNotInitializedException {
@@ -91,4 +143,90 @@ public class ScoreIngestionServiceImplTest {
         assertEquals(response.getMessage(), "User score ingested successfully");
     }
 
+    // Test case for the asynchronous variant completing with the same response
+    @Test
+    public void publishAsyncCompletesWithResponse() throws DatabaseStorageException {
+        PlayerScore player = new PlayerScore("player10", 600, "sakshi");
+
+        Response response = scoreIngestor.publishAsync(player).toCompletableFuture().join();
+        writeBehindQueue.flush();
+
+        verify(scoreRepository, times(1)).upsertBatch(Collections.singletonList(player));
+        assertEquals("User score ingested successfully", response.getMessage());
+    }
+
+    // Test case for coalescing a player's scores within a window into one stored score
+    @Test
+    public void coalescingStoresOneBestScorePerWindow() throws DatabaseStorageException {
+        // A window long enough that only stopping flushes it
+        scoreIngestor.startCoalescing(60_000, 1000);
+        PlayerScore best = new PlayerScore("player10", 600, "sakshi");
+        CompletableFuture<Response> first = scoreIngestor.publishAsync(new PlayerScore("player10", 300, "sakshi")).toCompletableFuture();
+        CompletableFuture<Response> second = scoreIngestor.publishAsync(best).toCompletableFuture();
+        CompletableFuture<Response> third = scoreIngestor.publishAsync(new PlayerScore("player10", 500, "sakshi")).toCompletableFuture();
+        assertFalse(first.isDone());
+
+        scoreIngestor.stopCoalescing();
+        writeBehindQueue.flush();
+
+        verify(scoreRepository, times(1)).upsertBatch(Collections.singletonList(best));
+        assertEquals("User score ingested successfully", first.join().getMessage());
+        assertEquals("User score ingested successfully", second.join().getMessage());
+        assertEquals("User score ingested successfully", third.join().getMessage());
+    }
+
+    // Test case for a board failing on the calling thread while another board is still being written
+    @Test
+    public void fanOutFailureWaitsForTheOtherBoardsTest() throws Exception {
+        Thread caller = Thread.currentThread();
+        AtomicInteger otherBoardsWritten = new AtomicInteger();
+        ExecutorService fanOutExecutor = Executors.newSingleThreadExecutor();
+        PlayerRankIndex rankIndex = new PlayerRankIndex();
+        LeaderBoardRegistry boardRegistry = new LeaderBoardRegistry(PlayerScoreCache::new, rankIndex, scoreRepository);
+        ScoreIngestionServiceImpl ingestor = new ScoreIngestionServiceImpl(writeBehindQueue, rankIndex, boardRegistry, fanOutExecutor);
+        // Every board is replaced: whichever runs on the calling thread fails, the others are slow
+        List<String> names = new ArrayList<>();
+        names.add(Constants.DEFAULT_LEADERBOARD_NAME);
+        for (TimeWindow window : TimeWindow.values()) {
+            names.add(window.boardName());
+        }
+        for (String name : names) {
+            LeaderBoard board = Mockito.mock(LeaderBoard.class);
+            when(board.getName()).thenReturn(name);
+            when(board.canAccept(any())).thenReturn(true);
+            doAnswer(invocation -> {
+                if (Thread.currentThread() == caller) {
+                    throw new LeaderboardUpdateFailureException("board down");
+                }
+                Thread.sleep(100);
+                otherBoardsWritten.incrementAndGet();
+                return null;
+            }).when(board).publish(any());
+            ingestor.registerLeaderBoard(board);
+        }
+
+        try {
+            ingestor.publishToLeaderBoards(new PlayerScore("player10", 600, "sakshi"));
+            fail("Expected the failing board to fail the publish");
+        } catch (LeaderboardUpdateFailureException e) {
+            assertEquals(names.size() - 1, otherBoardsWritten.get());
+        } finally {
+            fanOutExecutor.shutdown();
+        }
+    }
+
+    // Scores applied on this node are handed to replication, scores replicated from other nodes are not
+    @Test
+    public void replicatedScoresAreNotReplicatedAgainTest() throws LeaderboardUpdateFailureException {
+        List<List<PlayerScore>> replicated = new ArrayList<>();
+        scoreIngestor.setReplicationListener(replicated::add);
+        List<PlayerScore> local = Collections.singletonList(new PlayerScore("player10", 600, "sakshi"));
+        List<PlayerScore> remote = Collections.singletonList(new PlayerScore("player11", 700, "sakshi"));
+
+        scoreIngestor.publishBatchToLeaderBoards(local);
+        scoreIngestor.applyReplicatedToLeaderBoards(remote);
+
+        assertEquals(Collections.singletonList(local), replicated);
+        verify(scoreRepository, times(0)).upsertBatch(anyList());
+    }
 }
@@ -0,0 +1,82 @@
+package Streaming;
+
+import akka.actor.ActorSystem;
+import akka.stream.Materializer;
+import com.typesafe.config.Config;
+import models.PlayerScore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import play.inject.ApplicationLifecycle;
+import services.Cache.BoardSnapshot;
+import services.Leaderboards.ActivityLeaderBoard;
+import services.Leaderboards.LeaderBoardRegistry;
+import services.Streaming.BoardStreamHub;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+public class BoardStreamHubTest {
+
+    private ActorSystem actorSystem;
+    private ActivityLeaderBoard board;
+    private BoardStreamHub hub;
+
+    @BeforeEach
+    public void setUp() {
+        actorSystem = ActorSystem.create("board-stream-hub-test");
+        board = new ActivityLeaderBoard("active", null, 100, 10, System::currentTimeMillis);
+        LeaderBoardRegistry boardRegistry = Mockito.mock(LeaderBoardRegistry.class);
+        when(boardRegistry.get("active")).thenReturn(Optional.of(board));
+        when(boardRegistry.get("missing")).thenReturn(Optional.empty());
+        Config config = Mockito.mock(Config.class);
+        when(config.getInt("leaderboard.stream.subscriberBuffer")).thenReturn(16);
+        when(config.getDuration("leaderboard.stream.keepAlive")).thenReturn(Duration.ofSeconds(15));
+        when(config.getDuration("leaderboard.stream.interval", TimeUnit.MILLISECONDS)).thenReturn(20L);
+        hub = new BoardStreamHub(boardRegistry, Materializer.matFromSystem(actorSystem), config, Mockito.mock(ApplicationLifecycle.class));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        actorSystem.terminate();
+    }
+
+    @Test
+    public void testPollTimesOutWithTheUnchangedSnapshot() throws Exception {
+        long version = board.getVersion();
+        long start = System.nanoTime();
+
+        BoardSnapshot snapshot = hub.awaitChange("active", version, Duration.ofMillis(200)).get()
+                .toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        assertEquals(version, snapshot.getVersion());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void testPollWakesOnChangeBeforeTheWait() throws Exception {
+        long version = board.getVersion();
+
+        CompletableFuture<BoardSnapshot> change = hub.awaitChange("active", version, Duration.ofSeconds(30)).get()
+                .toCompletableFuture();
+        board.publish(new PlayerScore("player1", 100, "Alice"));
+        BoardSnapshot snapshot = change.get(5, TimeUnit.SECONDS);
+
+        assertNotEquals(version, snapshot.getVersion());
+        assertEquals("player1", snapshot.getPlayers().get(0).getPlayerId());
+    }
+
+    @Test
+    public void testPollOnUnknownBoardIsEmpty() {
+        assertFalse(hub.awaitChange("missing", 0, Duration.ofMillis(200)).isPresent());
+    }
+}
@@ -0,0 +1,43 @@
+package controllers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EntityTagsTest {
+
+    private final Object board = new Object();
+
+    @Test
+    public void testTagsDifferByVersionAndBoard() {
+        assertEquals(EntityTags.of(board, 3), EntityTags.of(board, 3));
+        assertNotEquals(EntityTags.of(board, 3), EntityTags.of(board, 4));
+        assertNotEquals(EntityTags.of(board, 3), EntityTags.of(new Object(), 3));
+        assertTrue(EntityTags.of(board, 3).startsWith("\"") && EntityTags.of(board, 3).endsWith("\""));
+    }
+
+    @Test
+    public void testMatchesCurrentTagOnly() {
+        String tag = EntityTags.of(board, 7);
+
+        assertTrue(EntityTags.matches(Optional.of(tag), tag));
+        assertFalse(EntityTags.matches(Optional.of(EntityTags.of(board, 6)), tag));
+        assertFalse(EntityTags.matches(Optional.empty(), tag));
+        assertFalse(EntityTags.matches(Optional.of(tag.substring(1, tag.length() - 1)), tag)); // Unquoted
+    }
+
+    @Test
+    public void testMatchesWeakTagsListsAndWildcard() {
+        String tag = EntityTags.of(board, 7);
+
+        assertTrue(EntityTags.matches(Optional.of("W/" + tag), tag));
+        assertTrue(EntityTags.matches(Optional.of(EntityTags.of(board, 5) + ", " + tag), tag));
+        assertTrue(EntityTags.matches(Optional.of(" W/" + EntityTags.of(board, 5) + " ,W/" + tag + " "), tag));
+        assertTrue(EntityTags.matches(Optional.of("*"), tag));
+    }
+}
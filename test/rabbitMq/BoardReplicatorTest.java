@@ -0,0 +1,169 @@
+package rabbitMq;
+
+import models.PlayerScore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import services.Leaderboards.BoardDefinition;
+import services.Leaderboards.LeaderBoardRegistry;
+import services.Leaderboards.TimeWindow;
+import services.Scores.ScoreIngestionToLeaderBoards;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class BoardReplicatorTest {
+
+    private ScoreIngestionToLeaderBoards ingestion;
+    private LeaderBoardRegistry boardRegistry;
+    private BoardReplicator replicator;
+
+    @BeforeEach
+    public void setUp() {
+        ingestion = Mockito.mock(ScoreIngestionToLeaderBoards.class);
+        boardRegistry = Mockito.mock(LeaderBoardRegistry.class);
+        // Not started, so nothing connects to a broker
+        replicator = new BoardReplicator(ingestion, boardRegistry, "replication", 100, 5, 2, 10, 100, 100, 1000);
+    }
+
+    @Test
+    public void testAppliesOtherNodesEventsInSequence() throws Exception {
+        List<PlayerScore> first = Collections.singletonList(new PlayerScore("player1", 100, "Alice"));
+        List<PlayerScore> second = Collections.singletonList(new PlayerScore("player2", 200, "Bob"));
+
+        replicator.onEvent("node-a", 1, first);
+        replicator.onEvent("node-a", 2, second);
+
+        verify(ingestion).applyReplicatedToLeaderBoards(first);
+        verify(ingestion).applyReplicatedToLeaderBoards(second);
+        verify(boardRegistry, after(300).never()).resynchronize(anyLong());
+        assertEquals(Long.valueOf(0), replicator.getStats().get("gaps"));
+    }
+
+    @Test
+    public void testIgnoresItsOwnEvents() throws Exception {
+        replicator.onEvent(replicator.getNodeId(), 1, Collections.singletonList(new PlayerScore("player1", 100, "Alice")));
+
+        verify(ingestion, never()).applyReplicatedToLeaderBoards(anyList());
+    }
+
+    @Test
+    public void testGapsResynchronizeOnceAfterTheDelay() throws Exception {
+        List<PlayerScore> scores = Collections.singletonList(new PlayerScore("player1", 100, "Alice"));
+
+        replicator.onEvent("node-a", 1, scores);
+        replicator.onEvent("node-a", 3, scores);
+        replicator.onEvent("node-a", 5, scores);
+
+        // Events after a gap are still applied
+        verify(ingestion, times(3)).applyReplicatedToLeaderBoards(scores);
+        verify(boardRegistry, timeout(2000).times(1)).resynchronize(anyLong());
+        verify(boardRegistry, after(300).times(1)).resynchronize(anyLong());
+        assertEquals(Long.valueOf(2), replicator.getStats().get("gaps"));
+    }
+
+    @Test
+    public void testJoiningMidStreamResynchronizes() throws Exception {
+        replicator.onEvent("node-b", 42, Collections.singletonList(new PlayerScore("player1", 100, "Alice")));
+
+        verify(boardRegistry, timeout(2000)).resynchronize(anyLong());
+    }
+
+    @Test
+    public void testUndecodableEventsResynchronize() throws Exception {
+        replicator.onEvent("node-a", 1, null);
+
+        verify(ingestion, never()).applyReplicatedToLeaderBoards(anyList());
+        verify(boardRegistry, timeout(2000)).resynchronize(anyLong());
+    }
+
+    @Test
+    public void testDroppedScoresSkipASequenceNumber() {
+        assertEquals(1, replicator.nextSequence());
+
+        // Capacity is two, so the third score is dropped
+        replicator.replicate(Arrays.asList(
+                new PlayerScore("player1", 100, "Alice"),
+                new PlayerScore("player2", 200, "Bob"),
+                new PlayerScore("player3", 300, "Charlie")));
+
+        assertEquals(Long.valueOf(1), replicator.getStats().get("dropped"));
+        assertEquals(3, replicator.nextSequence());
+        assertEquals(4, replicator.nextSequence());
+    }
+
+    @Test
+    public void testRepairReadsOnlyScoresStoredSinceTheOriginWasLastHeard() throws Exception {
+        List<PlayerScore> scores = Collections.singletonList(new PlayerScore("player1", 100, "Alice"));
+        replicator.onEvent("node-a", 1, scores);
+        long heard = System.currentTimeMillis();
+
+        replicator.onEvent("node-a", 3, scores);
+
+        ArgumentCaptor<Long> since = ArgumentCaptor.forClass(Long.class);
+        verify(boardRegistry, timeout(2000)).resynchronize(since.capture());
+        // Heard at most this long ago, less the catch-up margin
+        assertTrue(since.getValue() >= heard - 1000 - 100);
+        assertTrue(since.getValue() <= heard - 1000);
+    }
+
+    @Test
+    public void testRepairsStartAtMostOncePerInterval() throws Exception {
+        replicator = new BoardReplicator(ingestion, boardRegistry, "replication", 100, 5, 2, 10, 100, 1000, 1000);
+        List<PlayerScore> scores = Collections.singletonList(new PlayerScore("player1", 100, "Alice"));
+
+        replicator.onEvent("node-a", 2, scores);
+        verify(boardRegistry, timeout(2000).times(1)).resynchronize(anyLong());
+        replicator.onEvent("node-a", 4, scores);
+
+        verify(boardRegistry, after(500).times(1)).resynchronize(anyLong());
+        verify(boardRegistry, timeout(2000).times(2)).resynchronize(anyLong());
+    }
+
+    @Test
+    public void testAppliesOtherNodesPointsToTheirBoard() throws Exception {
+        List<PlayerScore> points = Arrays.asList(new PlayerScore("player1", 5, "Alice"), new PlayerScore("player2", -3, "Bob"));
+
+        replicator.onPoints("node-a", 1, "coins", points);
+        replicator.onPoints("node-a", 2, null, points);
+
+        verify(ingestion).applyReplicatedPoints("coins", points);
+        verify(ingestion, never()).applyReplicatedToLeaderBoards(anyList());
+        // An event without its board cannot be applied and counts as missed
+        verify(boardRegistry, timeout(2000)).resynchronize(anyLong());
+        assertEquals(Long.valueOf(2), replicator.getStats().get("appliedPoints"));
+    }
+
+    @Test
+    public void testRedeliveredPointsAreNotAddedTwice() throws Exception {
+        List<PlayerScore> first = Collections.singletonList(new PlayerScore("player1", 5, "Alice"));
+        List<PlayerScore> second = Collections.singletonList(new PlayerScore("player1", 7, "Alice"));
+
+        replicator.onPoints("node-a", 1, "coins", first);
+        replicator.onPoints("node-a", 2, "coins", second);
+        replicator.onPoints("node-a", 2, "coins", second);
+        replicator.onPoints("node-a", 1, "coins", first);
+
+        verify(ingestion, times(1)).applyReplicatedPoints("coins", first);
+        verify(ingestion, times(1)).applyReplicatedPoints("coins", second);
+        assertEquals(Long.valueOf(2), replicator.getStats().get("duplicatePoints"));
+    }
+
+    @Test
+    public void testRegistersOtherNodesBoardsWithoutSendingThemBack() throws Exception {
+        BoardDefinition definition = new BoardDefinition(BoardDefinition.Kind.WINDOWED, "arena", TimeWindow.DAILY, 20);
+
+        replicator.onDefinition("node-a", 1, definition);
+        replicator.onDefinition(replicator.getNodeId(), 1, definition);
+
+        verify(boardRegistry, times(1)).applyReplicated(definition);
+        verify(boardRegistry, never()).define(any());
+        assertEquals(Long.valueOf(1), replicator.getStats().get("appliedBoards"));
+    }
+}
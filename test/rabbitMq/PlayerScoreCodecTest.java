@@ -0,0 +1,97 @@
+package rabbitMq;
+
+import models.PlayerScore;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PlayerScoreCodecTest {
+
+    @Test
+    public void testDecodeSingleJsonScore() throws IOException {
+        byte[] body = "{\"playerId\":\"player1\",\"score\":100,\"playerName\":\"Alice\"}".getBytes(StandardCharsets.UTF_8);
+
+        List<PlayerScore> scores = PlayerScoreCodec.decode(null, body);
+
+        assertEquals(Collections.singletonList(new PlayerScore("player1", 100, "Alice")), scores);
+    }
+
+    @Test
+    public void testDecodeJsonArray() throws IOException {
+        byte[] body = ("[{\"playerId\":\"player1\",\"score\":100,\"playerName\":\"Alice\"}," +
+                "{\"playerId\":\"player2\",\"score\":200,\"playerName\":\"Bob\"}]").getBytes(StandardCharsets.UTF_8);
+
+        List<PlayerScore> scores = PlayerScoreCodec.decode(PlayerScoreCodec.CONTENT_TYPE_JSON, body);
+
+        assertEquals(Arrays.asList(
+                new PlayerScore("player1", 100, "Alice"),
+                new PlayerScore("player2", 200, "Bob")
+        ), scores);
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        List<PlayerScore> scores = Arrays.asList(
+                new PlayerScore("player1", 100, "Alice"),
+                new PlayerScore("player2", Long.MAX_VALUE, "Zo\u00eb")
+        );
+
+        byte[] body = PlayerScoreCodec.encodeBinary(scores);
+
+        assertEquals(scores, PlayerScoreCodec.decode(PlayerScoreCodec.CONTENT_TYPE_BINARY, body));
+    }
+
+    @Test
+    public void testTruncatedBinaryIsRejected() {
+        byte[] body = PlayerScoreCodec.encodeBinary(Collections.singletonList(new PlayerScore("player1", 100, "Alice")));
+
+        assertThrows(IOException.class, () -> PlayerScoreCodec.decode(PlayerScoreCodec.CONTENT_TYPE_BINARY, Arrays.copyOf(body, body.length - 3)));
+    }
+
+    @Test
+    public void testBinaryKeepsNullAndEmptyNamesApart() throws IOException {
+        List<PlayerScore> scores = Arrays.asList(
+                new PlayerScore("player1", 100, null),
+                new PlayerScore("player2", 200, "")
+        );
+
+        List<PlayerScore> decoded = PlayerScoreCodec.decode(PlayerScoreCodec.CONTENT_TYPE_BINARY, PlayerScoreCodec.encodeBinary(scores));
+
+        assertNull(decoded.get(0).getPlayerName());
+        assertEquals("", decoded.get(1).getPlayerName());
+    }
+
+    @Test
+    public void testBinaryWithoutPlayerIdIsRejected() {
+        byte[] emptyId = PlayerScoreCodec.encodeBinary(Collections.singletonList(new PlayerScore("", 100, "Alice")));
+        byte[] nullId = PlayerScoreCodec.encodeBinary(Collections.singletonList(new PlayerScore(null, 100, "Alice")));
+
+        assertThrows(IOException.class, () -> PlayerScoreCodec.decode(PlayerScoreCodec.CONTENT_TYPE_BINARY, emptyId));
+        assertThrows(IOException.class, () -> PlayerScoreCodec.decode(PlayerScoreCodec.CONTENT_TYPE_BINARY, nullId));
+    }
+
+    @Test
+    public void testTrailingBytesAfterBinaryRecordsAreRejected() {
+        byte[] body = PlayerScoreCodec.encodeBinary(Collections.singletonList(new PlayerScore("player1", 100, "Alice")));
+
+        assertThrows(IOException.class, () -> PlayerScoreCodec.decode(PlayerScoreCodec.CONTENT_TYPE_BINARY, Arrays.copyOf(body, body.length + 1)));
+    }
+
+    @Test
+    public void testJsonWithoutScoreOrPlayerIsRejected() {
+        byte[] noScore = "{\"playerId\":\"player1\",\"playerName\":\"Alice\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] noPlayer = "[{\"score\":100,\"playerName\":\"Alice\"}]".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(IOException.class, () -> PlayerScoreCodec.decode(null, noScore));
+        assertThrows(IOException.class, () -> PlayerScoreCodec.decode(null, noPlayer));
+        assertThrows(IOException.class, () -> PlayerScoreCodec.decodeScore(noScore));
+    }
+}
@@ -0,0 +1,106 @@
+package rabbitMq;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Delivery;
+import com.rabbitmq.client.Envelope;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class RabbitMqClientTest {
+
+    private Channel channel;
+    private TestClient client;
+    private RabbitMqClient.ChannelConsumer consumer;
+
+    @BeforeEach
+    public void setUp() {
+        channel = Mockito.mock(Channel.class);
+        // Batches of two, processed by two workers; not started, so nothing connects to a broker
+        client = new TestClient();
+        client.startWorkers();
+        consumer = client.addConsumer(channel);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        client.release.countDown(); // The daemon worker threads then go idle
+    }
+
+    @Test
+    public void testLaterBatchesWaitForEarlierOnesBeforeOneMultipleAck() throws Exception {
+        client.held.add(2L);
+        deliver(1, 2, 3, 4);
+
+        // The second batch finishes first, but its messages cannot be acknowledged past the first
+        verify(channel, after(300).never()).basicAck(anyLong(), anyBoolean());
+
+        client.release.countDown();
+
+        verify(channel, timeout(2000)).basicAck(4, true);
+        verify(channel, never()).basicAck(2, true);
+        assertEquals(Long.valueOf(4), client.getStats().get("acked"));
+        assertEquals(Long.valueOf(0), client.getStats().get("inFlight"));
+    }
+
+    @Test
+    public void testFailedBatchIsRequeuedAndLaterBatchesStillAcked() throws Exception {
+        client.failing.add(2L);
+        deliver(1, 2, 3, 4);
+
+        verify(channel, timeout(2000)).basicAck(4, true);
+        verify(channel).basicNack(1, false, true);
+        verify(channel).basicNack(2, false, true);
+        assertEquals(Long.valueOf(2), client.getStats().get("acked"));
+        assertEquals(Long.valueOf(2), client.getStats().get("nacked"));
+    }
+
+    @Test
+    public void testPartialBatchIsFlushedToTheWorkers() throws Exception {
+        deliver(1);
+
+        client.flushPartialBatches();
+
+        verify(channel, timeout(2000)).basicAck(1, true);
+    }
+
+    private void deliver(long... deliveryTags) {
+        for (long deliveryTag : deliveryTags) {
+            consumer.onDelivery(new Delivery(new Envelope(deliveryTag, false, "", "scores"), null, new byte[0]));
+        }
+    }
+
+    /**
+     * Processes batches on the worker pool, holding or failing those that end with the given delivery tags.
+     */
+    private static final class TestClient extends RabbitMqClient {
+        private final Set<Long> held = ConcurrentHashMap.newKeySet();
+        private final Set<Long> failing = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private TestClient() {
+            super(1, 10, 2, 4, 2, 20, 30_000);
+        }
+
+        @Override
+        protected void processMessages(List<Delivery> deliveries) throws Exception {
+            long lastDeliveryTag = deliveries.get(deliveries.size() - 1).getEnvelope().getDeliveryTag();
+            if (held.contains(lastDeliveryTag)) {
+                release.await(2, TimeUnit.SECONDS);
+            }
+            if (failing.contains(lastDeliveryTag)) {
+                throw new Exception("batch failed");
+            }
+        }
+    }
+}